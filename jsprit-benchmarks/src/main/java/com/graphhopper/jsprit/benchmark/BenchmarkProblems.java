@@ -0,0 +1,168 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.benchmark;
+
+import com.graphhopper.jsprit.core.algorithm.VehicleRoutingAlgorithm;
+import com.graphhopper.jsprit.core.algorithm.box.Jsprit;
+import com.graphhopper.jsprit.core.algorithm.state.StateManager;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.constraint.ConstraintManager;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.util.Solutions;
+import com.graphhopper.jsprit.instance.reader.LiLimReader;
+import com.graphhopper.jsprit.instance.reader.SolomonReader;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads benchmark instances from jsprit-instances and prepares solutions, states and constraints the benchmarks
+ * operate on.
+ * <p>
+ * <p>Instances are read from the directory specified by the system property 'jsprit.instances' (default is
+ * jsprit-instances/instances, i.e. benchmarks are expected to be started from the project root).
+ */
+public final class BenchmarkProblems {
+
+    public static final String INSTANCES_DIR = System.getProperty("jsprit.instances", "jsprit-instances/instances");
+
+    public static final int ITERATIONS = Integer.getInteger("jsprit.iterations", 50);
+
+    /**
+     * Solution of a problem together with the state and constraint manager that have been set up for it.
+     */
+    public static final class Context {
+
+        public final VehicleRoutingProblem vrp;
+
+        public final VehicleRoutingProblemSolution solution;
+
+        public final StateManager stateManager;
+
+        public final ConstraintManager constraintManager;
+
+        Context(VehicleRoutingProblem vrp, VehicleRoutingProblemSolution solution) {
+            this.vrp = vrp;
+            this.solution = solution;
+            this.stateManager = new StateManager(vrp);
+            this.stateManager.updateLoadStates();
+            this.stateManager.updateTimeWindowStates();
+            this.constraintManager = new ConstraintManager(vrp, stateManager);
+            this.constraintManager.addLoadConstraint();
+            this.constraintManager.addTimeWindowConstraint();
+            informInsertionStarts(Collections.<Job>emptyList());
+        }
+
+        public List<VehicleRoute> getRoutes() {
+            return new ArrayList<>(solution.getRoutes());
+        }
+
+        /**
+         * Removes every nth job from the routes of the solution and recalculates states.
+         *
+         * @param n every nth job is removed
+         * @return removed jobs
+         */
+        public List<Job> removeEveryNthJob(int n) {
+            List<Job> removed = new ArrayList<>();
+            int count = 0;
+            for (VehicleRoute route : solution.getRoutes()) {
+                for (Job job : new ArrayList<>(route.getTourActivities().getJobs())) {
+                    if (count++ % n == 0) {
+                        route.getTourActivities().removeJob(job);
+                        removed.add(job);
+                    }
+                }
+            }
+            informInsertionStarts(removed);
+            return removed;
+        }
+
+        private void informInsertionStarts(List<Job> unassignedJobs) {
+            stateManager.informInsertionStarts(solution.getRoutes(), unassignedJobs);
+        }
+
+    }
+
+    private BenchmarkProblems() {
+    }
+
+    /**
+     * Reads the specified Solomon instance, but only its first noCustomers customers (as it is usually done to
+     * obtain the 25 and 50 customer instances).
+     *
+     * @param name        instance name, e.g. R101
+     * @param noCustomers number of customers
+     * @return problem
+     */
+    public static VehicleRoutingProblem solomon(String name, int noCustomers) {
+        File file = truncateSolomon(new File(INSTANCES_DIR, "solomon/" + name + ".txt"), noCustomers);
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance();
+        new SolomonReader(vrpBuilder).read(file.getAbsolutePath());
+        return vrpBuilder.build();
+    }
+
+    /**
+     * Reads the specified Li &amp; Lim instance.
+     *
+     * @param name instance name relative to the lilim directory, e.g. lc101 or 1000/LC1101
+     * @return problem
+     */
+    public static VehicleRoutingProblem liLim(String name) {
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance();
+        new LiLimReader(vrpBuilder).read(new File(INSTANCES_DIR, "lilim/" + name + ".txt").getAbsolutePath());
+        return vrpBuilder.build();
+    }
+
+    public static Context solve(VehicleRoutingProblem vrp) {
+        VehicleRoutingAlgorithm algorithm = Jsprit.createAlgorithm(vrp);
+        algorithm.setMaxIterations(ITERATIONS);
+        return new Context(vrp, Solutions.bestOf(algorithm.searchSolutions()));
+    }
+
+    private static File truncateSolomon(File solomonFile, int noCustomers) {
+        try {
+            File truncated = File.createTempFile(solomonFile.getName(), "-" + noCustomers + ".txt");
+            truncated.deleteOnExit();
+            try (BufferedReader reader = new BufferedReader(new FileReader(solomonFile));
+                 BufferedWriter writer = new BufferedWriter(new FileWriter(truncated))) {
+                int lineCounter = 0;
+                int customerCounter = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineCounter++;
+                    //first 9 lines are header, the 10th line is the depot
+                    if (lineCounter > 10 && line.trim().split(" +").length >= 7) {
+                        if (customerCounter == noCustomers) break;
+                        customerCounter++;
+                    }
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            return truncated;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
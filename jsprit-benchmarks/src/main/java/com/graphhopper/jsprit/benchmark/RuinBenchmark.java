@@ -0,0 +1,103 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.benchmark;
+
+import com.graphhopper.jsprit.core.algorithm.ruin.JobNeighborhoods;
+import com.graphhopper.jsprit.core.algorithm.ruin.JobNeighborhoodsFactory;
+import com.graphhopper.jsprit.core.algorithm.ruin.RuinRadial;
+import com.graphhopper.jsprit.core.algorithm.ruin.RuinString;
+import com.graphhopper.jsprit.core.algorithm.ruin.distance.AvgServiceAndShipmentDistance;
+import com.graphhopper.jsprit.core.algorithm.ruin.distance.JobDistance;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the initialisation of job neighborhoods (JobNeighborhoodsOptimized) as well as RuinRadial and RuinString
+ * on a copy of a solution of a Solomon instance. Neighborhoods are configured as in Jsprit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuinBenchmark {
+
+    @Param({"C101", "R101", "RC101"})
+    public String instance;
+
+    @Param({"25", "50", "100"})
+    public int noCustomers;
+
+    private VehicleRoutingProblem vrp;
+
+    private JobDistance jobDistance;
+
+    private int neighborhoodCapacity;
+
+    private VehicleRoutingProblemSolution solution;
+
+    private RuinRadial ruinRadial;
+
+    private RuinString ruinString;
+
+    private Collection<VehicleRoute> routes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        vrp = BenchmarkProblems.solomon(instance, noCustomers);
+        solution = BenchmarkProblems.solve(vrp).solution;
+        jobDistance = new AvgServiceAndShipmentDistance(vrp.getTransportCosts());
+        neighborhoodCapacity = (int) (vrp.getJobs().values().size() * 0.5);
+        JobNeighborhoods neighborhoods = initialiseNeighborhoods();
+        ruinRadial = new RuinRadial(vrp, (int) (vrp.getJobs().size() * 0.3), neighborhoods);
+        ruinRadial.setRandom(new Random(4711));
+        ruinString = new RuinString(vrp, neighborhoods);
+        ruinString.setRandom(new Random(4711));
+    }
+
+    @Setup(Level.Invocation)
+    public void copySolution() {
+        routes = VehicleRoutingProblemSolution.copyOf(solution).getRoutes();
+    }
+
+    @Benchmark
+    public JobNeighborhoods initialiseNeighborhoods() {
+        JobNeighborhoods neighborhoods = new JobNeighborhoodsFactory().createNeighborhoods(vrp, jobDistance, neighborhoodCapacity);
+        neighborhoods.initialise();
+        return neighborhoods;
+    }
+
+    @Benchmark
+    public Collection<Job> ruinRadial() {
+        return ruinRadial.ruinRoutes(routes);
+    }
+
+    @Benchmark
+    public Collection<Job> ruinString() {
+        return ruinString.ruinRoutes(routes);
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.benchmark;
+
+import com.graphhopper.jsprit.core.algorithm.recreate.JobInsertionCostsCalculator;
+import com.graphhopper.jsprit.core.algorithm.recreate.LocalActivityInsertionCostsCalculator;
+import com.graphhopper.jsprit.core.algorithm.recreate.ServiceInsertionCalculatorFactory;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ServiceInsertionCalculator.getInsertionData, i.e. the insertion of every 10th job into every route of a
+ * solution of a Solomon instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceInsertionBenchmark {
+
+    @Param({"C101", "R101", "RC101"})
+    public String instance;
+
+    @Param({"25", "50", "100"})
+    public int noCustomers;
+
+    private JobInsertionCostsCalculator calculator;
+
+    private List<VehicleRoute> routes;
+
+    private List<Job> jobs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        VehicleRoutingProblem vrp = BenchmarkProblems.solomon(instance, noCustomers);
+        BenchmarkProblems.Context context = BenchmarkProblems.solve(vrp);
+        jobs = context.removeEveryNthJob(10);
+        routes = context.getRoutes();
+        LocalActivityInsertionCostsCalculator activityInsertionCalculator = new LocalActivityInsertionCostsCalculator(vrp.getTransportCosts(), vrp.getActivityCosts(), context.stateManager);
+        calculator = new ServiceInsertionCalculatorFactory().create(vrp, activityInsertionCalculator, vrp.getJobActivityFactory(), context.constraintManager);
+    }
+
+    @Benchmark
+    public void getInsertionData(Blackhole blackhole) {
+        for (Job job : jobs) {
+            for (VehicleRoute route : routes) {
+                blackhole.consume(calculator.getInsertionData(route, job, route.getVehicle(), route.getDepartureTime(), route.getDriver(), Double.MAX_VALUE));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.benchmark;
+
+import com.graphhopper.jsprit.core.algorithm.state.StateId;
+import com.graphhopper.jsprit.core.algorithm.state.StateManager;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures putting and getting activity and route states into/from the StateManager, both typed states and primitive
+ * double states, for every activity and route of a solution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateManagerBenchmark {
+
+    @Param({"R101"})
+    public String instance;
+
+    @Param({"25", "50", "100"})
+    public int noCustomers;
+
+    private StateManager stateManager;
+
+    private StateId stateId;
+
+    private StateId doubleStateId;
+
+    private List<VehicleRoute> routes;
+
+    private List<TourActivity> activities;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkProblems.Context context = BenchmarkProblems.solve(BenchmarkProblems.solomon(instance, noCustomers));
+        stateManager = context.stateManager;
+        stateId = stateManager.createStateId("benchmark_state");
+        doubleStateId = stateManager.createDoubleStateId("benchmark_double_state");
+        routes = context.getRoutes();
+        activities = new ArrayList<>();
+        for (VehicleRoute route : routes) {
+            activities.addAll(route.getActivities());
+        }
+        putActivityStates();
+        putActivityDoubleStates();
+        putRouteStates();
+    }
+
+    @Benchmark
+    public void putActivityStates() {
+        double value = 0.;
+        for (TourActivity act : activities) {
+            stateManager.putActivityState(act, stateId, value++);
+        }
+    }
+
+    @Benchmark
+    public void getActivityStates(Blackhole blackhole) {
+        for (TourActivity act : activities) {
+            blackhole.consume(stateManager.getActivityState(act, stateId, Double.class));
+        }
+    }
+
+    @Benchmark
+    public void putActivityDoubleStates() {
+        double value = 0.;
+        for (TourActivity act : activities) {
+            stateManager.putActivityDoubleState(act, doubleStateId, value++);
+        }
+    }
+
+    @Benchmark
+    public void getActivityDoubleStates(Blackhole blackhole) {
+        for (TourActivity act : activities) {
+            blackhole.consume(stateManager.getActivityDoubleState(act, doubleStateId, 0.));
+        }
+    }
+
+    @Benchmark
+    public void putRouteStates() {
+        double value = 0.;
+        for (VehicleRoute route : routes) {
+            stateManager.putRouteState(route, stateId, value++);
+        }
+    }
+
+    @Benchmark
+    public void getRouteStates(Blackhole blackhole) {
+        for (VehicleRoute route : routes) {
+            blackhole.consume(stateManager.getRouteState(route, stateId, Double.class));
+        }
+    }
+
+}
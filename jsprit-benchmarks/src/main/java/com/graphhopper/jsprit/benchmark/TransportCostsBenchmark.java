@@ -0,0 +1,165 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.benchmark;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingTransportCosts;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import com.graphhopper.jsprit.core.util.*;
+import com.graphhopper.jsprit.io.problem.MatrixFileWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures transport time and cost lookups of each transport cost implementation for random relations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportCostsBenchmark {
+
+    private static final int NO_RELATIONS = 4096;
+
+    @Param({"euclidean", "manhattan", "greatCircle", "fastMatrix", "compactMatrix", "compactMatrixFloat", "compactMatrixInt16", "stringMatrix", "mappedMatrix"})
+    public String costs;
+
+    @Param({"100", "1000"})
+    public int noLocations;
+
+    private VehicleRoutingTransportCosts transportCosts;
+
+    private Vehicle vehicle;
+
+    private Location[] from;
+
+    private Location[] to;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Random random = new Random(4711);
+        Coordinate[] coordinates = new Coordinate[noLocations];
+        for (int i = 0; i < noLocations; i++) {
+            coordinates[i] = Coordinate.newInstance(random.nextDouble(), random.nextDouble());
+        }
+        int[] indices = new int[noLocations];
+        for (int i = 0; i < noLocations; i++) indices[i] = i;
+        transportCosts = createCosts(coordinates, indices);
+        Location[] locations = new Location[noLocations];
+        for (int i = 0; i < noLocations; i++) {
+            locations[i] = Location.Builder.newInstance().setId("" + i).setIndex(indices[i]).setCoordinate(coordinates[i]).build();
+        }
+        from = new Location[NO_RELATIONS];
+        to = new Location[NO_RELATIONS];
+        for (int i = 0; i < NO_RELATIONS; i++) {
+            from[i] = locations[random.nextInt(noLocations)];
+            to[i] = locations[random.nextInt(noLocations)];
+        }
+        VehicleTypeImpl type = VehicleTypeImpl.Builder.newInstance("type").setCostPerDistance(1.).setCostPerTransportTime(2.).build();
+        vehicle = VehicleImpl.Builder.newInstance("vehicle").setType(type).setStartLocation(locations[0]).build();
+    }
+
+    private VehicleRoutingTransportCosts createCosts(Coordinate[] coordinates, int[] indices) throws IOException {
+        switch (costs) {
+            case "euclidean":
+                return new EuclideanCosts();
+            case "manhattan":
+                return new ManhattanCosts();
+            case "greatCircle":
+                return new GreatCircleCosts();
+            case "fastMatrix": {
+                FastVehicleRoutingTransportCostsMatrix.Builder builder = FastVehicleRoutingTransportCostsMatrix.Builder.newInstance(noLocations, false);
+                for (int i = 0; i < noLocations; i++) {
+                    for (int j = 0; j < noLocations; j++) {
+                        double distance = EuclideanDistanceCalculator.calculateDistance(coordinates[i], coordinates[j]);
+                        builder.addTransportTimeAndDistance(i, j, distance, distance);
+                    }
+                }
+                return builder.build();
+            }
+            case "compactMatrix":
+                return createCompactMatrix(coordinates, CompactVehicleRoutingTransportCostsMatrix.Storage.DOUBLE);
+            case "compactMatrixFloat":
+                return createCompactMatrix(coordinates, CompactVehicleRoutingTransportCostsMatrix.Storage.FLOAT);
+            case "compactMatrixInt16":
+                return createCompactMatrix(coordinates, CompactVehicleRoutingTransportCostsMatrix.Storage.INT16);
+            case "stringMatrix": {
+                VehicleRoutingTransportCostsMatrix.Builder builder = VehicleRoutingTransportCostsMatrix.Builder.newInstance(false);
+                for (int i = 0; i < noLocations; i++) {
+                    for (int j = 0; j < noLocations; j++) {
+                        double distance = EuclideanDistanceCalculator.calculateDistance(coordinates[i], coordinates[j]);
+                        builder.addTransportDistance("" + i, "" + j, distance);
+                        builder.addTransportTime("" + i, "" + j, distance);
+                    }
+                }
+                VehicleRoutingTransportCostsMatrix matrix = builder.build();
+                for (int i = 0; i < noLocations; i++) indices[i] = matrix.getIndex("" + i);
+                return matrix;
+            }
+            case "mappedMatrix": {
+                File file = File.createTempFile("matrix", ".bin");
+                file.deleteOnExit();
+                new MatrixFileWriter(noLocations, false).write(file.getAbsolutePath(), createCompactMatrix(coordinates, CompactVehicleRoutingTransportCostsMatrix.Storage.DOUBLE));
+                return MappedVehicleRoutingTransportCostsMatrix.newInstance(file.getAbsolutePath());
+            }
+            default:
+                throw new IllegalArgumentException("unknown costs " + costs);
+        }
+    }
+
+    private CompactVehicleRoutingTransportCostsMatrix createCompactMatrix(Coordinate[] coordinates, CompactVehicleRoutingTransportCostsMatrix.Storage storage) {
+        CompactVehicleRoutingTransportCostsMatrix.Builder builder = CompactVehicleRoutingTransportCostsMatrix.Builder.newInstance(noLocations, false)
+            .setStorage(storage).setTimeScaleFactor(10000.).setDistanceScaleFactor(10000.);
+        for (int i = 0; i < noLocations; i++) {
+            for (int j = 0; j < noLocations; j++) {
+                double distance = EuclideanDistanceCalculator.calculateDistance(coordinates[i], coordinates[j]);
+                builder.addTransportTimeAndDistance(i, j, distance, distance);
+            }
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NO_RELATIONS)
+    public double getTransportTime() {
+        double sum = 0.;
+        for (int i = 0; i < NO_RELATIONS; i++) {
+            sum += transportCosts.getTransportTime(from[i], to[i], 0., null, vehicle);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NO_RELATIONS)
+    public double getTransportCost() {
+        double sum = 0.;
+        for (int i = 0; i < NO_RELATIONS; i++) {
+            sum += transportCosts.getTransportCost(from[i], to[i], 0., null, vehicle);
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.state;
+
+import com.graphhopper.jsprit.benchmark.BenchmarkProblems;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.solution.route.RouteActivityVisitor;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the traversal of all routes of a solution with UpdateActivityTimes and UpdateLoads, i.e. the state
+ * updates that are triggered whenever a route has changed.
+ * <p>
+ * <p>It lives in the package of the state updaters since UpdateLoads is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteTraversalBenchmark {
+
+    @Param({"C101", "R101", "RC101"})
+    public String instance;
+
+    @Param({"25", "50", "100"})
+    public int noCustomers;
+
+    private List<VehicleRoute> routes;
+
+    private RouteActivityVisitor activityTimesVisitor;
+
+    private RouteActivityVisitor loadsVisitor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        VehicleRoutingProblem vrp = BenchmarkProblems.solomon(instance, noCustomers);
+        BenchmarkProblems.Context context = BenchmarkProblems.solve(vrp);
+        routes = context.getRoutes();
+        activityTimesVisitor = new RouteActivityVisitor();
+        activityTimesVisitor.addActivityVisitor(new UpdateActivityTimes(vrp.getTransportCosts(), vrp.getActivityCosts()));
+        loadsVisitor = new RouteActivityVisitor();
+        loadsVisitor.addActivityVisitor(new UpdateLoads(context.stateManager));
+    }
+
+    @Benchmark
+    public void updateActivityTimes() {
+        for (VehicleRoute route : routes) {
+            activityTimesVisitor.visit(route);
+        }
+    }
+
+    @Benchmark
+    public void updateLoads() {
+        for (VehicleRoute route : routes) {
+            loadsVisitor.visit(route);
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm;
+
+import com.graphhopper.jsprit.core.algorithm.listener.AlgorithmStartsListener;
+import com.graphhopper.jsprit.core.algorithm.listener.IterationStartsListener;
+import com.graphhopper.jsprit.core.algorithm.listener.StrategySelectedListener;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Adapts the weights of the search strategies online (adaptive large neighborhood search), i.e. strategies that
+ * improve the solution fast are selected more often.
+ * <p>
+ * <p>The search is divided into segments of a fixed number of iterations. Within a segment, the cost improvement
+ * (compared to the best solution in memory at the start of the iteration) and the run time of each strategy are
+ * summed up. At the end of a segment, the weight mass of the strategies run in the segment is redistributed in
+ * proportion to their improvement per millisecond, and each weight moves towards its new value by the reaction factor:
+ * <p>
+ * <p>w = (1 - reactionFactor) * w + reactionFactor * target
+ * <p>
+ * <p>Thus a strategy that takes ten times longer per iteration must achieve ten times the improvement to keep its share.
+ * Time is measured as elapsed time of the strategy run, which - unlike the CPU time of the algorithm thread - includes
+ * concurrent insertion. Weights do not drop below minWeightFactor times their initial weight, so that strategies can
+ * recover, and strategies not run in a segment as well as segments without any improvement leave weights unchanged.
+ *
+ * @author schroeder
+ */
+public class AdaptiveStrategyWeights implements AlgorithmStartsListener, IterationStartsListener, StrategySelectedListener {
+
+    private static Logger logger = LoggerFactory.getLogger(AdaptiveStrategyWeights.class);
+
+    private final SearchStrategyManager strategyManager;
+
+    private final double reactionFactor;
+
+    private final int segmentLength;
+
+    private double minWeightFactor = 0.1;
+
+    private String[] strategyIds;
+
+    private double[] initialWeights;
+
+    private double[] improvements;
+
+    private long[] nanos;
+
+    private int[] noRuns;
+
+    private int iterationsInSegment;
+
+    private double costsAtIterationStart;
+
+    private long iterationStartTime;
+
+    /**
+     * @param strategyManager manager whose weights are adapted
+     * @param reactionFactor  in (0,1], i.e. how fast weights react to the performance in the last segment
+     * @param segmentLength   number of iterations after which weights are updated
+     */
+    public AdaptiveStrategyWeights(SearchStrategyManager strategyManager, double reactionFactor, int segmentLength) {
+        if (reactionFactor <= 0 || reactionFactor > 1) throw new IllegalArgumentException("reaction factor must be in (0,1]");
+        if (segmentLength < 1) throw new IllegalArgumentException("segment length must be at least 1");
+        this.strategyManager = strategyManager;
+        this.reactionFactor = reactionFactor;
+        this.segmentLength = segmentLength;
+    }
+
+    /**
+     * Sets the lower bound of each weight as a factor of its initial weight (default is 0.1).
+     *
+     * @param minWeightFactor factor in [0,1]
+     * @return this
+     */
+    public AdaptiveStrategyWeights setMinWeightFactor(double minWeightFactor) {
+        if (minWeightFactor < 0 || minWeightFactor > 1) throw new IllegalArgumentException("min weight factor must be in [0,1]");
+        this.minWeightFactor = minWeightFactor;
+        return this;
+    }
+
+    @Override
+    public void informAlgorithmStarts(VehicleRoutingProblem problem, VehicleRoutingAlgorithm algorithm, Collection<VehicleRoutingProblemSolution> solutions) {
+        List<SearchStrategy> strategies = strategyManager.getStrategies();
+        strategyIds = new String[strategies.size()];
+        initialWeights = new double[strategies.size()];
+        for (int i = 0; i < strategies.size(); i++) {
+            strategyIds[i] = strategies.get(i).getId();
+            initialWeights[i] = strategyManager.getWeight(strategyIds[i]);
+        }
+        improvements = new double[strategyIds.length];
+        nanos = new long[strategyIds.length];
+        noRuns = new int[strategyIds.length];
+        iterationsInSegment = 0;
+    }
+
+    @Override
+    public void informIterationStarts(int i, VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+        costsAtIterationStart = Double.MAX_VALUE;
+        for (VehicleRoutingProblemSolution solution : solutions) {
+            costsAtIterationStart = Math.min(costsAtIterationStart, solution.getCost());
+        }
+        iterationStartTime = System.nanoTime();
+    }
+
+    @Override
+    public void informSelectedStrategy(SearchStrategy.DiscoveredSolution discoveredSolution, VehicleRoutingProblem vehicleRoutingProblem, Collection<VehicleRoutingProblemSolution> vehicleRoutingProblemSolutions) {
+        long time = System.nanoTime() - iterationStartTime;
+        double costs = discoveredSolution.getSolution().getCost();
+        double improvement = 0.;
+        if (costsAtIterationStart != Double.MAX_VALUE && costs < costsAtIterationStart) {
+            improvement = costsAtIterationStart - costs;
+        }
+        record(discoveredSolution.getStrategyId(), improvement, time);
+    }
+
+    void record(String strategyId, double improvement, long time) {
+        int index = indexOf(strategyId);
+        if (index < 0) return;
+        improvements[index] += improvement;
+        nanos[index] += Math.max(time, 1);
+        noRuns[index]++;
+        iterationsInSegment++;
+        if (iterationsInSegment == segmentLength) {
+            updateWeights();
+        }
+    }
+
+    private int indexOf(String strategyId) {
+        for (int i = 0; i < strategyIds.length; i++) {
+            if (strategyIds[i].equals(strategyId)) return i;
+        }
+        return -1;
+    }
+
+    private void updateWeights() {
+        double weightMass = 0.;
+        double sumRates = 0.;
+        for (int i = 0; i < strategyIds.length; i++) {
+            if (noRuns[i] == 0) continue;
+            weightMass += strategyManager.getWeight(strategyIds[i]);
+            sumRates += improvementPerMs(i);
+        }
+        if (sumRates > 0.) {
+            for (int i = 0; i < strategyIds.length; i++) {
+                if (noRuns[i] == 0) continue;
+                double target = improvementPerMs(i) / sumRates * weightMass;
+                double weight = (1. - reactionFactor) * strategyManager.getWeight(strategyIds[i]) + reactionFactor * target;
+                weight = Math.max(weight, minWeightFactor * initialWeights[i]);
+                strategyManager.informStrategyWeightChanged(strategyIds[i], weight);
+                logger.debug("strategy weight updated [strategy={}][improvementPerMs={}][weight={}]", strategyIds[i], improvementPerMs(i), weight);
+            }
+        }
+        for (int i = 0; i < strategyIds.length; i++) {
+            improvements[i] = 0.;
+            nanos[i] = 0;
+            noRuns[i] = 0;
+        }
+        iterationsInSegment = 0;
+    }
+
+    private double improvementPerMs(int index) {
+        return improvements[index] / (nanos[index] / 1e6);
+    }
+
+}
@@ -0,0 +1,379 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm;
+
+import com.graphhopper.jsprit.core.algorithm.box.Jsprit;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.util.Solutions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+
+/**
+ * Solves many {@link VehicleRoutingProblem}s on one shared {@link ForkJoinPool}.
+ * <p>
+ * <p>Each problem is solved by its own {@link VehicleRoutingAlgorithm}. Instead of running a whole search per thread,
+ * the searches are cut into slices of <code>iterationsPerSlice</code> iterations. Slices of all active problems are
+ * run in round-robin order, i.e. every active problem gets its fair share of the pool no matter how many problems
+ * are submitted, and the pool never runs more threads than its parallelism. The number of active problems is limited
+ * (by default to the parallelism of the pool) to bound memory; further problems wait in submission order.
+ * <p>
+ * <p>Each problem may have a time budget. It is the computation time spent on the problem (including the construction
+ * of its initial solution), not the wall-clock time since its submission, and it is enforced with the
+ * {@link CancellationToken} of the algorithm, i.e. a search stops within a bounded overrun once its budget is spent.
+ * <p>
+ * <p>The algorithms must not set up thread pools on their own, otherwise the pool is oversubscribed. Thus the default
+ * factory builds {@link Jsprit} algorithms with <code>threads=1</code>; custom factories should do the same.
+ *
+ * @author schroeder
+ */
+public class BatchSolver {
+
+    /**
+     * Result of solving a single problem.
+     */
+    public static class Result {
+
+        private final VehicleRoutingProblem problem;
+
+        private final Collection<VehicleRoutingProblemSolution> solutions;
+
+        private final int noIterations;
+
+        private final long computationTime;
+
+        private final Throwable exception;
+
+        Result(VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions, int noIterations, long computationTime, Throwable exception) {
+            this.problem = problem;
+            this.solutions = solutions;
+            this.noIterations = noIterations;
+            this.computationTime = computationTime;
+            this.exception = exception;
+        }
+
+        public VehicleRoutingProblem getProblem() {
+            return problem;
+        }
+
+        /**
+         * @return the solutions, or null if solving failed
+         */
+        public Collection<VehicleRoutingProblemSolution> getSolutions() {
+            return solutions;
+        }
+
+        /**
+         * @return the best solution, or null if solving failed
+         */
+        public VehicleRoutingProblemSolution getBestSolution() {
+            if (solutions == null) return null;
+            return Solutions.bestOf(solutions);
+        }
+
+        public int getNoIterations() {
+            return noIterations;
+        }
+
+        /**
+         * @return computation time spent on the problem in milliseconds
+         */
+        public long getComputationTime() {
+            return computationTime;
+        }
+
+        /**
+         * @return the exception solving failed with, or null
+         */
+        public Throwable getException() {
+            return exception;
+        }
+
+        public boolean isSuccessful() {
+            return exception == null;
+        }
+
+    }
+
+    private class Run {
+
+        private final VehicleRoutingProblem problem;
+
+        private final long timeBudget;
+
+        private final CompletableFuture<Result> future = new CompletableFuture<>();
+
+        private VehicleRoutingAlgorithm algorithm;
+
+        private boolean started = false;
+
+        //true between starting and ending the search
+        private boolean searchRunning = false;
+
+        private long computationTime = 0;
+
+        Run(VehicleRoutingProblem problem, long timeBudget) {
+            this.problem = problem;
+            this.timeBudget = timeBudget;
+        }
+
+        /**
+         * Runs the next slice of the search.
+         *
+         * @return true if the search continues
+         */
+        boolean runSlice() {
+            long start = System.nanoTime();
+            boolean continues = false;
+            try {
+                if (!started) {
+                    algorithm = algorithmFactory.createAlgorithm(problem);
+                    started = true;
+                    //cancelling the future stops the search at the end of the current iteration
+                    future.whenComplete((result, throwable) -> {
+                        if (future.isCancelled()) algorithm.cancel();
+                    });
+                    if (future.isCancelled()) algorithm.cancel();
+                    setDeadline();
+                    searchRunning = true;
+                    algorithm.startSearch();
+                } else {
+                    setDeadline();
+                }
+                continues = true;
+                for (int i = 0; i < iterationsPerSlice && continues; i++) {
+                    continues = algorithm.runIteration();
+                }
+                algorithm.getCancellationToken().removeDeadline();
+            } catch (Throwable e) {
+                computationTime += System.nanoTime() - start;
+                fail(e);
+                return false;
+            }
+            computationTime += System.nanoTime() - start;
+            if (continues && timeBudget >= 0 && computationTime >= timeBudget * 1000000L) continues = false;
+            if (!continues) end();
+            return continues;
+        }
+
+        private void setDeadline() {
+            if (timeBudget < 0) return;
+            long remaining = Math.max(0, timeBudget - computationTime / 1000000L);
+            algorithm.getCancellationToken().setDeadline(remaining);
+        }
+
+        private void end() {
+            try {
+                //ending the search informs algorithm-ends listeners, i.e. it releases resources bound to the algorithm
+                searchRunning = false;
+                Collection<VehicleRoutingProblemSolution> solutions = algorithm.endSearch();
+                future.complete(new Result(problem, solutions, algorithm.getNoRunIterations(), computationTime / 1000000L, null));
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable e) {
+            try {
+                //the search is ended anyway, such that algorithm-ends listeners release resources bound to the algorithm
+                if (searchRunning) {
+                    searchRunning = false;
+                    algorithm.endSearch();
+                }
+            } catch (Throwable endException) {
+                e.addSuppressed(endException);
+            } finally {
+                logger.warn("solving problem failed: {}", e.toString());
+                future.completeExceptionally(e);
+            }
+        }
+
+    }
+
+    private final static Logger logger = LoggerFactory.getLogger(BatchSolver.class);
+
+    private final VehicleRoutingAlgorithmFactory algorithmFactory;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private int iterationsPerSlice = 10;
+
+    private long timeBudget = -1;
+
+    private Integer maxActiveProblems = null;
+
+    private final Queue<Run> ready = new ConcurrentLinkedQueue<>();
+
+    private final Deque<Run> waiting = new ArrayDeque<>();
+
+    private int noActiveProblems = 0;
+
+    /**
+     * Constructs a batch solver that solves problems with {@link Jsprit} algorithms with default parameters.
+     */
+    public BatchSolver() {
+        this(new VehicleRoutingAlgorithmFactory() {
+
+            @Override
+            public VehicleRoutingAlgorithm createAlgorithm(VehicleRoutingProblem vrp) {
+                return Jsprit.Builder.newInstance(vrp).setProperty(Jsprit.Parameter.THREADS, "1").buildAlgorithm();
+            }
+
+        });
+    }
+
+    /**
+     * Constructs a batch solver.
+     *
+     * @param algorithmFactory factory creating one algorithm per problem. The algorithms should be single-threaded.
+     */
+    public BatchSolver(VehicleRoutingAlgorithmFactory algorithmFactory) {
+        this.algorithmFactory = algorithmFactory;
+    }
+
+    /**
+     * Sets the pool the searches are run on. Default is {@link ForkJoinPool#commonPool()}.
+     *
+     * @param pool the pool
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the number of iterations a problem runs before the pool turns to the next problem. Default is 10.
+     *
+     * @param iterationsPerSlice number of iterations per slice
+     * @throws IllegalArgumentException if iterationsPerSlice < 1
+     */
+    public void setIterationsPerSlice(int iterationsPerSlice) {
+        if (iterationsPerSlice < 1)
+            throw new IllegalArgumentException("iterations per slice must be at least 1. current: " + iterationsPerSlice);
+        this.iterationsPerSlice = iterationsPerSlice;
+    }
+
+    /**
+     * Sets the default time budget per problem, i.e. the computation time after which its search stops.
+     * By default, there is no time budget, i.e. a search runs until it terminates itself.
+     *
+     * @param timeBudgetInMs time budget in milliseconds
+     */
+    public void setTimeBudget(long timeBudgetInMs) {
+        this.timeBudget = timeBudgetInMs;
+    }
+
+    /**
+     * Sets the max number of problems solved at the same time. Default is the parallelism of the pool.
+     *
+     * @param maxActiveProblems max number of active problems
+     * @throws IllegalArgumentException if maxActiveProblems < 1
+     */
+    public void setMaxActiveProblems(int maxActiveProblems) {
+        if (maxActiveProblems < 1)
+            throw new IllegalArgumentException("max number of active problems must be at least 1. current: " + maxActiveProblems);
+        this.maxActiveProblems = maxActiveProblems;
+    }
+
+    /**
+     * Submits a problem with the default time budget.
+     *
+     * @param problem the problem to be solved
+     * @return future that is completed once the problem is solved. Cancelling it stops the search.
+     */
+    public CompletableFuture<Result> submit(VehicleRoutingProblem problem) {
+        return submit(problem, timeBudget);
+    }
+
+    /**
+     * Submits a problem.
+     *
+     * @param problem        the problem to be solved
+     * @param timeBudgetInMs time budget of this problem in milliseconds, or -1 if there is none
+     * @return future that is completed once the problem is solved. Cancelling it stops the search.
+     */
+    public CompletableFuture<Result> submit(VehicleRoutingProblem problem, long timeBudgetInMs) {
+        Run run = new Run(problem, timeBudgetInMs);
+        synchronized (this) {
+            int maxActive = maxActiveProblems == null ? pool.getParallelism() : maxActiveProblems;
+            if (noActiveProblems >= maxActive) {
+                waiting.add(run);
+                return run.future;
+            }
+            noActiveProblems++;
+        }
+        schedule(run);
+        return run.future;
+    }
+
+    /**
+     * Submits the specified problems with the default time budget.
+     *
+     * @param problems the problems to be solved
+     * @return queue the results are added to as soon as they are available, i.e. in order of completion
+     */
+    public BlockingQueue<Result> solveAll(Collection<VehicleRoutingProblem> problems) {
+        final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+        for (final VehicleRoutingProblem problem : problems) {
+            submit(problem).whenComplete((result, throwable) -> {
+                if (throwable == null) results.add(result);
+                else results.add(new Result(problem, null, 0, 0, throwable));
+            });
+        }
+        return results;
+    }
+
+    private void schedule(Run run) {
+        ready.add(run);
+        //slices are taken from the ready-queue, thus problems take turns no matter in which order the pool runs them
+        pool.execute(this::runNextSlice);
+    }
+
+    private void runNextSlice() {
+        Run run = ready.poll();
+        if (run == null) return;
+        if (run.future.isCancelled() && !run.started) {
+            activateNext();
+            return;
+        }
+        if (run.runSlice()) schedule(run);
+        else activateNext();
+    }
+
+    private void activateNext() {
+        Run next = null;
+        synchronized (this) {
+            while (next == null && !waiting.isEmpty()) {
+                next = waiting.poll();
+                if (next.future.isCancelled()) next = null;
+            }
+            if (next == null) {
+                noActiveProblems--;
+                return;
+            }
+        }
+        schedule(next);
+    }
+
+}
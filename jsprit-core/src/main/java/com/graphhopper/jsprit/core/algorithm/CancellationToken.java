@@ -0,0 +1,83 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm;
+
+/**
+ * Cooperative cancellation of a search. Once cancelled - either explicitly or because its deadline has passed -
+ * insertion strategies stop inserting further jobs (they are returned as unassigned) and the algorithm stops. Since
+ * the solution of the interrupted iteration might be incomplete, it is discarded, i.e. it is neither offered to the
+ * acceptor nor memorized as best solution. Thus a search stops within a bounded overrun, i.e. the time to evaluate the
+ * insertion of a single job.
+ * <p>
+ * <p>It can be cancelled from any thread.
+ *
+ * @author schroeder
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled = false;
+
+    private volatile boolean hasDeadline = false;
+
+    private volatile boolean deadlineExpired = false;
+
+    private volatile long deadline;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Sets a deadline after which this token is cancelled. It replaces the previous deadline, i.e. a cancellation the
+     * previous deadline has caused is removed.
+     *
+     * @param timeInMs time from now on in milliseconds
+     */
+    public void setDeadline(long timeInMs) {
+        deadline = System.nanoTime() + timeInMs * 1000000L;
+        deadlineExpired = false;
+        hasDeadline = true;
+    }
+
+    /**
+     * Removes the deadline and the cancellation it has caused. An explicit cancellation (see {@link #cancel()}) remains.
+     */
+    public void removeDeadline() {
+        hasDeadline = false;
+        deadlineExpired = false;
+    }
+
+    public boolean isCancelled() {
+        if (cancelled || deadlineExpired) return true;
+        if (hasDeadline && System.nanoTime() - deadline >= 0) {
+            deadlineExpired = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Resets this token, i.e. removes the cancellation and the deadline.
+     */
+    public void reset() {
+        cancelled = false;
+        hasDeadline = false;
+        deadlineExpired = false;
+    }
+
+}
@@ -0,0 +1,404 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm;
+
+import com.graphhopper.jsprit.core.algorithm.SearchStrategy.DiscoveredSolution;
+import com.graphhopper.jsprit.core.algorithm.acceptor.SolutionAcceptor;
+import com.graphhopper.jsprit.core.algorithm.listener.AlgorithmStartsListener;
+import com.graphhopper.jsprit.core.algorithm.listener.IterationEndsListener;
+import com.graphhopper.jsprit.core.algorithm.listener.IterationStartsListener;
+import com.graphhopper.jsprit.core.algorithm.listener.StrategySelectedListener;
+import com.graphhopper.jsprit.core.algorithm.termination.PrematureAlgorithmTermination;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.util.Solutions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Algorithm that solves a {@link VehicleRoutingProblem} by running a number of {@link VehicleRoutingAlgorithm}s (workers)
+ * concurrently.
+ * <p>
+ * <p>Each worker is created by the specified {@link VehicleRoutingAlgorithmFactory} and runs its own ruin-and-recreate
+ * iterations on its own solutions. Therefore, the factory must create workers that do not share mutable objects such as
+ * {@link com.graphhopper.jsprit.core.algorithm.state.StateManager}, {@link com.graphhopper.jsprit.core.problem.constraint.ConstraintManager},
+ * fleet managers or search strategies (see {@link com.graphhopper.jsprit.core.algorithm.box.Jsprit.Builder#buildParallelAlgorithm(int)}).
+ * Objects that are nevertheless shared by workers, e.g. the transport and activity costs of the problem, objective functions
+ * or constraints, are called concurrently and must be thread-safe.
+ * <p>Workers exchange the best solution found so far through a shared incumbent that is updated lock-free. Whenever a worker
+ * discovers a solution that is better than the incumbent, it publishes a copy of it. Every <code>exchangeInterval</code>
+ * iterations, a worker whose solutions are worse than the incumbent offers a copy of the incumbent to each of its
+ * {@link com.graphhopper.jsprit.core.algorithm.acceptor.SolutionAcceptor}s.
+ * <p>The max number of iterations is a budget shared by all workers, i.e. the workers run roughly maxIterations iterations
+ * in total. Termination criteria added to this algorithm are evaluated for the iterations of all workers, one iteration at a time.
+ * If one of them is fulfilled, all workers terminate. Termination criteria added to a single worker by the factory only
+ * terminate this worker.
+ */
+public class ParallelVehicleRoutingAlgorithm {
+
+    private static class SharedSearch {
+
+        private final int maxIterations;
+
+        private final Collection<PrematureAlgorithmTermination> terminationCriteria;
+
+        private final AtomicReference<VehicleRoutingProblemSolution> incumbent = new AtomicReference<>();
+
+        private volatile boolean stopped = false;
+
+        private int iterationsStarted = 0;
+
+        private int iterationsFinished = 0;
+
+        SharedSearch(int maxIterations, Collection<PrematureAlgorithmTermination> terminationCriteria) {
+            this.maxIterations = maxIterations;
+            this.terminationCriteria = terminationCriteria;
+        }
+
+        synchronized void iterationStarts(VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+            iterationsStarted++;
+            for (PrematureAlgorithmTermination termination : terminationCriteria) {
+                if (termination instanceof IterationStartsListener) {
+                    ((IterationStartsListener) termination).informIterationStarts(iterationsStarted, problem, solutions);
+                }
+            }
+        }
+
+        synchronized void iterationEnds(VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+            for (PrematureAlgorithmTermination termination : terminationCriteria) {
+                if (termination instanceof IterationEndsListener) {
+                    ((IterationEndsListener) termination).informIterationEnds(iterationsStarted, problem, solutions);
+                }
+            }
+        }
+
+        synchronized boolean isPrematureBreak(DiscoveredSolution discoveredSolution) {
+            if (stopped) return true;
+            iterationsFinished++;
+            for (PrematureAlgorithmTermination termination : terminationCriteria) {
+                if (termination.isPrematureBreak(discoveredSolution)) {
+                    logger.info("premature algorithm termination at iteration {}", iterationsFinished);
+                    stopped = true;
+                    return true;
+                }
+            }
+            if (iterationsFinished >= maxIterations) stopped = true;
+            return stopped;
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        synchronized int getNoIterations() {
+            return iterationsFinished;
+        }
+
+        /**
+         * Publishes a copy of the specified solution if it is better than the incumbent.
+         *
+         * @return the published copy or null if the incumbent is at least as good as the specified solution
+         */
+        VehicleRoutingProblemSolution publish(VehicleRoutingProblemSolution solution) {
+            VehicleRoutingProblemSolution current = incumbent.get();
+            if (current != null && current.getCost() <= solution.getCost()) return null;
+            VehicleRoutingProblemSolution copy = VehicleRoutingProblemSolution.copyOf(solution);
+            while (true) {
+                current = incumbent.get();
+                if (current != null && current.getCost() <= copy.getCost()) return null;
+                if (incumbent.compareAndSet(current, copy)) return copy;
+            }
+        }
+
+        VehicleRoutingProblemSolution getIncumbent() {
+            return incumbent.get();
+        }
+
+    }
+
+    private static class WorkerTermination implements PrematureAlgorithmTermination, IterationStartsListener, IterationEndsListener {
+
+        private final SharedSearch sharedSearch;
+
+        WorkerTermination(SharedSearch sharedSearch) {
+            this.sharedSearch = sharedSearch;
+        }
+
+        @Override
+        public boolean isPrematureBreak(DiscoveredSolution discoveredSolution) {
+            return sharedSearch.isPrematureBreak(discoveredSolution);
+        }
+
+        @Override
+        public void informIterationStarts(int i, VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+            sharedSearch.iterationStarts(problem, solutions);
+        }
+
+        @Override
+        public void informIterationEnds(int i, VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+            sharedSearch.iterationEnds(problem, solutions);
+        }
+    }
+
+    private static class SolutionExchange implements StrategySelectedListener, IterationEndsListener {
+
+        private final SharedSearch sharedSearch;
+
+        private final VehicleRoutingAlgorithm worker;
+
+        private final int exchangeInterval;
+
+        private VehicleRoutingProblemSolution lastExchanged = null;
+
+        SolutionExchange(SharedSearch sharedSearch, VehicleRoutingAlgorithm worker, int exchangeInterval) {
+            this.sharedSearch = sharedSearch;
+            this.worker = worker;
+            this.exchangeInterval = exchangeInterval;
+        }
+
+        @Override
+        public void informSelectedStrategy(DiscoveredSolution discoveredSolution, VehicleRoutingProblem vehicleRoutingProblem, Collection<VehicleRoutingProblemSolution> vehicleRoutingProblemSolutions) {
+            VehicleRoutingProblemSolution published = sharedSearch.publish(discoveredSolution.getSolution());
+            if (published != null) lastExchanged = published;
+        }
+
+        @Override
+        public void informIterationEnds(int i, VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+            if (i % exchangeInterval != 0) return;
+            VehicleRoutingProblemSolution incumbent = sharedSearch.getIncumbent();
+            if (incumbent == null || incumbent == lastExchanged) return;
+            VehicleRoutingProblemSolution best = Solutions.bestOf(solutions);
+            if (best != null && best.getCost() <= incumbent.getCost()) return;
+            lastExchanged = incumbent;
+            Set<SolutionAcceptor> acceptors = Collections.newSetFromMap(new IdentityHashMap<SolutionAcceptor, Boolean>());
+            for (SearchStrategy strategy : worker.getSearchStrategyManager().getStrategies()) {
+                if (acceptors.add(strategy.getSolutionAcceptor())) {
+                    strategy.getSolutionAcceptor().acceptSolution(solutions, VehicleRoutingProblemSolution.copyOf(incumbent));
+                }
+            }
+        }
+    }
+
+    private final static Logger logger = LoggerFactory.getLogger(ParallelVehicleRoutingAlgorithm.class);
+
+    private final VehicleRoutingProblem problem;
+
+    private final VehicleRoutingAlgorithmFactory algorithmFactory;
+
+    private final int noWorkers;
+
+    private final Collection<VehicleRoutingProblemSolution> initialSolutions = new ArrayList<>();
+
+    private Collection<PrematureAlgorithmTermination> terminationCriteria = new ArrayList<>();
+
+    private Integer maxIterations = null;
+
+    private int exchangeInterval = 10;
+
+    private ExecutorService executorService = null;
+
+    private SharedSearch sharedSearch = null;
+
+    private volatile boolean interrupted = false;
+
+    /**
+     * Constructs the algorithm.
+     *
+     * @param problem          the problem to be solved
+     * @param algorithmFactory factory creating one independent {@link VehicleRoutingAlgorithm} per worker
+     * @param noWorkers        number of workers searching concurrently
+     * @throws IllegalArgumentException if noWorkers < 1
+     */
+    public ParallelVehicleRoutingAlgorithm(VehicleRoutingProblem problem, VehicleRoutingAlgorithmFactory algorithmFactory, int noWorkers) {
+        if (noWorkers < 1) throw new IllegalArgumentException("number of workers must be at least 1. current: " + noWorkers);
+        this.problem = problem;
+        this.algorithmFactory = algorithmFactory;
+        this.noWorkers = noWorkers;
+    }
+
+    /**
+     * Adds solution to the collection of initial solutions. Each worker starts with its own copy of it.
+     *
+     * @param solution the solution to be added
+     */
+    public void addInitialSolution(VehicleRoutingProblemSolution solution) {
+        initialSolutions.add(solution);
+    }
+
+    /**
+     * Sets the max number of iterations of all workers together. If it is not set, the max number of iterations of the
+     * first worker is used.
+     *
+     * @param maxIterations max number of iterations
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Sets the number of iterations after which a worker checks whether the incumbent is better than its own
+     * solutions. Default is 10.
+     *
+     * @param exchangeInterval number of iterations between two exchanges
+     * @throws IllegalArgumentException if exchangeInterval < 1
+     */
+    public void setExchangeInterval(int exchangeInterval) {
+        if (exchangeInterval < 1) throw new IllegalArgumentException("exchange interval must be at least 1. current: " + exchangeInterval);
+        this.exchangeInterval = exchangeInterval;
+    }
+
+    /**
+     * Sets the executor service the workers run on. If it is not set, a fixed thread pool with one thread per worker is
+     * set up and shut down again once the search is finished.
+     * <p>Note that the executor service needs to run all workers at the same time.
+     *
+     * @param executorService executor service workers run on
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Sets premature termination and overrides existing termination criteria.
+     *
+     * @param prematureAlgorithmTermination the termination criterion
+     */
+    public void setPrematureAlgorithmTermination(PrematureAlgorithmTermination prematureAlgorithmTermination) {
+        terminationCriteria = new ArrayList<>();
+        terminationCriteria.add(prematureAlgorithmTermination);
+    }
+
+    /**
+     * Adds a termination criterion. It is evaluated for the discovered solutions of all workers, one at a time. Thus,
+     * it does not need to be thread-safe. If it is fulfilled, all workers terminate.
+     *
+     * @param terminationCriterion the termination criterion
+     */
+    public void addTerminationCriterion(PrematureAlgorithmTermination terminationCriterion) {
+        terminationCriteria.add(terminationCriterion);
+    }
+
+    public int getNoWorkers() {
+        return noWorkers;
+    }
+
+    /**
+     * Returns the number of iterations all workers ran in the last search.
+     *
+     * @return number of iterations
+     */
+    public int getNoIterations() {
+        if (sharedSearch == null) return 0;
+        return sharedSearch.getNoIterations();
+    }
+
+    /**
+     * Returns true if the last search was interrupted, i.e. the solutions it returned are the ones found until the
+     * interruption rather than the ones of a complete search.
+     *
+     * @return true if the last search was interrupted
+     */
+    public boolean isInterrupted() {
+        return interrupted;
+    }
+
+    /**
+     * Runs the workers concurrently and returns the solutions of all workers. The best solution found is
+     * <code>Solutions.bestOf(solutions)</code>.
+     * <p>If the calling thread is interrupted while waiting for the workers, the workers are cancelled and the best
+     * solution found so far is returned. The interrupt flag remains set and {@link #isInterrupted()} returns true.
+     *
+     * @return the solutions of all workers
+     * @throws IllegalStateException if the factory does not create an algorithm
+     */
+    public Collection<VehicleRoutingProblemSolution> searchSolutions() {
+        List<VehicleRoutingAlgorithm> workers = new ArrayList<>(noWorkers);
+        for (int i = 0; i < noWorkers; i++) {
+            VehicleRoutingAlgorithm worker = algorithmFactory.createAlgorithm(problem);
+            if (worker == null) throw new IllegalStateException("algorithm factory must create an algorithm for each worker");
+            workers.add(worker);
+        }
+        int iterations = maxIterations != null ? maxIterations : workers.get(0).getMaxIterations();
+        logger.info("parallel algorithm starts: [maxIterations={}][noWorkers={}]", iterations, noWorkers);
+        double now = System.currentTimeMillis();
+        interrupted = false;
+        sharedSearch = new SharedSearch(iterations, terminationCriteria);
+        for (VehicleRoutingAlgorithm worker : workers) {
+            worker.setMaxIterations(iterations);
+            for (VehicleRoutingProblemSolution solution : initialSolutions) {
+                worker.addInitialSolution(solution);
+            }
+            WorkerTermination workerTermination = new WorkerTermination(sharedSearch);
+            worker.addTerminationCriterion(workerTermination);
+            worker.addListener(workerTermination);
+            worker.addListener(new SolutionExchange(sharedSearch, worker, exchangeInterval));
+        }
+        for (PrematureAlgorithmTermination termination : terminationCriteria) {
+            if (termination instanceof AlgorithmStartsListener) {
+                ((AlgorithmStartsListener) termination).informAlgorithmStarts(problem, workers.get(0), new ArrayList<>(initialSolutions));
+            }
+        }
+
+        boolean setupExecutorInternally = executorService == null;
+        ExecutorService es = setupExecutorInternally ? Executors.newFixedThreadPool(noWorkers) : executorService;
+        Collection<VehicleRoutingProblemSolution> solutions = new ArrayList<>();
+        List<Future<Collection<VehicleRoutingProblemSolution>>> futures = new ArrayList<>(noWorkers);
+        try {
+            for (final VehicleRoutingAlgorithm worker : workers) {
+                futures.add(es.submit(new Callable<Collection<VehicleRoutingProblemSolution>>() {
+
+                    @Override
+                    public Collection<VehicleRoutingProblemSolution> call() throws Exception {
+                        return worker.searchSolutions();
+                    }
+
+                }));
+            }
+            for (Future<Collection<VehicleRoutingProblemSolution>> future : futures) {
+                solutions.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            sharedSearch.stop();
+            for (Future<Collection<VehicleRoutingProblemSolution>> future : futures) {
+                future.cancel(true);
+            }
+            interrupted = true;
+            Thread.currentThread().interrupt();
+            logger.warn("parallel algorithm has been interrupted. solutions found so far are returned");
+        } catch (ExecutionException e) {
+            sharedSearch.stop();
+            for (Future<Collection<VehicleRoutingProblemSolution>> future : futures) {
+                future.cancel(true);
+            }
+            throw new RuntimeException(e);
+        } finally {
+            if (setupExecutorInternally) es.shutdown();
+        }
+        VehicleRoutingProblemSolution incumbent = sharedSearch.getIncumbent();
+        if (incumbent != null) solutions.add(incumbent);
+        logger.info("parallel algorithm ends at {} iterations", sharedSearch.getNoIterations());
+        logger.info("took {} seconds", ((System.currentTimeMillis() - now) / 1000.0));
+        return solutions;
+    }
+
+}
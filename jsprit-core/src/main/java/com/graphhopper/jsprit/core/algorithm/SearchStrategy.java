@@ -19,6 +19,8 @@ package com.graphhopper.jsprit.core.algorithm;
 
 import com.graphhopper.jsprit.core.algorithm.acceptor.SolutionAcceptor;
 import com.graphhopper.jsprit.core.algorithm.listener.SearchStrategyModuleListener;
+import com.graphhopper.jsprit.core.algorithm.metrics.AlgorithmMetrics;
+import com.graphhopper.jsprit.core.algorithm.module.RuinAndRecreateModule;
 import com.graphhopper.jsprit.core.algorithm.selector.SolutionSelector;
 import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
 import com.graphhopper.jsprit.core.problem.solution.SolutionCostCalculator;
@@ -41,6 +43,8 @@ public class SearchStrategy {
 
         private String strategyId;
 
+        private boolean discarded = false;
+
         public DiscoveredSolution(VehicleRoutingProblemSolution solution, boolean accepted, String strategyId) {
             super();
             this.solution = solution;
@@ -48,6 +52,12 @@ public class SearchStrategy {
             this.strategyId = strategyId;
         }
 
+        static DiscoveredSolution discarded(VehicleRoutingProblemSolution solution, String strategyId) {
+            DiscoveredSolution discoveredSolution = new DiscoveredSolution(solution, false, strategyId);
+            discoveredSolution.discarded = true;
+            return discoveredSolution;
+        }
+
         public VehicleRoutingProblemSolution getSolution() {
             return solution;
         }
@@ -60,6 +70,14 @@ public class SearchStrategy {
             return strategyId;
         }
 
+        /**
+         * @return true if the search has been cancelled while the modules were running, i.e. the solution might be
+         * incomplete, thus it has neither been evaluated nor offered to the acceptor
+         */
+        public boolean isDiscarded() {
+            return discarded;
+        }
+
         @Override
         public String toString() {
             return "[strategyId=" + strategyId + "][solution=" + solution + "][accepted=" + accepted + "]";
@@ -80,6 +98,10 @@ public class SearchStrategy {
 
     private String name;
 
+    private AlgorithmMetrics metrics;
+
+    private CancellationToken cancellationToken;
+
     public SearchStrategy(String id, SolutionSelector solutionSelector, SolutionAcceptor solutionAcceptor, SolutionCostCalculator solutionCostCalculator) {
         if (id == null) throw new IllegalStateException("strategy id cannot be null");
         this.solutionSelector = solutionSelector;
@@ -115,6 +137,29 @@ public class SearchStrategy {
         return solutionAcceptor;
     }
 
+    /**
+     * Sets the metrics the phases of this strategy are recorded in. They are also set to its ruin-and-recreate
+     * modules. Null disables the recording.
+     *
+     * @param metrics metrics to record in
+     */
+    public void setMetrics(AlgorithmMetrics metrics) {
+        this.metrics = metrics;
+        for (SearchStrategyModule module : searchStrategyModules) {
+            if (module instanceof RuinAndRecreateModule) ((RuinAndRecreateModule) module).setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Sets the token that cancels the search. If it is cancelled while the modules are running, the new solution is
+     * discarded, i.e. it is not offered to the acceptor.
+     *
+     * @param cancellationToken token to check, or null
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
     @Override
     public String toString() {
         return "searchStrategy [#modules=" + searchStrategyModules.size() + "][selector=" + solutionSelector + "][acceptor=" + solutionAcceptor + "]";
@@ -125,7 +170,10 @@ public class SearchStrategy {
      * <p>
      * <p>This involves three basic steps: 1) Selecting a solution from solutions (input parameter) according to {@link com.graphhopper.jsprit.core.algorithm.selector.SolutionSelector}, 2) running the modules
      * ({@link SearchStrategyModule}) on the selectedSolution and 3) accepting the new solution according to {@link com.graphhopper.jsprit.core.algorithm.acceptor.SolutionAcceptor}.
-     * <p> Note that after 1) the selected solution is copied, thus the original solution is not modified.
+     * <p> Note that after 1) the selected solution is copied, thus the original solution is not modified. The copy is a copy-on-write copy
+     * (see {@link VehicleRoutingProblemSolution#copyOnWriteOf(VehicleRoutingProblemSolution)}), i.e. only routes the modules actually modify
+     * are cloned. Thus, modules must modify routes via {@link com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute} and its
+     * {@link com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivities}.
      * <p> Note also that 3) modifies the input parameter solutions by adding, removing, replacing the existing solutions or whatever is defined in the solutionAcceptor.
      *
      * @param vrp       the underlying vehicle routing problem
@@ -135,18 +183,33 @@ public class SearchStrategy {
      */
     @SuppressWarnings("UnusedParameters")
     public DiscoveredSolution run(VehicleRoutingProblem vrp, Collection<VehicleRoutingProblemSolution> solutions) {
+        long time = metrics == null ? 0L : System.nanoTime();
         VehicleRoutingProblemSolution solution = solutionSelector.selectSolution(solutions);
         if (solution == null) throw new IllegalStateException(getErrMsg());
-        VehicleRoutingProblemSolution lastSolution = VehicleRoutingProblemSolution.copyOf(solution);
+        VehicleRoutingProblemSolution lastSolution = VehicleRoutingProblemSolution.copyOnWriteOf(solution);
+        time = record(AlgorithmMetrics.Phase.SELECTION, time);
         for (SearchStrategyModule module : searchStrategyModules) {
             lastSolution = module.runAndGetSolution(lastSolution);
         }
+        if (cancellationToken != null && cancellationToken.isCancelled()) {
+            return DiscoveredSolution.discarded(lastSolution, getId());
+        }
+        if (metrics != null) time = System.nanoTime();
         double costs = solutionCostCalculator.getCosts(lastSolution);
         lastSolution.setCost(costs);
+        time = record(AlgorithmMetrics.Phase.OBJECTIVE, time);
         boolean solutionAccepted = solutionAcceptor.acceptSolution(solutions, lastSolution);
+        record(AlgorithmMetrics.Phase.ACCEPTANCE, time);
         return new DiscoveredSolution(lastSolution, solutionAccepted, getId());
     }
 
+    private long record(AlgorithmMetrics.Phase phase, long start) {
+        if (metrics == null) return 0L;
+        long now = System.nanoTime();
+        metrics.recordTime(phase, now - start);
+        return now;
+    }
+
     private String getErrMsg() {
         return "solution is null. check solutionSelector to return an appropriate solution. " +
             "\nfigure out whether you start with an initial solution. either you set it manually by algorithm.addInitialSolution(...)"
@@ -157,6 +220,7 @@ public class SearchStrategy {
     public void addModule(SearchStrategyModule module) {
         if (module == null) throw new IllegalStateException("module to be added is null.");
         searchStrategyModules.add(module);
+        if (metrics != null && module instanceof RuinAndRecreateModule) ((RuinAndRecreateModule) module).setMetrics(metrics);
         logger.debug("module added [module={}][#modules={}]", module, searchStrategyModules.size());
     }
 
@@ -18,10 +18,15 @@
 package com.graphhopper.jsprit.core.algorithm;
 
 import com.graphhopper.jsprit.core.algorithm.SearchStrategy.DiscoveredSolution;
+import com.graphhopper.jsprit.core.algorithm.listener.NewBestSolutionListener;
 import com.graphhopper.jsprit.core.algorithm.listener.SearchStrategyListener;
 import com.graphhopper.jsprit.core.algorithm.listener.SearchStrategyModuleListener;
 import com.graphhopper.jsprit.core.algorithm.listener.VehicleRoutingAlgorithmListener;
 import com.graphhopper.jsprit.core.algorithm.listener.VehicleRoutingAlgorithmListeners;
+import com.graphhopper.jsprit.core.algorithm.metrics.AlgorithmMetrics;
+import com.graphhopper.jsprit.core.algorithm.module.RuinAndRecreateModule;
+import com.graphhopper.jsprit.core.algorithm.recreate.AbstractInsertionStrategy;
+import com.graphhopper.jsprit.core.algorithm.recreate.InsertionStrategy;
 import com.graphhopper.jsprit.core.algorithm.termination.PrematureAlgorithmTermination;
 import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
 import com.graphhopper.jsprit.core.problem.job.Job;
@@ -37,6 +42,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 
 /**
@@ -111,6 +118,29 @@ public class VehicleRoutingAlgorithm {
 
     private final SolutionCostCalculator objectiveFunction;
 
+    private AlgorithmMetrics metrics;
+
+    private long strategyStartTime;
+
+    private long strategyStartAllocatedBytes;
+
+    private final CancellationToken cancellationToken = new CancellationToken();
+
+    private long hardDeadline = -1;
+
+    //true if the deadline of the cancellation token is the hard deadline of the last search
+    private boolean hardDeadlineSet = false;
+
+    private Collection<VehicleRoutingProblemSolution> currentSolutions;
+
+    private int iteration;
+
+    private int noIterationsThisAlgoIsRunning;
+
+    private boolean searchTerminated;
+
+    private double searchStartTime;
+
     public VehicleRoutingAlgorithm(VehicleRoutingProblem problem, SearchStrategyManager searchStrategyManager) {
         super();
         this.problem = problem;
@@ -210,6 +240,78 @@ public class VehicleRoutingAlgorithm {
         return searchStrategyManager;
     }
 
+    /**
+     * Returns the token that cancels the search of this algorithm. It is set to the insertion strategies of
+     * ruin-and-recreate modules when the search starts. Insertion strategies used elsewhere, e.g. a custom
+     * construction heuristic, need to be provided with it explicitly.
+     *
+     * @return cancellation token
+     */
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * Cancels the search. It can be called from any thread. The algorithm stops inserting jobs, discards the solution
+     * of the interrupted iteration (it is neither offered to the acceptor nor memorized as best solution) and returns
+     * the solutions found so far (including the best solution). A cancelled algorithm remains
+     * cancelled until its cancellation token is reset.
+     */
+    public void cancel() {
+        cancellationToken.cancel();
+    }
+
+    /**
+     * Sets a hard deadline, i.e. the search - including the construction of the initial solution - is cancelled when
+     * the specified time has passed since its start. Unlike {@link com.graphhopper.jsprit.core.algorithm.termination.TimeTermination},
+     * which is checked after each iteration only, the overrun is bounded by the time it takes to evaluate the insertion
+     * of a single job. Note that if the deadline expires during construction, the best solution might be incomplete.
+     * Each search gets the full time, i.e. a deadline that has expired in a previous search does not cancel later ones.
+     *
+     * @param timeInMs deadline in milliseconds from the start of the search, or a negative value to remove it
+     */
+    public void setHardDeadline(long timeInMs) {
+        this.hardDeadline = timeInMs;
+    }
+
+    /**
+     * Runs {@link #searchSolutions()} in a new daemon thread, i.e. the search does not keep the JVM alive.
+     *
+     * @return future of solutions
+     * @see #searchSolutionsAsync(Executor)
+     */
+    public CompletableFuture<Collection<VehicleRoutingProblemSolution>> searchSolutionsAsync() {
+        return searchSolutionsAsync(runnable -> {
+            Thread thread = new Thread(runnable, "jsprit-search");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Runs {@link #searchSolutions()} with the specified executor. Cancelling the returned future cancels the search
+     * (see {@link #cancel()}). To receive improving solutions while the search is running, add a
+     * {@link NewBestSolutionListener}.
+     *
+     * @param executor executor the search is run with
+     * @return future of solutions
+     */
+    public CompletableFuture<Collection<VehicleRoutingProblemSolution>> searchSolutionsAsync(Executor executor) {
+        final CompletableFuture<Collection<VehicleRoutingProblemSolution>> future = new CompletableFuture<>();
+        future.whenComplete((solutions, throwable) -> {
+            if (future.isCancelled()) cancel();
+        });
+        executor.execute(() -> {
+            if (future.isDone()) return;
+            try {
+                future.complete(searchSolutions());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
     /**
      * Runs the vehicle routing algorithm and returns a number of generated solutions.
      * <p>
@@ -221,42 +323,138 @@ public class VehicleRoutingAlgorithm {
      * @see {@link SearchStrategyManager}, {@link com.graphhopper.jsprit.core.algorithm.listener.VehicleRoutingAlgorithmListener}, {@link com.graphhopper.jsprit.core.algorithm.listener.AlgorithmStartsListener}, {@link com.graphhopper.jsprit.core.algorithm.listener.AlgorithmEndsListener}, {@link com.graphhopper.jsprit.core.algorithm.listener.IterationStartsListener}, {@link com.graphhopper.jsprit.core.algorithm.listener.IterationEndsListener}
      */
     public Collection<VehicleRoutingProblemSolution> searchSolutions() {
+        startSearch();
+        while (runIteration()) {
+        }
+        return endSearch();
+    }
+
+    /**
+     * Starts a search, i.e. informs algorithm-starts listeners (which construct the initial solution). Together with
+     * {@link #runIteration()} and {@link #endSearch()}, it allows running a search step by step, e.g. to interleave the
+     * iterations of several algorithms (see {@link BatchSolver}).
+     */
+    void startSearch() {
         logger.info("algorithm starts: [maxIterations={}]", maxIterations);
-        double now = System.currentTimeMillis();
-        int noIterationsThisAlgoIsRunning = maxIterations;
+        searchStartTime = System.currentTimeMillis();
+        noIterationsThisAlgoIsRunning = maxIterations;
+        iteration = 0;
+        searchTerminated = false;
         counter.reset();
-        Collection<VehicleRoutingProblemSolution> solutions = new ArrayList<>(initialSolutions);
-        algorithmStarts(problem, solutions);
-        bestEver = Solutions.bestOf(solutions);
+        currentSolutions = new ArrayList<>(initialSolutions);
+        //the hard deadline of the last search must not cancel this one, whereas explicit cancellations remain
+        if (hardDeadlineSet) {
+            cancellationToken.removeDeadline();
+            hardDeadlineSet = false;
+        }
+        if (hardDeadline >= 0) {
+            cancellationToken.setDeadline(hardDeadline);
+            hardDeadlineSet = true;
+        }
+        setCancellationToken();
+        algorithmStarts(problem, currentSolutions);
+        bestEver = Solutions.bestOf(currentSolutions);
+        if (bestEver != null) algoListeners.newBestSolution(0, problem, bestEver);
         if (logger.isTraceEnabled()) {
-            log(solutions);
+            log(currentSolutions);
+        }
+        if (metrics != null) {
+            for (SearchStrategy strategy : searchStrategyManager.getStrategies()) strategy.setMetrics(metrics);
         }
         logger.info("iterations start");
-        for (int i = 0; i < maxIterations; i++) {
-            iterationStarts(i + 1, problem, solutions);
-            logger.debug("start iteration: {}", i);
-            counter.incCounter();
-            SearchStrategy strategy = searchStrategyManager.getRandomStrategy();
-            DiscoveredSolution discoveredSolution = strategy.run(problem, solutions);
-            if (logger.isTraceEnabled()) {
-                log(discoveredSolution);
-            }
-            memorizeIfBestEver(discoveredSolution);
-            selectedStrategy(discoveredSolution, problem, solutions);
-            if (terminationManager.isPrematureBreak(discoveredSolution)) {
-                logger.info("premature algorithm termination at iteration {}", (i + 1));
-                noIterationsThisAlgoIsRunning = (i + 1);
-                break;
-            }
-            iterationEnds(i + 1, problem, solutions);
+    }
+
+    /**
+     * Runs the next iteration of the search started with {@link #startSearch()}.
+     *
+     * @return true if the search continues, false if it has terminated
+     */
+    boolean runIteration() {
+        if (searchTerminated) return false;
+        int i = iteration;
+        if (i >= maxIterations) {
+            searchTerminated = true;
+            return false;
+        }
+        Collection<VehicleRoutingProblemSolution> solutions = currentSolutions;
+        if (cancellationToken.isCancelled()) {
+            logger.info("algorithm cancelled before iteration {}", (i + 1));
+            return terminate(i);
+        }
+        iteration++;
+        iterationStarts(i + 1, problem, solutions);
+        logger.debug("start iteration: {}", i);
+        counter.incCounter();
+        SearchStrategy strategy = searchStrategyManager.getRandomStrategy();
+        if (metrics != null) strategyStarts(strategy);
+        DiscoveredSolution discoveredSolution = strategy.run(problem, solutions);
+        if (logger.isTraceEnabled()) {
+            log(discoveredSolution);
+        }
+        double bestCostsBefore = bestEver == null ? Double.MAX_VALUE : bestEver.getCost();
+        //if the search was cancelled while the modules were running, jobs might have been left out
+        boolean discarded = discoveredSolution != null && discoveredSolution.isDiscarded();
+        if (!discarded) memorizeIfBestEver(i + 1, discoveredSolution);
+        if (metrics != null) strategyEnds(discoveredSolution, bestCostsBefore);
+        if (discarded || cancellationToken.isCancelled()) {
+            logger.info("algorithm cancelled at iteration {}", (i + 1));
+            return terminate(i + 1);
+        }
+        selectedStrategy(discoveredSolution, problem, solutions);
+        if (terminationManager.isPrematureBreak(discoveredSolution)) {
+            logger.info("premature algorithm termination at iteration {}", (i + 1));
+            return terminate(i + 1);
         }
+        iterationEnds(i + 1, problem, solutions);
+        if (iteration >= maxIterations) searchTerminated = true;
+        return !searchTerminated;
+    }
+
+    /**
+     * @return number of iterations the current (or last) search has run so far
+     */
+    int getNoRunIterations() {
+        return iteration;
+    }
+
+    private boolean terminate(int noIterations) {
+        noIterationsThisAlgoIsRunning = noIterations;
+        searchTerminated = true;
+        return false;
+    }
+
+    /**
+     * Ends the search started with {@link #startSearch()}, i.e. informs algorithm-ends listeners.
+     *
+     * @return the solutions
+     */
+    Collection<VehicleRoutingProblemSolution> endSearch() {
+        Collection<VehicleRoutingProblemSolution> solutions = currentSolutions;
+        currentSolutions = null;
         logger.info("iterations end at {} iterations", noIterationsThisAlgoIsRunning);
         addBestEver(solutions);
         algorithmEnds(problem, solutions);
-        logger.info("took {} seconds", ((System.currentTimeMillis() - now) / 1000.0));
+        if (metrics != null) metrics.export();
+        logger.info("took {} seconds", ((System.currentTimeMillis() - searchStartTime) / 1000.0));
         return solutions;
     }
 
+    private void strategyStarts(SearchStrategy strategy) {
+        metrics.strategyStarts(strategy.getId());
+        strategyStartTime = System.nanoTime();
+        strategyStartAllocatedBytes = metrics.getAllocatedBytes();
+    }
+
+    private void strategyEnds(DiscoveredSolution discoveredSolution, double bestCostsBefore) {
+        long nanos = System.nanoTime() - strategyStartTime;
+        long allocatedBytes = strategyStartAllocatedBytes < 0 ? -1 : metrics.getAllocatedBytes() - strategyStartAllocatedBytes;
+        double improvement = 0.;
+        if (bestEver != null && bestEver.getCost() < bestCostsBefore && bestCostsBefore != Double.MAX_VALUE) {
+            improvement = bestCostsBefore - bestEver.getCost();
+        }
+        metrics.strategyEnds(nanos, allocatedBytes, discoveredSolution.isAccepted(), improvement);
+    }
+
     private void addBestEver(Collection<VehicleRoutingProblemSolution> solutions) {
         if (bestEver != null) {
             solutions.add(bestEver);
@@ -297,12 +495,24 @@ public class VehicleRoutingAlgorithm {
     }
 
 
-    private void memorizeIfBestEver(DiscoveredSolution discoveredSolution) {
+    private void memorizeIfBestEver(int iteration, DiscoveredSolution discoveredSolution) {
         if (discoveredSolution == null) return;
-        if (bestEver == null) {
-            bestEver = discoveredSolution.getSolution();
-        } else if (discoveredSolution.getSolution().getCost() < bestEver.getCost()) {
+        if (bestEver == null || discoveredSolution.getSolution().getCost() < bestEver.getCost()) {
             bestEver = discoveredSolution.getSolution();
+            algoListeners.newBestSolution(iteration, problem, bestEver);
+        }
+    }
+
+    private void setCancellationToken() {
+        for (SearchStrategy strategy : searchStrategyManager.getStrategies()) {
+            strategy.setCancellationToken(cancellationToken);
+            for (SearchStrategyModule module : strategy.getSearchStrategyModules()) {
+                if (!(module instanceof RuinAndRecreateModule)) continue;
+                InsertionStrategy insertion = ((RuinAndRecreateModule) module).getInsertion();
+                if (insertion instanceof AbstractInsertionStrategy) {
+                    ((AbstractInsertionStrategy) insertion).setCancellationToken(cancellationToken);
+                }
+            }
         }
     }
 
@@ -360,6 +570,22 @@ public class VehicleRoutingAlgorithm {
         return maxIterations;
     }
 
+    /**
+     * Sets the metrics the search is recorded in, i.e. the timings of each strategy and its phases. They are exported
+     * when the algorithm ends. Note that insertion evaluations, constraint rejections and state updates are only
+     * recorded if the metrics are also set to the constraint and the state manager.
+     *
+     * @param metrics metrics to record in, or null to disable recording
+     */
+    public void setMetrics(AlgorithmMetrics metrics) {
+        this.metrics = metrics;
+        for (SearchStrategy strategy : searchStrategyManager.getStrategies()) strategy.setMetrics(metrics);
+    }
+
+    public AlgorithmMetrics getMetrics() {
+        return metrics;
+    }
+
     public SolutionCostCalculator getObjectiveFunction(){
         return objectiveFunction;
     }
@@ -18,14 +18,18 @@
 
 package com.graphhopper.jsprit.core.algorithm.box;
 
+import com.graphhopper.jsprit.core.algorithm.AdaptiveStrategyWeights;
+import com.graphhopper.jsprit.core.algorithm.ParallelVehicleRoutingAlgorithm;
 import com.graphhopper.jsprit.core.algorithm.PrettyAlgorithmBuilder;
 import com.graphhopper.jsprit.core.algorithm.SearchStrategy;
 import com.graphhopper.jsprit.core.algorithm.SearchStrategyModule;
 import com.graphhopper.jsprit.core.algorithm.VehicleRoutingAlgorithm;
+import com.graphhopper.jsprit.core.algorithm.VehicleRoutingAlgorithmFactory;
 import com.graphhopper.jsprit.core.algorithm.acceptor.SchrimpfAcceptance;
 import com.graphhopper.jsprit.core.algorithm.acceptor.SolutionAcceptor;
 import com.graphhopper.jsprit.core.algorithm.listener.AlgorithmEndsListener;
 import com.graphhopper.jsprit.core.algorithm.listener.IterationStartsListener;
+import com.graphhopper.jsprit.core.algorithm.metrics.AlgorithmMetrics;
 import com.graphhopper.jsprit.core.algorithm.module.RuinAndRecreateModule;
 import com.graphhopper.jsprit.core.algorithm.recreate.*;
 import com.graphhopper.jsprit.core.algorithm.ruin.*;
@@ -35,6 +39,7 @@ import com.graphhopper.jsprit.core.algorithm.state.StateManager;
 import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
 import com.graphhopper.jsprit.core.problem.constraint.ConstraintManager;
 import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.solution.IncrementalSolutionCostCalculator;
 import com.graphhopper.jsprit.core.problem.solution.SolutionCostCalculator;
 import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
 import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
@@ -49,6 +54,7 @@ import com.graphhopper.jsprit.core.util.Solutions;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 
 public class Jsprit {
@@ -118,6 +124,8 @@ public class Jsprit {
         RUIN_WORST_NOISE_LEVEL("worst.noise_level"),
         RUIN_WORST_NOISE_PROB("worst.noise_prob"),
         FAST_REGRET("regret.fast"),
+        GRANULAR_NEIGHBORS("insertion.granular_neighbors"),
+        OBJECTIVE_VERIFICATION_INTERVAL("objective.verification_interval"),
         MAX_TRANSPORT_COSTS("max_transport_costs"),
         CONSTRUCTION("construction"),
         BREAK_SCHEDULING("break_scheduling"),
@@ -126,7 +134,10 @@ public class Jsprit {
         STRING_L_MIN("string_lmin"),
         STRING_L_MAX("string_lmax"),
         MIN_UNASSIGNED("min_unassigned"),
-        PROPORTION_UNASSIGNED("proportion_unassigned");
+        PROPORTION_UNASSIGNED("proportion_unassigned"),
+        ADAPTIVE_WEIGHTS("strategy.adaptive"),
+        ADAPTIVE_REACTION_FACTOR("strategy.adaptive.reaction_factor"),
+        ADAPTIVE_SEGMENT_LENGTH("strategy.adaptive.segment_length");
 
 
 
@@ -154,6 +165,8 @@ public class Jsprit {
 
         private Integer noThreads;
 
+        private ExecutionBackend executionBackend = null;
+
         private StateManager stateManager = null;
 
         private ConstraintManager constraintManager = null;
@@ -176,6 +189,10 @@ public class Jsprit {
 
         private VehicleFleetManager fleetManager = null;
 
+        private JobNeighborhoodsCache neighborhoodsCache = null;
+
+        private AlgorithmMetrics metrics = null;
+
         public static Builder newInstance(VehicleRoutingProblem vrp) {
             return new Builder(vrp);
         }
@@ -234,11 +251,16 @@ public class Jsprit {
             defaults.put(Parameter.RUIN_WORST_NOISE_PROB.toString(), String.valueOf(0.2));
             defaults.put(Parameter.VEHICLE_SWITCH.toString(), String.valueOf(true));
             defaults.put(Parameter.FAST_REGRET.toString(), String.valueOf(false));
+            defaults.put(Parameter.GRANULAR_NEIGHBORS.toString(), String.valueOf(0));
+            defaults.put(Parameter.OBJECTIVE_VERIFICATION_INTERVAL.toString(), String.valueOf(1000));
             defaults.put(Parameter.BREAK_SCHEDULING.toString(), String.valueOf(true));
             defaults.put(Parameter.CONSTRUCTION.toString(), Construction.REGRET_INSERTION.toString());
 
             defaults.put(Parameter.MIN_UNASSIGNED.toString(), String.valueOf(Integer.MAX_VALUE));
             defaults.put(Parameter.PROPORTION_UNASSIGNED.toString(), String.valueOf(1.0));
+            defaults.put(Parameter.ADAPTIVE_WEIGHTS.toString(), String.valueOf(false));
+            defaults.put(Parameter.ADAPTIVE_REACTION_FACTOR.toString(), String.valueOf(0.1));
+            defaults.put(Parameter.ADAPTIVE_SEGMENT_LENGTH.toString(), String.valueOf(100));
             return defaults;
         }
 
@@ -259,6 +281,19 @@ public class Jsprit {
             return this;
         }
 
+        /**
+         * Evaluates insertion costs concurrently on the specified backend instead of a thread pool, e.g. on
+         * {@link ExecutionBackends#auto()}. No thread pool is set up then, and the backend is not closed when the
+         * algorithm ends.
+         *
+         * @param executionBackend backend
+         * @return builder
+         */
+        public Builder setExecutionBackend(ExecutionBackend executionBackend) {
+            this.executionBackend = executionBackend;
+            return this;
+        }
+
         public Builder setCustomAcceptor(SolutionAcceptor acceptor){
             this.solutionAcceptor = acceptor;
             return this;
@@ -310,10 +345,68 @@ public class Jsprit {
             return this;
         }
 
+        /**
+         * Sets a cache the job neighborhoods are taken from instead of calculating them from scratch. The cache is
+         * updated with the jobs of the problem, i.e. it can be written to disk afterwards and reused by subsequent runs.
+         * Neighborhoods are limited to the capacity of the cache. The cache must be built with
+         * AvgServiceAndShipmentDistance based on the transport costs of the problem.
+         *
+         * @param neighborhoodsCache cache of job neighborhoods
+         * @return builder
+         */
+        public Builder setJobNeighborhoodsCache(JobNeighborhoodsCache neighborhoodsCache) {
+            this.neighborhoodsCache = neighborhoodsCache;
+            return this;
+        }
+
+        /**
+         * Sets the metrics the algorithm records its hot paths in, i.e. timings per strategy and phase, insertion
+         * evaluations and constraint rejections. They are set to the algorithm, the state and the constraint manager.
+         *
+         * @param metrics metrics to record in
+         * @return builder
+         */
+        public Builder setMetrics(AlgorithmMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
         public VehicleRoutingAlgorithm buildAlgorithm() {
             return new Jsprit(this).create(vrp);
         }
 
+        /**
+         * Builds an algorithm that runs the specified number of workers concurrently. Each worker is an algorithm
+         * configured by this builder, but with its own state manager, constraint manager, fleet manager and random
+         * number generator (seeded by the random number generator of this builder).
+         * <p>Since these objects must not be shared by workers, parallel algorithms cannot be built if a state and
+         * constraint manager, a fleet manager, a custom acceptor, custom strategies, metrics, an objective function or an
+         * activity insertion calculator have been set. The remaining objects, i.e. the transport and activity costs of the
+         * problem, the regret scorer and the job neighborhoods cache, are shared by all workers and must be thread-safe.
+         *
+         * @param noWorkers number of workers searching concurrently
+         * @return parallel algorithm
+         * @throws IllegalStateException if objects have been set that cannot be shared by workers
+         */
+        public ParallelVehicleRoutingAlgorithm buildParallelAlgorithm(int noWorkers) {
+            if (stateManager != null || constraintManager != null || fleetManager != null || solutionAcceptor != null || !customStrategies.isEmpty() || metrics != null
+                || objectiveFunction != null || activityInsertionCalculator != null) {
+                throw new IllegalStateException("parallel algorithm cannot be built with a custom state and constraint manager, fleet manager, acceptor, " +
+                    "custom strategies, metrics, objective function or activity insertion calculator, since workers cannot share them. " +
+                    "use ParallelVehicleRoutingAlgorithm with a custom VehicleRoutingAlgorithmFactory instead.");
+            }
+            return new ParallelVehicleRoutingAlgorithm(vrp, new VehicleRoutingAlgorithmFactory() {
+
+                @Override
+                public VehicleRoutingAlgorithm createAlgorithm(VehicleRoutingProblem vrp) {
+                    Jsprit jsprit = new Jsprit(Builder.this);
+                    jsprit.random = new Random(random.nextLong());
+                    return jsprit.create(vrp);
+                }
+
+            }, noWorkers);
+        }
+
     }
 
     static class RuinShareFactoryImpl implements RuinShareFactory
@@ -362,6 +455,8 @@ public class Jsprit {
 
     private boolean setupExecutorInternally = false;
 
+    private ExecutionBackend executionBackend;
+
     private boolean addCoreConstraints;
 
     private SolutionCostCalculator objectiveFunction;
@@ -378,11 +473,16 @@ public class Jsprit {
 
     private VehicleFleetManager vehicleFleetManager;
 
+    private JobNeighborhoodsCache neighborhoodsCache;
+
+    private AlgorithmMetrics metrics;
+
     private Jsprit(Builder builder) {
         this.stateManager = builder.stateManager;
         this.constraintManager = builder.constraintManager;
         this.es = builder.es;
         this.noThreads = builder.noThreads;
+        this.executionBackend = builder.executionBackend;
         this.addCoreConstraints = builder.addConstraints;
         this.properties = builder.properties;
         this.objectiveFunction = builder.objectiveFunction;
@@ -392,6 +492,8 @@ public class Jsprit {
         regretScorer = builder.regretScorer;
         customStrategies.putAll(builder.customStrategies);
         vehicleFleetManager = builder.fleetManager;
+        neighborhoodsCache = builder.neighborhoodsCache;
+        metrics = builder.metrics;
     }
 
     private void ini(VehicleRoutingProblem vrp) {
@@ -415,16 +517,23 @@ public class Jsprit {
         if (constraintManager == null) {
             constraintManager = new ConstraintManager(vrp, stateManager);
         }
+        if (metrics != null) {
+            stateManager.setMetrics(metrics);
+            constraintManager.setMetrics(metrics);
+        }
 
         if (noThreads == null) {
             noThreads = toInteger(getProperty(Parameter.THREADS.toString()));
         }
-        if (noThreads > 1) {
+        if (noThreads > 1 && executionBackend == null) {
             if (es == null) {
                 setupExecutorInternally = true;
                 es = Executors.newFixedThreadPool(noThreads);
             }
         }
+        if (executionBackend == null && es != null) {
+            executionBackend = ExecutionBackends.of(es, noThreads);
+        }
 
         double fixedCostParam = toDouble(getProperty(Parameter.FIXED_COST_PARAM.toString()));
         IncreasingAbsoluteFixedCosts increasingAbsoluteFixedCosts = null;
@@ -437,8 +546,22 @@ public class Jsprit {
         double noiseLevel = toDouble(getProperty(Parameter.INSERTION_NOISE_LEVEL.toString()));
         double noiseProbability = toDouble(getProperty(Parameter.INSERTION_NOISE_PROB.toString()));
 
-        JobNeighborhoods jobNeighborhoods = new JobNeighborhoodsFactory().createNeighborhoods(vrp, new AvgServiceAndShipmentDistance(vrp.getTransportCosts()), (int) (vrp.getJobs().values().size() * 0.5));
-        jobNeighborhoods.initialise();
+        JobNeighborhoods jobNeighborhoods;
+        //neighborhoods are only calculated in parallel if the algorithm runs on a ForkJoinPool anyway, i.e. never on other threads than the configured ones
+        ForkJoinPool forkJoinPool = es instanceof ForkJoinPool ? (ForkJoinPool) es : null;
+        if (neighborhoodsCache != null) {
+            jobNeighborhoods = neighborhoodsCache.getNeighborhoods(vrp, new AvgServiceAndShipmentDistance(vrp.getTransportCosts()), forkJoinPool);
+        } else {
+            jobNeighborhoods = new JobNeighborhoodsFactory().createNeighborhoods(vrp, new AvgServiceAndShipmentDistance(vrp.getTransportCosts()),
+                (int) (vrp.getJobs().values().size() * 0.5), false, forkJoinPool);
+            jobNeighborhoods.initialise();
+        }
+
+        GranularInsertion granularInsertion = null;
+        int granularNeighbors = Integer.parseInt(getProperty(Parameter.GRANULAR_NEIGHBORS.toString()));
+        if (granularNeighbors > 0) {
+            granularInsertion = new GranularInsertion(vrp, jobNeighborhoods, granularNeighbors).setMetrics(metrics);
+        }
 
         final double maxCosts;
         if(properties.containsKey(Parameter.MAX_TRANSPORT_COSTS.toString())){
@@ -449,7 +572,7 @@ public class Jsprit {
         }
 
         IterationStartsListener noiseConfigurator;
-        if (noThreads > 1) {
+        if (executionBackend != null) {
             ConcurrentInsertionNoiseMaker noiseMaker = new ConcurrentInsertionNoiseMaker(vrp, maxCosts, noiseLevel, noiseProbability);
             noiseMaker.setRandom(random);
             constraintManager.addConstraint(noiseMaker);
@@ -521,15 +644,16 @@ public class Jsprit {
         final ScoringFunction scorer;
 
         boolean fastRegret = Boolean.parseBoolean(getProperty(Parameter.FAST_REGRET.toString()));
-        if (es != null) {
+        if (executionBackend != null) {
             if(fastRegret){
                 RegretInsertionConcurrentFast regretInsertion = (RegretInsertionConcurrentFast) new InsertionStrategyBuilder(vrp, vehicleFleetManager, stateManager, constraintManager)
                     .setInsertionStrategy(InsertionStrategyBuilder.Strategy.REGRET)
-                    .setConcurrentMode(es, noThreads)
+                    .setConcurrentMode(executionBackend)
                     .setFastRegret(true)
                     .considerFixedCosts(toDouble(getProperty(Parameter.FIXED_COST_PARAM.toString())))
                     .setAllowVehicleSwitch(toBoolean(getProperty(Parameter.VEHICLE_SWITCH.toString())))
                     .setActivityInsertionCostCalculator(activityInsertion)
+                    .setGranularInsertion(granularInsertion)
                     .build();
                 scorer = regretScorer;
                 regretInsertion.setScoringFunction(scorer);
@@ -539,10 +663,11 @@ public class Jsprit {
             else {
                 RegretInsertionConcurrent regretInsertion = (RegretInsertionConcurrent) new InsertionStrategyBuilder(vrp, vehicleFleetManager, stateManager, constraintManager)
                     .setInsertionStrategy(InsertionStrategyBuilder.Strategy.REGRET)
-                    .setConcurrentMode(es, noThreads)
+                    .setConcurrentMode(executionBackend)
                     .considerFixedCosts(toDouble(getProperty(Parameter.FIXED_COST_PARAM.toString())))
                     .setAllowVehicleSwitch(toBoolean(getProperty(Parameter.VEHICLE_SWITCH.toString())))
                     .setActivityInsertionCostCalculator(activityInsertion)
+                    .setGranularInsertion(granularInsertion)
                     .build();
                 scorer = regretScorer;
                 regretInsertion.setScoringFunction(scorer);
@@ -556,6 +681,7 @@ public class Jsprit {
                     .setAllowVehicleSwitch(toBoolean(getProperty(Parameter.VEHICLE_SWITCH.toString())))
                     .considerFixedCosts(toDouble(getProperty(Parameter.FIXED_COST_PARAM.toString())))
                     .setActivityInsertionCostCalculator(activityInsertion)
+                    .setGranularInsertion(granularInsertion)
                     .build();
                 scorer = regretScorer;
                 regretInsertion.setScoringFunction(scorer);
@@ -568,6 +694,7 @@ public class Jsprit {
                     .setAllowVehicleSwitch(toBoolean(getProperty(Parameter.VEHICLE_SWITCH.toString())))
                     .considerFixedCosts(toDouble(getProperty(Parameter.FIXED_COST_PARAM.toString())))
                     .setActivityInsertionCostCalculator(activityInsertion)
+                    .setGranularInsertion(granularInsertion)
                     .build();
                 scorer = regretScorer;
                 regretInsertion.setScoringFunction(scorer);
@@ -577,12 +704,13 @@ public class Jsprit {
         regret.setRandom(random);
 
         AbstractInsertionStrategy best;
-        if (vrp.getJobs().size() < 250 || es == null) {
+        if (vrp.getJobs().size() < 250 || executionBackend == null) {
             BestInsertion bestInsertion = (BestInsertion) new InsertionStrategyBuilder(vrp, vehicleFleetManager, stateManager, constraintManager)
                 .setInsertionStrategy(InsertionStrategyBuilder.Strategy.BEST)
                 .considerFixedCosts(Double.valueOf(properties.getProperty(Parameter.FIXED_COST_PARAM.toString())))
                 .setAllowVehicleSwitch(toBoolean(getProperty(Parameter.VEHICLE_SWITCH.toString())))
                 .setActivityInsertionCostCalculator(activityInsertion)
+                .setGranularInsertion(granularInsertion)
                 .build();
             best = bestInsertion;
         } else {
@@ -590,9 +718,11 @@ public class Jsprit {
                 .setInsertionStrategy(InsertionStrategyBuilder.Strategy.BEST)
                 .considerFixedCosts(Double.valueOf(properties.getProperty(Parameter.FIXED_COST_PARAM.toString())))
                 .setAllowVehicleSwitch(toBoolean(getProperty(Parameter.VEHICLE_SWITCH.toString())))
-                .setConcurrentMode(es, noThreads)
+                .setConcurrentMode(executionBackend)
                 .setActivityInsertionCostCalculator(activityInsertion)
+                .setGranularInsertion(granularInsertion)
                 .build();
+            bestInsertion.setDependencyTypes(constraintManager.getDependencyTypes());
             best = bestInsertion;
         }
         best.setRandom(random);
@@ -684,8 +814,14 @@ public class Jsprit {
         if(toBoolean(getProperty(Parameter.BREAK_SCHEDULING.toString()))) {
             vra.addListener(new BreakScheduling(vrp, stateManager, constraintManager));
         }
+        if (toBoolean(getProperty(Parameter.ADAPTIVE_WEIGHTS.toString()))) {
+            vra.addListener(new AdaptiveStrategyWeights(vra.getSearchStrategyManager(),
+                toDouble(getProperty(Parameter.ADAPTIVE_REACTION_FACTOR.toString())),
+                toInteger(getProperty(Parameter.ADAPTIVE_SEGMENT_LENGTH.toString()))));
+        }
         handleExecutorShutdown(vra);
         vra.setMaxIterations(Integer.valueOf(properties.getProperty(Parameter.ITERATIONS.toString())));
+        vra.setMetrics(metrics);
 
         return vra;
 
@@ -759,37 +895,42 @@ public class Jsprit {
     private SolutionCostCalculator getObjectiveFunction(final VehicleRoutingProblem vrp, final double maxCosts) {
         if (objectiveFunction != null) return objectiveFunction;
 
-        SolutionCostCalculator solutionCostCalculator = new SolutionCostCalculator() {
-            @Override
-            public double getCosts(VehicleRoutingProblemSolution solution) {
-                double costs = 0.;
+        IncrementalSolutionCostCalculator solutionCostCalculator = new IncrementalSolutionCostCalculator() {
 
-                for (VehicleRoute route : solution.getRoutes()) {
-                    costs += route.getVehicle().getType().getVehicleCostParams().fix;
-                    boolean hasBreak = false;
-                    TourActivity prevAct = route.getStart();
-                    for (TourActivity act : route.getActivities()) {
-                        if (act instanceof BreakActivity) hasBreak = true;
-                        costs += vrp.getTransportCosts().getTransportCost(prevAct.getLocation(), act.getLocation(), prevAct.getEndTime(), route.getDriver(), route.getVehicle());
-                        costs += vrp.getActivityCosts().getActivityCost(act, act.getArrTime(), route.getDriver(), route.getVehicle());
-                        prevAct = act;
-                    }
-                    costs += vrp.getTransportCosts().getTransportCost(prevAct.getLocation(), route.getEnd().getLocation(), prevAct.getEndTime(), route.getDriver(), route.getVehicle());
-                    if (route.getVehicle().getBreak() != null) {
-                        if (!hasBreak) {
-                            //break defined and required but not assigned penalty
-                            if (route.getEnd().getArrTime() > route.getVehicle().getBreak().getTimeWindow().getEnd()) {
-                                costs += 4 * (maxCosts * 2 + route.getVehicle().getBreak().getServiceDuration() * route.getVehicle().getType().getVehicleCostParams().perServiceTimeUnit);
-                            }
+            @Override
+            protected double getRouteCosts(VehicleRoute route) {
+                double costs = route.getVehicle().getType().getVehicleCostParams().fix;
+                boolean hasBreak = false;
+                TourActivity prevAct = route.getStart();
+                for (TourActivity act : route.getActivities()) {
+                    if (act instanceof BreakActivity) hasBreak = true;
+                    costs += vrp.getTransportCosts().getTransportCost(prevAct.getLocation(), act.getLocation(), prevAct.getEndTime(), route.getDriver(), route.getVehicle());
+                    costs += vrp.getActivityCosts().getActivityCost(act, act.getArrTime(), route.getDriver(), route.getVehicle());
+                    prevAct = act;
+                }
+                costs += vrp.getTransportCosts().getTransportCost(prevAct.getLocation(), route.getEnd().getLocation(), prevAct.getEndTime(), route.getDriver(), route.getVehicle());
+                if (route.getVehicle().getBreak() != null) {
+                    if (!hasBreak) {
+                        //break defined and required but not assigned penalty
+                        if (route.getEnd().getArrTime() > route.getVehicle().getBreak().getTimeWindow().getEnd()) {
+                            costs += 4 * (maxCosts * 2 + route.getVehicle().getBreak().getServiceDuration() * route.getVehicle().getType().getVehicleCostParams().perServiceTimeUnit);
                         }
                     }
                 }
-                for(Job j : solution.getUnassignedJobs()){
+                return costs;
+            }
+
+            @Override
+            protected double getUnassignedJobCosts(Collection<Job> unassignedJobs) {
+                double costs = 0.;
+                for (Job j : unassignedJobs) {
                     costs += maxCosts * 2 * (11 - j.getPriority());
                 }
                 return costs;
             }
+
         };
+        solutionCostCalculator.setVerificationInterval(Integer.parseInt(getProperty(Parameter.OBJECTIVE_VERIFICATION_INTERVAL.toString())));
         return solutionCostCalculator;
     }
 
@@ -0,0 +1,34 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.listener;
+
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+
+/**
+ * Informed whenever the algorithm has found a new best solution, i.e. once the initial solution is known and then
+ * each time the best solution improves. Thus it streams the best-so-far solution while the search is running.
+ * <p>
+ * <p>It is called by the algorithm thread, so it should return quickly. The solution must not be modified; copy it
+ * with {@link VehicleRoutingProblemSolution#copyOf(VehicleRoutingProblemSolution)} if needed.
+ */
+public interface NewBestSolutionListener extends VehicleRoutingAlgorithmListener {
+
+    void informNewBestSolution(int iteration, VehicleRoutingProblem problem, VehicleRoutingProblemSolution bestSolution);
+
+}
@@ -147,4 +147,12 @@ public class VehicleRoutingAlgorithmListeners {
             }
         }
     }
+
+    public void newBestSolution(int i, VehicleRoutingProblem problem, VehicleRoutingProblemSolution bestSolution) {
+        for (PrioritizedVRAListener l : algorithmListeners) {
+            if (l.getListener() instanceof NewBestSolutionListener) {
+                ((NewBestSolutionListener) l.getListener()).informNewBestSolution(i, problem, bestSolution);
+            }
+        }
+    }
 }
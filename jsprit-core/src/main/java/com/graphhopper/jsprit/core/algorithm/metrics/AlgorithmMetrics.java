@@ -0,0 +1,179 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Instrumentation of the algorithm's hot paths. It records nanosecond timings of the phases of each iteration,
+ * the number of insertion evaluations, constraint rejections per constraint class, the insertion positions skipped by
+ * granular insertion and, if the JVM supports it, the bytes allocated per iteration. Everything is grouped by the id of the search strategy that was running (see
+ * {@link com.graphhopper.jsprit.core.algorithm.SearchStrategy#getId()}), thus one can see which strategy burns CPU
+ * without improving the best solution.
+ * <p>
+ * <p>Metrics are disabled by default. To enable them, pass an instance to
+ * {@link com.graphhopper.jsprit.core.algorithm.box.Jsprit.Builder#setMetrics(AlgorithmMetrics)}, or, if the
+ * algorithm is assembled manually, to the algorithm, the state manager and the constraint manager. Recorded data is
+ * passed to the registered {@link MetricsExporter}s when the algorithm ends.
+ * <p>
+ * <p>Phases are nested: {@link Phase#STATE_UPDATE} is measured within {@link Phase#RUIN} and {@link Phase#RECREATE},
+ * and {@link Phase#ITERATION} covers the whole strategy run. Work done outside of a strategy (e.g. the construction
+ * of the initial solution) is recorded as {@link #NO_STRATEGY}.
+ * <p>
+ * <p>Recording is lock-free and can be done from insertion threads, but an instance must only be used by one
+ * algorithm at a time since it tracks the strategy that is currently running.
+ *
+ * @author schroeder
+ */
+public class AlgorithmMetrics {
+
+    public enum Phase {
+        SELECTION, RUIN, RECREATE, STATE_UPDATE, OBJECTIVE, ACCEPTANCE, ITERATION
+    }
+
+    public static final String NO_STRATEGY = "none";
+
+    private final ConcurrentHashMap<String, StrategyMetrics> strategyMetrics = new ConcurrentHashMap<>();
+
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+
+    private final ThreadAllocations allocations = new ThreadAllocations();
+
+    private final StrategyMetrics noStrategy;
+
+    private volatile StrategyMetrics current;
+
+    public AlgorithmMetrics() {
+        noStrategy = getStrategyMetrics(NO_STRATEGY);
+        current = noStrategy;
+    }
+
+    public AlgorithmMetrics addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+        return this;
+    }
+
+    /**
+     * Returns the metrics of the specified strategy. They are created if they do not exist yet.
+     *
+     * @param strategyId id of search strategy
+     * @return metrics of strategy
+     */
+    public StrategyMetrics getStrategyMetrics(String strategyId) {
+        StrategyMetrics metrics = strategyMetrics.get(strategyId);
+        if (metrics == null) {
+            StrategyMetrics newMetrics = new StrategyMetrics(strategyId);
+            metrics = strategyMetrics.putIfAbsent(strategyId, newMetrics);
+            if (metrics == null) metrics = newMetrics;
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of all strategies that have been run so far (including {@link #NO_STRATEGY}).
+     *
+     * @return metrics of strategies
+     */
+    public Collection<StrategyMetrics> getAllStrategyMetrics() {
+        return Collections.unmodifiableCollection(new ArrayList<>(strategyMetrics.values()));
+    }
+
+    /**
+     * Returns whether allocated bytes can be measured on this JVM.
+     *
+     * @return true if allocations are measured
+     */
+    public boolean isAllocationMeasurementSupported() {
+        return allocations.isSupported();
+    }
+
+    /**
+     * Marks the specified strategy as running, i.e. subsequent records are assigned to it.
+     *
+     * @param strategyId id of search strategy
+     */
+    public void strategyStarts(String strategyId) {
+        current = getStrategyMetrics(strategyId);
+    }
+
+    /**
+     * Records the iteration of the running strategy and assigns subsequent records to {@link #NO_STRATEGY}.
+     *
+     * @param nanos          nanoseconds the strategy took
+     * @param allocatedBytes bytes allocated by the algorithm thread, or a negative value if unknown
+     * @param accepted       whether the solution found was accepted
+     * @param improvement    cost reduction of the best solution, or 0 if there was none
+     */
+    public void strategyEnds(long nanos, long allocatedBytes, boolean accepted, double improvement) {
+        current.recordIteration(nanos, allocatedBytes, accepted, improvement);
+        current = noStrategy;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far.
+     *
+     * @return allocated bytes, or -1 if allocations cannot be measured
+     */
+    public long getAllocatedBytes() {
+        return allocations.getAllocatedBytes();
+    }
+
+    public void recordTime(Phase phase, long nanos) {
+        current.recordTime(phase, nanos);
+    }
+
+    public void recordInsertionEvaluation() {
+        current.recordInsertionEvaluation();
+    }
+
+    public void recordActivityEvaluation() {
+        current.recordActivityEvaluation();
+    }
+
+    public void recordConstraintRejection(Class<?> constraintClass) {
+        current.recordConstraintRejection(constraintClass);
+    }
+
+    /**
+     * Records an insertion position granular insertion has decided on.
+     *
+     * @param skipped true if the position has been skipped, false if it has been evaluated
+     */
+    public void recordGranularPosition(boolean skipped) {
+        current.recordGranularPosition(skipped);
+    }
+
+    /**
+     * Passes these metrics to all registered exporters.
+     */
+    public void export() {
+        for (MetricsExporter exporter : exporters) {
+            exporter.export(this);
+        }
+    }
+
+    public void reset() {
+        for (StrategyMetrics metrics : strategyMetrics.values()) metrics.reset();
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative long values (e.g. nanoseconds) with log-linear buckets, as known from
+ * HdrHistogram.
+ * <p>
+ * <p>Values below 32 are counted exactly. Above, each power of two is divided into 32 equally sized buckets, thus
+ * the relative error of percentiles is at most 1/32 (approx. 3%) across the whole range of long values. Recording
+ * a value is a single atomic increment (plus contention-free adders for count and sum), thus it can be called
+ * concurrently from insertion threads without locking.
+ *
+ * @author schroeder
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int NO_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NO_BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder total = new LongAdder();
+
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong max = new AtomicLong(0);
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        return (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index == NO_BUCKETS - 1) return Long.MAX_VALUE;
+        return bucketLowerBound(index + 1) - 1;
+    }
+
+    /**
+     * Records the specified value. Negative values (e.g. caused by a non-monotonic clock) are recorded as 0.
+     *
+     * @param value value to be recorded
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        total.add(value);
+        long currentMin = min.get();
+        while (value < currentMin && !min.compareAndSet(currentMin, value)) currentMin = min.get();
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) currentMax = max.get();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return sum of values
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public double getMean() {
+        long n = getCount();
+        if (n == 0) return 0.;
+        return (double) getTotal() / n;
+    }
+
+    public long getMin() {
+        long m = min.get();
+        return m == Long.MAX_VALUE ? 0 : m;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which the specified percentage of recorded values falls, i.e. the upper bound of the
+     * bucket that contains the percentile (but never more than the max value recorded).
+     *
+     * @param percentile percentile in [0,100]
+     * @return value at percentile, or 0 if no value has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("percentile must be in [0,100]");
+        long n = 0;
+        for (int i = 0; i < NO_BUCKETS; i++) n += counts.get(i);
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100. * n));
+        long seen = 0;
+        for (int i = 0; i < NO_BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(bucketUpperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    public int getNoBuckets() {
+        return NO_BUCKETS;
+    }
+
+    public long getBucketCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    public long getBucketLowerBound(int bucket) {
+        return bucketLowerBound(bucket);
+    }
+
+    public long getBucketUpperBound(int bucket) {
+        return bucketUpperBound(bucket);
+    }
+
+    /**
+     * Resets all buckets. Values recorded concurrently might partly survive the reset.
+     */
+    public void reset() {
+        for (int i = 0; i < NO_BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        total.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "[count=" + getCount() + "][mean=" + getMean() + "][p50=" + getValueAtPercentile(50) + "][p99="
+            + getValueAtPercentile(99) + "][max=" + getMax() + "]";
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * Logs a summary line per strategy, i.e. iterations, improvements, CPU time spent per improvement and the mean and
+ * 99th percentile of each phase in microseconds.
+ *
+ * @author schroeder
+ */
+public class LoggingMetricsExporter implements MetricsExporter {
+
+    private static Logger logger = LoggerFactory.getLogger(LoggingMetricsExporter.class);
+
+    @Override
+    public void export(AlgorithmMetrics metrics) {
+        for (StrategyMetrics strategy : metrics.getAllStrategyMetrics()) {
+            if (strategy.getNoIterations() == 0 && strategy.getNoInsertionEvaluations() == 0) continue;
+            logger.info(toString(strategy));
+        }
+    }
+
+    static String toString(StrategyMetrics strategy) {
+        StringBuilder b = new StringBuilder();
+        b.append("[strategy=").append(strategy.getStrategyId()).append("]");
+        b.append("[iterations=").append(strategy.getNoIterations()).append("]");
+        b.append("[accepted=").append(strategy.getNoAccepted()).append("]");
+        b.append("[improvements=").append(strategy.getNoImprovements()).append("]");
+        b.append("[improvement=").append(round(strategy.getImprovement())).append("]");
+        double millis = strategy.getTime(AlgorithmMetrics.Phase.ITERATION).getTotal() / 1e6;
+        b.append("[timeInMs=").append(round(millis)).append("]");
+        if (strategy.getImprovement() > 0) {
+            b.append("[improvementPerMs=").append(round(strategy.getImprovement() / millis)).append("]");
+        }
+        for (AlgorithmMetrics.Phase phase : AlgorithmMetrics.Phase.values()) {
+            Histogram h = strategy.getTime(phase);
+            if (h.getCount() == 0) continue;
+            b.append("[").append(phase.toString().toLowerCase()).append("InMicros=")
+                .append(round(h.getMean() / 1e3)).append("/").append(round(h.getValueAtPercentile(99) / 1e3)).append("]");
+        }
+        b.append("[insertionEvaluations=").append(strategy.getNoInsertionEvaluations()).append("]");
+        b.append("[activityEvaluations=").append(strategy.getNoActivityEvaluations()).append("]");
+        for (Map.Entry<Class<?>, Long> e : strategy.getConstraintRejections().entrySet()) {
+            b.append("[rejectedBy").append(e.getKey().getSimpleName()).append("=").append(e.getValue()).append("]");
+        }
+        if (strategy.getNoGranularEvaluatedPositions() + strategy.getNoGranularSkippedPositions() > 0) {
+            b.append("[granularSkipRate=").append(round(strategy.getGranularSkipRate())).append("]");
+        }
+        if (strategy.getAllocatedBytes().getCount() > 0) {
+            b.append("[allocatedKbPerIteration=").append(round(strategy.getAllocatedBytes().getMean() / 1024.)).append("]");
+        }
+        return b.toString();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.) / 100.;
+    }
+
+}
@@ -15,37 +15,16 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
-package com.graphhopper.jsprit.core.algorithm.recreate;
-
-import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+package com.graphhopper.jsprit.core.algorithm.metrics;
 
 /**
- * Created by schroeder on 15/10/15.
+ * Exports algorithm metrics, e.g. to a log or a monitoring system. Exporters are called by
+ * {@link AlgorithmMetrics#export()}, which the algorithm calls when it ends.
+ *
+ * @author schroeder
  */
-class VersionedInsertionData {
-
-    private InsertionData iData;
-
-    private VehicleRoute route;
-
-    private int version;
-
-    public VersionedInsertionData(InsertionData iData, int version, VehicleRoute route) {
-        this.iData = iData;
-        this.version = version;
-        this.route = route;
-    }
-
-    public InsertionData getiData() {
-        return iData;
-    }
+public interface MetricsExporter {
 
-    public int getVersion() {
-        return version;
-    }
+    void export(AlgorithmMetrics metrics);
 
-    public VehicleRoute getRoute() {
-        return route;
-    }
 }
@@ -0,0 +1,232 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics recorded while a single search strategy was running, i.e. timings per phase, iterations, improvements of
+ * the best solution, insertion evaluations, constraint rejections and insertion positions skipped by granular
+ * insertion.
+ * <p>
+ * <p>All counters are safe for concurrent updates.
+ *
+ * @author schroeder
+ */
+public class StrategyMetrics {
+
+    private final String strategyId;
+
+    private final Histogram[] phaseTimes;
+
+    private final Histogram allocatedBytes = new Histogram();
+
+    private final LongAdder noIterations = new LongAdder();
+
+    private final LongAdder noAccepted = new LongAdder();
+
+    private final LongAdder noImprovements = new LongAdder();
+
+    private final DoubleAdder improvement = new DoubleAdder();
+
+    private final LongAdder noInsertionEvaluations = new LongAdder();
+
+    private final LongAdder noActivityEvaluations = new LongAdder();
+
+    private final ConcurrentHashMap<Class<?>, LongAdder> constraintRejections = new ConcurrentHashMap<>();
+
+    private final LongAdder noGranularEvaluatedPositions = new LongAdder();
+
+    private final LongAdder noGranularSkippedPositions = new LongAdder();
+
+    StrategyMetrics(String strategyId) {
+        this.strategyId = strategyId;
+        phaseTimes = new Histogram[AlgorithmMetrics.Phase.values().length];
+        for (int i = 0; i < phaseTimes.length; i++) phaseTimes[i] = new Histogram();
+    }
+
+    public String getStrategyId() {
+        return strategyId;
+    }
+
+    /**
+     * Returns the histogram of nanoseconds spent in the specified phase (one value per call).
+     *
+     * @param phase phase
+     * @return histogram of nanoseconds
+     */
+    public Histogram getTime(AlgorithmMetrics.Phase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * Returns the histogram of bytes allocated per iteration by the algorithm thread. It is empty if the JVM does not
+     * support measuring thread allocations.
+     *
+     * @return histogram of allocated bytes
+     */
+    public Histogram getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getNoIterations() {
+        return noIterations.sum();
+    }
+
+    public long getNoAccepted() {
+        return noAccepted.sum();
+    }
+
+    /**
+     * Returns the number of iterations that found a new best solution.
+     *
+     * @return number of improvements
+     */
+    public long getNoImprovements() {
+        return noImprovements.sum();
+    }
+
+    /**
+     * Returns the sum of cost reductions of the best solution found by this strategy.
+     *
+     * @return total improvement
+     */
+    public double getImprovement() {
+        return improvement.sum();
+    }
+
+    /**
+     * Returns the number of job insertions evaluated on a route, i.e. the number of job-route combinations that have
+     * been checked against route level constraints.
+     *
+     * @return number of insertion evaluations
+     */
+    public long getNoInsertionEvaluations() {
+        return noInsertionEvaluations.sum();
+    }
+
+    /**
+     * Returns the number of insertion positions checked against activity level constraints.
+     *
+     * @return number of activity evaluations
+     */
+    public long getNoActivityEvaluations() {
+        return noActivityEvaluations.sum();
+    }
+
+    /**
+     * Returns the number of rejections per constraint class.
+     *
+     * @return map of constraint class to number of rejections
+     */
+    public Map<Class<?>, Long> getConstraintRejections() {
+        Map<Class<?>, Long> rejections = new HashMap<>();
+        for (Map.Entry<Class<?>, LongAdder> e : constraintRejections.entrySet()) {
+            rejections.put(e.getKey(), e.getValue().sum());
+        }
+        return Collections.unmodifiableMap(rejections);
+    }
+
+    /**
+     * Returns the number of insertion positions granular insertion has let through to be evaluated.
+     *
+     * @return number of evaluated positions
+     */
+    public long getNoGranularEvaluatedPositions() {
+        return noGranularEvaluatedPositions.sum();
+    }
+
+    /**
+     * Returns the number of insertion positions granular insertion has skipped.
+     *
+     * @return number of skipped positions
+     */
+    public long getNoGranularSkippedPositions() {
+        return noGranularSkippedPositions.sum();
+    }
+
+    /**
+     * Returns the share of insertion positions skipped by granular insertion.
+     *
+     * @return skip rate between 0 and 1, or 0 if granular insertion has not decided on any position
+     */
+    public double getGranularSkipRate() {
+        long skipped = noGranularSkippedPositions.sum();
+        long total = skipped + noGranularEvaluatedPositions.sum();
+        if (total == 0) return 0.;
+        return (double) skipped / (double) total;
+    }
+
+    void recordTime(AlgorithmMetrics.Phase phase, long nanos) {
+        phaseTimes[phase.ordinal()].record(nanos);
+    }
+
+    void recordIteration(long nanos, long allocatedBytes, boolean accepted, double improvement) {
+        noIterations.increment();
+        phaseTimes[AlgorithmMetrics.Phase.ITERATION.ordinal()].record(nanos);
+        if (allocatedBytes >= 0) this.allocatedBytes.record(allocatedBytes);
+        if (accepted) noAccepted.increment();
+        if (improvement > 0) {
+            noImprovements.increment();
+            this.improvement.add(improvement);
+        }
+    }
+
+    void recordInsertionEvaluation() {
+        noInsertionEvaluations.increment();
+    }
+
+    void recordActivityEvaluation() {
+        noActivityEvaluations.increment();
+    }
+
+    void recordConstraintRejection(Class<?> constraintClass) {
+        LongAdder counter = constraintRejections.get(constraintClass);
+        if (counter == null) {
+            LongAdder newCounter = new LongAdder();
+            counter = constraintRejections.putIfAbsent(constraintClass, newCounter);
+            if (counter == null) counter = newCounter;
+        }
+        counter.increment();
+    }
+
+    void recordGranularPosition(boolean skipped) {
+        if (skipped) noGranularSkippedPositions.increment();
+        else noGranularEvaluatedPositions.increment();
+    }
+
+    void reset() {
+        for (Histogram h : phaseTimes) h.reset();
+        allocatedBytes.reset();
+        noIterations.reset();
+        noAccepted.reset();
+        noImprovements.reset();
+        improvement.reset();
+        noInsertionEvaluations.reset();
+        noActivityEvaluations.reset();
+        constraintRejections.clear();
+        noGranularEvaluatedPositions.reset();
+        noGranularSkippedPositions.reset();
+    }
+
+}
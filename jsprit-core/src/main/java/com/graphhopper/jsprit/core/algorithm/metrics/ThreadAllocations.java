@@ -0,0 +1,59 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the bytes allocated by the current thread if the JVM supports it (HotSpot and derivatives do via
+ * com.sun.management.ThreadMXBean).
+ */
+class ThreadAllocations {
+
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    ThreadAllocations() {
+        threadBean = lookup();
+    }
+
+    private static com.sun.management.ThreadMXBean lookup() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) return null;
+            return sunBean;
+        } catch (LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+    boolean isSupported() {
+        return threadBean != null;
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, or -1 if not supported
+     */
+    long getAllocatedBytes() {
+        if (threadBean == null) return -1;
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+}
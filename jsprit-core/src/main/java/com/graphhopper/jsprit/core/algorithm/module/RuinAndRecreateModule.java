@@ -19,6 +19,7 @@ package com.graphhopper.jsprit.core.algorithm.module;
 
 import com.graphhopper.jsprit.core.algorithm.SearchStrategyModule;
 import com.graphhopper.jsprit.core.algorithm.listener.SearchStrategyModuleListener;
+import com.graphhopper.jsprit.core.algorithm.metrics.AlgorithmMetrics;
 import com.graphhopper.jsprit.core.algorithm.recreate.InsertionStrategy;
 import com.graphhopper.jsprit.core.algorithm.recreate.listener.InsertionListener;
 import com.graphhopper.jsprit.core.algorithm.ruin.RuinStrategy;
@@ -43,6 +44,8 @@ public class RuinAndRecreateModule implements SearchStrategyModule {
 
     private double proportionOfUnassignedJobsToBeReinserted = 1d;
 
+    private AlgorithmMetrics metrics;
+
     public RuinAndRecreateModule(String moduleName, InsertionStrategy insertion, RuinStrategy ruin) {
         super();
         this.insertion = insertion;
@@ -77,9 +80,24 @@ public class RuinAndRecreateModule implements SearchStrategyModule {
         this.proportionOfUnassignedJobsToBeReinserted = proportionOfUnassignedJobsToBeReinserted;
     }
 
+    /**
+     * Sets the metrics the time spent in ruin and recreate is recorded in. Null disables the recording.
+     *
+     * @param metrics metrics to record in
+     */
+    public void setMetrics(AlgorithmMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     public VehicleRoutingProblemSolution runAndGetSolution(VehicleRoutingProblemSolution previousVrpSolution) {
+        long time = metrics == null ? 0L : System.nanoTime();
         Collection<Job> ruinedJobs = ruin.ruin(previousVrpSolution.getRoutes());
+        if (metrics != null) {
+            long now = System.nanoTime();
+            metrics.recordTime(AlgorithmMetrics.Phase.RUIN, now - time);
+            time = now;
+        }
         Set<Job> ruinedJobSet = new HashSet<>(ruinedJobs);
         List<Job> stillUnassignedInThisIteration = new ArrayList<>();
         if (previousVrpSolution.getUnassignedJobs().size() < minUnassignedJobsToBeReinserted) {
@@ -99,6 +117,7 @@ public class RuinAndRecreateModule implements SearchStrategyModule {
         previousVrpSolution.getUnassignedJobs().clear();
         previousVrpSolution.getUnassignedJobs().addAll(unassignedJobs);
         previousVrpSolution.getUnassignedJobs().addAll(stillUnassignedInThisIteration);
+        if (metrics != null) metrics.recordTime(AlgorithmMetrics.Phase.RECREATE, System.nanoTime() - time);
         return previousVrpSolution;
 
     }
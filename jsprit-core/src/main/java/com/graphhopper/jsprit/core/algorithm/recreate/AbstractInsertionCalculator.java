@@ -18,6 +18,7 @@
 
 package com.graphhopper.jsprit.core.algorithm.recreate;
 
+import com.graphhopper.jsprit.core.algorithm.metrics.AlgorithmMetrics;
 import com.graphhopper.jsprit.core.problem.constraint.ConstraintManager;
 import com.graphhopper.jsprit.core.problem.constraint.HardActivityConstraint;
 import com.graphhopper.jsprit.core.problem.constraint.HardActivityConstraint.ConstraintsStatus;
@@ -36,8 +37,11 @@ import java.util.List;
 abstract class AbstractInsertionCalculator implements JobInsertionCostsCalculator {
 
     InsertionData checkRouteContraints(JobInsertionContext insertionContext, ConstraintManager constraintManager) {
+        AlgorithmMetrics metrics = constraintManager.getMetrics();
+        if (metrics != null) metrics.recordInsertionEvaluation();
         for (HardRouteConstraint hardRouteConstraint : constraintManager.getHardRouteConstraints()) {
             if (!hardRouteConstraint.fulfilled(insertionContext)) {
+                if (metrics != null) metrics.recordConstraintRejection(hardRouteConstraint.getClass());
                 InsertionData emptyInsertionData = new InsertionData.NoInsertionFound();
                 emptyInsertionData.addFailedConstrainName(hardRouteConstraint.getClass().getSimpleName());
                 return emptyInsertionData;
@@ -47,10 +51,13 @@ abstract class AbstractInsertionCalculator implements JobInsertionCostsCalculato
     }
 
     ConstraintsStatus fulfilled(JobInsertionContext iFacts, TourActivity prevAct, TourActivity newAct, TourActivity nextAct, double prevActDepTime, Collection<HardConstraint> failedActivityConstraints, ConstraintManager constraintManager) {
+        AlgorithmMetrics metrics = constraintManager.getMetrics();
+        if (metrics != null) metrics.recordActivityEvaluation();
         ConstraintsStatus notFulfilled = null;
         List<HardConstraint> failed = new ArrayList<>();
         for (HardActivityConstraint c : constraintManager.getCriticalHardActivityConstraints()) {
             ConstraintsStatus status = c.fulfilled(iFacts, prevAct, newAct, nextAct, prevActDepTime);
+            if (metrics != null && !status.equals(ConstraintsStatus.FULFILLED)) metrics.recordConstraintRejection(c.getClass());
             if (status.equals(ConstraintsStatus.NOT_FULFILLED_BREAK)) {
                 failedActivityConstraints.add(c);
                 return status;
@@ -68,6 +75,7 @@ abstract class AbstractInsertionCalculator implements JobInsertionCostsCalculato
 
         for (HardActivityConstraint c : constraintManager.getHighPrioHardActivityConstraints()) {
             ConstraintsStatus status = c.fulfilled(iFacts, prevAct, newAct, nextAct, prevActDepTime);
+            if (metrics != null && !status.equals(ConstraintsStatus.FULFILLED)) metrics.recordConstraintRejection(c.getClass());
             if (status.equals(ConstraintsStatus.NOT_FULFILLED_BREAK)) {
                 failedActivityConstraints.add(c);
                 return status;
@@ -85,6 +93,7 @@ abstract class AbstractInsertionCalculator implements JobInsertionCostsCalculato
 
         for (HardActivityConstraint constraint : constraintManager.getLowPrioHardActivityConstraints()) {
             ConstraintsStatus status = constraint.fulfilled(iFacts, prevAct, newAct, nextAct, prevActDepTime);
+            if (metrics != null && !status.equals(ConstraintsStatus.FULFILLED)) metrics.recordConstraintRejection(constraint.getClass());
             if (status.equals(ConstraintsStatus.NOT_FULFILLED_BREAK) || status.equals(ConstraintsStatus.NOT_FULFILLED)) {
                 failedActivityConstraints.add(constraint);
                 return status;
@@ -19,6 +19,7 @@
 package com.graphhopper.jsprit.core.algorithm.recreate;
 
 
+import com.graphhopper.jsprit.core.algorithm.CancellationToken;
 import com.graphhopper.jsprit.core.algorithm.recreate.listener.InsertionListener;
 import com.graphhopper.jsprit.core.algorithm.recreate.listener.InsertionListeners;
 import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
@@ -75,6 +76,8 @@ public abstract class AbstractInsertionStrategy implements InsertionStrategy {
 
     protected VehicleRoutingProblem vrp;
 
+    private CancellationToken cancellationToken;
+
     public AbstractInsertionStrategy(VehicleRoutingProblem vrp) {
         this.insertionsListeners = new InsertionListeners();
         this.vrp = vrp;
@@ -85,6 +88,24 @@ public abstract class AbstractInsertionStrategy implements InsertionStrategy {
         this.random = random;
     }
 
+    /**
+     * Sets the token that is checked before each job is inserted or evaluated. Once it is cancelled, the remaining jobs
+     * are returned as unassigned.
+     *
+     * @param cancellationToken token to check, or null
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    protected boolean isCancelled() {
+        return cancellationToken != null && cancellationToken.isCancelled();
+    }
+
+    protected CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
     @Override
     public Collection<Job> insertJobs(Collection<VehicleRoute> vehicleRoutes, Collection<Job> unassignedJobs) {
         insertionsListeners.informInsertionStarts(vehicleRoutes, unassignedJobs);
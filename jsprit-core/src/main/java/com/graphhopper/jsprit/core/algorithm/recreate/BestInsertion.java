@@ -67,7 +67,12 @@ public final class BestInsertion extends AbstractInsertionStrategy {
         List<Job> unassignedJobList = new ArrayList<Job>(unassignedJobs);
         Collections.shuffle(unassignedJobList, random);
         Collections.sort(unassignedJobList, new AccordingToPriorities());
-        for (Job unassignedJob : unassignedJobList) {
+        for (int i = 0; i < unassignedJobList.size(); i++) {
+            if (isCancelled()) {
+                badJobs.addAll(unassignedJobList.subList(i, unassignedJobList.size()));
+                break;
+            }
+            Job unassignedJob = unassignedJobList.get(i);
             Insertion bestInsertion = null;
             InsertionData empty = new InsertionData.NoInsertionFound();
             double bestInsertionCost = Double.MAX_VALUE;
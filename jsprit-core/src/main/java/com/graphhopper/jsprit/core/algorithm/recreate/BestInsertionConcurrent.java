@@ -18,80 +18,113 @@
 package com.graphhopper.jsprit.core.algorithm.recreate;
 
 import com.graphhopper.jsprit.core.algorithm.recreate.InsertionData.NoInsertionFound;
-import com.graphhopper.jsprit.core.algorithm.recreate.listener.InsertionListeners;
+import com.graphhopper.jsprit.core.algorithm.recreate.listener.InsertionListener;
 import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
-import com.graphhopper.jsprit.core.problem.driver.Driver;
+import com.graphhopper.jsprit.core.problem.constraint.DependencyType;
 import com.graphhopper.jsprit.core.problem.job.Job;
 import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
 import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.concurrent.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 
 /**
+ * Best insertion that evaluates insertion costs concurrently.
+ * <p>
+ * <p>Instead of evaluating one job at a time against all routes, the insertion costs of all unassigned jobs are calculated
+ * in one parallel pass and memorized per job and route together with the version of the route. Once a job has been inserted,
+ * only the route that has changed is re-evaluated, again for all remaining jobs in one parallel pass. Jobs whose insertion
+ * depends on other routes (see {@link #setDependencyTypes(DependencyType[])}) are re-evaluated for all routes. Insertions
+ * that employ another vehicle are re-evaluated if the fleet has changed meanwhile.
+ * <p>
+ * <p>If insertion costs depend on the progress of the insertion, i.e. if a {@link SolutionCompletenessRatio} such as
+ * {@link IncreasingAbsoluteFixedCosts}, a {@link ConfigureLocalActivityInsertionCalculator} or a
+ * {@link DellAmicoFixCostCalculator} is registered as listener, memorized costs of unchanged routes become stale with
+ * every insertion. Then all routes are re-evaluated after each insertion.
+ * <p>
+ * <p>Insertion costs are evaluated concurrently while the stateManager is in its read phase, i.e. constraints must not
+ * write states. Data to be memorized during evaluation belongs into
+ * {@link com.graphhopper.jsprit.core.algorithm.state.StateManager#getScratchStates()}.
+ * <p>
+ * <p>Evaluations are run by an {@link ExecutionBackend}, which is asked per pass which backend to run it on, i.e. small
+ * passes can be run inline (see {@link ExecutionBackends#auto()}).
+ *
  * @author stefan schroeder
  */
 
 public final class BestInsertionConcurrent extends AbstractInsertionStrategy {
 
-    static class Batch {
-        List<VehicleRoute> routes = new ArrayList<VehicleRoute>();
+    /**
+     * Memorizes the insertion data of an unassigned job per route and the version of the route it has been calculated for.
+     */
+    static class JobInsertions {
 
-    }
+        final Job job;
 
-    class Insertion {
+        InsertionData[] insertionData;
 
-        private final VehicleRoute route;
+        int[] routeVersions;
 
-        private final InsertionData insertionData;
+        int[] fleetVersions;
 
-        public Insertion(VehicleRoute vehicleRoute, InsertionData insertionData) {
-            super();
-            this.route = vehicleRoute;
-            this.insertionData = insertionData;
-        }
+        VehicleRoute newRoute;
+
+        InsertionData newRouteInsertionData;
+
+        int newRouteFleetVersion = -1;
 
-        public VehicleRoute getRoute() {
-            return route;
+        JobInsertions(Job job, int noRoutes) {
+            this.job = job;
+            insertionData = new InsertionData[noRoutes];
+            routeVersions = new int[noRoutes];
+            fleetVersions = new int[noRoutes];
         }
 
-        public InsertionData getInsertionData() {
-            return insertionData;
+        void ensureCapacity(int noRoutes) {
+            if (noRoutes <= insertionData.length) return;
+            int capacity = Math.max(noRoutes, insertionData.length * 2);
+            insertionData = Arrays.copyOf(insertionData, capacity);
+            routeVersions = Arrays.copyOf(routeVersions, capacity);
+            fleetVersions = Arrays.copyOf(fleetVersions, capacity);
         }
 
     }
 
     private static Logger logger = LoggerFactory.getLogger(BestInsertionConcurrent.class);
 
-    private final static double NO_NEW_DEPARTURE_TIME_YET = -12345.12345;
+    private JobInsertionCostsCalculator bestInsertionCostCalculator;
 
-    private final static Vehicle NO_NEW_VEHICLE_YET = null;
+    private final ExecutionBackend executionBackend;
 
-    private final static Driver NO_NEW_DRIVER_YET = null;
+    private DependencyType[] dependencyTypes = null;
 
-    private InsertionListeners insertionsListeners;
+    private List<VehicleRoute> routeList;
 
-    private JobInsertionCostsCalculator bestInsertionCostCalculator;
+    private int[] routeVersions;
 
-    private int nuOfBatches;
+    private int fleetVersion;
 
-    private ExecutorCompletionService<Insertion> completionService;
+    private boolean costsDependOnProgress;
 
     public BestInsertionConcurrent(JobInsertionCostsCalculator jobInsertionCalculator, ExecutorService executorService, int nuOfBatches, VehicleRoutingProblem vehicleRoutingProblem) {
+        this(jobInsertionCalculator, ExecutionBackends.of(executorService, nuOfBatches), vehicleRoutingProblem);
+    }
+
+    public BestInsertionConcurrent(JobInsertionCostsCalculator jobInsertionCalculator, ExecutionBackend executionBackend, VehicleRoutingProblem vehicleRoutingProblem) {
         super(vehicleRoutingProblem);
-        this.insertionsListeners = new InsertionListeners();
-        this.nuOfBatches = nuOfBatches;
         bestInsertionCostCalculator = jobInsertionCalculator;
-        completionService = new ExecutorCompletionService<Insertion>(executorService);
+        this.executionBackend = executionBackend;
         logger.debug("initialise {}", this);
     }
 
+    public void setDependencyTypes(DependencyType[] dependencyTypes) {
+        this.dependencyTypes = dependencyTypes;
+    }
+
     @Override
     public String toString() {
         return "[name=bestInsertion]";
@@ -103,101 +136,151 @@ public final class BestInsertionConcurrent extends AbstractInsertionStrategy {
         List<Job> unassignedJobList = new ArrayList<Job>(unassignedJobs);
         Collections.shuffle(unassignedJobList, random);
         Collections.sort(unassignedJobList, new AccordingToPriorities());
-        List<Batch> batches = distributeRoutes(vehicleRoutes, nuOfBatches);
-        List<String> failedConstraintNames = new ArrayList<>();
-        for (final Job unassignedJob : unassignedJobList) {
-            Insertion bestInsertion = null;
-            double bestInsertionCost = Double.MAX_VALUE;
-            for (final Batch batch : batches) {
-                completionService.submit(new Callable<Insertion>() {
-
-                    @Override
-                    public Insertion call() throws Exception {
-                        return getBestInsertion(batch, unassignedJob);
-                    }
-
-                });
-            }
-            try {
-                for (int i = 0; i < batches.size(); i++) {
-                    Future<Insertion> futureIData = completionService.take();
-                    Insertion insertion = futureIData.get();
-                    if (insertion.insertionData instanceof NoInsertionFound) {
-                        failedConstraintNames.addAll(insertion.getInsertionData().getFailedConstraintNames());
-                        continue;
-                    }
-                    if (insertion.getInsertionData().getInsertionCost() < bestInsertionCost) {
-                        bestInsertion = insertion;
-                        bestInsertionCost = insertion.getInsertionData().getInsertionCost();
-                    }
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            } catch (ExecutionException e) {
-                throw new RuntimeException(e);
-            }
-            VehicleRoute newRoute = VehicleRoute.emptyRoute();
-            InsertionData newIData = bestInsertionCostCalculator.getInsertionData(newRoute, unassignedJob, NO_NEW_VEHICLE_YET, NO_NEW_DEPARTURE_TIME_YET, NO_NEW_DRIVER_YET, bestInsertionCost);
-            if (newIData.getInsertionCost() < bestInsertionCost) {
-                bestInsertion = new Insertion(newRoute, newIData);
-                vehicleRoutes.add(newRoute);
-                batches.get(random.nextInt(batches.size())).routes.add(newRoute);
+        routeList = new ArrayList<>(vehicleRoutes);
+        routeVersions = new int[routeList.size() + 1];
+        fleetVersion = 0;
+        costsDependOnProgress = costsDependOnProgress();
+        List<JobInsertions> jobInsertionsList = new ArrayList<>(unassignedJobList.size());
+        for (Job job : unassignedJobList) {
+            jobInsertionsList.add(new JobInsertions(job, routeList.size() + 1));
+        }
+        update(jobInsertionsList, null);
+        for (int i = 0; i < jobInsertionsList.size(); i++) {
+            if (isCancelled()) {
+                for (JobInsertions remaining : jobInsertionsList.subList(i, jobInsertionsList.size())) badJobs.add(remaining.job);
+                break;
             }
+            JobInsertions jobInsertions = jobInsertionsList.get(i);
+            Job unassignedJob = jobInsertions.job;
+            List<String> failedConstraintNames = new ArrayList<>();
+            Insertion bestInsertion = getBestInsertion(jobInsertions, failedConstraintNames);
             if (bestInsertion == null) {
                 badJobs.add(unassignedJob);
                 markUnassigned(unassignedJob, failedConstraintNames);
+                continue;
+            }
+            VehicleRoute route = bestInsertion.getRoute();
+            if (route == jobInsertions.newRoute) {
+                vehicleRoutes.add(route);
+                routeList.add(route);
+                if (routeVersions.length < routeList.size()) routeVersions = Arrays.copyOf(routeVersions, routeList.size() * 2);
+            }
+            Vehicle vehicleBefore = route.getVehicle();
+            insertJob(unassignedJob, bestInsertion.getInsertionData(), route);
+            routeVersions[routeList.indexOf(route)]++;
+            if (route.getVehicle() != vehicleBefore) fleetVersion++;
+            if (i + 1 < jobInsertionsList.size()) {
+                update(jobInsertionsList.subList(i + 1, jobInsertionsList.size()), costsDependOnProgress ? null : route);
             }
-            else insertJob(unassignedJob, bestInsertion.getInsertionData(), bestInsertion.getRoute());
         }
+        routeList = null;
         return badJobs;
     }
 
+    private boolean costsDependOnProgress() {
+        for (InsertionListener listener : getListeners()) {
+            if (listener instanceof SolutionCompletenessRatio || listener instanceof ConfigureLocalActivityInsertionCalculator
+                || listener instanceof DellAmicoFixCostCalculator) return true;
+        }
+        return false;
+    }
 
-    private Insertion getBestInsertion(Batch batch, Job unassignedJob) {
+    private Insertion getBestInsertion(JobInsertions jobInsertions, List<String> failedConstraintNames) {
         Insertion bestInsertion = null;
-        InsertionData empty = new InsertionData.NoInsertionFound();
         double bestInsertionCost = Double.MAX_VALUE;
-        for (VehicleRoute vehicleRoute : batch.routes) {
-            InsertionData iData = bestInsertionCostCalculator.getInsertionData(vehicleRoute, unassignedJob, NO_NEW_VEHICLE_YET, NO_NEW_DEPARTURE_TIME_YET, NO_NEW_DRIVER_YET, bestInsertionCost);
+        for (int routeIndex = 0; routeIndex < routeList.size(); routeIndex++) {
+            VehicleRoute route = routeList.get(routeIndex);
+            InsertionData iData = jobInsertions.insertionData[routeIndex];
+            if (iData == null || jobInsertions.routeVersions[routeIndex] != routeVersions[routeIndex]) {
+                iData = calculate(jobInsertions, routeIndex);
+            } else if (iData.getSelectedVehicle() != route.getVehicle() && jobInsertions.fleetVersions[routeIndex] != fleetVersion) {
+                //the vehicle to switch to might not be available anymore
+                iData = calculate(jobInsertions, routeIndex);
+            }
             if (iData instanceof NoInsertionFound) {
-                empty.getFailedConstraintNames().addAll(iData.getFailedConstraintNames());
+                failedConstraintNames.addAll(iData.getFailedConstraintNames());
                 continue;
             }
             if (iData.getInsertionCost() < bestInsertionCost) {
-                bestInsertion = new Insertion(vehicleRoute, iData);
+                bestInsertion = new Insertion(route, iData);
                 bestInsertionCost = iData.getInsertionCost();
             }
         }
-        if (bestInsertion == null) return new Insertion(null, empty);
+        if (jobInsertions.newRouteInsertionData == null || jobInsertions.newRouteFleetVersion != fleetVersion) {
+            calculateNewRoute(jobInsertions);
+        }
+        InsertionData newIData = jobInsertions.newRouteInsertionData;
+        if (newIData instanceof NoInsertionFound) {
+            failedConstraintNames.addAll(newIData.getFailedConstraintNames());
+        } else if (newIData.getInsertionCost() < bestInsertionCost) {
+            bestInsertion = new Insertion(jobInsertions.newRoute, newIData);
+        }
         return bestInsertion;
     }
 
-    private List<Batch> distributeRoutes(Collection<VehicleRoute> vehicleRoutes, int nuOfBatches) {
-        List<Batch> batches = new ArrayList<Batch>();
-        for (int i = 0; i < nuOfBatches; i++) batches.add(new Batch());
-        /*
-         * if route.size < nuOfBatches add as much routes as empty batches are available
-		 * else add one empty route anyway
-		 */
-        if (vehicleRoutes.size() < nuOfBatches) {
-            int nOfNewRoutes = nuOfBatches - vehicleRoutes.size();
-            for (int i = 0; i < nOfNewRoutes; i++) {
-                vehicleRoutes.add(VehicleRoute.emptyRoute());
+    /**
+     * Re-calculates insertion data of the specified jobs in one parallel pass. If modifiedRoute is null, all routes are
+     * calculated. Otherwise only the modified route, unless a job depends on other routes or the fleet has changed.
+     */
+    private void update(List<JobInsertions> jobInsertionsList, final VehicleRoute modifiedRoute) {
+        final int modifiedRouteIndex = modifiedRoute == null ? -1 : routeList.indexOf(modifiedRoute);
+        //the new route is evaluated as well
+        int noRoutes = modifiedRoute == null ? routeList.size() + 1 : 2;
+        ExecutionBackend backend = executionBackend.select(jobInsertionsList.size(), noRoutes);
+        int batchSize = Math.max(1, (int) Math.ceil(jobInsertionsList.size() / (double) backend.getParallelism()));
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int from = 0; from < jobInsertionsList.size(); from += batchSize) {
+            final List<JobInsertions> batch = jobInsertionsList.subList(from, Math.min(from + batchSize, jobInsertionsList.size()));
+            tasks.add(new Callable<Boolean>() {
+
+                @Override
+                public Boolean call() throws Exception {
+                    for (JobInsertions jobInsertions : batch) {
+                        if (isCancelled()) return false;
+                        update(jobInsertions, modifiedRouteIndex);
+                    }
+                    return true;
+                }
+
+            });
+        }
+        backend.invokeAll(tasks);
+    }
+
+    private void update(JobInsertions jobInsertions, int modifiedRouteIndex) {
+        jobInsertions.ensureCapacity(routeList.size());
+        if (modifiedRouteIndex < 0 || dependsOnOtherRoutes(jobInsertions.job)) {
+            for (int routeIndex = 0; routeIndex < routeList.size(); routeIndex++) {
+                calculate(jobInsertions, routeIndex);
             }
         } else {
-            vehicleRoutes.add(VehicleRoute.emptyRoute());
+            calculate(jobInsertions, modifiedRouteIndex);
         }
-        /*
-         * distribute routes to batches equally
-		 */
-        int count = 0;
-        for (VehicleRoute route : vehicleRoutes) {
-            if (count == nuOfBatches) count = 0;
-            batches.get(count).routes.add(route);
-            count++;
+        if (modifiedRouteIndex < 0 || jobInsertions.newRouteFleetVersion != fleetVersion) {
+            calculateNewRoute(jobInsertions);
         }
-        return batches;
     }
 
+    private boolean dependsOnOtherRoutes(Job job) {
+        if (dependencyTypes == null || dependencyTypes[job.getIndex()] == null) return false;
+        DependencyType dependencyType = dependencyTypes[job.getIndex()];
+        return dependencyType.equals(DependencyType.INTER_ROUTE) || dependencyType.equals(DependencyType.INTRA_ROUTE);
+    }
+
+    private InsertionData calculate(JobInsertions jobInsertions, int routeIndex) {
+        jobInsertions.ensureCapacity(routeIndex + 1);
+        InsertionData iData = bestInsertionCostCalculator.getInsertionData(routeList.get(routeIndex), jobInsertions.job, NO_NEW_VEHICLE_YET, NO_NEW_DEPARTURE_TIME_YET, NO_NEW_DRIVER_YET, Double.MAX_VALUE);
+        jobInsertions.insertionData[routeIndex] = iData;
+        jobInsertions.routeVersions[routeIndex] = routeVersions[routeIndex];
+        jobInsertions.fleetVersions[routeIndex] = fleetVersion;
+        return iData;
+    }
+
+    private void calculateNewRoute(JobInsertions jobInsertions) {
+        VehicleRoute newRoute = VehicleRoute.emptyRoute();
+        jobInsertions.newRoute = newRoute;
+        jobInsertions.newRouteInsertionData = bestInsertionCostCalculator.getInsertionData(newRoute, jobInsertions.job, NO_NEW_VEHICLE_YET, NO_NEW_DEPARTURE_TIME_YET, NO_NEW_DRIVER_YET, Double.MAX_VALUE);
+        jobInsertions.newRouteFleetVersion = fleetVersion;
+    }
 
 }
@@ -0,0 +1,69 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.recreate;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Backend that runs the insertion-cost evaluations of concurrent insertion strategies, e.g. on a thread pool, on a
+ * {@link java.util.concurrent.ForkJoinPool}, on virtual threads or inline in the calling thread.
+ * <p>
+ * <p>Backends can be shared by several insertion strategies and algorithms, thus they must be thread-safe. Whoever
+ * creates a backend closes it, i.e. insertion strategies and algorithms never close the backends they are given.
+ *
+ * @author schroeder
+ * @see ExecutionBackends
+ */
+public interface ExecutionBackend extends AutoCloseable {
+
+    /**
+     * Runs the specified tasks and waits until all of them are completed.
+     *
+     * @param tasks tasks to be run
+     * @param <T>   type of results
+     * @return the results in the order of tasks
+     * @throws RuntimeException if a task fails or the calling thread is interrupted
+     */
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks);
+
+    /**
+     * @return number of tasks that can run at the same time, i.e. the number of batches worth splitting work into
+     */
+    public int getParallelism();
+
+    /**
+     * Returns the backend that should run a pass of evaluations of the specified size. By default, it is this backend.
+     *
+     * @param noJobs   number of jobs to be evaluated
+     * @param noRoutes number of routes each job is evaluated for
+     * @return backend to run the evaluations
+     */
+    default ExecutionBackend select(int noJobs, int noRoutes) {
+        return this;
+    }
+
+    /**
+     * Releases the threads the backend has set up itself, e.g. the executor of {@link ExecutionBackends#virtualThreads()}.
+     * Executors and pools passed in by the caller are left untouched. By default, this does nothing.
+     */
+    @Override
+    default void close() {
+    }
+
+}
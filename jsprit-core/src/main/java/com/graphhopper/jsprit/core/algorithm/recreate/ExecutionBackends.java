@@ -0,0 +1,365 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.recreate;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Factory methods for {@link ExecutionBackend}s.
+ * <p>
+ * <p>Backends run every pass on the threads they are given. Running small passes inline is opt-in, i.e. wrap a backend
+ * with {@link #auto(ExecutionBackend)} or use {@link #auto()}, which runs evaluations on virtual threads if the JVM
+ * supports them (Java 21+), otherwise on the common {@link ForkJoinPool}. Tiny insertions then do not pay any
+ * scheduling overhead.
+ * <p>
+ * <p>Backends that set up threads themselves, i.e. {@link #virtualThreads()} and possibly {@link #auto()}, must be
+ * closed once they are not needed anymore.
+ *
+ * @author schroeder
+ */
+public class ExecutionBackends {
+
+    /**
+     * Default number of insertion evaluations a pass must comprise to be run concurrently by {@link #auto()}.
+     */
+    public static final int DEFAULT_MIN_CONCURRENT_WORKLOAD = 200;
+
+    private static class Inline implements ExecutionBackend {
+
+        private static final Inline INSTANCE = new Inline();
+
+        @Override
+        public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return results;
+        }
+
+        @Override
+        public int getParallelism() {
+            return 1;
+        }
+
+        @Override
+        public String toString() {
+            return "[name=inline]";
+        }
+
+    }
+
+    private static class OnExecutorService implements ExecutionBackend {
+
+        private final ExecutorService executorService;
+
+        private final int parallelism;
+
+        private final String name;
+
+        private final boolean ownsExecutorService;
+
+        OnExecutorService(ExecutorService executorService, int parallelism, String name, boolean ownsExecutorService) {
+            this.executorService = executorService;
+            this.parallelism = parallelism;
+            this.name = name;
+            this.ownsExecutorService = ownsExecutorService;
+        }
+
+        @Override
+        public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            List<T> results = new ArrayList<>(tasks.size());
+            try {
+                for (Callable<T> task : tasks) futures.add(executorService.submit(task));
+                for (Future<T> future : futures) results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted while waiting for tasks", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            } finally {
+                //tasks still pending if waiting failed or was interrupted
+                for (Future<T> future : futures) future.cancel(true);
+            }
+            return results;
+        }
+
+        @Override
+        public void close() {
+            if (ownsExecutorService) executorService.shutdown();
+        }
+
+        @Override
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        @Override
+        public String toString() {
+            return "[name=" + name + "][parallelism=" + parallelism + "]";
+        }
+
+    }
+
+    private static class OnForkJoinPool implements ExecutionBackend {
+
+        //memorizes the exception itself, since fork-join tasks rethrow copies of exceptions thrown in other threads
+        private static class CallableTask<T> extends RecursiveAction {
+
+            private final Callable<T> callable;
+
+            private T result;
+
+            private Exception exception;
+
+            CallableTask(Callable<T> callable) {
+                this.callable = callable;
+            }
+
+            @Override
+            protected void compute() {
+                try {
+                    result = callable.call();
+                } catch (Exception e) {
+                    exception = e;
+                }
+            }
+
+        }
+
+        private final ForkJoinPool pool;
+
+        OnForkJoinPool(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+            final List<CallableTask<T>> forkJoinTasks = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) forkJoinTasks.add(new CallableTask<>(task));
+            //a worker of the pool forks the tasks and helps running them while it waits, others hand them over
+            if (ForkJoinTask.getPool() == pool) {
+                ForkJoinTask.invokeAll(forkJoinTasks);
+            } else {
+                pool.invoke(new RecursiveAction() {
+
+                    @Override
+                    protected void compute() {
+                        ForkJoinTask.invokeAll(forkJoinTasks);
+                    }
+
+                });
+            }
+            List<T> results = new ArrayList<>(forkJoinTasks.size());
+            for (CallableTask<T> task : forkJoinTasks) {
+                if (task.exception instanceof RuntimeException) throw (RuntimeException) task.exception;
+                if (task.exception != null) throw new RuntimeException(task.exception);
+                results.add(task.result);
+            }
+            return results;
+        }
+
+        @Override
+        public int getParallelism() {
+            return pool.getParallelism();
+        }
+
+        @Override
+        public String toString() {
+            return "[name=forkJoin][parallelism=" + pool.getParallelism() + "]";
+        }
+
+    }
+
+    private static class Auto implements ExecutionBackend {
+
+        private final ExecutionBackend concurrentBackend;
+
+        private final int minConcurrentWorkload;
+
+        Auto(ExecutionBackend concurrentBackend, int minConcurrentWorkload) {
+            this.concurrentBackend = concurrentBackend;
+            this.minConcurrentWorkload = minConcurrentWorkload;
+        }
+
+        @Override
+        public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+            return concurrentBackend.invokeAll(tasks);
+        }
+
+        @Override
+        public int getParallelism() {
+            return concurrentBackend.getParallelism();
+        }
+
+        @Override
+        public ExecutionBackend select(int noJobs, int noRoutes) {
+            if (noJobs < 2 || (long) noJobs * noRoutes < minConcurrentWorkload) return Inline.INSTANCE;
+            return concurrentBackend.select(noJobs, noRoutes);
+        }
+
+        @Override
+        public void close() {
+            concurrentBackend.close();
+        }
+
+        @Override
+        public String toString() {
+            return "[name=auto][concurrent=" + concurrentBackend + "][minConcurrentWorkload=" + minConcurrentWorkload + "]";
+        }
+
+    }
+
+    private static volatile Method newVirtualThreadPerTaskExecutor;
+
+    private static volatile boolean virtualThreadsLookedUp = false;
+
+    /**
+     * Returns a backend that runs all tasks one after another in the calling thread.
+     *
+     * @return inline backend
+     */
+    public static ExecutionBackend inline() {
+        return Inline.INSTANCE;
+    }
+
+    /**
+     * Returns a backend that runs tasks on the specified executor service.
+     *
+     * @param executorService executor service
+     * @param parallelism     number of threads of the executor service
+     * @return backend
+     */
+    public static ExecutionBackend of(ExecutorService executorService, int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1. current: " + parallelism);
+        return new OnExecutorService(executorService, parallelism, "executorService", false);
+    }
+
+    /**
+     * Returns a backend that runs tasks on the specified pool. If the calling thread is a worker of the pool (e.g. if
+     * the algorithm itself is run by {@link com.graphhopper.jsprit.core.algorithm.BatchSolver}), it runs tasks as well
+     * while waiting for the others, i.e. the pool is never oversubscribed.
+     *
+     * @param pool fork-join pool
+     * @return backend
+     */
+    public static ExecutionBackend forkJoin(ForkJoinPool pool) {
+        return new OnForkJoinPool(pool);
+    }
+
+    /**
+     * Returns a backend that runs tasks on the common {@link ForkJoinPool}.
+     *
+     * @return backend
+     */
+    public static ExecutionBackend forkJoin() {
+        return forkJoin(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a backend that runs each task on its own virtual thread. The backend sets up its own executor, thus close
+     * it once it is not needed anymore.
+     *
+     * @return backend
+     * @throws IllegalStateException if the JVM does not support virtual threads (Java 21+)
+     */
+    public static ExecutionBackend virtualThreads() {
+        Method factoryMethod = getNewVirtualThreadPerTaskExecutor();
+        if (factoryMethod == null)
+            throw new IllegalStateException("virtual threads are not supported by this jvm (java " + System.getProperty("java.version") + ")");
+        ExecutorService executorService;
+        try {
+            executorService = (ExecutorService) factoryMethod.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot set up virtual threads", e);
+        }
+        return new OnExecutorService(executorService, Runtime.getRuntime().availableProcessors(), "virtualThreads", true);
+    }
+
+    /**
+     * @return true if the JVM supports virtual threads
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return getNewVirtualThreadPerTaskExecutor() != null;
+    }
+
+    /**
+     * Returns a backend that runs small passes of evaluations inline and all others on the specified backend.
+     *
+     * @param concurrentBackend     backend to run passes on that comprise at least minConcurrentWorkload evaluations
+     * @param minConcurrentWorkload min number of evaluations, i.e. number of jobs times number of routes, of a pass
+     *                              to be run concurrently
+     * @return backend
+     */
+    public static ExecutionBackend auto(ExecutionBackend concurrentBackend, int minConcurrentWorkload) {
+        return new Auto(concurrentBackend, minConcurrentWorkload);
+    }
+
+    /**
+     * Returns a backend that runs small passes of evaluations inline and all others on the specified backend.
+     *
+     * @param concurrentBackend backend to run passes on that comprise at least {@link #DEFAULT_MIN_CONCURRENT_WORKLOAD}
+     *                          evaluations
+     * @return backend
+     */
+    public static ExecutionBackend auto(ExecutionBackend concurrentBackend) {
+        return auto(concurrentBackend, DEFAULT_MIN_CONCURRENT_WORKLOAD);
+    }
+
+    /**
+     * Returns a backend that runs small passes of evaluations inline and all others on virtual threads if the JVM
+     * supports them, otherwise on the common {@link ForkJoinPool}. Close it once it is not needed anymore.
+     *
+     * @return backend
+     */
+    public static ExecutionBackend auto() {
+        return auto(isVirtualThreadsSupported() ? virtualThreads() : forkJoin());
+    }
+
+    //looked up by reflection, since jsprit is compiled against java 8
+    private static Method getNewVirtualThreadPerTaskExecutor() {
+        if (!virtualThreadsLookedUp) {
+            synchronized (ExecutionBackends.class) {
+                if (!virtualThreadsLookedUp) {
+                    try {
+                        newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                    } catch (ReflectiveOperationException | RuntimeException e) {
+                        newVirtualThreadPerTaskExecutor = null;
+                    }
+                    virtualThreadsLookedUp = true;
+                }
+            }
+        }
+        return newVirtualThreadPerTaskExecutor;
+    }
+
+    private ExecutionBackends() {
+    }
+
+}
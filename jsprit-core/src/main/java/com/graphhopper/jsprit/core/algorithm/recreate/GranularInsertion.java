@@ -0,0 +1,241 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.recreate;
+
+import com.graphhopper.jsprit.core.algorithm.metrics.AlgorithmMetrics;
+import com.graphhopper.jsprit.core.algorithm.ruin.JobNeighborhoods;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.util.Coordinate;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Restricts the insertion positions that are evaluated by {@link ServiceInsertionCalculator} and
+ * {@link ShipmentInsertionCalculatorFlex} to the granular neighborhood of a job, i.e. a job is only inserted next to
+ * one of its k nearest neighbors (as determined by {@link JobNeighborhoods}) or next to the start or end of a route.
+ * <p>
+ * <p>Additionally, routes can be skipped entirely by a lower bound of the insertion costs that is derived from the
+ * bounding box of the route (see {@link #setRegionLowerBound(double)}).
+ * <p>
+ * <p>Granular insertion is a heuristic, i.e. it might miss the best insertion position. Its skip rate can be
+ * retrieved with {@link #getSkipRate()}, or per search strategy from {@link AlgorithmMetrics} (see
+ * {@link #setMetrics(AlgorithmMetrics)}). Since calculators are shared among insertion threads, counting is thread-safe.
+ *
+ * @author schroeder
+ */
+public class GranularInsertion {
+
+    private final int[][] neighbors;
+
+    private final int noNeighbors;
+
+    private double costPerDistanceUnit = 0.;
+
+    private final LongAdder evaluatedPositions = new LongAdder();
+
+    private final LongAdder skippedPositions = new LongAdder();
+
+    private final LongAdder evaluatedRoutes = new LongAdder();
+
+    private final LongAdder skippedRoutes = new LongAdder();
+
+    private AlgorithmMetrics metrics;
+
+    /**
+     * Memorizes the noNeighbors nearest neighbors of each job of the specified problem.
+     *
+     * @param vrp           vehicle routing problem
+     * @param neighborhoods initialised job neighborhoods
+     * @param noNeighbors   number of neighbors next to which a job is inserted
+     */
+    public GranularInsertion(VehicleRoutingProblem vrp, JobNeighborhoods neighborhoods, int noNeighbors) {
+        if (noNeighbors < 1) throw new IllegalArgumentException("number of neighbors must be at least 1");
+        this.noNeighbors = noNeighbors;
+        int maxIndex = 0;
+        for (Job job : vrp.getJobs().values()) {
+            maxIndex = Math.max(maxIndex, job.getIndex());
+        }
+        neighbors = new int[maxIndex + 1][];
+        int[] buffer = new int[noNeighbors];
+        for (Job job : vrp.getJobs().values()) {
+            Iterator<Job> neighborIterator = neighborhoods.getNearestNeighborsIterator(noNeighbors, job);
+            int size = 0;
+            while (neighborIterator.hasNext() && size < noNeighbors) {
+                buffer[size++] = neighborIterator.next().getIndex();
+            }
+            int[] jobNeighbors = Arrays.copyOf(buffer, size);
+            Arrays.sort(jobNeighbors);
+            neighbors[job.getIndex()] = jobNeighbors;
+        }
+    }
+
+    /**
+     * Enables the route level lower bound. A route is skipped if the detour to reach the job from the bounding box
+     * of the route, multiplied by the specified costs per distance unit, already exceeds the best known insertion
+     * costs.
+     * <p>
+     * <p>The bound is only valid if transport costs are at least costPerDistanceUnit times the euclidean distance of
+     * two locations, and if activity insertion costs do not become negative (e.g. due to reduced waiting times).
+     * Default is 0., i.e. the bound is disabled.
+     *
+     * @param costPerDistanceUnit minimum transport costs per euclidean distance unit
+     * @return this granular insertion
+     */
+    public GranularInsertion setRegionLowerBound(double costPerDistanceUnit) {
+        if (costPerDistanceUnit < 0) throw new IllegalArgumentException("costs per distance unit must not be negative");
+        this.costPerDistanceUnit = costPerDistanceUnit;
+        return this;
+    }
+
+    /**
+     * Records evaluated and skipped positions in the specified metrics as well.
+     *
+     * @param metrics metrics, or null to record nothing
+     * @return this granular insertion
+     */
+    public GranularInsertion setMetrics(AlgorithmMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public int getNoNeighbors() {
+        return noNeighbors;
+    }
+
+    /**
+     * Returns true if inserting the job between prevAct and nextAct should be evaluated, i.e. if one of the
+     * activities is the start or end of the route, belongs to the job itself or belongs to one of its neighbors.
+     *
+     * @param job     job to insert
+     * @param prevAct previous activity
+     * @param nextAct next activity
+     * @return true if position should be evaluated
+     */
+    boolean isPromising(Job job, TourActivity prevAct, TourActivity nextAct) {
+        if (isNeighbor(job, prevAct) || isNeighbor(job, nextAct)) {
+            evaluatedPositions.increment();
+            if (metrics != null) metrics.recordGranularPosition(false);
+            return true;
+        }
+        skippedPositions.increment();
+        if (metrics != null) metrics.recordGranularPosition(true);
+        return false;
+    }
+
+    private boolean isNeighbor(Job job, TourActivity act) {
+        if (!(act instanceof TourActivity.JobActivity)) return true;
+        Job actJob = ((TourActivity.JobActivity) act).getJob();
+        if (actJob == job) return true;
+        int[] jobNeighbors = job.getIndex() < neighbors.length ? neighbors[job.getIndex()] : null;
+        if (jobNeighbors == null) return true;
+        return Arrays.binarySearch(jobNeighbors, actJob.getIndex()) >= 0;
+    }
+
+    /**
+     * Returns true if the route cannot yield an insertion that is cheaper than bestKnownCosts.
+     *
+     * @param route                 route
+     * @param newVehicle            vehicle that serves the route
+     * @param additionalRouteCosts  insertion costs that are independent of the insertion position
+     * @param bestKnownCosts        best known insertion costs
+     * @param jobLocations          locations of the job to insert
+     * @return true if route can be skipped
+     */
+    boolean canSkip(VehicleRoute route, Vehicle newVehicle, double additionalRouteCosts, double bestKnownCosts, Location... jobLocations) {
+        if (costPerDistanceUnit <= 0. || bestKnownCosts == Double.MAX_VALUE) return false;
+        evaluatedRoutes.increment();
+        double[] box = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        if (!extend(box, newVehicle.getStartLocation()) || !extend(box, newVehicle.getEndLocation())) return false;
+        for (TourActivity act : route.getActivities()) {
+            if (!extend(box, act.getLocation())) return false;
+        }
+        double diagonal = Math.hypot(box[2] - box[0], box[3] - box[1]);
+        double lowerBound = 0.;
+        for (Location jobLocation : jobLocations) {
+            if (jobLocation == null || jobLocation.getCoordinate() == null) return false;
+            Coordinate coord = jobLocation.getCoordinate();
+            double dx = Math.max(0., Math.max(box[0] - coord.getX(), coord.getX() - box[2]));
+            double dy = Math.max(0., Math.max(box[1] - coord.getY(), coord.getY() - box[3]));
+            double distanceToBox = Math.hypot(dx, dy);
+            //the detour via a point at distance d from a region with diameter D is at least sqrt(D^2 + 4d^2) - D
+            double detour = Math.sqrt(diagonal * diagonal + 4 * distanceToBox * distanceToBox) - diagonal;
+            //open routes do not return, i.e. the job can be the last stop
+            if (!newVehicle.isReturnToDepot()) detour = Math.min(detour, distanceToBox);
+            lowerBound = Math.max(lowerBound, detour);
+        }
+        if (lowerBound * costPerDistanceUnit + additionalRouteCosts >= bestKnownCosts) {
+            skippedRoutes.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean extend(double[] box, Location location) {
+        if (location == null) return true;
+        Coordinate coord = location.getCoordinate();
+        if (coord == null) return false;
+        box[0] = Math.min(box[0], coord.getX());
+        box[1] = Math.min(box[1], coord.getY());
+        box[2] = Math.max(box[2], coord.getX());
+        box[3] = Math.max(box[3], coord.getY());
+        return true;
+    }
+
+    public long getNoEvaluatedPositions() {
+        return evaluatedPositions.sum();
+    }
+
+    public long getNoSkippedPositions() {
+        return skippedPositions.sum();
+    }
+
+    public long getNoEvaluatedRoutes() {
+        return evaluatedRoutes.sum();
+    }
+
+    public long getNoSkippedRoutes() {
+        return skippedRoutes.sum();
+    }
+
+    /**
+     * Returns the share of insertion positions that have not been evaluated.
+     *
+     * @return skip rate between 0 and 1
+     */
+    public double getSkipRate() {
+        long skipped = skippedPositions.sum();
+        long total = skipped + evaluatedPositions.sum();
+        if (total == 0) return 0.;
+        return (double) skipped / (double) total;
+    }
+
+    public void resetMetrics() {
+        evaluatedPositions.reset();
+        skippedPositions.reset();
+        evaluatedRoutes.reset();
+        skippedRoutes.reset();
+    }
+
+}
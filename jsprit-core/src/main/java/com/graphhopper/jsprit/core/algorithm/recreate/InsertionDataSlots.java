@@ -0,0 +1,130 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.recreate;
+
+import java.util.Arrays;
+
+/**
+ * Memorizes the best and the second best insertion data of an unassigned job per route, and the version of the route
+ * they have been calculated for. Additionally, the insertion data employing the current vehicle of the route is kept in
+ * a dedicated slot, since it can always be realized, whereas insertion data employing other vehicles cannot be realized
+ * anymore if these vehicles have been locked meanwhile.
+ * <p>
+ * <p>Routes are identified by their index. Updating a route overwrites its slots in place, i.e. insertion data of
+ * previous versions do not accumulate.
+ */
+class InsertionDataSlots {
+
+    static final int NO_SLOTS = 3;
+
+    static final int CURRENT_VEHICLE_SLOT = 2;
+
+    static final int NO_VERSION = -1;
+
+    private int[] versions;
+
+    private double[] costs;
+
+    private InsertionData[] insertionData;
+
+    InsertionDataSlots(int noRoutes) {
+        int capacity = Math.max(noRoutes, 1);
+        versions = new int[capacity];
+        Arrays.fill(versions, NO_VERSION);
+        costs = new double[capacity * NO_SLOTS];
+        insertionData = new InsertionData[capacity * NO_SLOTS];
+    }
+
+    /**
+     * Empties the slots of the specified route and assigns them to the specified version of the route.
+     *
+     * @param routeIndex index of route
+     * @param version    version of route
+     */
+    void clear(int routeIndex, int version) {
+        ensureCapacity(routeIndex + 1);
+        versions[routeIndex] = version;
+        int slotIndex = routeIndex * NO_SLOTS;
+        for (int slot = 0; slot < NO_SLOTS; slot++) {
+            costs[slotIndex + slot] = Double.MAX_VALUE;
+            insertionData[slotIndex + slot] = null;
+        }
+    }
+
+    /**
+     * Memorizes the specified insertion data if it is better than the insertion data already memorized for this route.
+     *
+     * @param routeIndex index of route
+     * @param iData      insertion data
+     */
+    void add(int routeIndex, InsertionData iData) {
+        int slotIndex = routeIndex * NO_SLOTS;
+        double cost = iData.getInsertionCost();
+        if (insertionData[slotIndex] == null || cost < costs[slotIndex]) {
+            costs[slotIndex + 1] = costs[slotIndex];
+            insertionData[slotIndex + 1] = insertionData[slotIndex];
+            costs[slotIndex] = cost;
+            insertionData[slotIndex] = iData;
+        } else if (insertionData[slotIndex + 1] == null || cost < costs[slotIndex + 1]) {
+            costs[slotIndex + 1] = cost;
+            insertionData[slotIndex + 1] = iData;
+        }
+    }
+
+    /**
+     * Memorizes the specified insertion data, which employs the current vehicle of the route, in the dedicated slot
+     * and ranks it like {@link #add(int, InsertionData)}.
+     *
+     * @param routeIndex index of route
+     * @param iData      insertion data employing the current vehicle of the route
+     */
+    void addCurrentVehicle(int routeIndex, InsertionData iData) {
+        int slotIndex = routeIndex * NO_SLOTS + CURRENT_VEHICLE_SLOT;
+        costs[slotIndex] = iData.getInsertionCost();
+        insertionData[slotIndex] = iData;
+        add(routeIndex, iData);
+    }
+
+    int getVersion(int routeIndex) {
+        if (routeIndex >= versions.length) return NO_VERSION;
+        return versions[routeIndex];
+    }
+
+    /**
+     * Returns the insertion data in the specified slot (0 is best, 1 is second best, 2 employs the current vehicle of
+     * the route) or null if there is none.
+     *
+     * @param routeIndex index of route
+     * @param slot       slot
+     * @return insertion data or null
+     */
+    InsertionData get(int routeIndex, int slot) {
+        return insertionData[routeIndex * NO_SLOTS + slot];
+    }
+
+    private void ensureCapacity(int noRoutes) {
+        if (noRoutes <= versions.length) return;
+        int capacity = Math.max(noRoutes, versions.length * 2);
+        int oldCapacity = versions.length;
+        versions = Arrays.copyOf(versions, capacity);
+        Arrays.fill(versions, oldCapacity, capacity, NO_VERSION);
+        costs = Arrays.copyOf(costs, capacity * NO_SLOTS);
+        insertionData = Arrays.copyOf(insertionData, capacity * NO_SLOTS);
+    }
+
+}
@@ -18,6 +18,7 @@
 
 package com.graphhopper.jsprit.core.algorithm.recreate;
 
+import com.graphhopper.jsprit.core.algorithm.CancellationToken;
 import com.graphhopper.jsprit.core.problem.job.Job;
 import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
 import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
@@ -31,28 +32,39 @@ import java.util.*;
  */
 class InsertionDataUpdater {
 
-    static boolean update(boolean addAllAvailable, Set<String> initialVehicleIds, VehicleFleetManager fleetManager, JobInsertionCostsCalculator insertionCostsCalculator, TreeSet<VersionedInsertionData> insertionDataSet, int updateRound, Job unassignedJob, Collection<VehicleRoute> routes) {
-        for(VehicleRoute route : routes) {
-            Collection<Vehicle> relevantVehicles = new ArrayList<>();
-            if (!(route.getVehicle() instanceof VehicleImpl.NoVehicle)) {
-                relevantVehicles.add(route.getVehicle());
-                if(addAllAvailable && !initialVehicleIds.contains(route.getVehicle().getId())){
-                    relevantVehicles.addAll(fleetManager.getAvailableVehicles(route.getVehicle()));
-                }
-            } else relevantVehicles.addAll(fleetManager.getAvailableVehicles());
-            for (Vehicle v : relevantVehicles) {
-                double depTime = v.getEarliestDeparture();
-                InsertionData iData = insertionCostsCalculator.getInsertionData(route, unassignedJob, v, depTime, route.getDriver(), Double.MAX_VALUE);
-                if (iData instanceof InsertionData.NoInsertionFound) {
-                    continue;
-                }
-                insertionDataSet.add(new VersionedInsertionData(iData, updateRound, route));
-            }
+    static boolean update(boolean addAllAvailable, Set<String> initialVehicleIds, VehicleFleetManager fleetManager, JobInsertionCostsCalculator insertionCostsCalculator, InsertionDataSlots insertionDataSlots, Job unassignedJob, List<VehicleRoute> routes, int[] routeVersions) {
+        for (int routeIndex = 0; routeIndex < routes.size(); routeIndex++) {
+            update(addAllAvailable, initialVehicleIds, fleetManager, insertionCostsCalculator, insertionDataSlots, unassignedJob, routes, routeVersions, routeIndex);
         }
         return true;
     }
 
+    static boolean update(boolean addAllAvailable, Set<String> initialVehicleIds, VehicleFleetManager fleetManager, JobInsertionCostsCalculator insertionCostsCalculator, InsertionDataSlots insertionDataSlots, Job unassignedJob, List<VehicleRoute> routes, int[] routeVersions, int routeIndex) {
+        VehicleRoute route = routes.get(routeIndex);
+        insertionDataSlots.clear(routeIndex, routeVersions[routeIndex]);
+        Collection<Vehicle> relevantVehicles = new ArrayList<>();
+        if (!(route.getVehicle() instanceof VehicleImpl.NoVehicle)) {
+            relevantVehicles.add(route.getVehicle());
+            if(addAllAvailable && !initialVehicleIds.contains(route.getVehicle().getId())){
+                relevantVehicles.addAll(fleetManager.getAvailableVehicles(route.getVehicle()));
+            }
+        } else relevantVehicles.addAll(fleetManager.getAvailableVehicles());
+        for (Vehicle v : relevantVehicles) {
+            double depTime = v.getEarliestDeparture();
+            InsertionData iData = insertionCostsCalculator.getInsertionData(route, unassignedJob, v, depTime, route.getDriver(), Double.MAX_VALUE);
+            if (iData instanceof InsertionData.NoInsertionFound) {
+                continue;
+            }
+            if (v == route.getVehicle()) insertionDataSlots.addCurrentVehicle(routeIndex, iData);
+            else insertionDataSlots.add(routeIndex, iData);
+        }
+        return true;
+    }
 
+    static int[] ensureCapacity(int[] routeVersions, int noRoutes) {
+        if (noRoutes <= routeVersions.length) return routeVersions;
+        return Arrays.copyOf(routeVersions, Math.max(noRoutes, routeVersions.length * 2));
+    }
 
     static VehicleRoute findRoute(Collection<VehicleRoute> routes, Job job) {
         for(VehicleRoute r : routes){
@@ -61,67 +73,31 @@ class InsertionDataUpdater {
         return null;
     }
 
-    static Comparator<VersionedInsertionData> getComparator(){
-        return (o1, o2) -> {
-            if (o1.getiData().getInsertionCost() < o2.getiData().getInsertionCost()) return -1;
-            return 1;
-        };
-    }
-
-    static ScoredJob getBest(boolean switchAllowed, Set<String> initialVehicleIds, VehicleFleetManager fleetManager, JobInsertionCostsCalculator insertionCostsCalculator, ScoringFunction scoringFunction, TreeSet<VersionedInsertionData>[] priorityQueues, Map<VehicleRoute, Integer> updates, List<Job> unassignedJobList, List<ScoredJob> badJobs) {
+    static ScoredJob getBest(boolean switchAllowed, Set<String> initialVehicleIds, VehicleFleetManager fleetManager, JobInsertionCostsCalculator insertionCostsCalculator, ScoringFunction scoringFunction, InsertionDataSlots[] insertionDataSlots, List<VehicleRoute> routes, int[] routeVersions, List<Job> unassignedJobList, List<ScoredJob> badJobs, CancellationToken cancellationToken) {
         ScoredJob bestScoredJob = null;
         for(Job j : unassignedJobList){
+            if (cancellationToken != null && cancellationToken.isCancelled()) return null;
             VehicleRoute bestRoute = null;
             InsertionData best = null;
             InsertionData secondBest = null;
-            TreeSet<VersionedInsertionData> priorityQueue = priorityQueues[j.getIndex()];
-            Iterator<VersionedInsertionData> iterator = priorityQueue.iterator();
+            InsertionDataSlots slots = insertionDataSlots[j.getIndex()];
             List<String> failedConstraintNames = new ArrayList<>();
-            while(iterator.hasNext()){
-                VersionedInsertionData versionedIData = iterator.next();
-                if(bestRoute != null){
-                    if(versionedIData.getRoute() == bestRoute){
-                        continue;
-                    }
-                }
-                if (versionedIData.getiData() instanceof InsertionData.NoInsertionFound) {
-                    failedConstraintNames.addAll(versionedIData.getiData().getFailedConstraintNames());
-                    continue;
-                }
-                if(!(versionedIData.getRoute().getVehicle() instanceof VehicleImpl.NoVehicle)) {
-                    if (versionedIData.getiData().getSelectedVehicle() != versionedIData.getRoute().getVehicle()) {
-                        if (!switchAllowed) continue;
-                        if (initialVehicleIds.contains(versionedIData.getRoute().getVehicle().getId())) continue;
-                    }
+            for (int routeIndex = 0; routeIndex < routes.size(); routeIndex++) {
+                if (slots.getVersion(routeIndex) != routeVersions[routeIndex]) continue;
+                VehicleRoute route = routes.get(routeIndex);
+                InsertionData iData = null;
+                for (int slot = 0; slot < InsertionDataSlots.NO_SLOTS && iData == null; slot++) {
+                    InsertionData candidate = slots.get(routeIndex, slot);
+                    if (candidate == null) continue;
+                    iData = getFeasible(switchAllowed, initialVehicleIds, fleetManager, candidate, route);
                 }
-                if(versionedIData.getiData().getSelectedVehicle() != versionedIData.getRoute().getVehicle()) {
-                    if (fleetManager.isLocked(versionedIData.getiData().getSelectedVehicle())) {
-                        Vehicle available = fleetManager.getAvailableVehicle(versionedIData.getiData().getSelectedVehicle().getVehicleTypeIdentifier());
-                        if (available != null) {
-                            InsertionData oldData = versionedIData.getiData();
-                            InsertionData newData = new InsertionData(oldData.getInsertionCost(), oldData.getPickupInsertionIndex(),
-                                oldData.getDeliveryInsertionIndex(), available, oldData.getSelectedDriver());
-                            newData.setVehicleDepartureTime(oldData.getVehicleDepartureTime());
-                            for(Event e : oldData.getEvents()){
-                                if(e instanceof SwitchVehicle){
-                                    newData.getEvents().add(new SwitchVehicle(versionedIData.getRoute(),available,oldData.getVehicleDepartureTime()));
-                                }
-                                else newData.getEvents().add(e);
-                            }
-                            versionedIData = new VersionedInsertionData(newData, versionedIData.getVersion(), versionedIData.getRoute());
-                        } else continue;
-                    }
-                }
-                int currentDataVersion = updates.get(versionedIData.getRoute());
-                if(versionedIData.getVersion() == currentDataVersion){
-                    if(best == null) {
-                        best = versionedIData.getiData();
-                        bestRoute = versionedIData.getRoute();
-                    }
-                    else {
-                        secondBest = versionedIData.getiData();
-                        break;
-                    }
+                if (iData == null) continue;
+                if (best == null || iData.getInsertionCost() < best.getInsertionCost()) {
+                    secondBest = best;
+                    best = iData;
+                    bestRoute = route;
+                } else if (secondBest == null || iData.getInsertionCost() < secondBest.getInsertionCost()) {
+                    secondBest = iData;
                 }
             }
             VehicleRoute emptyRoute = VehicleRoute.emptyRoute();
@@ -158,6 +134,36 @@ class InsertionDataUpdater {
         return bestScoredJob;
     }
 
+    /**
+     * Returns the specified insertion data if it can still be realized, insertion data employing another available vehicle
+     * of the same type if the selected vehicle has been locked meanwhile, or null if it cannot be realized anymore.
+     */
+    private static InsertionData getFeasible(boolean switchAllowed, Set<String> initialVehicleIds, VehicleFleetManager fleetManager, InsertionData iData, VehicleRoute route) {
+        if(!(route.getVehicle() instanceof VehicleImpl.NoVehicle)) {
+            if (iData.getSelectedVehicle() != route.getVehicle()) {
+                if (!switchAllowed) return null;
+                if (initialVehicleIds.contains(route.getVehicle().getId())) return null;
+            }
+        }
+        if(iData.getSelectedVehicle() != route.getVehicle()) {
+            if (fleetManager.isLocked(iData.getSelectedVehicle())) {
+                Vehicle available = fleetManager.getAvailableVehicle(iData.getSelectedVehicle().getVehicleTypeIdentifier());
+                if (available == null) return null;
+                InsertionData newData = new InsertionData(iData.getInsertionCost(), iData.getPickupInsertionIndex(),
+                    iData.getDeliveryInsertionIndex(), available, iData.getSelectedDriver());
+                newData.setVehicleDepartureTime(iData.getVehicleDepartureTime());
+                for(Event e : iData.getEvents()){
+                    if(e instanceof SwitchVehicle){
+                        newData.getEvents().add(new SwitchVehicle(route,available,iData.getVehicleDepartureTime()));
+                    }
+                    else newData.getEvents().add(e);
+                }
+                return newData;
+            }
+        }
+        return iData;
+    }
+
     private static double score(Job unassignedJob, InsertionData best, InsertionData secondBest, ScoringFunction scoringFunction) {
         return Scorer.score(unassignedJob,best,secondBest,scoringFunction);
     }
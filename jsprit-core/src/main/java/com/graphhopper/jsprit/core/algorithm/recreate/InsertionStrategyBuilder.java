@@ -58,9 +58,7 @@ public class InsertionStrategyBuilder {
 
     private int memory;
 
-    private ExecutorService executor;
-
-    private int nuOfThreads;
+    private ExecutionBackend executionBackend;
 
     private double timeSlice;
 
@@ -82,6 +80,8 @@ public class InsertionStrategyBuilder {
 
     private JobInsertionCostsCalculatorFactory breakInsertionCalculatorFactory;
 
+    private GranularInsertion granularInsertion;
+
     public InsertionStrategyBuilder(VehicleRoutingProblem vrp, VehicleFleetManager vehicleFleetManager, StateManager stateManager, ConstraintManager constraintManager) {
         super();
         this.vrp = vrp;
@@ -160,9 +160,37 @@ public class InsertionStrategyBuilder {
         return this;
     }
 
+    /**
+     * Restricts the insertion positions that are evaluated to the granular neighborhood of a job (local level only).
+     *
+     * @param granularInsertion granular insertion or null to evaluate all positions
+     * @return builder
+     */
+    public InsertionStrategyBuilder setGranularInsertion(GranularInsertion granularInsertion) {
+        this.granularInsertion = granularInsertion;
+        return this;
+    }
+
+    /**
+     * Evaluates insertion costs concurrently on the specified executor service. To run small passes of evaluations
+     * inline, pass {@link ExecutionBackends#auto(ExecutionBackend)} to {@link #setConcurrentMode(ExecutionBackend)}.
+     *
+     * @param executor    executor service
+     * @param nuOfThreads number of threads of the executor service
+     * @return builder
+     */
     public InsertionStrategyBuilder setConcurrentMode(ExecutorService executor, int nuOfThreads) {
-        this.executor = executor;
-        this.nuOfThreads = nuOfThreads;
+        return setConcurrentMode(ExecutionBackends.of(executor, nuOfThreads));
+    }
+
+    /**
+     * Evaluates insertion costs concurrently on the specified backend, e.g. {@link ExecutionBackends#auto()}.
+     *
+     * @param executionBackend backend or null to evaluate insertion costs sequentially
+     * @return builder
+     */
+    public InsertionStrategyBuilder setConcurrentMode(ExecutionBackend executionBackend) {
+        this.executionBackend = executionBackend;
         return this;
     }
 
@@ -194,17 +222,18 @@ public class InsertionStrategyBuilder {
             calcBuilder.experimentalTimeScheduler(timeSlice, nNeighbors);
         }
         calcBuilder.setAllowVehicleSwitch(allowVehicleSwitch);
+        calcBuilder.setGranularInsertion(granularInsertion);
         JobInsertionCostsCalculator costCalculator = calcBuilder.build();
 
         InsertionStrategy insertion;
         if (strategy.equals(Strategy.BEST)) {
-            if (executor == null) {
+            if (executionBackend == null) {
                 insertion = new BestInsertion(costCalculator, vrp);
             } else {
-                insertion = new BestInsertionConcurrent(costCalculator, executor, nuOfThreads, vrp);
+                insertion = new BestInsertionConcurrent(costCalculator, executionBackend, vrp);
             }
         } else if (strategy.equals(Strategy.REGRET)) {
-            if (executor == null) {
+            if (executionBackend == null) {
                 if (isFastRegret) {
                     RegretInsertionFast regret = new RegretInsertionFast(costCalculator, vrp, fleetManager);
                     regret.setSwitchAllowed(allowVehicleSwitch);
@@ -216,11 +245,11 @@ public class InsertionStrategyBuilder {
 
             } else {
                 if (isFastRegret) {
-                    RegretInsertionConcurrentFast regret = new RegretInsertionConcurrentFast(costCalculator, vrp, executor, fleetManager);
+                    RegretInsertionConcurrentFast regret = new RegretInsertionConcurrentFast(costCalculator, vrp, executionBackend, fleetManager);
                     regret.setSwitchAllowed(allowVehicleSwitch);
                     insertion = regret;
                 } else {
-                    RegretInsertionConcurrent regret = new RegretInsertionConcurrent(costCalculator, vrp, executor);
+                    RegretInsertionConcurrent regret = new RegretInsertionConcurrent(costCalculator, vrp, executionBackend);
                     insertion = regret;
                 }
 
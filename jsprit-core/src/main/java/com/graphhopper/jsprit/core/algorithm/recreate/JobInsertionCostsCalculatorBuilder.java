@@ -100,6 +100,8 @@ public class JobInsertionCostsCalculatorBuilder {
 
     private JobInsertionCostsCalculatorFactory breakCalculatorFactory = new BreakInsertionCalculatorFactory();
 
+    private GranularInsertion granularInsertion;
+
     /**
      * Constructs the builder.
      * <p>
@@ -139,6 +141,19 @@ public class JobInsertionCostsCalculatorBuilder {
      * @param stateManager
      * @return
      */
+    /**
+     * Restricts the insertion positions evaluated by the service and shipment calculators to the granular
+     * neighborhood of a job. It only applies to local level calculators. Default is null, i.e. granular insertion
+     * is disabled.
+     *
+     * @param granularInsertion granular insertion or null
+     * @return builder
+     */
+    public JobInsertionCostsCalculatorBuilder setGranularInsertion(GranularInsertion granularInsertion) {
+        this.granularInsertion = granularInsertion;
+        return this;
+    }
+
     public JobInsertionCostsCalculatorBuilder setStateManager(RouteAndActivityStateGetter stateManager) {
         this.states = stateManager;
         return this;
@@ -315,6 +330,16 @@ public class JobInsertionCostsCalculatorBuilder {
         JobInsertionCostsCalculator shipmentInsertion = shipmentCalculatorFactory.create(vrp, actInsertionCalc, activityFactory, constraintManager);
         JobInsertionCostsCalculator serviceInsertion = serviceCalculatorFactory.create(vrp, actInsertionCalc, activityFactory, constraintManager);
         JobInsertionCostsCalculator breakInsertion = breakCalculatorFactory.create(vrp, actInsertionCalc, activityFactory, constraintManager);
+        if (granularInsertion != null) {
+            if (shipmentInsertion instanceof ShipmentInsertionCalculator) {
+                ((ShipmentInsertionCalculator) shipmentInsertion).setGranularInsertion(granularInsertion);
+            } else if (shipmentInsertion instanceof ShipmentInsertionCalculatorFlex) {
+                ((ShipmentInsertionCalculatorFlex) shipmentInsertion).setGranularInsertion(granularInsertion);
+            }
+            if (serviceInsertion instanceof ServiceInsertionCalculator) {
+                ((ServiceInsertionCalculator) serviceInsertion).setGranularInsertion(granularInsertion);
+            }
+        }
 
         JobCalculatorSwitcher switcher = new JobCalculatorSwitcher();
         switcher.put(Shipment.class, shipmentInsertion);
@@ -107,9 +107,18 @@ public class RegretInsertion extends AbstractInsertionStrategy {
 
         List<Job> jobs = new ArrayList<>(unassignedJobs);
         while (!jobs.isEmpty()) {
+            if (isCancelled()) {
+                badJobs.addAll(jobs);
+                break;
+            }
             List<Job> unassignedJobList = new ArrayList<>(jobs);
             List<ScoredJob> badJobList = new ArrayList<>();
             ScoredJob bestScoredJob = nextJob(routes, unassignedJobList, badJobList);
+            if (isCancelled()) {
+                //the round has been interrupted, thus its scores are incomplete
+                badJobs.addAll(jobs);
+                break;
+            }
             if (bestScoredJob != null) {
                 if (bestScoredJob.isNewRoute()) {
                     routes.add(bestScoredJob.getRoute());
@@ -137,6 +146,7 @@ public class RegretInsertion extends AbstractInsertionStrategy {
     private ScoredJob nextJob(Collection<VehicleRoute> routes, Collection<Job> unassignedJobList, List<ScoredJob> badJobs) {
         ScoredJob bestScoredJob = null;
         for (Job unassignedJob : unassignedJobList) {
+            if (isCancelled()) return null;
             ScoredJob scoredJob = getScoredJob(routes, unassignedJob, insertionCostsCalculator, scoringFunction);
             if (scoredJob instanceof ScoredJob.BadJob) {
                 badJobs.add(scoredJob);
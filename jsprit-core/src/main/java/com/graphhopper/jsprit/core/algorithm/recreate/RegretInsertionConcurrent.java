@@ -29,10 +29,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 
 /**
  * Insertion based on regret approach.
@@ -41,6 +39,9 @@ import java.util.concurrent.Future;
  * between secondBest and firstBest, plus additional scoring variables that can defined in this.ScoringFunction.
  * The idea is that if the cost of the secondBest alternative is way higher than the first best, it seems to be important to insert this
  * customer immediatedly. If difference is not that high, it might not impact solution if this customer is inserted later.
+ * <p>
+ * <p>Scores are calculated concurrently, thus constraints need to follow the threading contract of
+ * {@link com.graphhopper.jsprit.core.algorithm.state.StateManager} (see {@link BestInsertionConcurrent}).
  *
  * @author stefan schroeder
  */
@@ -53,7 +54,7 @@ public class RegretInsertionConcurrent extends AbstractInsertionStrategy {
 
     private final JobInsertionCostsCalculator insertionCostsCalculator;
 
-    private final ExecutorCompletionService<ScoredJob> completionService;
+    private final ExecutionBackend executionBackend;
 
     /**
      * Sets the scoring function.
@@ -67,11 +68,15 @@ public class RegretInsertionConcurrent extends AbstractInsertionStrategy {
     }
 
     public RegretInsertionConcurrent(JobInsertionCostsCalculator jobInsertionCalculator, VehicleRoutingProblem vehicleRoutingProblem, ExecutorService executorService) {
+        this(jobInsertionCalculator, vehicleRoutingProblem, ExecutionBackends.of(executorService, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public RegretInsertionConcurrent(JobInsertionCostsCalculator jobInsertionCalculator, VehicleRoutingProblem vehicleRoutingProblem, ExecutionBackend executionBackend) {
         super(vehicleRoutingProblem);
         this.scoringFunction = new DefaultScorer(vehicleRoutingProblem);
         this.insertionCostsCalculator = jobInsertionCalculator;
         this.vrp = vehicleRoutingProblem;
-        completionService = new ExecutorCompletionService<>(executorService);
+        this.executionBackend = executionBackend;
         logger.debug("initialise " + this);
     }
 
@@ -114,9 +119,18 @@ public class RegretInsertionConcurrent extends AbstractInsertionStrategy {
 
         List<Job> jobs = new ArrayList<>(unassignedJobs);
         while (!jobs.isEmpty()) {
+            if (isCancelled()) {
+                badJobs.addAll(jobs);
+                break;
+            }
             List<Job> unassignedJobList = new ArrayList<>(jobs);
             List<ScoredJob> badJobList = new ArrayList<>();
             ScoredJob bestScoredJob = nextJob(routes, unassignedJobList, badJobList);
+            if (isCancelled()) {
+                //the round has been interrupted, thus its scores are incomplete
+                badJobs.addAll(jobs);
+                break;
+            }
             if (bestScoredJob != null) {
                 if (bestScoredJob.isNewRoute()) {
                     routes.add(bestScoredJob.getRoute());
@@ -137,32 +151,28 @@ public class RegretInsertionConcurrent extends AbstractInsertionStrategy {
     private ScoredJob nextJob(final Collection<VehicleRoute> routes, List<Job> unassignedJobList, List<ScoredJob> badJobList) {
         ScoredJob bestScoredJob = null;
 
+        List<Callable<ScoredJob>> tasks = new ArrayList<>(unassignedJobList.size());
         for (final Job unassignedJob : unassignedJobList) {
-            completionService.submit(() -> RegretInsertion.getScoredJob(routes, unassignedJob, insertionCostsCalculator, scoringFunction));
+            tasks.add(() -> isCancelled() ? null : RegretInsertion.getScoredJob(routes, unassignedJob, insertionCostsCalculator, scoringFunction));
         }
 
-        try {
-            for (int i = 0; i < unassignedJobList.size(); i++) {
-                Future<ScoredJob> fsj = completionService.take();
-                ScoredJob sJob = fsj.get();
-                if (sJob instanceof ScoredJob.BadJob) {
-                    badJobList.add(sJob);
-                    continue;
-                }
-                if (bestScoredJob == null) {
-                    bestScoredJob = sJob;
-                } else if (sJob.getScore() > bestScoredJob.getScore()) {
+        List<ScoredJob> scoredJobs = executionBackend.select(unassignedJobList.size(), routes.size() + 1).invokeAll(tasks);
+        //tasks started after cancellation have not scored their job
+        if (isCancelled()) return null;
+        for (ScoredJob sJob : scoredJobs) {
+            if (sJob instanceof ScoredJob.BadJob) {
+                badJobList.add(sJob);
+                continue;
+            }
+            if (bestScoredJob == null) {
+                bestScoredJob = sJob;
+            } else if (sJob.getScore() > bestScoredJob.getScore()) {
+                bestScoredJob = sJob;
+            } else if (sJob.getScore() == bestScoredJob.getScore()) {
+                if (sJob.getJob().getId().compareTo(bestScoredJob.getJob().getId()) <= 0) {
                     bestScoredJob = sJob;
-                } else if (sJob.getScore() == bestScoredJob.getScore()) {
-                    if (sJob.getJob().getId().compareTo(bestScoredJob.getJob().getId()) <= 0) {
-                        bestScoredJob = sJob;
-                    }
                 }
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e);
         }
 
         return bestScoredJob;
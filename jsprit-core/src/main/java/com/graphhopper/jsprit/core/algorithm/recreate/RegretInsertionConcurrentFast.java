@@ -38,6 +38,9 @@ import java.util.concurrent.ExecutorService;
  * between secondBest and firstBest, plus additional scoring variables that can defined in this.ScoringFunction.
  * The idea is that if the cost of the secondBest alternative is way higher than the first best, it seems to be important to insert this
  * customer immediatedly. If difference is not that high, it might not impact solution if this customer is inserted later.
+ * <p>
+ * <p>Scores are calculated concurrently, thus constraints need to follow the threading contract of
+ * {@link com.graphhopper.jsprit.core.algorithm.state.StateManager} (see {@link BestInsertionConcurrent}).
  *
  * @author stefan schroeder
  */
@@ -50,7 +53,7 @@ public class RegretInsertionConcurrentFast extends AbstractInsertionStrategy {
 
     private final JobInsertionCostsCalculator insertionCostsCalculator;
 
-    private final ExecutorService executor;
+    private final ExecutionBackend executionBackend;
 
     private VehicleFleetManager fleetManager;
 
@@ -73,11 +76,15 @@ public class RegretInsertionConcurrentFast extends AbstractInsertionStrategy {
     }
 
     public RegretInsertionConcurrentFast(JobInsertionCostsCalculator jobInsertionCalculator, VehicleRoutingProblem vehicleRoutingProblem, ExecutorService executorService, VehicleFleetManager fleetManager) {
+        this(jobInsertionCalculator, vehicleRoutingProblem, ExecutionBackends.of(executorService, Runtime.getRuntime().availableProcessors()), fleetManager);
+    }
+
+    public RegretInsertionConcurrentFast(JobInsertionCostsCalculator jobInsertionCalculator, VehicleRoutingProblem vehicleRoutingProblem, ExecutionBackend executionBackend, VehicleFleetManager fleetManager) {
         super(vehicleRoutingProblem);
         this.scoringFunction = new DefaultScorer(vehicleRoutingProblem);
         this.insertionCostsCalculator = jobInsertionCalculator;
         this.vrp = vehicleRoutingProblem;
-        this.executor = executorService;
+        this.executionBackend = executionBackend;
         this.fleetManager = fleetManager;
         this.initialVehicleIds = getInitialVehicleIds(vehicleRoutingProblem);
         logger.debug("initialise " + this);
@@ -137,28 +144,40 @@ public class RegretInsertionConcurrentFast extends AbstractInsertionStrategy {
         }
 
         List<Job> jobs = new ArrayList<>(unassignedJobs);
-        TreeSet<VersionedInsertionData>[] priorityQueues = new TreeSet[vrp.getJobs().values().size() + 2];
-        VehicleRoute lastModified = null;
+        InsertionDataSlots[] insertionDataSlots = new InsertionDataSlots[vrp.getJobs().values().size() + 2];
+        List<VehicleRoute> routeList = new ArrayList<>(routes);
+        int[] routeVersions = new int[routeList.size() + 1];
+        int lastModified = -1;
         boolean firstRun = true;
-        int updateRound = 0;
-        Map<VehicleRoute, Integer> updates = new HashMap<>();
         while (!jobs.isEmpty()) {
+            if (isCancelled()) {
+                badJobs.addAll(jobs);
+                break;
+            }
             List<Job> unassignedJobList = new ArrayList<>(jobs);
             List<ScoredJob> badJobList = new ArrayList<>();
-            if(!firstRun && lastModified == null) throw new IllegalStateException("ho. this must not be.");
-            updateInsertionData(priorityQueues, routes, unassignedJobList, updateRound,firstRun,lastModified,updates);
+            if(!firstRun && lastModified < 0) throw new IllegalStateException("ho. this must not be.");
+            updateInsertionData(insertionDataSlots, routeList, routeVersions, unassignedJobList, firstRun, lastModified);
             if(firstRun) firstRun = false;
-            updateRound++;
-            ScoredJob bestScoredJob = InsertionDataUpdater.getBest(switchAllowed,initialVehicleIds,fleetManager, insertionCostsCalculator, scoringFunction, priorityQueues, updates, unassignedJobList, badJobList);
+            ScoredJob bestScoredJob = InsertionDataUpdater.getBest(switchAllowed,initialVehicleIds,fleetManager, insertionCostsCalculator, scoringFunction, insertionDataSlots, routeList, routeVersions, unassignedJobList, badJobList, getCancellationToken());
+            if (isCancelled()) {
+                //the round has been interrupted, thus its scores are incomplete
+                badJobs.addAll(jobs);
+                break;
+            }
             if (bestScoredJob != null) {
                 if (bestScoredJob.isNewRoute()) {
                     routes.add(bestScoredJob.getRoute());
+                    routeList.add(bestScoredJob.getRoute());
+                    routeVersions = InsertionDataUpdater.ensureCapacity(routeVersions, routeList.size());
+                    lastModified = routeList.size() - 1;
                 }
+                else lastModified = routeList.indexOf(bestScoredJob.getRoute());
                 insertJob(bestScoredJob.getJob(), bestScoredJob.getInsertionData(), bestScoredJob.getRoute());
+                routeVersions[lastModified]++;
                 jobs.remove(bestScoredJob.getJob());
-                lastModified = bestScoredJob.getRoute();
             }
-            else lastModified = null;
+            else lastModified = -1;
             for (ScoredJob bad : badJobList) {
                 Job unassigned = bad.getJob();
                 jobs.remove(unassigned);
@@ -169,53 +188,29 @@ public class RegretInsertionConcurrentFast extends AbstractInsertionStrategy {
         return badJobs;
     }
 
-    private void updateInsertionData(final TreeSet<VersionedInsertionData>[] priorityQueues, final Collection<VehicleRoute> routes, List<Job> unassignedJobList, final int updateRound, final boolean firstRun, final VehicleRoute lastModified, Map<VehicleRoute, Integer> updates) {
+    private void updateInsertionData(final InsertionDataSlots[] insertionDataSlots, final List<VehicleRoute> routes, final int[] routeVersions, List<Job> unassignedJobList, final boolean firstRun, final int lastModified) {
         List<Callable<Boolean>> tasks = new ArrayList<>();
-        boolean updatedAllRoutes = false;
+        int noRoutes = 0;
         for (final Job unassignedJob : unassignedJobList) {
-            if(priorityQueues[unassignedJob.getIndex()] == null){
-                priorityQueues[unassignedJob.getIndex()] = new TreeSet<>(InsertionDataUpdater.getComparator());
+            if(insertionDataSlots[unassignedJob.getIndex()] == null){
+                insertionDataSlots[unassignedJob.getIndex()] = new InsertionDataSlots(routes.size() + 1);
             }
-            if(firstRun) {
-                updatedAllRoutes = true;
-                makeCallables(tasks, true, priorityQueues[unassignedJob.getIndex()], updateRound, unassignedJob, routes, lastModified);
+            final InsertionDataSlots slots = insertionDataSlots[unassignedJob.getIndex()];
+            if(firstRun || dependsOnOtherRoutes(unassignedJob)) {
+                noRoutes = routes.size() + 1;
+                tasks.add(() -> !isCancelled() && InsertionDataUpdater.update(switchAllowed, initialVehicleIds, fleetManager, insertionCostsCalculator, slots, unassignedJob, routes, routeVersions));
             }
-            else{
-                if(dependencyTypes == null || dependencyTypes[unassignedJob.getIndex()] == null){
-                    makeCallables(tasks, updatedAllRoutes, priorityQueues[unassignedJob.getIndex()], updateRound, unassignedJob, routes, lastModified);
-                }
-                else {
-                    DependencyType dependencyType = dependencyTypes[unassignedJob.getIndex()];
-                    if (dependencyType.equals(DependencyType.INTER_ROUTE) || dependencyType.equals(DependencyType.INTRA_ROUTE)) {
-                        updatedAllRoutes = true;
-                        makeCallables(tasks, true, priorityQueues[unassignedJob.getIndex()], updateRound, unassignedJob, routes, lastModified);
-                    } else {
-                        makeCallables(tasks, updatedAllRoutes, priorityQueues[unassignedJob.getIndex()], updateRound, unassignedJob, routes, lastModified);
-                    }
-                }
+            else {
+                tasks.add(() -> !isCancelled() && InsertionDataUpdater.update(switchAllowed, initialVehicleIds, fleetManager, insertionCostsCalculator, slots, unassignedJob, routes, routeVersions, lastModified));
             }
         }
-        if(updatedAllRoutes){
-            for(VehicleRoute r : routes) updates.put(r,updateRound);
-        }
-        else{
-            updates.put(lastModified,updateRound);
-        }
-        try {
-            executor.invokeAll(tasks);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException(e);
-        }
+        executionBackend.select(tasks.size(), Math.max(noRoutes, 2)).invokeAll(tasks);
     }
 
-    private void makeCallables(List<Callable<Boolean>> tasks, boolean updateAll, final TreeSet<VersionedInsertionData> priorityQueue, final int updateRound, final Job unassignedJob, final Collection<VehicleRoute> routes, final VehicleRoute lastModified) {
-        if(updateAll) {
-            tasks.add(() -> InsertionDataUpdater.update(switchAllowed, initialVehicleIds, fleetManager, insertionCostsCalculator, priorityQueue, updateRound, unassignedJob, routes));
-        }
-        else {
-            tasks.add(() -> InsertionDataUpdater.update(switchAllowed, initialVehicleIds, fleetManager, insertionCostsCalculator, priorityQueue, updateRound, unassignedJob, Arrays.asList(lastModified)));
-        }
+    private boolean dependsOnOtherRoutes(Job job) {
+        if (dependencyTypes == null || dependencyTypes[job.getIndex()] == null) return false;
+        DependencyType dependencyType = dependencyTypes[job.getIndex()];
+        return dependencyType.equals(DependencyType.INTER_ROUTE) || dependencyType.equals(DependencyType.INTRA_ROUTE);
     }
 
 
@@ -127,35 +127,40 @@ public class RegretInsertionFast extends AbstractInsertionStrategy {
 //        }
 
         List<Job> jobs = new ArrayList<Job>(unassignedJobs);
-        TreeSet<VersionedInsertionData>[] priorityQueues = new TreeSet[vrp.getJobs().values().size() + 2];
-        VehicleRoute lastModified = null;
+        InsertionDataSlots[] insertionDataSlots = new InsertionDataSlots[vrp.getJobs().values().size() + 2];
+        List<VehicleRoute> routeList = new ArrayList<>(routes);
+        int[] routeVersions = new int[routeList.size() + 1];
+        int lastModified = -1;
         boolean firstRun = true;
-        int updateRound = 0;
-        Map<VehicleRoute, Integer> updates = new HashMap<>();
         while (!jobs.isEmpty()) {
+            if (isCancelled()) {
+                badJobs.addAll(jobs);
+                break;
+            }
             List<Job> unassignedJobList = new ArrayList<>(jobs);
             List<ScoredJob> badJobList = new ArrayList<>();
-            if(!firstRun && lastModified == null) throw new IllegalStateException("last modified route is null. this should not be.");
-            if(firstRun){
-                updateInsertionData(priorityQueues, routes, unassignedJobList, updateRound, firstRun, lastModified, updates);
-                firstRun = false;
-            }
-            else{
-                //update for all routes || remove history and only update modified route
-                updateInsertionData(priorityQueues, routes, unassignedJobList, updateRound, firstRun, lastModified, updates);
-//                updates.put(lastModified,updateRound);
+            if(!firstRun && lastModified < 0) throw new IllegalStateException("last modified route is null. this should not be.");
+            updateInsertionData(insertionDataSlots, routeList, routeVersions, unassignedJobList, firstRun, lastModified);
+            firstRun = false;
+            ScoredJob bestScoredJob = InsertionDataUpdater.getBest(switchAllowed,initialVehicleIds,fleetManager,insertionCostsCalculator,scoringFunction,insertionDataSlots,routeList,routeVersions,unassignedJobList,badJobList,getCancellationToken());
+            if (isCancelled()) {
+                //the round has been interrupted, thus its scores are incomplete
+                badJobs.addAll(jobs);
+                break;
             }
-            updateRound++;
-            ScoredJob bestScoredJob = InsertionDataUpdater.getBest(switchAllowed,initialVehicleIds,fleetManager,insertionCostsCalculator,scoringFunction,priorityQueues,updates,unassignedJobList,badJobList);
             if (bestScoredJob != null) {
                 if (bestScoredJob.isNewRoute()) {
                     routes.add(bestScoredJob.getRoute());
+                    routeList.add(bestScoredJob.getRoute());
+                    routeVersions = InsertionDataUpdater.ensureCapacity(routeVersions, routeList.size());
+                    lastModified = routeList.size() - 1;
                 }
+                else lastModified = routeList.indexOf(bestScoredJob.getRoute());
                 insertJob(bestScoredJob.getJob(), bestScoredJob.getInsertionData(), bestScoredJob.getRoute());
+                routeVersions[lastModified]++;
                 jobs.remove(bestScoredJob.getJob());
-                lastModified = bestScoredJob.getRoute();
             }
-            else lastModified = null;
+            else lastModified = -1;
             for (ScoredJob bad : badJobList) {
                 Job unassigned = bad.getJob();
                 jobs.remove(unassigned);
@@ -166,34 +171,27 @@ public class RegretInsertionFast extends AbstractInsertionStrategy {
         return badJobs;
     }
 
-    private void updateInsertionData(TreeSet<VersionedInsertionData>[] priorityQueues, Collection<VehicleRoute> routes, List<Job> unassignedJobList, int updateRound, boolean firstRun, VehicleRoute lastModified, Map<VehicleRoute, Integer> updates) {
+    private void updateInsertionData(InsertionDataSlots[] insertionDataSlots, List<VehicleRoute> routes, int[] routeVersions, List<Job> unassignedJobList, boolean firstRun, int lastModified) {
         for (Job unassignedJob : unassignedJobList) {
-            if(priorityQueues[unassignedJob.getIndex()] == null){
-                priorityQueues[unassignedJob.getIndex()] = new TreeSet<>(InsertionDataUpdater.getComparator());
+            if (isCancelled()) return;
+            if(insertionDataSlots[unassignedJob.getIndex()] == null){
+                insertionDataSlots[unassignedJob.getIndex()] = new InsertionDataSlots(routes.size() + 1);
             }
-            if(firstRun) {
-                InsertionDataUpdater.update(switchAllowed, initialVehicleIds, fleetManager, insertionCostsCalculator, priorityQueues[unassignedJob.getIndex()], updateRound, unassignedJob, routes);
-                for(VehicleRoute r : routes) updates.put(r,updateRound);
+            InsertionDataSlots slots = insertionDataSlots[unassignedJob.getIndex()];
+            if(firstRun || dependsOnOtherRoutes(unassignedJob)) {
+                InsertionDataUpdater.update(switchAllowed, initialVehicleIds, fleetManager, insertionCostsCalculator, slots, unassignedJob, routes, routeVersions);
             }
             else{
-                if(dependencyTypes == null || dependencyTypes[unassignedJob.getIndex()] == null){
-                    InsertionDataUpdater.update(switchAllowed, initialVehicleIds, fleetManager, insertionCostsCalculator, priorityQueues[unassignedJob.getIndex()], updateRound, unassignedJob, Arrays.asList(lastModified));
-                    updates.put(lastModified,updateRound);
-                }
-                else {
-                    DependencyType dependencyType = dependencyTypes[unassignedJob.getIndex()];
-                    if (dependencyType.equals(DependencyType.INTER_ROUTE) || dependencyType.equals(DependencyType.INTRA_ROUTE)) {
-                        InsertionDataUpdater.update(switchAllowed, initialVehicleIds, fleetManager, insertionCostsCalculator, priorityQueues[unassignedJob.getIndex()], updateRound, unassignedJob, routes);
-                        for(VehicleRoute r : routes) updates.put(r,updateRound);
-                    } else {
-                        InsertionDataUpdater.update(switchAllowed, initialVehicleIds, fleetManager, insertionCostsCalculator, priorityQueues[unassignedJob.getIndex()], updateRound, unassignedJob, Arrays.asList(lastModified));
-                        updates.put(lastModified,updateRound);
-                    }
-                }
+                InsertionDataUpdater.update(switchAllowed, initialVehicleIds, fleetManager, insertionCostsCalculator, slots, unassignedJob, routes, routeVersions, lastModified);
             }
         }
     }
 
+    private boolean dependsOnOtherRoutes(Job job) {
+        if (dependencyTypes == null || dependencyTypes[job.getIndex()] == null) return false;
+        DependencyType dependencyType = dependencyTypes[job.getIndex()];
+        return dependencyType.equals(DependencyType.INTER_ROUTE) || dependencyType.equals(DependencyType.INTRA_ROUTE);
+    }
 
 
 }
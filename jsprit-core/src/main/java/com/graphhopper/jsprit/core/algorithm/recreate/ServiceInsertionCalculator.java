@@ -68,6 +68,8 @@ final class ServiceInsertionCalculator extends AbstractInsertionCalculator {
 
     private final ConstraintManager constraintManager;
 
+    private GranularInsertion granularInsertion;
+
     public ServiceInsertionCalculator(VehicleRoutingTransportCosts routingCosts, VehicleRoutingActivityCosts activityCosts, ActivityInsertionCostsCalculator activityInsertionCostsCalculator, ConstraintManager constraintManager, JobActivityFactory activityFactory) {
         super();
         this.transportCosts = routingCosts;
@@ -81,6 +83,16 @@ final class ServiceInsertionCalculator extends AbstractInsertionCalculator {
         logger.debug("initialise {}", this);
     }
 
+    /**
+     * Restricts evaluated insertion positions to the granular neighborhood of the job. Default is null, i.e. all
+     * positions are evaluated.
+     *
+     * @param granularInsertion granular insertion or null
+     */
+    public void setGranularInsertion(GranularInsertion granularInsertion) {
+        this.granularInsertion = granularInsertion;
+    }
+
     @Override
     public String toString() {
         return "[name=calculatesServiceInsertion]";
@@ -116,6 +128,10 @@ final class ServiceInsertionCalculator extends AbstractInsertionCalculator {
         additionalICostsAtRouteLevel += additionalAccessEgressCalculator.getCosts(insertionContext);
 		TimeWindow bestTimeWindow = null;
 
+        if (granularInsertion != null && granularInsertion.canSkip(currentRoute, newVehicle, additionalICostsAtRouteLevel, bestCost, service.getLocation())) {
+            return new InsertionData.NoInsertionFound();
+        }
+
         /*
         generate new start and end for new vehicle
          */
@@ -136,7 +152,9 @@ final class ServiceInsertionCalculator extends AbstractInsertionCalculator {
                 tourEnd = true;
             }
             boolean not_fulfilled_break = true;
-			for(TimeWindow timeWindow : service.getTimeWindows()) {
+            boolean evaluate = granularInsertion == null || granularInsertion.isPromising(service, prevAct, nextAct);
+            if (!evaluate) not_fulfilled_break = false;
+			else for(TimeWindow timeWindow : service.getTimeWindows()) {
                 deliveryAct2Insert.setTheoreticalEarliestOperationStartTime(timeWindow.getStart());
                 deliveryAct2Insert.setTheoreticalLatestOperationStartTime(timeWindow.getEnd());
                 ActivityContext activityContext = new ActivityContext();
@@ -267,8 +267,7 @@ final class ServiceInsertionOnRouteLevelCalculator implements JobInsertionCostsC
                 /**
                  * compute cost-diff of tour with and without new activity --> insertion_costs
                  */
-                Double currentRouteCosts = stateManager.getRouteState(currentRoute, InternalStates.COSTS, Double.class);
-                if (currentRouteCosts == null) currentRouteCosts = 0.;
+                double currentRouteCosts = stateManager.getRouteDoubleState(currentRoute, InternalStates.COSTS, 0.);
                 double insertion_costs = auxilliaryPathCostCalculator.costOfPath(wholeTour, start.getEndTime(), newDriver, newVehicle) - currentRouteCosts;
 
                 /**
@@ -307,12 +306,10 @@ final class ServiceInsertionOnRouteLevelCalculator implements JobInsertionCostsC
     }
 
     private double sumOf_prevCosts_oldVehicle(VehicleRoute vehicleRoute, TourActivity act) {
-        Double prevCost;
         if (act instanceof End) {
-            prevCost = stateManager.getRouteState(vehicleRoute, InternalStates.COSTS, Double.class);
-        } else prevCost = stateManager.getActivityState(act, InternalStates.COSTS, Double.class);
-        if (prevCost == null) prevCost = 0.;
-        return prevCost;
+            return stateManager.getRouteDoubleState(vehicleRoute, InternalStates.COSTS, 0.);
+        }
+        return stateManager.getActivityDoubleState(act, InternalStates.COSTS, 0.);
     }
 
     private Comparator<InsertionData> getComparator() {
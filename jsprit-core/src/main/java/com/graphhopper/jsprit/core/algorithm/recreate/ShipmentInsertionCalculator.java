@@ -63,6 +63,8 @@ final class ShipmentInsertionCalculator extends AbstractInsertionCalculator {
 
     private final AdditionalAccessEgressCalculator additionalAccessEgressCalculator;
 
+    private GranularInsertion granularInsertion;
+
     public ShipmentInsertionCalculator(VehicleRoutingTransportCosts routingCosts, VehicleRoutingActivityCosts activityCosts, ActivityInsertionCostsCalculator activityInsertionCostsCalculator, ConstraintManager constraintManager, JobActivityFactory jobActivityFactory) {
         super();
         this.activityInsertionCostsCalculator = activityInsertionCostsCalculator;
@@ -76,6 +78,16 @@ final class ShipmentInsertionCalculator extends AbstractInsertionCalculator {
         logger.debug("initialise {}", this);
     }
 
+    /**
+     * Restricts evaluated pickup and delivery positions to the granular neighborhood of the shipment. Default is null,
+     * i.e. all positions are evaluated.
+     *
+     * @param granularInsertion granular insertion or null
+     */
+    public void setGranularInsertion(GranularInsertion granularInsertion) {
+        this.granularInsertion = granularInsertion;
+    }
+
     @Override
     public String toString() {
         return "[name=calculatesShipmentInsertion]";
@@ -107,6 +119,10 @@ final class ShipmentInsertionCalculator extends AbstractInsertionCalculator {
         double bestCost = bestKnownCosts;
         additionalICostsAtRouteLevel += additionalAccessEgressCalculator.getCosts(insertionContext);
 
+        if (granularInsertion != null && granularInsertion.canSkip(currentRoute, newVehicle, additionalICostsAtRouteLevel, bestCost, shipment.getPickupLocation(), shipment.getDeliveryLocation())) {
+            return new InsertionData.NoInsertionFound();
+        }
+
         int pickupInsertionIndex = InsertionData.NO_INDEX;
         int deliveryInsertionIndex = InsertionData.NO_INDEX;
 
@@ -140,7 +156,9 @@ final class ShipmentInsertionCalculator extends AbstractInsertionCalculator {
             }
 
             boolean pickupInsertionNotFulfilledBreak = true;
-            for(TimeWindow pickupTimeWindow : shipment.getPickupTimeWindows()) {
+            boolean evaluatePickup = granularInsertion == null || granularInsertion.isPromising(shipment, prevAct, nextAct);
+            if (!evaluatePickup) pickupInsertionNotFulfilledBreak = false;
+            else for (TimeWindow pickupTimeWindow : shipment.getPickupTimeWindows()) {
                 pickupShipment.setTheoreticalEarliestOperationStartTime(pickupTimeWindow.getStart());
                 pickupShipment.setTheoreticalLatestOperationStartTime(pickupTimeWindow.getEnd());
                 ActivityContext activityContext = new ActivityContext();
@@ -190,7 +208,9 @@ final class ShipmentInsertionCalculator extends AbstractInsertionCalculator {
                     }
 
                     boolean deliveryInsertionNotFulfilledBreak = true;
-                    for (TimeWindow deliveryTimeWindow : shipment.getDeliveryTimeWindows()) {
+                    boolean evaluateDelivery = granularInsertion == null || granularInsertion.isPromising(shipment, prevAct_deliveryLoop, nextAct_deliveryLoop);
+                    if (!evaluateDelivery) deliveryInsertionNotFulfilledBreak = false;
+                    else for (TimeWindow deliveryTimeWindow : shipment.getDeliveryTimeWindows()) {
                         deliverShipment.setTheoreticalEarliestOperationStartTime(deliveryTimeWindow.getStart());
                         deliverShipment.setTheoreticalLatestOperationStartTime(deliveryTimeWindow.getEnd());
                         ActivityContext activityContext_ = new ActivityContext();
@@ -67,6 +67,8 @@ public final class ShipmentInsertionCalculatorFlex extends AbstractInsertionCalc
 
     private AdditionalAccessEgressCalculator additionalAccessEgressCalculator;
 
+    private GranularInsertion granularInsertion;
+
     private int evalIndexPickup = Integer.MAX_VALUE;
     private int evalIndexDelivery = Integer.MAX_VALUE;
 
@@ -94,6 +96,16 @@ public final class ShipmentInsertionCalculatorFlex extends AbstractInsertionCalc
         this.activityFactory = activityFactory;
     }
 
+    /**
+     * Restricts evaluated pickup and delivery positions to the granular neighborhood of the shipment. Default is null,
+     * i.e. all positions are evaluated.
+     *
+     * @param granularInsertion granular insertion or null
+     */
+    public void setGranularInsertion(GranularInsertion granularInsertion) {
+        this.granularInsertion = granularInsertion;
+    }
+
     @Override
     public String toString() {
         return "[name=calculatesServiceInsertion]";
@@ -127,6 +139,10 @@ public final class ShipmentInsertionCalculatorFlex extends AbstractInsertionCalc
         double bestCost = bestKnownCosts;
         additionalICostsAtRouteLevel += additionalAccessEgressCalculator.getCosts(insertionContext);
 
+        if (granularInsertion != null && granularInsertion.canSkip(currentRoute, newVehicle, additionalICostsAtRouteLevel, bestCost, shipment.getPickupLocation(), shipment.getDeliveryLocation())) {
+            return new InsertionData.NoInsertionFound();
+        }
+
         int pickupInsertionIndex = InsertionData.NO_INDEX;
         int deliveryInsertionIndex = InsertionData.NO_INDEX;
 
@@ -159,7 +175,9 @@ public final class ShipmentInsertionCalculatorFlex extends AbstractInsertionCalc
             if (i > evalIndexPickup) break;
             if (i == evalIndexPickup || evalIndexPickup == Integer.MAX_VALUE) {
                 boolean pickupInsertionNotFulfilledBreak = true;
-                for (TimeWindow pickupTimeWindow : shipment.getPickupTimeWindows()) {
+                boolean evaluatePickup = granularInsertion == null || granularInsertion.isPromising(shipment, prevAct, nextAct);
+                if (!evaluatePickup) pickupInsertionNotFulfilledBreak = false;
+                else for (TimeWindow pickupTimeWindow : shipment.getPickupTimeWindows()) {
                     pickupShipment.setTheoreticalEarliestOperationStartTime(pickupTimeWindow.getStart());
                     pickupShipment.setTheoreticalLatestOperationStartTime(pickupTimeWindow.getEnd());
                     ActivityContext activityContext = new ActivityContext();
@@ -210,7 +228,9 @@ public final class ShipmentInsertionCalculatorFlex extends AbstractInsertionCalc
 //                        if (j == evalIndexDelivery || evalIndexDelivery == Integer.MAX_VALUE) {
                         else {
                             boolean deliveryInsertionNotFulfilledBreak = true;
-                            for (TimeWindow deliveryTimeWindow : shipment.getDeliveryTimeWindows()) {
+                            boolean evaluateDelivery = granularInsertion == null || granularInsertion.isPromising(shipment, prevActForDeliveryLoop, nextActForDeliveryLoop);
+                            if (!evaluateDelivery) deliveryInsertionNotFulfilledBreak = false;
+                            else for (TimeWindow deliveryTimeWindow : shipment.getDeliveryTimeWindows()) {
                                 deliverShipment.setTheoreticalEarliestOperationStartTime(deliveryTimeWindow.getStart());
                                 deliverShipment.setTheoreticalLatestOperationStartTime(deliveryTimeWindow.getEnd());
                                 ActivityContext activityContext_ = new ActivityContext();
@@ -30,6 +30,7 @@ import org.apache.commons.math3.ml.clustering.Clusterable;
 import org.apache.commons.math3.ml.distance.DistanceMeasure;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by schroeder on 04/02/15.
@@ -38,7 +39,7 @@ public class DBSCANClusterer {
 
     private static class LocationWrapper implements Clusterable {
 
-        private static int objCounter = 0;
+        private static final AtomicInteger objCounter = new AtomicInteger();
 
         private final Job job;
 
@@ -48,9 +49,8 @@ public class DBSCANClusterer {
 
         public LocationWrapper(Job job, List<Location> locations) {
             this.locations = locations;
-            objCounter++;
             this.job = job;
-            this.id = objCounter;
+            this.id = objCounter.incrementAndGet();
         }
 
 //        private List<Location> getLocations(Job job){
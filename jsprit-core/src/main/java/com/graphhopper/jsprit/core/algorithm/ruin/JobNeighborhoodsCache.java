@@ -0,0 +1,432 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphhopper.jsprit.core.algorithm.ruin;
+
+import com.graphhopper.jsprit.core.algorithm.ruin.distance.JobDistance;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Activity;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.util.Coordinate;
+import com.graphhopper.jsprit.core.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Cache of job neighborhoods that can be reused by several algorithms and across solver runs, i.e. it can be written
+ * to and read from a compact binary file.
+ * <p>
+ * <p>A neighborhood (row) is memorized per job id together with a key of the job's locations (id, index and
+ * coordinate of each activity location). When neighborhoods are requested for a problem, only rows of added jobs,
+ * of jobs whose locations changed and of jobs that had a removed job in their neighborhood are recalculated from
+ * scratch. All other rows are updated with the distances to the added jobs only.
+ * <p>
+ * <p>The cache does not know the job distance it has been built with, i.e. it must always be used with the same job
+ * distance. Max distance is updated incrementally, thus it can overestimate the actual max distance once jobs have
+ * been removed.
+ *
+ * @author schroeder
+ */
+public class JobNeighborhoodsCache {
+
+    public static final int MAGIC = 0x4A53504E;
+
+    public static final int VERSION = 1;
+
+    private static Logger logger = LoggerFactory.getLogger(JobNeighborhoodsCache.class);
+
+    private static class Row {
+
+        final String locationKey;
+
+        String[] neighbors;
+
+        double[] distances;
+
+        double maxDistance;
+
+        Row(String locationKey, String[] neighbors, double[] distances, double maxDistance) {
+            this.locationKey = locationKey;
+            this.neighbors = neighbors;
+            this.distances = distances;
+            this.maxDistance = maxDistance;
+        }
+
+        boolean contains(Set<String> jobIds) {
+            for (String neighbor : neighbors) {
+                if (jobIds.contains(neighbor)) return true;
+            }
+            return false;
+        }
+
+        void merge(String jobId, double distance, int capacity) {
+            if (distance > maxDistance) maxDistance = distance;
+            int size = neighbors.length;
+            if (capacity == 0) return;
+            if (size == capacity && distance >= distances[size - 1]) return;
+            int position = size;
+            while (position > 0 && distances[position - 1] > distance) position--;
+            int newSize = Math.min(size + 1, capacity);
+            String[] newNeighbors = new String[newSize];
+            double[] newDistances = new double[newSize];
+            System.arraycopy(neighbors, 0, newNeighbors, 0, position);
+            System.arraycopy(distances, 0, newDistances, 0, position);
+            newNeighbors[position] = jobId;
+            newDistances[position] = distance;
+            System.arraycopy(neighbors, position, newNeighbors, position + 1, newSize - position - 1);
+            System.arraycopy(distances, position, newDistances, position + 1, newSize - position - 1);
+            neighbors = newNeighbors;
+            distances = newDistances;
+        }
+
+    }
+
+    private static class CachedNeighborhoods implements JobNeighborhoods {
+
+        private final int[][] neighbors;
+
+        private final Job[] jobs;
+
+        private final double maxDistance;
+
+        CachedNeighborhoods(int[][] neighbors, Job[] jobs, double maxDistance) {
+            this.neighbors = neighbors;
+            this.jobs = jobs;
+            this.maxDistance = maxDistance;
+        }
+
+        @Override
+        public Iterator<Job> getNearestNeighborsIterator(int nNeighbors, Job neighborTo) {
+            if (neighborTo.getIndex() >= neighbors.length || neighbors[neighborTo.getIndex()] == null) {
+                return Collections.emptyIterator();
+            }
+            return new JobNeighborhoodsOptimized.ArrayIterator(nNeighbors, neighbors[neighborTo.getIndex()], jobs);
+        }
+
+        @Override
+        public void initialise() {
+
+        }
+
+        @Override
+        public double getMaxDistance() {
+            return maxDistance;
+        }
+
+    }
+
+    /**
+     * Reads a cache from the specified file.
+     *
+     * @param filename name of cache file
+     * @return cache
+     */
+    public static JobNeighborhoodsCache read(String filename) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16))) {
+            if (in.readInt() != MAGIC)
+                throw new IllegalArgumentException(filename + " is not a neighborhood file. magic number does not match.");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IllegalArgumentException("version " + version + " of neighborhood file " + filename + " is not supported");
+            JobNeighborhoodsCache cache = new JobNeighborhoodsCache(in.readInt());
+            int noRows = in.readInt();
+            String[] jobIds = new String[noRows];
+            String[] locationKeys = new String[noRows];
+            double[] maxDistances = new double[noRows];
+            int[][] neighborRows = new int[noRows][];
+            double[][] distances = new double[noRows][];
+            for (int row = 0; row < noRows; row++) {
+                jobIds[row] = in.readUTF();
+                locationKeys[row] = in.readUTF();
+                maxDistances[row] = in.readDouble();
+                int size = in.readInt();
+                neighborRows[row] = new int[size];
+                distances[row] = new double[size];
+                for (int i = 0; i < size; i++) {
+                    neighborRows[row][i] = in.readInt();
+                    distances[row][i] = in.readDouble();
+                }
+            }
+            for (int row = 0; row < noRows; row++) {
+                String[] neighbors = new String[neighborRows[row].length];
+                for (int i = 0; i < neighbors.length; i++) {
+                    neighbors[i] = jobIds[neighborRows[row][i]];
+                }
+                cache.rows.put(jobIds[row], new Row(locationKeys[row], neighbors, distances[row], maxDistances[row]));
+            }
+            return cache;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final int capacity;
+
+    private final Map<String, Row> rows = new LinkedHashMap<>();
+
+    private int noRecalculatedRows = 0;
+
+    private int noUpdatedRows = 0;
+
+    /**
+     * Creates an empty cache that memorizes up to capacity neighbors per job.
+     *
+     * @param capacity max number of neighbors per job
+     */
+    public JobNeighborhoodsCache(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity must not be negative");
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int getNoRows() {
+        return rows.size();
+    }
+
+    /**
+     * Returns the number of neighborhoods that have been recalculated from scratch by the last call of
+     * {@link #getNeighborhoods(VehicleRoutingProblem, JobDistance)}.
+     *
+     * @return number of recalculated rows
+     */
+    public synchronized int getNoRecalculatedRows() {
+        return noRecalculatedRows;
+    }
+
+    /**
+     * Returns the number of neighborhoods that have been updated with added jobs by the last call of
+     * {@link #getNeighborhoods(VehicleRoutingProblem, JobDistance)}.
+     *
+     * @return number of updated rows
+     */
+    public synchronized int getNoUpdatedRows() {
+        return noUpdatedRows;
+    }
+
+    /**
+     * Updates the cache such that it contains exactly the jobs of the specified problem, and returns the (already
+     * initialised) neighborhoods of these jobs.
+     *
+     * @param vrp         vehicle routing problem
+     * @param jobDistance job distance the cache has been built with
+     * @return job neighborhoods
+     */
+    public JobNeighborhoods getNeighborhoods(VehicleRoutingProblem vrp, JobDistance jobDistance) {
+        return getNeighborhoods(vrp, jobDistance, null);
+    }
+
+    /**
+     * Updates the cache such that it contains exactly the jobs of the specified problem, and returns the (already
+     * initialised) neighborhoods of these jobs. Neighborhoods that need to be recalculated from scratch are calculated
+     * in parallel on the specified pool, i.e. the job distance is then called concurrently. If forkJoinPool is null,
+     * they are calculated in the calling thread.
+     *
+     * @param vrp          vehicle routing problem
+     * @param jobDistance  job distance the cache has been built with
+     * @param forkJoinPool pool or null
+     * @return job neighborhoods
+     */
+    public synchronized JobNeighborhoods getNeighborhoods(VehicleRoutingProblem vrp, JobDistance jobDistance, ForkJoinPool forkJoinPool) {
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+        List<Job> locatedJobs = new ArrayList<>();
+        Map<String, String> locationKeys = new HashMap<>();
+        for (Job job : vrp.getJobsInclusiveInitialJobsInRoutes().values()) {
+            if (job.getActivities().get(0).getLocation() == null) continue;
+            locatedJobs.add(job);
+            locationKeys.put(job.getId(), getLocationKey(job));
+        }
+        Set<String> removed = new HashSet<>();
+        for (Map.Entry<String, Row> entry : rows.entrySet()) {
+            String locationKey = locationKeys.get(entry.getKey());
+            if (locationKey == null || !locationKey.equals(entry.getValue().locationKey)) removed.add(entry.getKey());
+        }
+        rows.keySet().removeAll(removed);
+        List<Job> added = new ArrayList<>();
+        for (Job job : locatedJobs) {
+            if (!rows.containsKey(job.getId())) added.add(job);
+        }
+        Map<String, Job> jobsById = new HashMap<>();
+        for (Job job : locatedJobs) jobsById.put(job.getId(), job);
+
+        List<Job> dirty = new ArrayList<>(added);
+        noUpdatedRows = 0;
+        for (Map.Entry<String, Row> entry : rows.entrySet()) {
+            Row row = entry.getValue();
+            if (!removed.isEmpty() && row.contains(removed)) {
+                dirty.add(jobsById.get(entry.getKey()));
+            } else if (!added.isEmpty()) {
+                Job job = jobsById.get(entry.getKey());
+                for (Job addedJob : added) {
+                    row.merge(addedJob.getId(), jobDistance.getDistance(job, addedJob), capacity);
+                }
+                noUpdatedRows++;
+            }
+        }
+        Job[] candidates = locatedJobs.toArray(new Job[locatedJobs.size()]);
+        Row[] dirtyRows = new Row[dirty.size()];
+        RowTask task = new RowTask(dirty, candidates, jobDistance, locationKeys, dirtyRows, 0, dirtyRows.length);
+        if (forkJoinPool == null || dirtyRows.length <= RowTask.THRESHOLD) task.compute();
+        else forkJoinPool.invoke(task);
+        for (int i = 0; i < dirtyRows.length; i++) {
+            rows.put(dirty.get(i).getId(), dirtyRows[i]);
+        }
+        noRecalculatedRows = dirty.size();
+
+        int maxIndex = 0;
+        for (Job job : locatedJobs) maxIndex = Math.max(maxIndex, job.getIndex());
+        Job[] jobs = new Job[maxIndex + 1];
+        for (Job job : locatedJobs) jobs[job.getIndex()] = job;
+        int[][] neighbors = new int[maxIndex + 1][];
+        double maxDistance = 0.;
+        for (Job job : locatedJobs) {
+            Row row = rows.get(job.getId());
+            int[] jobIndices = new int[row.neighbors.length];
+            for (int i = 0; i < jobIndices.length; i++) {
+                jobIndices[i] = jobsById.get(row.neighbors[i]).getIndex();
+            }
+            neighbors[job.getIndex()] = jobIndices;
+            maxDistance = Math.max(maxDistance, row.maxDistance);
+        }
+        stopWatch.stop();
+        logger.debug("neighborhoods of {} jobs from cache. recalculated: {}, updated: {}, comp-time: {}", locatedJobs.size(), noRecalculatedRows, noUpdatedRows, stopWatch);
+        return new CachedNeighborhoods(neighbors, jobs, maxDistance);
+    }
+
+    /**
+     * Calculates the rows of a range of jobs, and splits the range as long as it is larger than {@link #THRESHOLD}
+     * and the task runs in a pool.
+     */
+    private class RowTask extends RecursiveAction {
+
+        static final int THRESHOLD = 64;
+
+        private final List<Job> dirty;
+
+        private final Job[] candidates;
+
+        private final JobDistance jobDistance;
+
+        private final Map<String, String> locationKeys;
+
+        private final Row[] dirtyRows;
+
+        private final int from;
+
+        private final int to;
+
+        RowTask(List<Job> dirty, Job[] candidates, JobDistance jobDistance, Map<String, String> locationKeys, Row[] dirtyRows, int from, int to) {
+            this.dirty = dirty;
+            this.candidates = candidates;
+            this.jobDistance = jobDistance;
+            this.locationKeys = locationKeys;
+            this.dirtyRows = dirtyRows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            //splitting outside of a pool would fork the subtasks to the common pool
+            if (to - from > THRESHOLD && inForkJoinPool()) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RowTask(dirty, candidates, jobDistance, locationKeys, dirtyRows, from, mid),
+                    new RowTask(dirty, candidates, jobDistance, locationKeys, dirtyRows, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                dirtyRows[i] = calculateRow(dirty.get(i), candidates, jobDistance, locationKeys);
+            }
+        }
+
+    }
+
+    private Row calculateRow(Job job, Job[] candidates, JobDistance jobDistance, Map<String, String> locationKeys) {
+        NeighborHeap heap = new NeighborHeap(Math.min(capacity, Math.max(candidates.length - 1, 0)));
+        double maxDistance = 0.;
+        for (int j = 0; j < candidates.length; j++) {
+            if (candidates[j] == job) continue;
+            double distance = jobDistance.getDistance(job, candidates[j]);
+            if (distance > maxDistance) maxDistance = distance;
+            heap.offer(distance, j);
+        }
+        int[] nearest = new int[heap.size()];
+        double[] distances = new double[heap.size()];
+        heap.drainSorted(nearest, distances);
+        String[] neighbors = new String[nearest.length];
+        for (int i = 0; i < nearest.length; i++) {
+            neighbors[i] = candidates[nearest[i]].getId();
+        }
+        return new Row(locationKeys.get(job.getId()), neighbors, distances, maxDistance);
+    }
+
+    /**
+     * Writes the cache to the specified file.
+     *
+     * @param filename name of cache file
+     */
+    public synchronized void write(String filename) {
+        Map<String, Integer> rowIndices = new HashMap<>();
+        for (String jobId : rows.keySet()) rowIndices.put(jobId, rowIndices.size());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(capacity);
+            out.writeInt(rows.size());
+            for (Map.Entry<String, Row> entry : rows.entrySet()) {
+                Row row = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeUTF(row.locationKey);
+                out.writeDouble(row.maxDistance);
+                out.writeInt(row.neighbors.length);
+                for (int i = 0; i < row.neighbors.length; i++) {
+                    out.writeInt(rowIndices.get(row.neighbors[i]));
+                    out.writeDouble(row.distances[i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static String getLocationKey(Job job) {
+        StringBuilder key = new StringBuilder();
+        for (Activity activity : job.getActivities()) {
+            Location location = activity.getLocation();
+            if (location == null) {
+                key.append(';');
+                continue;
+            }
+            key.append(location.getId()).append('|').append(location.getIndex()).append('|');
+            Coordinate coord = location.getCoordinate();
+            if (coord != null) key.append(coord.getX()).append(',').append(coord.getY());
+            key.append(';');
+        }
+        return key.toString();
+    }
+
+}
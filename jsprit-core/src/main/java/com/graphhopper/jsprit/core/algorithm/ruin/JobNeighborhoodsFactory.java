@@ -21,6 +21,8 @@ package com.graphhopper.jsprit.core.algorithm.ruin;
 import com.graphhopper.jsprit.core.algorithm.ruin.distance.JobDistance;
 import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Created by schroeder on 05/03/15.
  */
@@ -35,4 +37,37 @@ public class JobNeighborhoodsFactory {
         return new JobNeighborhoodsOptimized(vrp, jobDistance, capacity);
     }
 
+    /**
+     * Creates neighborhoods with the specified capacity. If useSpatialIndex is true, neighbors are determined with a
+     * k-d tree on the coordinates of the jobs, which is only meaningful if jobDistance is euclidean.
+     *
+     * @param vrp             vehicle routing problem
+     * @param jobDistance     job distance
+     * @param capacity        max number of neighbors memorized per job
+     * @param useSpatialIndex true if k-d tree should be used
+     * @return job neighborhoods
+     */
+    public JobNeighborhoods createNeighborhoods(VehicleRoutingProblem vrp, JobDistance jobDistance, int capacity, boolean useSpatialIndex) {
+        return createNeighborhoods(vrp, jobDistance, capacity, useSpatialIndex, null);
+    }
+
+    /**
+     * Creates neighborhoods with the specified capacity whose initialisation calculates the neighborhoods of different
+     * jobs in parallel on the specified pool. The job distance (and thus the transport costs) is then called
+     * concurrently. If forkJoinPool is null, neighborhoods are calculated in the calling thread.
+     *
+     * @param vrp             vehicle routing problem
+     * @param jobDistance     job distance
+     * @param capacity        max number of neighbors memorized per job
+     * @param useSpatialIndex true if k-d tree should be used
+     * @param forkJoinPool    pool or null
+     * @return job neighborhoods
+     */
+    public JobNeighborhoods createNeighborhoods(VehicleRoutingProblem vrp, JobDistance jobDistance, int capacity, boolean useSpatialIndex, ForkJoinPool forkJoinPool) {
+        JobNeighborhoodsOptimized neighborhoods = new JobNeighborhoodsOptimized(vrp, jobDistance, capacity);
+        neighborhoods.setSpatialIndex(useSpatialIndex);
+        neighborhoods.setForkJoinPool(forkJoinPool);
+        return neighborhoods;
+    }
+
 }
@@ -21,11 +21,15 @@ package com.graphhopper.jsprit.core.algorithm.ruin;
 import com.graphhopper.jsprit.core.algorithm.ruin.distance.JobDistance;
 import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
 import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.util.Coordinate;
 import com.graphhopper.jsprit.core.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Created by schroeder on 07/01/15.
@@ -83,6 +87,10 @@ class JobNeighborhoodsOptimized implements JobNeighborhoods {
 
     private double maxDistance = 0.;
 
+    private ForkJoinPool forkJoinPool = null;
+
+    private boolean useSpatialIndex = false;
+
     public JobNeighborhoodsOptimized(VehicleRoutingProblem vrp, JobDistance jobDistance, int capacity) {
         super();
         this.vrp = vrp;
@@ -93,6 +101,32 @@ class JobNeighborhoodsOptimized implements JobNeighborhoods {
         logger.debug("initialize {}", this);
     }
 
+    /**
+     * Sets the pool that calculates the neighborhoods of different jobs in parallel. Default is null, i.e.
+     * neighborhoods are calculated in the calling thread.
+     * <p>
+     * <p>Note that the job distance is then called concurrently.
+     *
+     * @param forkJoinPool pool or null
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Determines neighbors with a k-d tree on the coordinates of the jobs rather than by calculating the job distance
+     * of each pair of jobs. This is only meaningful if the job distance is (proportional to) the euclidean distance.
+     * It requires all jobs to be services with coordinates, otherwise the job distance is used anyway. Since not every
+     * pair is evaluated, max distance is then approximated by the max job distance between any job and the jobs with
+     * extreme coordinates (min and max of x, y, x+y and x-y).
+     * Default is false.
+     *
+     * @param useSpatialIndex true if k-d tree should be used
+     */
+    public void setSpatialIndex(boolean useSpatialIndex) {
+        this.useSpatialIndex = useSpatialIndex;
+    }
+
     @Override
     public Iterator<Job> getNearestNeighborsIterator(int nNeighbors, Job neighborTo) {
         if (neighborTo.getIndex() == 0) {
@@ -119,42 +153,145 @@ class JobNeighborhoodsOptimized implements JobNeighborhoods {
         logger.debug("pre-process distances between locations ...");
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
-        for (Job job_i : vrp.getJobsInclusiveInitialJobsInRoutes().values()) {
-            if (job_i.getActivities().get(0).getLocation() == null) continue;
-            jobs[job_i.getIndex()] = job_i;
-            List<ReferencedJob> jobList = new ArrayList<ReferencedJob>(vrp.getJobsInclusiveInitialJobsInRoutes().values().size());
-            for (Job job_j : vrp.getJobsInclusiveInitialJobsInRoutes().values()) {
-                if (job_j.getActivities().get(0).getLocation() == null) continue;
-                if (job_i == job_j) continue;
-                double distance = jobDistance.getDistance(job_i, job_j);
-                if (distance > maxDistance) maxDistance = distance;
-                ReferencedJob referencedJob = new ReferencedJob(job_j, distance);
-                jobList.add(referencedJob);
-            }
-            Collections.sort(jobList,getComparator());
-            int neiborhoodSize = Math.min(capacity, jobList.size());
-            int[] jobIndices = new int[neiborhoodSize];
-            for (int index = 0; index < neiborhoodSize; index++) {
-                jobIndices[index] = jobList.get(index).getJob().getIndex();
-            }
-            neighbors[job_i.getIndex()-1] = jobIndices;
+        List<Job> jobList = new ArrayList<>(vrp.getJobsInclusiveInitialJobsInRoutes().size());
+        for (Job job : vrp.getJobsInclusiveInitialJobsInRoutes().values()) {
+            if (job.getActivities().get(0).getLocation() == null) continue;
+            jobs[job.getIndex()] = job;
+            jobList.add(job);
+        }
+        Job[] locatedJobs = jobList.toArray(new Job[jobList.size()]);
+        KdTree kdTree = null;
+        if (useSpatialIndex) {
+            kdTree = createKdTree(locatedJobs);
+            if (kdTree == null) logger.warn("cannot use spatial index since not all jobs are services with coordinates. neighborhoods are calculated with job distance.");
+        }
+        double[] maxDistances = new double[locatedJobs.length];
+        int[] extremeJobs = kdTree == null ? null : getExtremeJobs(locatedJobs);
+        NeighborhoodTask task = new NeighborhoodTask(locatedJobs, kdTree, extremeJobs, maxDistances, 0, locatedJobs.length);
+        if (forkJoinPool == null || locatedJobs.length <= NeighborhoodTask.THRESHOLD) task.compute();
+        else forkJoinPool.invoke(task);
+        for (double distance : maxDistances) {
+            if (distance > maxDistance) maxDistance = distance;
         }
         stopWatch.stop();
         logger.debug("pre-processing comp-time: {}", stopWatch);
     }
 
-    private Comparator<ReferencedJob> getComparator(){
-        return new Comparator<ReferencedJob>() {
-            @Override
-            public int compare(ReferencedJob o1, ReferencedJob o2) {
-                if (o1.getDistance() < o2.getDistance()) {
-                    return -1;
-                } else if (o1.getDistance() > o2.getDistance()){
-                    return 1;
+    private KdTree createKdTree(Job[] locatedJobs) {
+        double[] xs = new double[locatedJobs.length];
+        double[] ys = new double[locatedJobs.length];
+        for (int i = 0; i < locatedJobs.length; i++) {
+            if (!(locatedJobs[i] instanceof Service)) return null;
+            Coordinate coord = ((Service) locatedJobs[i]).getLocation().getCoordinate();
+            if (coord == null) return null;
+            xs[i] = coord.getX();
+            ys[i] = coord.getY();
+        }
+        return new KdTree(xs, ys);
+    }
+
+    /**
+     * Returns the indices of the jobs with min and max x, y, x+y and x-y. The jobs farthest apart are among them
+     * (approximately), thus max distance can be determined with a few job distances per job.
+     */
+    private int[] getExtremeJobs(Job[] locatedJobs) {
+        int[] extremes = new int[8];
+        for (int i = 1; i < locatedJobs.length; i++) {
+            Coordinate coord = ((Service) locatedJobs[i]).getLocation().getCoordinate();
+            double[] values = {coord.getX(), coord.getY(), coord.getX() + coord.getY(), coord.getX() - coord.getY()};
+            for (int d = 0; d < values.length; d++) {
+                if (values[d] < getValue(locatedJobs[extremes[2 * d]], d)) extremes[2 * d] = i;
+                if (values[d] > getValue(locatedJobs[extremes[2 * d + 1]], d)) extremes[2 * d + 1] = i;
+            }
+        }
+        return extremes;
+    }
+
+    private static double getValue(Job job, int dimension) {
+        Coordinate coord = ((Service) job).getLocation().getCoordinate();
+        switch (dimension) {
+            case 0:
+                return coord.getX();
+            case 1:
+                return coord.getY();
+            case 2:
+                return coord.getX() + coord.getY();
+            default:
+                return coord.getX() - coord.getY();
+        }
+    }
+
+    /**
+     * Calculates the neighborhoods of a range of jobs, and splits the range as long as it is larger than
+     * {@link #THRESHOLD} and the task runs in a pool.
+     */
+    private class NeighborhoodTask extends RecursiveAction {
+
+        static final int THRESHOLD = 64;
+
+        private final Job[] locatedJobs;
+
+        private final KdTree kdTree;
+
+        private final int[] extremeJobs;
+
+        private final double[] maxDistances;
+
+        private final int from;
+
+        private final int to;
+
+        NeighborhoodTask(Job[] locatedJobs, KdTree kdTree, int[] extremeJobs, double[] maxDistances, int from, int to) {
+            this.locatedJobs = locatedJobs;
+            this.kdTree = kdTree;
+            this.extremeJobs = extremeJobs;
+            this.maxDistances = maxDistances;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            //splitting outside of a pool would fork the subtasks to the common pool
+            if (to - from > THRESHOLD && inForkJoinPool()) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new NeighborhoodTask(locatedJobs, kdTree, extremeJobs, maxDistances, from, mid),
+                    new NeighborhoodTask(locatedJobs, kdTree, extremeJobs, maxDistances, mid, to));
+                return;
+            }
+            NeighborHeap heap = new NeighborHeap(Math.min(capacity, Math.max(locatedJobs.length - 1, 0)));
+            int[] nearest = new int[heap.capacity()];
+            for (int i = from; i < to; i++) {
+                Job job_i = locatedJobs[i];
+                heap.clear();
+                if (kdTree != null) {
+                    Coordinate coord = ((Service) job_i).getLocation().getCoordinate();
+                    kdTree.nearest(coord.getX(), coord.getY(), i, heap);
+                    double maxDistance = 0.;
+                    for (int j : extremeJobs) {
+                        if (i == j) continue;
+                        maxDistance = Math.max(maxDistance, jobDistance.getDistance(job_i, locatedJobs[j]));
+                    }
+                    maxDistances[i] = maxDistance;
+                } else {
+                    double maxDistance = 0.;
+                    for (int j = 0; j < locatedJobs.length; j++) {
+                        if (i == j) continue;
+                        double distance = jobDistance.getDistance(job_i, locatedJobs[j]);
+                        if (distance > maxDistance) maxDistance = distance;
+                        heap.offer(distance, j);
+                    }
+                    maxDistances[i] = maxDistance;
+                }
+                int neighborhoodSize = heap.drainSorted(nearest);
+                int[] jobIndices = new int[neighborhoodSize];
+                for (int index = 0; index < neighborhoodSize; index++) {
+                    jobIndices[index] = locatedJobs[nearest[index]].getIndex();
                 }
-                else return 0;
+                neighbors[job_i.getIndex() - 1] = jobIndices;
             }
-        };
+        }
+
     }
 
     @Override
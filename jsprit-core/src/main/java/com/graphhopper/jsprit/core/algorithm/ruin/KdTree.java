@@ -0,0 +1,107 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphhopper.jsprit.core.algorithm.ruin;
+
+/**
+ * Static 2-d tree on points that are identified by their position in the coordinate arrays. It is stored implicitly in
+ * a permutation of the points, i.e. the median of each range splits it alternately by x and y.
+ * <p>
+ * <p>Once built, the tree can be queried concurrently.
+ */
+class KdTree {
+
+    private final double[] xs;
+
+    private final double[] ys;
+
+    private final int[] points;
+
+    KdTree(double[] xs, double[] ys) {
+        if (xs.length != ys.length) throw new IllegalArgumentException("number of x and y coordinates must be equal");
+        this.xs = xs;
+        this.ys = ys;
+        points = new int[xs.length];
+        for (int i = 0; i < points.length; i++) points[i] = i;
+        build(0, points.length, 0);
+    }
+
+    private void build(int from, int to, int depth) {
+        if (to - from <= 1) return;
+        int median = (from + to) >>> 1;
+        select(from, to - 1, median, depth % 2 == 0 ? xs : ys);
+        build(from, median, depth + 1);
+        build(median + 1, to, depth + 1);
+    }
+
+    //quickselect, i.e. afterwards points[k] is the point that would be at k if the range was sorted by key
+    private void select(int left, int right, int k, double[] key) {
+        while (right > left) {
+            double pivot = key[points[(left + right) >>> 1]];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (key[points[i]] < pivot) i++;
+                while (key[points[j]] > pivot) j--;
+                if (i <= j) {
+                    int tmp = points[i];
+                    points[i] = points[j];
+                    points[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) right = j;
+            else if (k >= i) left = i;
+            else return;
+        }
+    }
+
+    /**
+     * Offers the points nearest to (x,y) to the specified heap, i.e. afterwards the heap contains the nearest points
+     * with their squared euclidean distance.
+     *
+     * @param x       x coordinate
+     * @param y       y coordinate
+     * @param exclude point that is not offered (e.g. the query point itself), or -1
+     * @param heap    heap that collects the nearest points
+     */
+    void nearest(double x, double y, int exclude, NeighborHeap heap) {
+        nearest(x, y, exclude, heap, 0, points.length, 0);
+    }
+
+    private void nearest(double x, double y, int exclude, NeighborHeap heap, int from, int to, int depth) {
+        if (from >= to) return;
+        int median = (from + to) >>> 1;
+        int point = points[median];
+        if (point != exclude) {
+            double dx = xs[point] - x;
+            double dy = ys[point] - y;
+            heap.offer(dx * dx + dy * dy, point);
+        }
+        double diff = depth % 2 == 0 ? x - xs[point] : y - ys[point];
+        if (diff < 0) {
+            nearest(x, y, exclude, heap, from, median, depth + 1);
+            if (diff * diff <= heap.getMaxDistance()) nearest(x, y, exclude, heap, median + 1, to, depth + 1);
+        } else {
+            nearest(x, y, exclude, heap, median + 1, to, depth + 1);
+            if (diff * diff <= heap.getMaxDistance()) nearest(x, y, exclude, heap, from, median, depth + 1);
+        }
+    }
+
+}
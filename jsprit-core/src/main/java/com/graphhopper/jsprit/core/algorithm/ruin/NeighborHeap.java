@@ -0,0 +1,147 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphhopper.jsprit.core.algorithm.ruin;
+
+/**
+ * Bounded max-heap on primitive arrays that selects the k nearest items, i.e. the items with the k smallest distances.
+ * <p>
+ * <p>Items are ints. Ties in distance are broken by the item itself (smaller item first), thus the result is the same
+ * as sorting all items stably by distance (if items are offered in ascending order) and keeping the first k.
+ * <p>
+ * <p>A heap is not thread-safe, but it can be reused by calling {@link #clear()}.
+ */
+class NeighborHeap {
+
+    private final double[] distances;
+
+    private final int[] items;
+
+    private int size = 0;
+
+    NeighborHeap(int capacity) {
+        distances = new double[capacity];
+        items = new int[capacity];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return items.length;
+    }
+
+    boolean isFull() {
+        return size == items.length;
+    }
+
+    /**
+     * Returns the largest distance in the heap, or Double.MAX_VALUE as long as the heap is not full.
+     *
+     * @return largest distance
+     */
+    double getMaxDistance() {
+        if (!isFull()) return Double.MAX_VALUE;
+        return distances[0];
+    }
+
+    /**
+     * Offers the specified item. It is memorized if the heap is not yet full or if it is nearer than the farthest item
+     * in the heap (which is then dropped).
+     *
+     * @param distance distance of item
+     * @param item     item
+     */
+    void offer(double distance, int item) {
+        if (items.length == 0) return;
+        if (size < items.length) {
+            int index = size++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!greater(distance, item, distances[parent], items[parent])) break;
+                distances[index] = distances[parent];
+                items[index] = items[parent];
+                index = parent;
+            }
+            distances[index] = distance;
+            items[index] = item;
+        } else if (greater(distances[0], items[0], distance, item)) {
+            siftDown(distance, item, size);
+        }
+    }
+
+    private void siftDown(double distance, int item, int heapSize) {
+        int index = 0;
+        int half = heapSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < heapSize && greater(distances[right], items[right], distances[child], items[child])) {
+                child = right;
+            }
+            if (!greater(distances[child], items[child], distance, item)) break;
+            distances[index] = distances[child];
+            items[index] = items[child];
+            index = child;
+        }
+        distances[index] = distance;
+        items[index] = item;
+    }
+
+    private static boolean greater(double distance1, int item1, double distance2, int item2) {
+        if (distance1 > distance2) return true;
+        if (distance1 < distance2) return false;
+        return item1 > item2;
+    }
+
+    /**
+     * Sorts the memorized items by ascending distance and writes them to target. The heap is empty afterwards.
+     *
+     * @param target array with a length of at least {@link #size()}
+     * @return number of items written
+     */
+    int drainSorted(int[] target) {
+        return drainSorted(target, null);
+    }
+
+    /**
+     * Sorts the memorized items by ascending distance and writes them and their distances to the specified arrays.
+     * The heap is empty afterwards.
+     *
+     * @param target         array with a length of at least {@link #size()}
+     * @param targetDistance array with a length of at least {@link #size()}, or null
+     * @return number of items written
+     */
+    int drainSorted(int[] target, double[] targetDistance) {
+        int noItems = size;
+        //heap sort, i.e. the farthest item is moved to the end of the shrinking heap
+        for (int end = size - 1; end >= 0; end--) {
+            target[end] = items[0];
+            if (targetDistance != null) targetDistance[end] = distances[0];
+            siftDown(distances[end], items[end], end);
+        }
+        size = 0;
+        return noItems;
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.state;
+
+import com.graphhopper.jsprit.core.problem.solution.route.activity.ReverseActivityVisitor;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
+
+/**
+ * ReverseActivityVisitor that can tell whether it changed the state of an activity.
+ * <p>
+ * <p>If a job has been inserted, the {@link StateManager} visits the route backwards with
+ * {@link #visitAndDetectChange(TourActivity)} instead of {@link #visit(TourActivity)}. As soon as the visitor reports
+ * that the state of an activity before the insertion index has not changed, it is not called for the remaining
+ * activities anymore (apart from {@link #finish()}) since their states would not change either.
+ * <p>
+ * <p>Visitors that just implement {@link ReverseActivityVisitor} still visit the complete route.
+ *
+ * @author schroeder
+ */
+public interface ConvergingReverseActivityVisitor extends ReverseActivityVisitor, StateUpdater {
+
+    /**
+     * Visits the specified activity like {@link #visit(TourActivity)} does.
+     * <p>
+     * <p>Implementations must only return false if the states of all preceding activities would remain unchanged as
+     * well, i.e. if the new state equals the state memorized in the previous pass and all other inputs of the
+     * preceding activities are unchanged.
+     *
+     * @param activity the activity to be visited
+     * @return true if the state of the activity changed, false otherwise
+     */
+    boolean visitAndDetectChange(TourActivity activity);
+
+}
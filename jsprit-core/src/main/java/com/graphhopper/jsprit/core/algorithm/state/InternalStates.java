@@ -25,17 +25,17 @@ public class InternalStates {
 
     public final static StateId LOAD = new StateFactory.StateIdImpl("load", 1);
 
-    public final static StateId COSTS = new StateFactory.StateIdImpl("costs", 2);
+    public final static StateId COSTS = new StateFactory.DoubleStateIdImpl("costs", 0);
 
     public final static StateId LOAD_AT_BEGINNING = new StateFactory.StateIdImpl("load_at_beginning", 3);
 
     public final static StateId LOAD_AT_END = new StateFactory.StateIdImpl("load_at_end", 4);
 
-    public final static StateId DURATION = new StateFactory.StateIdImpl("duration", 5);
+    public final static StateId DURATION = new StateFactory.DoubleStateIdImpl("duration", 1);
 
-    public final static StateId LATEST_OPERATION_START_TIME = new StateFactory.StateIdImpl("latest_operation_start_time", 6);
+    public final static StateId LATEST_OPERATION_START_TIME = new StateFactory.DoubleStateIdImpl("latest_operation_start_time", 2);
 
-    public final static StateId EARLIEST_OPERATION_START_TIME = new StateFactory.StateIdImpl("earliest_operation_start_time", 7);
+    public final static StateId EARLIEST_OPERATION_START_TIME = new StateFactory.DoubleStateIdImpl("earliest_operation_start_time", 3);
 
     public final static StateId FUTURE_MAXLOAD = new StateFactory.StateIdImpl("future_max_load", 8);
 
@@ -43,13 +43,13 @@ public class InternalStates {
 
     public static final StateId SKILLS = new StateFactory.StateIdImpl("skills", 10);
 
-    public static final StateId WAITING = new StateFactory.StateIdImpl("waiting", 11);
+    public static final StateId WAITING = new StateFactory.DoubleStateIdImpl("waiting", 4);
 
-    public static final StateId TIME_SLACK = new StateFactory.StateIdImpl("time_slack", 12);
+    public static final StateId TIME_SLACK = new StateFactory.DoubleStateIdImpl("time_slack", 5);
 
-    public static final StateId FUTURE_WAITING = new StateFactory.StateIdImpl("future_waiting", 13);
+    public static final StateId FUTURE_WAITING = new StateFactory.DoubleStateIdImpl("future_waiting", 6);
 
-    public static final StateId EARLIEST_WITHOUT_WAITING = new StateFactory.StateIdImpl("earliest_without_waiting", 14);
+    public static final StateId EARLIEST_WITHOUT_WAITING = new StateFactory.DoubleStateIdImpl("earliest_without_waiting", 7);
 
     public static final StateId SWITCH_NOT_FEASIBLE = new StateFactory.StateIdImpl("switch_not_feasible", 15);
 }
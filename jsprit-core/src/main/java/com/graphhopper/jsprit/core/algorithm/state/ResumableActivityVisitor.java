@@ -0,0 +1,51 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.state;
+
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.ActivityVisitor;
+
+/**
+ * ActivityVisitor that can resume its forward pass in the middle of a route.
+ * <p>
+ * <p>If a job has been inserted, the {@link StateManager} does not need to revisit the activities before the insertion
+ * index since their predecessors did not change. Thus it calls {@link #begin(VehicleRoute, int)} instead of
+ * {@link #begin(VehicleRoute)} and only visits the activities from <code>fromIndex</code> on. The visitor is supposed to
+ * restore its running values (e.g. the end time or the load at the activity before <code>fromIndex</code>) from what
+ * it has memorized in the previous pass.
+ * <p>
+ * <p>Visitors that just implement {@link ActivityVisitor} still visit the complete route.
+ *
+ * @author schroeder
+ */
+public interface ResumableActivityVisitor extends ActivityVisitor, StateUpdater {
+
+    /**
+     * Begins a forward pass that starts with the activity at <code>fromIndex</code>, i.e. the activities
+     * <code>0..fromIndex-1</code> of <code>route.getActivities()</code> are unchanged since the previous pass.
+     * <p>
+     * <p>If the visitor cannot resume (e.g. since a route level state that affects all activities has changed), it
+     * returns false. Then {@link #begin(VehicleRoute)} is called and all activities are visited.
+     *
+     * @param route     the route to be visited
+     * @param fromIndex the index of the first activity that is visited
+     * @return true if the visitor resumes at <code>fromIndex</code>, false if it needs to visit all activities
+     */
+    boolean begin(VehicleRoute route, int fromIndex);
+
+}
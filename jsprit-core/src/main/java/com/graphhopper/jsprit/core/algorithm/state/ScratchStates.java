@@ -0,0 +1,323 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.state;
+
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scratch space for temporary states that are calculated while insertion costs are evaluated, e.g. vehicle-dependent
+ * states a constraint wants to memorize during <code>getInsertionData(...)</code>.
+ * <p>
+ * <p>Each thread gets its own scratch space by calling {@link StateManager#getScratchStates()}. Thus, it can be written
+ * without any synchronization even if insertion costs are evaluated concurrently. Do not pass it to other threads.
+ * <p>
+ * <p>Scratch states are valid until the stateManager enters its next write phase (see {@link StateManager}), i.e.
+ * until a job is inserted, the insertion starts or ends, or jobs are ruined. Then they are dropped automatically the
+ * next time the scratch space is accessed. They can also be dropped explicitly by calling {@link #clear()}.
+ * <p>
+ * <p>StateIds need to be created up front with {@link StateManager#createStateId(String)} or
+ * {@link StateManager#createDoubleStateId(String)}.
+ *
+ * @author schroeder
+ */
+public class ScratchStates {
+
+    private static final int ACTIVITY = 0;
+
+    private static final int ROUTE = 1;
+
+    private static final int MAX_INDEX = (1 << 16) - 1;
+
+    private static final int MAX_ENTITY = (1 << 28) - 1;
+
+    //version of the stateManager's states, the stateManager itself is not referenced since threads outlive it
+    private final AtomicInteger currentStateVersion;
+
+    private int stateVersion;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private double[] doubleValues;
+
+    //an entry is occupied iff its stamp equals the current stamp, i.e. clearing is just incrementing the stamp
+    private int[] stamps;
+
+    private int stamp = 1;
+
+    private int size;
+
+    private Map<VehicleRoute, Integer> routeIds = new IdentityHashMap<VehicleRoute, Integer>();
+
+    ScratchStates(AtomicInteger currentStateVersion) {
+        this.currentStateVersion = currentStateVersion;
+        this.stateVersion = currentStateVersion.get();
+        init(64);
+    }
+
+    private void init(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        doubleValues = new double[capacity];
+        stamps = new int[capacity];
+    }
+
+    /**
+     * Drops all scratch states.
+     */
+    public void clear() {
+        size = 0;
+        routeIds.clear();
+        Arrays.fill(values, null);
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        } else stamp++;
+    }
+
+    /**
+     * Returns the number of scratch states.
+     *
+     * @return number of scratch states
+     */
+    public int size() {
+        ensureValid();
+        return size;
+    }
+
+    /**
+     * Returns the double state that is associated to the specified activity, vehicle and stateId, or the default value.
+     *
+     * @param act          the activity
+     * @param vehicle      the vehicle, or null if the state does not depend on the vehicle
+     * @param stateId      the stateId
+     * @param defaultValue the value that is returned if no state is associated
+     * @return the associated double state or the default value
+     * @throws java.lang.IllegalStateException if <code>act.getIndex()==0</code> since this suggests that act has no index at all
+     */
+    public double getActivityDoubleState(TourActivity act, Vehicle vehicle, StateId stateId, double defaultValue) {
+        if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
+        if (act.getIndex() < 0) return defaultValue;
+        int slot = find(key(ACTIVITY, act.getIndex(), vehicle, stateId));
+        if (slot < 0) return defaultValue;
+        return doubleValues[slot];
+    }
+
+    /**
+     * Associates the specified activity, vehicle and stateId to the double state.
+     * <p>Start and end activities (with negative indices) are ignored.</p>
+     *
+     * @param act     the activity
+     * @param vehicle the vehicle, or null if the state does not depend on the vehicle
+     * @param stateId the stateId
+     * @param state   the state
+     * @throws java.lang.IllegalStateException if <code>act.getIndex()==0</code> since this suggests that act has no index at all
+     */
+    public void putActivityDoubleState(TourActivity act, Vehicle vehicle, StateId stateId, double state) {
+        if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
+        if (act.getIndex() < 0) return;
+        int slot = insert(key(ACTIVITY, act.getIndex(), vehicle, stateId));
+        doubleValues[slot] = state;
+        values[slot] = null;
+    }
+
+    /**
+     * Returns the state that is associated to the specified activity, vehicle and stateId, or null.
+     *
+     * @param act     the activity
+     * @param vehicle the vehicle, or null if the state does not depend on the vehicle
+     * @param stateId the stateId
+     * @param type    the type class of the state value
+     * @param <T>     the type
+     * @return the associated state or null
+     * @throws java.lang.IllegalStateException if <code>act.getIndex()==0</code> since this suggests that act has no index at all
+     */
+    public <T> T getActivityState(TourActivity act, Vehicle vehicle, StateId stateId, Class<T> type) {
+        if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
+        if (act.getIndex() < 0) return null;
+        int slot = find(key(ACTIVITY, act.getIndex(), vehicle, stateId));
+        if (slot < 0) return null;
+        return type.cast(values[slot]);
+    }
+
+    /**
+     * Associates the specified activity, vehicle and stateId to the state.
+     * <p>Start and end activities (with negative indices) are ignored.</p>
+     *
+     * @param act     the activity
+     * @param vehicle the vehicle, or null if the state does not depend on the vehicle
+     * @param stateId the stateId
+     * @param state   the state
+     * @param <T>     the type
+     * @throws java.lang.IllegalStateException if <code>act.getIndex()==0</code> since this suggests that act has no index at all
+     */
+    public <T> void putActivityState(TourActivity act, Vehicle vehicle, StateId stateId, T state) {
+        if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
+        if (act.getIndex() < 0) return;
+        int slot = insert(key(ACTIVITY, act.getIndex(), vehicle, stateId));
+        values[slot] = state;
+        doubleValues[slot] = Double.NaN;
+    }
+
+    /**
+     * Returns the double state that is associated to the specified route, vehicle and stateId, or the default value.
+     *
+     * @param route        the route
+     * @param vehicle      the vehicle, or null if the state does not depend on the vehicle
+     * @param stateId      the stateId
+     * @param defaultValue the value that is returned if no state is associated
+     * @return the associated double state or the default value
+     */
+    public double getRouteDoubleState(VehicleRoute route, Vehicle vehicle, StateId stateId, double defaultValue) {
+        int slot = find(key(ROUTE, getRouteId(route, false), vehicle, stateId));
+        if (slot < 0) return defaultValue;
+        return doubleValues[slot];
+    }
+
+    /**
+     * Associates the specified route, vehicle and stateId to the double state.
+     *
+     * @param route   the route
+     * @param vehicle the vehicle, or null if the state does not depend on the vehicle
+     * @param stateId the stateId
+     * @param state   the state
+     */
+    public void putRouteDoubleState(VehicleRoute route, Vehicle vehicle, StateId stateId, double state) {
+        int slot = insert(key(ROUTE, getRouteId(route, true), vehicle, stateId));
+        doubleValues[slot] = state;
+        values[slot] = null;
+    }
+
+    /**
+     * Returns the state that is associated to the specified route, vehicle and stateId, or null.
+     *
+     * @param route   the route
+     * @param vehicle the vehicle, or null if the state does not depend on the vehicle
+     * @param stateId the stateId
+     * @param type    the type class of the state value
+     * @param <T>     the type
+     * @return the associated state or null
+     */
+    public <T> T getRouteState(VehicleRoute route, Vehicle vehicle, StateId stateId, Class<T> type) {
+        int slot = find(key(ROUTE, getRouteId(route, false), vehicle, stateId));
+        if (slot < 0) return null;
+        return type.cast(values[slot]);
+    }
+
+    /**
+     * Associates the specified route, vehicle and stateId to the state.
+     *
+     * @param route   the route
+     * @param vehicle the vehicle, or null if the state does not depend on the vehicle
+     * @param stateId the stateId
+     * @param state   the state
+     * @param <T>     the type
+     */
+    public <T> void putRouteState(VehicleRoute route, Vehicle vehicle, StateId stateId, T state) {
+        int slot = insert(key(ROUTE, getRouteId(route, true), vehicle, stateId));
+        values[slot] = state;
+        doubleValues[slot] = Double.NaN;
+    }
+
+    private void ensureValid() {
+        int currentVersion = currentStateVersion.get();
+        if (currentVersion != stateVersion) {
+            clear();
+            stateVersion = currentVersion;
+        }
+    }
+
+    //routes do not have a stable index, thus they get an id that is valid until the scratch space is cleared
+    private int getRouteId(VehicleRoute route, boolean create) {
+        ensureValid();
+        Integer id = routeIds.get(route);
+        if (id == null) {
+            if (!create) return -1;
+            id = routeIds.size();
+            routeIds.put(route, id);
+        }
+        return id;
+    }
+
+    private long key(int kind, int entity, Vehicle vehicle, StateId stateId) {
+        ensureValid();
+        if (entity < 0) return -1;
+        if (entity > MAX_ENTITY) throw new IllegalStateException("too many activities or routes in scratch space: " + entity);
+        int vehicleIndex = vehicle == null ? 0 : vehicle.getVehicleTypeIdentifier().getIndex() + 1;
+        if (vehicleIndex > MAX_INDEX || stateId.getIndex() > MAX_INDEX)
+            throw new IllegalStateException("vehicle type or state index too large for scratch space");
+        int doubleState = StateManager.isDoubleState(stateId) ? 1 : 0;
+        return ((long) entity << 34) | ((long) kind << 33) | ((long) doubleState << 32) | ((long) vehicleIndex << 16) | stateId.getIndex();
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int find(long key) {
+        if (key < 0) return -1;
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (stamps[slot] == stamp) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int insert(long key) {
+        if (2 * (size + 1) > keys.length) grow();
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (stamps[slot] == stamp) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        stamps[slot] = stamp;
+        keys[slot] = key;
+        size++;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        double[] oldDoubleValues = doubleValues;
+        int[] oldStamps = stamps;
+        int oldStamp = stamp;
+        init(keys.length * 2);
+        stamp = 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStamps[i] != oldStamp) continue;
+            int slot = insert(oldKeys[i]);
+            values[slot] = oldValues[i];
+            doubleValues[slot] = oldDoubleValues[i];
+        }
+    }
+
+}
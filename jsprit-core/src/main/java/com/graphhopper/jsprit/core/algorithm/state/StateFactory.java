@@ -43,6 +43,11 @@ class StateFactory {
         return new StateIdImpl(name, index);
     }
 
+    static StateId createDoubleId(String name, int index) {
+        if (reservedIds.contains(name)) throwReservedIdException(name);
+        return new DoubleStateIdImpl(name, index);
+    }
+
 
     static boolean isReservedId(String stateId) {
         return reservedIds.contains(stateId);
@@ -108,4 +113,16 @@ class StateFactory {
             return name;
         }
     }
+
+    /**
+     * StateId of a primitive double state. Its index refers to the double state arrays of the {@link StateManager},
+     * i.e. it is independent of the index of ordinary (object) states.
+     */
+    static class DoubleStateIdImpl extends StateIdImpl {
+
+        public DoubleStateIdImpl(String name, int index) {
+            super(name, index);
+        }
+
+    }
 }
@@ -18,6 +18,7 @@
 package com.graphhopper.jsprit.core.algorithm.state;
 
 import com.graphhopper.jsprit.core.algorithm.listener.IterationStartsListener;
+import com.graphhopper.jsprit.core.algorithm.metrics.AlgorithmMetrics;
 import com.graphhopper.jsprit.core.algorithm.recreate.listener.*;
 import com.graphhopper.jsprit.core.algorithm.ruin.listener.RuinListener;
 import com.graphhopper.jsprit.core.algorithm.ruin.listener.RuinListeners;
@@ -35,21 +36,72 @@ import com.graphhopper.jsprit.core.problem.solution.route.state.RouteAndActivity
 import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages states.
  * <p>
  * <p>Some condition, rules or constraints are stateful. This StateManager manages these states, i.e. it offers
  * methods to add, store and retrieve states based on the problem, vehicle-routes and tour-activities.
+ * <p>
+ * <p>Threading contract: the search alternates between write phases and read phases. States are only written in write
+ * phases, i.e. when the stateManager is informed that an iteration or the insertion starts, that jobs are ruined, that a
+ * job has been inserted or that the insertion ends. These callbacks, state creation and all <code>put...</code> methods
+ * must be called by one thread at a time. In between, i.e. while insertion costs are evaluated, the stateManager is
+ * read-only and can be read by many threads concurrently (this is what the concurrent insertion strategies rely on),
+ * provided that the threads have been handed the work in a way that establishes a happens-before relation to the
+ * preceding write phase (e.g. by an ExecutorService).
+ * <p>
+ * <p>Data that needs to be memorized while evaluating insertion costs must not be put into the stateManager but into
+ * the scratch space of the evaluating thread, see {@link #getScratchStates()}.
  *
  * @author schroeder
  */
 public class StateManager implements RouteAndActivityStateGetter, IterationStartsListener, RuinListener, InsertionStartsListener, JobInsertedListener, InsertionEndsListener {
 
+    /**
+     * Memorizes the activity sequence of a route as it was when its states were updated the last time.
+     */
+    private static class RouteSnapshot {
+
+        private TourActivity[] activities = new TourActivity[0];
+
+        private int size;
+
+        private Vehicle vehicle;
+
+        private double departureTime;
+
+        void update(VehicleRoute route) {
+            List<TourActivity> acts = route.getTourActivities().getActivities();
+            if (activities.length < acts.size()) activities = new TourActivity[acts.size() + 10];
+            for (int i = 0; i < acts.size(); i++) activities[i] = acts.get(i);
+            for (int i = acts.size(); i < size; i++) activities[i] = null;
+            size = acts.size();
+            vehicle = route.getVehicle();
+            departureTime = route.getDepartureTime();
+        }
+
+    }
+
     private RouteActivityVisitor routeActivityVisitor = new RouteActivityVisitor();
 
     private ReverseRouteActivityVisitor revRouteActivityVisitor = new ReverseRouteActivityVisitor();
 
+    private List<ActivityVisitor> activityVisitors = new ArrayList<ActivityVisitor>();
+
+    private List<ReverseActivityVisitor> reverseActivityVisitors = new ArrayList<ReverseActivityVisitor>();
+
+    private boolean[] visitorFlags = new boolean[0];
+
+    private boolean incrementalStateUpdates = true;
+
+    private Map<VehicleRoute, RouteSnapshot> routeSnapshots = new IdentityHashMap<VehicleRoute, RouteSnapshot>();
+
+    private final AtomicInteger stateVersion = new AtomicInteger();
+
+    private final ThreadLocal<ScratchStates> scratchStates = newScratchStates(stateVersion);
+
     private Collection<RouteVisitor> routeVisitors = new ArrayList<RouteVisitor>();
 
     private RuinListeners ruinListeners = new RuinListeners();
@@ -64,8 +116,14 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
 
     private final int initialNoStates = 21;
 
+    private final int initialNoDoubleStates = 10;
+
     private int stateIndexCounter;
 
+    private int doubleStateIndexCounter;
+
+    private int nuDoubleStates;
+
     private Map<String, StateId> createdStateIds = new HashMap<String, StateId>();
 
     private int nuActivities;
@@ -78,17 +136,31 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
 
     private Object[][][] vehicleDependentActivityStates;
 
-    private Map<VehicleRoute, Object[]> routeStateMap;
+    private VehicleRoute[] routeSlots;
+
+    private int nuRouteSlots;
+
+    private int[] releasedRouteSlots;
+
+    private int nuReleasedRouteSlots;
 
-    private Map<VehicleRoute, Object[][]> vehicleDependentRouteStateMap;
+    private Map<VehicleRoute, Integer> routeSlotMap;
 
     private Object[][] routeStatesArr;
 
     private Object[][][] vehicleDependentRouteStatesArr;
 
+    private double[] activityDoubleStates;
+
+    private double[] vehicleDependentActivityDoubleStates;
+
+    private double[] routeDoubleStates;
+
+    private double[] vehicleDependentRouteDoubleStates;
+
     private VehicleRoutingProblem vrp;
 
-    private final boolean isIndexedBased;
+    private AlgorithmMetrics metrics;
 
     int getMaxIndexOfVehicleTypeIdentifiers() {
         return nuVehicleTypeKeys;
@@ -109,8 +181,8 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
         if (stateIndexCounter >= activityStates[0].length) {
             activityStates = new Object[nuActivities][stateIndexCounter + 1];
             vehicleDependentActivityStates = new Object[nuActivities][nuVehicleTypeKeys][stateIndexCounter + 1];
-            routeStatesArr = new Object[vrp.getVehicles().size() + 2][stateIndexCounter+1];
-            vehicleDependentRouteStatesArr = new Object[vrp.getVehicles().size() + 2][nuVehicleTypeKeys][stateIndexCounter+1];
+            routeStatesArr = new Object[routeSlots.length][];
+            vehicleDependentRouteStatesArr = new Object[routeSlots.length][][];
             problemStates = new Object[stateIndexCounter+1];
         }
         StateId id = StateFactory.createId(name, stateIndexCounter);
@@ -123,6 +195,49 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
         stateIndexCounter++;
     }
 
+    /**
+     * Create and returns a stateId for a primitive double state with the specified state-name.
+     * <p>
+     * <p>Double states are stored in flat double arrays, i.e. reading and writing them via
+     * {@link #getActivityDoubleState(TourActivity, StateId, double)} and {@link #putActivityDoubleState(TourActivity, StateId, double)}
+     * (and the corresponding vehicle and route methods) neither boxes nor casts. They can still be read and written with the
+     * generic methods, e.g. <code>getActivityState(act, stateId, Double.class)</code>.</p>
+     * <p>If a double stateId with the specified name has already been created, it returns the created stateId.</p>
+     *
+     * @param name the specified name of the state
+     * @return the stateId with which a double state can be identified
+     * @throws java.lang.IllegalStateException if name of state is already used internally or if it has already been created as ordinary state
+     */
+    public StateId createDoubleStateId(String name) {
+        if (createdStateIds.containsKey(name)) {
+            StateId id = createdStateIds.get(name);
+            if (!isDoubleState(id))
+                throw new IllegalStateException("state-id with name '" + name + "' has already been created as ordinary state. cannot create it as double state.");
+            return id;
+        }
+        if (doubleStateIndexCounter >= nuDoubleStates) {
+            nuDoubleStates = doubleStateIndexCounter + 1;
+            initDoubleStates();
+        }
+        StateId id = StateFactory.createDoubleId(name, doubleStateIndexCounter);
+        doubleStateIndexCounter++;
+        createdStateIds.put(name, id);
+        return id;
+    }
+
+    private void initDoubleStates() {
+        activityDoubleStates = new double[nuActivities * nuDoubleStates];
+        vehicleDependentActivityDoubleStates = new double[nuActivities * nuVehicleTypeKeys * nuDoubleStates];
+        Arrays.fill(activityDoubleStates, Double.NaN);
+        Arrays.fill(vehicleDependentActivityDoubleStates, Double.NaN);
+        routeDoubleStates = newDoubleStates(routeSlots.length * nuDoubleStates);
+        vehicleDependentRouteDoubleStates = newDoubleStates(routeSlots.length * nuVehicleTypeKeys * nuDoubleStates);
+    }
+
+    static boolean isDoubleState(StateId stateId) {
+        return stateId instanceof StateFactory.DoubleStateIdImpl;
+    }
+
 
     /**
      * Constructs the stateManager with the specified VehicleRoutingProblem.
@@ -131,23 +246,22 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
      */
     public StateManager(VehicleRoutingProblem vehicleRoutingProblem) {
         stateIndexCounter = initialNoStates;
+        doubleStateIndexCounter = initialNoDoubleStates;
         int initialStateArrayLength = 30;
         this.vrp = vehicleRoutingProblem;
         nuActivities = Math.max(10, vrp.getNuActivities() + 1);
         nuVehicleTypeKeys = Math.max(3, getNuVehicleTypes(vrp) + 2);
         activityStates = new Object[nuActivities][initialStateArrayLength];
         vehicleDependentActivityStates = new Object[nuActivities][nuVehicleTypeKeys][initialStateArrayLength];
-//        if(vehicleRoutingProblem.getFleetSize().equals(VehicleRoutingProblem.FleetSize.FINITE)){
-//            isIndexedBased = true;
-//            routeStatesArr = new Object[vrp.getVehicles().size() + 2][initialStateArrayLength];
-//            vehicleDependentRouteStatesArr = new Object[vrp.getVehicles().size() + 2][nuVehicleTypeKeys][initialStateArrayLength];
-//        }
-//        else {
-            isIndexedBased = false;
-            routeStateMap = new HashMap<VehicleRoute, Object[]>();
-            vehicleDependentRouteStateMap = new HashMap<VehicleRoute, Object[][]>();
-//        }
+        int initialNoRouteSlots = Math.max(10, vrp.getVehicles().size() + 2);
+        routeSlots = new VehicleRoute[initialNoRouteSlots];
+        releasedRouteSlots = new int[initialNoRouteSlots];
+        routeSlotMap = new IdentityHashMap<VehicleRoute, Integer>();
+        routeStatesArr = new Object[initialNoRouteSlots][];
+        vehicleDependentRouteStatesArr = new Object[initialNoRouteSlots][][];
         problemStates = new Object[initialStateArrayLength];
+        nuDoubleStates = initialNoDoubleStates + 5;
+        initDoubleStates();
     }
 
     private int getNuVehicleTypes(VehicleRoutingProblem vrp) {
@@ -191,15 +305,112 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
     public void clear() {
         fill_twoDimArr(activityStates, null);
         fill_threeDimArr(vehicleDependentActivityStates, null);
-        if(isIndexedBased) {
-            fill_twoDimArr(routeStatesArr, null);
-            fill_threeDimArr(vehicleDependentRouteStatesArr, null);
+        Arrays.fill(problemStates,null);
+        Arrays.fill(activityDoubleStates, Double.NaN);
+        Arrays.fill(vehicleDependentActivityDoubleStates, Double.NaN);
+        for (int slot = 0; slot < nuRouteSlots; slot++) {
+            clearRouteSlot(slot);
+            routeSlots[slot] = null;
+        }
+        nuRouteSlots = 0;
+        nuReleasedRouteSlots = 0;
+        routeSlotMap.clear();
+        routeSnapshots.clear();
+        nextStateVersion();
+    }
+
+    /**
+     * Returns the scratch space of the calling thread, i.e. a thread-confined memory for temporary states that are
+     * calculated while insertion costs are evaluated. It is dropped automatically when the next write phase starts.
+     *
+     * @return the scratch space of the calling thread
+     */
+    public ScratchStates getScratchStates() {
+        return scratchStates.get();
+    }
+
+    int getStateVersion() {
+        return stateVersion.get();
+    }
+
+    private void nextStateVersion() {
+        stateVersion.incrementAndGet();
+    }
+
+    //scratch states must not reference the stateManager, otherwise pool threads keep stateManagers reachable forever
+    private static ThreadLocal<ScratchStates> newScratchStates(final AtomicInteger stateVersion) {
+        return new ThreadLocal<ScratchStates>() {
+
+            @Override
+            protected ScratchStates initialValue() {
+                return new ScratchStates(stateVersion);
+            }
+
+        };
+    }
+
+    /**
+     * Returns the slot of the specified route, or -1 if no slot has been assigned to it.
+     * <p>Slots are looked up by route identity, i.e. a copy of a route does not inherit the slot of the original.
+     * Since it is called when states are read, i.e. concurrently, it must not modify the slot memory.</p>
+     */
+    int getRouteSlot(VehicleRoute route) {
+        Integer memorizedSlot = routeSlotMap.get(route);
+        if (memorizedSlot == null) return -1;
+        return memorizedSlot;
+    }
+
+    private int assignRouteSlot(VehicleRoute route) {
+        int slot = getRouteSlot(route);
+        if (slot >= 0) return slot;
+        if (nuReleasedRouteSlots > 0) {
+            nuReleasedRouteSlots--;
+            slot = releasedRouteSlots[nuReleasedRouteSlots];
+        } else {
+            if (nuRouteSlots == routeSlots.length) growRouteSlots();
+            slot = nuRouteSlots;
+            nuRouteSlots++;
         }
-        else{
-            routeStateMap.clear();
-            vehicleDependentRouteStateMap.clear();
+        routeSlots[slot] = route;
+        routeSlotMap.put(route, slot);
+        return slot;
+    }
+
+    private void releaseRouteSlot(VehicleRoute route) {
+        int slot = getRouteSlot(route);
+        if (slot < 0) return;
+        clearRouteSlot(slot);
+        routeSlots[slot] = null;
+        routeSlotMap.remove(route);
+        releasedRouteSlots[nuReleasedRouteSlots] = slot;
+        nuReleasedRouteSlots++;
+    }
+
+    private void clearRouteSlot(int slot) {
+        if (routeStatesArr[slot] != null) Arrays.fill(routeStatesArr[slot], null);
+        if (vehicleDependentRouteStatesArr[slot] != null) {
+            for (Object[] states : vehicleDependentRouteStatesArr[slot]) Arrays.fill(states, null);
         }
-        Arrays.fill(problemStates,null);
+        Arrays.fill(routeDoubleStates, slot * nuDoubleStates, (slot + 1) * nuDoubleStates, Double.NaN);
+        int vehicleDependentLength = nuVehicleTypeKeys * nuDoubleStates;
+        Arrays.fill(vehicleDependentRouteDoubleStates, slot * vehicleDependentLength, (slot + 1) * vehicleDependentLength, Double.NaN);
+    }
+
+    private void growRouteSlots() {
+        int noSlots = routeSlots.length * 2;
+        routeSlots = Arrays.copyOf(routeSlots, noSlots);
+        releasedRouteSlots = Arrays.copyOf(releasedRouteSlots, noSlots);
+        routeStatesArr = Arrays.copyOf(routeStatesArr, noSlots);
+        vehicleDependentRouteStatesArr = Arrays.copyOf(vehicleDependentRouteStatesArr, noSlots);
+        routeDoubleStates = growDoubleStates(routeDoubleStates, noSlots * nuDoubleStates);
+        vehicleDependentRouteDoubleStates = growDoubleStates(vehicleDependentRouteDoubleStates, noSlots * nuVehicleTypeKeys * nuDoubleStates);
+    }
+
+    private static double[] growDoubleStates(double[] states, int length) {
+        int oldLength = states.length;
+        double[] grown = Arrays.copyOf(states, length);
+        Arrays.fill(grown, oldLength, length, Double.NaN);
+        return grown;
     }
 
     private void fill_threeDimArr(Object[][][] states, Object o) {
@@ -232,6 +443,7 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
     public <T> T getActivityState(TourActivity act, StateId stateId, Class<T> type) {
         if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
         if (act.getIndex() < 0) return null;
+        if (isDoubleState(stateId)) return type.cast(box(activityDoubleStates[activityIndex(act, stateId)]));
         T state;
         try {
             state = type.cast(activityStates[act.getIndex()][stateId.getIndex()]);
@@ -252,6 +464,8 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
      */
     public boolean hasActivityState(TourActivity act, Vehicle vehicle, StateId stateId) {
         if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
+        if (isDoubleState(stateId))
+            return !Double.isNaN(vehicleDependentActivityDoubleStates[activityIndex(act, vehicle, stateId)]);
         return vehicleDependentActivityStates[act.getIndex()][vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()] != null;
     }
 
@@ -273,6 +487,8 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
     public <T> T getActivityState(TourActivity act, Vehicle vehicle, StateId stateId, Class<T> type) {
         if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
         if (act.getIndex() < 0) return null; //act.getIndex() < 0 indicates that act is either Start (-1) or End (-2)
+        if (isDoubleState(stateId))
+            return type.cast(box(vehicleDependentActivityDoubleStates[activityIndex(act, vehicle, stateId)]));
         T state;
         try {
             state = type.cast(vehicleDependentActivityStates[act.getIndex()][vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()]);
@@ -302,22 +518,16 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
     @Override
     public <T> T getRouteState(VehicleRoute route, StateId stateId, Class<T> type) {
         if (route == null) return null;
-        T state = null;
-        if(isIndexedBased){
-            try {
-                state = type.cast(routeStatesArr[route.getVehicle().getIndex()][stateId.getIndex()]);
-            } catch (ClassCastException e) {
-                throw getClassCastException(e,stateId,type.toString(),routeStatesArr[route.getVehicle().getIndex()][stateId.getIndex()].getClass().toString());
-            }
-        }
-        else {
-            try {
-                if (routeStateMap.containsKey(route)) {
-                    state = type.cast(routeStateMap.get(route)[stateId.getIndex()]);
-                }
-            } catch (ClassCastException e) {
-                throw getClassCastException(e, stateId, type.toString(), routeStateMap.get(route)[stateId.getIndex()].getClass().toString());
-            }
+        int slot = getRouteSlot(route);
+        if (slot < 0) return null;
+        if (isDoubleState(stateId)) return type.cast(box(routeDoubleStates[routeIndex(slot, stateId)]));
+        Object[] states = routeStatesArr[slot];
+        if (states == null) return null;
+        T state;
+        try {
+            state = type.cast(states[stateId.getIndex()]);
+        } catch (ClassCastException e) {
+            throw getClassCastException(e, stateId, type.toString(), states[stateId.getIndex()].getClass().toString());
         }
         return state;
     }
@@ -332,9 +542,11 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
      */
     @SuppressWarnings("UnusedDeclaration")
     public boolean hasRouteState(VehicleRoute route, Vehicle vehicle, StateId stateId) {
-        if (!vehicleDependentRouteStateMap.containsKey(route)) return false;
-        return vehicleDependentRouteStateMap.get(route)[vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()] != null;
-//        return vehicle_dependent_route_states[route.getActivities().get(0).getIndex()][vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()] != null;
+        int slot = getRouteSlot(route);
+        if (slot < 0) return false;
+        if (isDoubleState(stateId)) return !Double.isNaN(vehicleDependentRouteDoubleStates[routeIndex(slot, vehicle, stateId)]);
+        Object[][] states = vehicleDependentRouteStatesArr[slot];
+        return states != null && states[vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()] != null;
     }
 
     /**
@@ -351,25 +563,18 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
      * @throws java.lang.IllegalStateException if <code>!route.isEmpty()</code> and <code>act(0).getIndex()==0</code> since this suggests that act has no index at all
      */
     public <T> T getRouteState(VehicleRoute route, Vehicle vehicle, StateId stateId, Class<T> type) {
-//        if (route.isEmpty()) return null;
-        T state = null;
-        if(isIndexedBased){
-            try {
-                state = type.cast(vehicleDependentRouteStatesArr[route.getVehicle().getIndex()][vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()]);
-            } catch (ClassCastException e) {
-                throw getClassCastException(e, stateId, type.toString(), vehicleDependentRouteStatesArr[route.getVehicle().getIndex()][vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()].getClass().toString());
-            }
-        }
-        else {
-            try {
-                if (vehicleDependentRouteStateMap.containsKey(route)) {
-                    state = type.cast(vehicleDependentRouteStateMap.get(route)[vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()]);
-                }
-            } catch (ClassCastException e) {
-                throw getClassCastException(e, stateId, type.toString(), vehicleDependentRouteStateMap.get(route)[vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()].getClass().toString());
-            }
+        if (route == null) return null;
+        int slot = getRouteSlot(route);
+        if (slot < 0) return null;
+        if (isDoubleState(stateId)) return type.cast(box(vehicleDependentRouteDoubleStates[routeIndex(slot, vehicle, stateId)]));
+        Object[][] states = vehicleDependentRouteStatesArr[slot];
+        if (states == null) return null;
+        Object state = states[vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()];
+        try {
+            return type.cast(state);
+        } catch (ClassCastException e) {
+            throw getClassCastException(e, stateId, type.toString(), state.getClass().toString());
         }
-        return state;
     }
 
     /**
@@ -385,7 +590,7 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
      */
     public <T> void putActivityState(TourActivity act, StateId stateId, T state) {
         if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
-        if (stateId.getIndex() < initialNoStates)
+        if (isReserved(stateId))
             throw new IllegalStateException("either you use a reserved stateId that is applied\n" +
                 "internally or your stateId has been created without index, e.g. StateFactory.createId(stateName)\n" +
                 " does not assign indeces thus do not use it anymore, but use\n " +
@@ -408,7 +613,7 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
      */
     public <T> void putActivityState(TourActivity act, Vehicle vehicle, StateId stateId, T state) {
         if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
-        if (stateId.getIndex() < initialNoStates)
+        if (isReserved(stateId))
             throw new IllegalStateException("either you use a reserved stateId that is applied\n" +
                 "internally or your stateId has been created without index, e.g. StateFactory.createId(stateName)\n" +
                 " does not assign indeces thus do not use it anymore, but use\n " +
@@ -418,10 +623,18 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
     }
 
     <T> void putInternalTypedActivityState(TourActivity act, StateId stateId, T state) {
+        if (isDoubleState(stateId)) {
+            putInternalActivityDoubleState(act, stateId, unbox(state));
+            return;
+        }
         activityStates[act.getIndex()][stateId.getIndex()] = state;
     }
 
     <T> void putInternalTypedActivityState(TourActivity act, Vehicle vehicle, StateId stateId, T state) {
+        if (isDoubleState(stateId)) {
+            putInternalActivityDoubleState(act, vehicle, stateId, unbox(state));
+            return;
+        }
         vehicleDependentActivityStates[act.getIndex()][vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()] = state;
     }
 
@@ -436,7 +649,7 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
      * @throws java.lang.IllegalStateException if stateId is equal to a stateId that is already used internally.
      */
     public <T> void putRouteState(VehicleRoute route, StateId stateId, T state) {
-        if (stateId.getIndex() < initialNoStates) StateFactory.throwReservedIdException(stateId.toString());
+        if (isReserved(stateId)) StateFactory.throwReservedIdException(stateId.toString());
         putTypedInternalRouteState(route, stateId, state);
     }
 
@@ -453,35 +666,252 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
      */
     public <T> void putRouteState(VehicleRoute route, Vehicle vehicle, StateId stateId, T state) {
         if (vehicle.getIndex() == 0) throw new IllegalStateException("vehicle index is 0. this should not be.");
-        if (stateId.getIndex() < initialNoStates) StateFactory.throwReservedIdException(stateId.toString());
+        if (isReserved(stateId)) StateFactory.throwReservedIdException(stateId.toString());
         putTypedInternalRouteState(route, vehicle, stateId, state);
     }
 
     <T> void putTypedInternalRouteState(VehicleRoute route, StateId stateId, T state) {
 //        if (route.isEmpty()) return;
-        if(isIndexedBased){
-            routeStatesArr[route.getVehicle().getIndex()][stateId.getIndex()] = state;
-        }
-        else {
-            if (!routeStateMap.containsKey(route)) {
-                routeStateMap.put(route, new Object[stateIndexCounter]);
-            }
-            routeStateMap.get(route)[stateId.getIndex()] = state;
+        if (isDoubleState(stateId)) {
+            putInternalRouteDoubleState(route, stateId, unbox(state));
+            return;
         }
+        int slot = assignRouteSlot(route);
+        if (routeStatesArr[slot] == null) routeStatesArr[slot] = new Object[activityStates[0].length];
+        routeStatesArr[slot][stateId.getIndex()] = state;
     }
 
     <T> void putTypedInternalRouteState(VehicleRoute route, Vehicle vehicle, StateId stateId, T state) {
 //        if (route.isEmpty()) return;
-        if(isIndexedBased){
-            vehicleDependentRouteStatesArr[route.getVehicle().getIndex()][vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()] = state;
+        if (isDoubleState(stateId)) {
+            putInternalRouteDoubleState(route, vehicle, stateId, unbox(state));
+            return;
         }
-        else {
-            if (!vehicleDependentRouteStateMap.containsKey(route)) {
-                vehicleDependentRouteStateMap.put(route, new Object[nuVehicleTypeKeys][stateIndexCounter]);
-            }
-            vehicleDependentRouteStateMap.get(route)[vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()] = state;
+        int slot = assignRouteSlot(route);
+        if (vehicleDependentRouteStatesArr[slot] == null)
+            vehicleDependentRouteStatesArr[slot] = new Object[nuVehicleTypeKeys][activityStates[0].length];
+        vehicleDependentRouteStatesArr[slot][vehicle.getVehicleTypeIdentifier().getIndex()][stateId.getIndex()] = state;
+    }
+
+    /**
+     * Returns the double state that is associated to the specified activity and stateId, or the specified default value
+     * if no state is associated.
+     * <p>If stateId has been created with {@link #createDoubleStateId(String)}, the state is read from a primitive double
+     * array, i.e. without boxing and casting.</p>
+     *
+     * @param act          the activity for which a state value is associated to
+     * @param stateId      the stateId for which a state value is associated to
+     * @param defaultValue the value that is returned if no state is associated
+     * @return the associated double state or the default value
+     * @throws java.lang.IllegalStateException if <code>act.getIndex()==0</code> since this suggests that act has no index at all
+     */
+    @Override
+    public double getActivityDoubleState(TourActivity act, StateId stateId, double defaultValue) {
+        if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
+        if (act.getIndex() < 0) return defaultValue;
+        if (!isDoubleState(stateId)) return orDefault(getActivityState(act, stateId, Double.class), defaultValue);
+        return orDefault(activityDoubleStates[activityIndex(act, stateId)], defaultValue);
+    }
+
+    /**
+     * Returns the double state that is associated to the specified activity, vehicle and stateId, or the specified
+     * default value if no state is associated.
+     *
+     * @param act          the activity for which a state value is associated to
+     * @param vehicle      the vehicle for which a state value is associated to
+     * @param stateId      the stateId for which a state value is associated to
+     * @param defaultValue the value that is returned if no state is associated
+     * @return the associated double state or the default value
+     * @throws java.lang.IllegalStateException if <code>act.getIndex()==0</code> since this suggests that act has no index at all
+     */
+    @Override
+    public double getActivityDoubleState(TourActivity act, Vehicle vehicle, StateId stateId, double defaultValue) {
+        if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
+        if (act.getIndex() < 0) return defaultValue;
+        if (!isDoubleState(stateId))
+            return orDefault(getActivityState(act, vehicle, stateId, Double.class), defaultValue);
+        return orDefault(vehicleDependentActivityDoubleStates[activityIndex(act, vehicle, stateId)], defaultValue);
+    }
+
+    /**
+     * Returns the double state that is associated to the specified route and stateId, or the specified default value
+     * if no state is associated.
+     *
+     * @param route        the route for which a state value is associated to
+     * @param stateId      the stateId for which a state value is associated to
+     * @param defaultValue the value that is returned if no state is associated
+     * @return the associated double state or the default value
+     */
+    @Override
+    public double getRouteDoubleState(VehicleRoute route, StateId stateId, double defaultValue) {
+        if (route == null) return defaultValue;
+        if (!isDoubleState(stateId)) return orDefault(getRouteState(route, stateId, Double.class), defaultValue);
+        int slot = getRouteSlot(route);
+        if (slot < 0) return defaultValue;
+        return orDefault(routeDoubleStates[routeIndex(slot, stateId)], defaultValue);
+    }
+
+    /**
+     * Returns the double state that is associated to the specified route, vehicle and stateId, or the specified default
+     * value if no state is associated.
+     *
+     * @param route        the route for which a state value is associated to
+     * @param vehicle      the vehicle for which a state value is associated to
+     * @param stateId      the stateId for which a state value is associated to
+     * @param defaultValue the value that is returned if no state is associated
+     * @return the associated double state or the default value
+     */
+    @Override
+    public double getRouteDoubleState(VehicleRoute route, Vehicle vehicle, StateId stateId, double defaultValue) {
+        if (route == null) return defaultValue;
+        if (!isDoubleState(stateId))
+            return orDefault(getRouteState(route, vehicle, stateId, Double.class), defaultValue);
+        int slot = getRouteSlot(route);
+        if (slot < 0) return defaultValue;
+        return orDefault(vehicleDependentRouteDoubleStates[routeIndex(slot, vehicle, stateId)], defaultValue);
+    }
+
+    /**
+     * Associates the specified activity and stateId to the double state. If a state value is already associated to the
+     * specified activity and stateId, it is replaced by the new state value.
+     * <p>Note that <code>Double.NaN</code> indicates that no state is associated, i.e. putting NaN removes the state.</p>
+     *
+     * @param act     the activity for which a state value is associated to
+     * @param stateId the stateId which is the associated key to the activity state
+     * @param state   the state that is associated to the activity and stateId
+     * @throws java.lang.IllegalStateException if <code>act.getIndex() == 0</code>
+     *                                         || stateId is reserved internally
+     */
+    public void putActivityDoubleState(TourActivity act, StateId stateId, double state) {
+        if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
+        if (isReserved(stateId)) StateFactory.throwReservedIdException(stateId.toString());
+        putInternalActivityDoubleState(act, stateId, state);
+    }
+
+    /**
+     * Associates the specified activity, vehicle and stateId to the double state. If a state value is already associated
+     * to the specified activity, vehicle and stateId, it is replaced by the new state value.
+     *
+     * @param act     the activity for which a state value is associated to
+     * @param vehicle the vehicle for which a state value is associated to
+     * @param stateId the stateId which is the associated key to the activity state
+     * @param state   the state that is associated to the activity, vehicle and stateId
+     * @throws java.lang.IllegalStateException if <code>act.getIndex() == 0</code>
+     *                                         || stateId is reserved internally
+     */
+    public void putActivityDoubleState(TourActivity act, Vehicle vehicle, StateId stateId, double state) {
+        if (act.getIndex() == 0) throw new IllegalStateException("activity index is 0. this should not be.");
+        if (isReserved(stateId)) StateFactory.throwReservedIdException(stateId.toString());
+        putInternalActivityDoubleState(act, vehicle, stateId, state);
+    }
+
+    /**
+     * Associates the specified route and stateId to the double state. If a state value is already associated to the
+     * specified route and stateId, it is replaced by the new state value.
+     *
+     * @param route   the route for which a state value is associated to
+     * @param stateId the stateId which is the associated key to the route state
+     * @param state   the state that is associated to the route and stateId
+     * @throws java.lang.IllegalStateException if stateId is reserved internally
+     */
+    public void putRouteDoubleState(VehicleRoute route, StateId stateId, double state) {
+        if (isReserved(stateId)) StateFactory.throwReservedIdException(stateId.toString());
+        putInternalRouteDoubleState(route, stateId, state);
+    }
+
+    /**
+     * Associates the specified route, vehicle and stateId to the double state. If a state value is already associated to
+     * the specified route, vehicle and stateId, it is replaced by the new state value.
+     *
+     * @param route   the route for which a state value is associated to
+     * @param vehicle the vehicle for which a state value is associated to
+     * @param stateId the stateId which is the associated key to the route state
+     * @param state   the state that is associated to the route, vehicle and stateId
+     * @throws java.lang.IllegalStateException if <code>vehicle.getIndex() == 0</code> || stateId is reserved internally
+     */
+    public void putRouteDoubleState(VehicleRoute route, Vehicle vehicle, StateId stateId, double state) {
+        if (vehicle.getIndex() == 0) throw new IllegalStateException("vehicle index is 0. this should not be.");
+        if (isReserved(stateId)) StateFactory.throwReservedIdException(stateId.toString());
+        putInternalRouteDoubleState(route, vehicle, stateId, state);
+    }
+
+    void putInternalActivityDoubleState(TourActivity act, StateId stateId, double state) {
+        if (!isDoubleState(stateId)) {
+            putInternalTypedActivityState(act, stateId, state);
+            return;
+        }
+        activityDoubleStates[activityIndex(act, stateId)] = state;
+    }
+
+    void putInternalActivityDoubleState(TourActivity act, Vehicle vehicle, StateId stateId, double state) {
+        if (!isDoubleState(stateId)) {
+            putInternalTypedActivityState(act, vehicle, stateId, state);
+            return;
+        }
+        vehicleDependentActivityDoubleStates[activityIndex(act, vehicle, stateId)] = state;
+    }
+
+    void putInternalRouteDoubleState(VehicleRoute route, StateId stateId, double state) {
+        if (!isDoubleState(stateId)) {
+            putTypedInternalRouteState(route, stateId, state);
+            return;
         }
+        routeDoubleStates[routeIndex(assignRouteSlot(route), stateId)] = state;
+    }
+
+    void putInternalRouteDoubleState(VehicleRoute route, Vehicle vehicle, StateId stateId, double state) {
+        if (!isDoubleState(stateId)) {
+            putTypedInternalRouteState(route, vehicle, stateId, state);
+            return;
+        }
+        vehicleDependentRouteDoubleStates[routeIndex(assignRouteSlot(route), vehicle, stateId)] = state;
+    }
+
+    private int activityIndex(TourActivity act, StateId stateId) {
+        return act.getIndex() * nuDoubleStates + stateId.getIndex();
+    }
+
+    private int activityIndex(TourActivity act, Vehicle vehicle, StateId stateId) {
+        return (act.getIndex() * nuVehicleTypeKeys + vehicle.getVehicleTypeIdentifier().getIndex()) * nuDoubleStates + stateId.getIndex();
+    }
+
+    private int routeIndex(int slot, StateId stateId) {
+        return slot * nuDoubleStates + stateId.getIndex();
+    }
+
+    private int routeIndex(int slot, Vehicle vehicle, StateId stateId) {
+        return (slot * nuVehicleTypeKeys + vehicle.getVehicleTypeIdentifier().getIndex()) * nuDoubleStates + stateId.getIndex();
+    }
+
+    private static double[] newDoubleStates(int length) {
+        double[] states = new double[length];
+        Arrays.fill(states, Double.NaN);
+        return states;
+    }
 
+    private boolean isReserved(StateId stateId) {
+        if (isDoubleState(stateId)) return stateId.getIndex() < initialNoDoubleStates;
+        return stateId.getIndex() < initialNoStates;
+    }
+
+    private static double orDefault(double state, double defaultValue) {
+        if (Double.isNaN(state)) return defaultValue;
+        return state;
+    }
+
+    private static double orDefault(Double state, double defaultValue) {
+        if (state == null) return defaultValue;
+        return state;
+    }
+
+    private static Double box(double state) {
+        if (Double.isNaN(state)) return null;
+        return state;
+    }
+
+    private static double unbox(Object state) {
+        if (state == null) return Double.NaN;
+        return ((Number) state).doubleValue();
     }
 
     /**
@@ -528,6 +958,8 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
      */
     void addActivityVisitor(ActivityVisitor activityVistor) {
         routeActivityVisitor.addActivityVisitor(activityVistor);
+        if (!activityVisitors.contains(activityVistor)) activityVisitors.add(activityVistor);
+        routeSnapshots.clear();
     }
 
     /**
@@ -539,6 +971,8 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
      */
     void addActivityVisitor(ReverseActivityVisitor activityVistor) {
         revRouteActivityVisitor.addActivityVisitor(activityVistor);
+        if (!reverseActivityVisitors.contains(activityVistor)) reverseActivityVisitors.add(activityVistor);
+        routeSnapshots.clear();
     }
 
     void addRouteVisitor(RouteVisitor routeVisitor) {
@@ -555,17 +989,147 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
 
     @Override
     public void informJobInserted(Job job2insert, VehicleRoute inRoute, double additionalCosts, double additionalTime) {
+        long time = metrics == null ? 0L : System.nanoTime();
 //		log.debug("insert " + job2insert + " in " + inRoute);
+        nextStateVersion();
         insertionListeners.informJobInserted(job2insert, inRoute, additionalCosts, additionalTime);
         for (RouteVisitor v : routeVisitors) {
             v.visit(inRoute);
         }
-        routeActivityVisitor.visit(inRoute);
-        revRouteActivityVisitor.visit(inRoute);
+        int fromIndex = getFirstChangedActivityIndex(inRoute);
+        if (fromIndex < 0) {
+            routeActivityVisitor.visit(inRoute);
+            revRouteActivityVisitor.visit(inRoute);
+        } else {
+            visitForward(inRoute, fromIndex);
+            visitBackward(inRoute, fromIndex);
+        }
+        memorizeActivities(inRoute);
+        recordStateUpdate(time);
+    }
+
+    /**
+     * Sets the metrics the time spent in updating states is recorded in. Null disables the recording.
+     *
+     * @param metrics metrics to record in
+     */
+    public void setMetrics(AlgorithmMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private void recordStateUpdate(long start) {
+        if (metrics != null) metrics.recordTime(AlgorithmMetrics.Phase.STATE_UPDATE, System.nanoTime() - start);
+    }
+
+    /**
+     * Sets whether activity states are updated incrementally if a job has been inserted (default is true).
+     * <p>
+     * <p>If so, {@link ResumableActivityVisitor}s only visit the activities from the insertion index on, and
+     * {@link ConvergingReverseActivityVisitor}s stop as soon as the states of the activities before the insertion index
+     * do not change anymore. All other activity visitors still visit the complete route. If not, all visitors visit
+     * the complete route.
+     *
+     * @param incrementalStateUpdates true if states are to be updated incrementally
+     */
+    public void setIncrementalStateUpdates(boolean incrementalStateUpdates) {
+        this.incrementalStateUpdates = incrementalStateUpdates;
+        routeSnapshots.clear();
+    }
+
+    private void memorizeActivities(VehicleRoute route) {
+        if (!incrementalStateUpdates) return;
+        RouteSnapshot snapshot = routeSnapshots.get(route);
+        if (snapshot == null) {
+            snapshot = new RouteSnapshot();
+            routeSnapshots.put(route, snapshot);
+        }
+        snapshot.update(route);
+    }
+
+    /**
+     * Returns the index of the first activity that differs from the activities memorized when the states of the route
+     * were updated the last time, or -1 if the states of the complete route need to be updated.
+     * <p>
+     * <p>The activities are compared (instead of relying on the insertion index) since insertion listeners might
+     * have changed the route as well (e.g. by rescheduling breaks).
+     */
+    private int getFirstChangedActivityIndex(VehicleRoute route) {
+        if (!incrementalStateUpdates) return -1;
+        RouteSnapshot snapshot = routeSnapshots.get(route);
+        if (snapshot == null) return -1;
+        if (snapshot.vehicle != route.getVehicle() || snapshot.departureTime != route.getDepartureTime()) return -1;
+        List<TourActivity> activities = route.getTourActivities().getActivities();
+        int size = Math.min(activities.size(), snapshot.size);
+        int index = 0;
+        while (index < size && activities.get(index) == snapshot.activities[index]) index++;
+        return index;
+    }
+
+    private boolean[] getVisitorFlags(int noVisitors) {
+        if (visitorFlags.length < noVisitors) visitorFlags = new boolean[noVisitors];
+        return visitorFlags;
+    }
+
+    private void visitForward(VehicleRoute route, int fromIndex) {
+        if (activityVisitors.isEmpty()) return;
+        int noVisitors = activityVisitors.size();
+        boolean[] resumed = getVisitorFlags(noVisitors);
+        int startIndex = fromIndex;
+        for (int v = 0; v < noVisitors; v++) {
+            ActivityVisitor visitor = activityVisitors.get(v);
+            resumed[v] = visitor instanceof ResumableActivityVisitor && ((ResumableActivityVisitor) visitor).begin(route, fromIndex);
+            if (!resumed[v]) {
+                visitor.begin(route);
+                startIndex = 0;
+            }
+        }
+        List<TourActivity> activities = route.getTourActivities().getActivities();
+        for (int i = startIndex; i < activities.size(); i++) {
+            TourActivity act = activities.get(i);
+            boolean changed = i >= fromIndex;
+            for (int v = 0; v < noVisitors; v++) {
+                if (changed || !resumed[v]) activityVisitors.get(v).visit(act);
+            }
+        }
+        for (int v = 0; v < noVisitors; v++) {
+            activityVisitors.get(v).finish();
+        }
+    }
+
+    private void visitBackward(VehicleRoute route, int fromIndex) {
+        if (reverseActivityVisitors.isEmpty()) return;
+        if (route.isEmpty()) return;
+        int noVisitors = reverseActivityVisitors.size();
+        boolean[] active = getVisitorFlags(noVisitors);
+        for (int v = 0; v < noVisitors; v++) {
+            reverseActivityVisitors.get(v).begin(route);
+            active[v] = true;
+        }
+        int noActiveVisitors = noVisitors;
+        List<TourActivity> activities = route.getTourActivities().getActivities();
+        for (int i = activities.size() - 1; i >= 0 && noActiveVisitors > 0; i--) {
+            TourActivity act = activities.get(i);
+            for (int v = 0; v < noVisitors; v++) {
+                if (!active[v]) continue;
+                ReverseActivityVisitor visitor = reverseActivityVisitors.get(v);
+                if (visitor instanceof ConvergingReverseActivityVisitor) {
+                    boolean changed = ((ConvergingReverseActivityVisitor) visitor).visitAndDetectChange(act);
+                    if (!changed && i < fromIndex) {
+                        active[v] = false;
+                        noActiveVisitors--;
+                    }
+                } else visitor.visit(act);
+            }
+        }
+        for (int v = 0; v < noVisitors; v++) {
+            reverseActivityVisitors.get(v).finish();
+        }
     }
 
     @Override
     public void informInsertionStarts(Collection<VehicleRoute> vehicleRoutes, Collection<Job> unassignedJobs) {
+        long time = metrics == null ? 0L : System.nanoTime();
+        nextStateVersion();
         insertionListeners.informInsertionStarts(vehicleRoutes, unassignedJobs);
         for (VehicleRoute route : vehicleRoutes) {
             for (RouteVisitor v : routeVisitors) {
@@ -573,7 +1137,9 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
             }
             routeActivityVisitor.visit(route);
             revRouteActivityVisitor.visit(route);
+            memorizeActivities(route);
         }
+        recordStateUpdate(time);
     }
 
     public void reCalculateStates(VehicleRoute route){
@@ -587,23 +1153,41 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
 
     @Override
     public void ruinStarts(Collection<VehicleRoute> routes) {
+        long time = metrics == null ? 0L : System.nanoTime();
+        nextStateVersion();
         ruinListeners.ruinStarts(routes);
+        recordStateUpdate(time);
     }
 
     @Override
     public void ruinEnds(Collection<VehicleRoute> routes, Collection<Job> unassignedJobs) {
+        long time = metrics == null ? 0L : System.nanoTime();
 //		log.debug("ruin ends");
+        nextStateVersion();
         ruinListeners.ruinEnds(routes, unassignedJobs);
+        recordStateUpdate(time);
     }
 
     @Override
     public void removed(Job job, VehicleRoute fromRoute) {
+        long time = metrics == null ? 0L : System.nanoTime();
+        nextStateVersion();
         ruinListeners.removed(job, fromRoute);
+        recordStateUpdate(time);
     }
 
     @Override
     public void informInsertionEnds(Collection<VehicleRoute> vehicleRoutes, Collection<Job> badJobs) {
+        long time = metrics == null ? 0L : System.nanoTime();
+        nextStateVersion();
         insertionListeners.informInsertionEndsListeners(vehicleRoutes, badJobs);
+        for (VehicleRoute route : vehicleRoutes) {
+            if (route.isEmpty()) {
+                releaseRouteSlot(route);
+                routeSnapshots.remove(route);
+            }
+        }
+        recordStateUpdate(time);
     }
 
     /**
@@ -615,8 +1199,8 @@ public class StateManager implements RouteAndActivityStateGetter, IterationStart
             UpdateLoads updateLoads = new UpdateLoads(this);
             addActivityVisitor(updateLoads);
             addListener(updateLoads);
-            addActivityVisitor(new UpdateMaxCapacityUtilisationAtActivitiesByLookingBackwardInRoute(this));
-            addActivityVisitor(new UpdateMaxCapacityUtilisationAtActivitiesByLookingForwardInRoute(this));
+            addActivityVisitor(new UpdateMaxCapacityUtilisationAtActivitiesByLookingBackwardInRoute(this, updateLoads));
+            addActivityVisitor(new UpdateMaxCapacityUtilisationAtActivitiesByLookingForwardInRoute(this, updateLoads));
             addActivityVisitor(new UpdateMaxCapacityUtilisationAtRoute(this));
         }
     }
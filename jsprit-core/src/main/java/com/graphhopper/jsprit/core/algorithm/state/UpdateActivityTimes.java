@@ -20,7 +20,6 @@ package com.graphhopper.jsprit.core.algorithm.state;
 import com.graphhopper.jsprit.core.problem.cost.ForwardTransportTime;
 import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingActivityCosts;
 import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
-import com.graphhopper.jsprit.core.problem.solution.route.activity.ActivityVisitor;
 import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
 import com.graphhopper.jsprit.core.util.ActivityTimeTracker;
 
@@ -32,7 +31,7 @@ import com.graphhopper.jsprit.core.util.ActivityTimeTracker;
  *
  * @author stefan
  */
-public class UpdateActivityTimes implements ActivityVisitor, StateUpdater {
+public class UpdateActivityTimes implements ResumableActivityVisitor {
 
     private ActivityTimeTracker timeTracker;
 
@@ -63,6 +62,17 @@ public class UpdateActivityTimes implements ActivityVisitor, StateUpdater {
         route.getStart().setEndTime(timeTracker.getActEndTime());
     }
 
+    @Override
+    public boolean begin(VehicleRoute route, int fromIndex) {
+        if (fromIndex == 0) {
+            begin(route);
+            return true;
+        }
+        timeTracker.resume(route, route.getActivities().get(fromIndex - 1));
+        this.route = route;
+        return true;
+    }
+
     @Override
     public void visit(TourActivity activity) {
         timeTracker.visit(activity);
@@ -20,7 +20,6 @@ package com.graphhopper.jsprit.core.algorithm.state;
 import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingTransportCosts;
 import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
 import com.graphhopper.jsprit.core.problem.solution.route.activity.BreakActivity;
-import com.graphhopper.jsprit.core.problem.solution.route.activity.ReverseActivityVisitor;
 import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
 
 /**
@@ -28,7 +27,7 @@ import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
  *
  * @author schroeder
  */
-public class UpdateFutureWaitingTimes implements ReverseActivityVisitor, StateUpdater {
+public class UpdateFutureWaitingTimes implements ConvergingReverseActivityVisitor {
 
     private StateManager states;
 
@@ -52,12 +51,20 @@ public class UpdateFutureWaitingTimes implements ReverseActivityVisitor, StateUp
 
     @Override
     public void visit(TourActivity activity) {
-        states.putInternalTypedActivityState(activity, route.getVehicle(), InternalStates.FUTURE_WAITING, futureWaiting);
+        states.putInternalActivityDoubleState(activity, route.getVehicle(), InternalStates.FUTURE_WAITING, futureWaiting);
 		if(!(activity instanceof BreakActivity)) {
             futureWaiting += Math.max(activity.getTheoreticalEarliestOperationStartTime() - activity.getArrTime(), 0);
 		}
     }
 
+    @Override
+    public boolean visitAndDetectChange(TourActivity activity) {
+        double oldFutureWaiting = states.getActivityDoubleState(activity, route.getVehicle(), InternalStates.FUTURE_WAITING, Double.NaN);
+        double newFutureWaiting = futureWaiting;
+        visit(activity);
+        return Double.compare(oldFutureWaiting, newFutureWaiting) != 0;
+    }
+
     @Override
     public void finish() {
     }
@@ -25,10 +25,12 @@ import com.graphhopper.jsprit.core.problem.job.Job;
 import com.graphhopper.jsprit.core.problem.job.Pickup;
 import com.graphhopper.jsprit.core.problem.job.Service;
 import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
-import com.graphhopper.jsprit.core.problem.solution.route.activity.ActivityVisitor;
 import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 
 /**
@@ -41,7 +43,7 @@ import java.util.Collection;
  *
  * @author stefan
  */
-class UpdateLoads implements ActivityVisitor, StateUpdater, InsertionStartsListener, JobInsertedListener {
+class UpdateLoads implements ResumableActivityVisitor, InsertionStartsListener, JobInsertedListener {
 
     private StateManager stateManager;
 
@@ -54,6 +56,10 @@ class UpdateLoads implements ActivityVisitor, StateUpdater, InsertionStartsListe
 
     private VehicleRoute route;
 
+    private VehicleRoute resumedRoute;
+
+    private Set<VehicleRoute> routesWithChangedLoadAtBeginning = Collections.newSetFromMap(new IdentityHashMap<VehicleRoute, Boolean>());
+
     public UpdateLoads(StateManager stateManager) {
         super();
         this.stateManager = stateManager;
@@ -65,6 +71,34 @@ class UpdateLoads implements ActivityVisitor, StateUpdater, InsertionStartsListe
         currentLoad = stateManager.getRouteState(route, InternalStates.LOAD_AT_BEGINNING, Capacity.class);
         if (currentLoad == null) currentLoad = defaultValue;
         this.route = route;
+        resumedRoute = null;
+        routesWithChangedLoadAtBeginning.remove(route);
+    }
+
+    /**
+     * Resumes at fromIndex if the load at the beginning of the route has not changed since the previous visit, since
+     * otherwise the loads at all activities change.
+     */
+    @Override
+    public boolean begin(VehicleRoute route, int fromIndex) {
+        if (routesWithChangedLoadAtBeginning.contains(route)) return false;
+        if (fromIndex == 0) {
+            begin(route);
+        } else {
+            currentLoad = stateManager.getActivityState(route.getActivities().get(fromIndex - 1), InternalStates.LOAD, Capacity.class);
+            if (currentLoad == null) return false;
+            this.route = route;
+        }
+        resumedRoute = route;
+        return true;
+    }
+
+    /**
+     * Returns true if the current visit of the specified route has been resumed, i.e. if the loads at the activities
+     * before the resume index have not changed.
+     */
+    boolean hasResumed(VehicleRoute route) {
+        return resumedRoute == route;
     }
 
     @Override
@@ -92,6 +126,7 @@ class UpdateLoads implements ActivityVisitor, StateUpdater, InsertionStartsListe
         }
         stateManager.putTypedInternalRouteState(route, InternalStates.LOAD_AT_BEGINNING, loadAtDepot);
         stateManager.putTypedInternalRouteState(route, InternalStates.LOAD_AT_END, loadAtEnd);
+        routesWithChangedLoadAtBeginning.add(route);
     }
 
     @Override
@@ -107,6 +142,7 @@ class UpdateLoads implements ActivityVisitor, StateUpdater, InsertionStartsListe
             Capacity loadAtDepot = stateManager.getRouteState(inRoute, InternalStates.LOAD_AT_BEGINNING, Capacity.class);
             if (loadAtDepot == null) loadAtDepot = defaultValue;
             stateManager.putTypedInternalRouteState(inRoute, InternalStates.LOAD_AT_BEGINNING, Capacity.addup(loadAtDepot, job2insert.getSize()));
+            routesWithChangedLoadAtBeginning.add(inRoute);
         } else if (job2insert instanceof Pickup || job2insert instanceof Service) {
             Capacity loadAtEnd = stateManager.getRouteState(inRoute, InternalStates.LOAD_AT_END, Capacity.class);
             if (loadAtEnd == null) loadAtEnd = defaultValue;
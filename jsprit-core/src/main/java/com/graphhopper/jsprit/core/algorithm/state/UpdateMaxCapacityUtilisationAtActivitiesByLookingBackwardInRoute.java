@@ -19,7 +19,6 @@ package com.graphhopper.jsprit.core.algorithm.state;
 
 import com.graphhopper.jsprit.core.problem.Capacity;
 import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
-import com.graphhopper.jsprit.core.problem.solution.route.activity.ActivityVisitor;
 import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
 
 /**
@@ -28,7 +27,7 @@ import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
  *
  * @author schroeder
  */
-class UpdateMaxCapacityUtilisationAtActivitiesByLookingBackwardInRoute implements ActivityVisitor, StateUpdater {
+class UpdateMaxCapacityUtilisationAtActivitiesByLookingBackwardInRoute implements ResumableActivityVisitor {
 
     private StateManager stateManager;
 
@@ -38,11 +37,22 @@ class UpdateMaxCapacityUtilisationAtActivitiesByLookingBackwardInRoute implement
 
     private Capacity defaultValue;
 
+    private UpdateLoads updateLoads;
+
     public UpdateMaxCapacityUtilisationAtActivitiesByLookingBackwardInRoute(StateManager stateManager) {
         this.stateManager = stateManager;
         defaultValue = Capacity.Builder.newInstance().build();
     }
 
+    /**
+     * @param stateManager the stateManager
+     * @param updateLoads  the updater of loads which tells whether loads before the insertion index have changed
+     */
+    UpdateMaxCapacityUtilisationAtActivitiesByLookingBackwardInRoute(StateManager stateManager, UpdateLoads updateLoads) {
+        this(stateManager);
+        this.updateLoads = updateLoads;
+    }
+
     @Override
     public void begin(VehicleRoute route) {
         this.route = route;
@@ -50,6 +60,19 @@ class UpdateMaxCapacityUtilisationAtActivitiesByLookingBackwardInRoute implement
         if (maxLoad == null) maxLoad = defaultValue;
     }
 
+    @Override
+    public boolean begin(VehicleRoute route, int fromIndex) {
+        if (updateLoads == null || !updateLoads.hasResumed(route)) return false;
+        if (fromIndex == 0) {
+            begin(route);
+            return true;
+        }
+        maxLoad = stateManager.getActivityState(route.getActivities().get(fromIndex - 1), InternalStates.PAST_MAXLOAD, Capacity.class);
+        if (maxLoad == null) return false;
+        this.route = route;
+        return true;
+    }
+
     @Override
     public void visit(TourActivity act) {
         maxLoad = Capacity.max(maxLoad, stateManager.getActivityState(act, InternalStates.LOAD, Capacity.class));
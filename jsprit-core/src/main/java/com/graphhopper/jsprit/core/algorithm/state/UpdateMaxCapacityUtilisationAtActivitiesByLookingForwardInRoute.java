@@ -19,7 +19,6 @@ package com.graphhopper.jsprit.core.algorithm.state;
 
 import com.graphhopper.jsprit.core.problem.Capacity;
 import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
-import com.graphhopper.jsprit.core.problem.solution.route.activity.ReverseActivityVisitor;
 import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
 
 /**
@@ -39,7 +38,7 @@ import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
  *
  * @author schroeder
  */
-class UpdateMaxCapacityUtilisationAtActivitiesByLookingForwardInRoute implements ReverseActivityVisitor, StateUpdater {
+class UpdateMaxCapacityUtilisationAtActivitiesByLookingForwardInRoute implements ConvergingReverseActivityVisitor {
 
     private StateManager stateManager;
 
@@ -49,17 +48,31 @@ class UpdateMaxCapacityUtilisationAtActivitiesByLookingForwardInRoute implements
 
     private Capacity defaultValue;
 
+    private UpdateLoads updateLoads;
+
+    private boolean loadsResumed;
+
     public UpdateMaxCapacityUtilisationAtActivitiesByLookingForwardInRoute(StateManager stateManager) {
         super();
         this.stateManager = stateManager;
         defaultValue = Capacity.Builder.newInstance().build();
     }
 
+    /**
+     * @param stateManager the stateManager
+     * @param updateLoads  the updater of loads which tells whether loads before the insertion index have changed
+     */
+    UpdateMaxCapacityUtilisationAtActivitiesByLookingForwardInRoute(StateManager stateManager, UpdateLoads updateLoads) {
+        this(stateManager);
+        this.updateLoads = updateLoads;
+    }
+
     @Override
     public void begin(VehicleRoute route) {
         this.route = route;
         maxLoad = stateManager.getRouteState(route, InternalStates.LOAD_AT_END, Capacity.class);
         if (maxLoad == null) maxLoad = defaultValue;
+        loadsResumed = updateLoads != null && updateLoads.hasResumed(route);
     }
 
     @Override
@@ -70,6 +83,17 @@ class UpdateMaxCapacityUtilisationAtActivitiesByLookingForwardInRoute implements
 //		assert maxLoad.isGreaterOrEqual(Capacity.Builder.newInstance().build()) : "maxLoad can never be smaller than 0";
     }
 
+    /**
+     * Since future maxLoads depend on the loads at the activities, it can only be detected that nothing changes if
+     * loads before the insertion index remained the same.
+     */
+    @Override
+    public boolean visitAndDetectChange(TourActivity act) {
+        Capacity oldMaxLoad = stateManager.getActivityState(act, InternalStates.FUTURE_MAXLOAD, Capacity.class);
+        visit(act);
+        return !loadsResumed || !maxLoad.equals(oldMaxLoad);
+    }
+
     @Override
     public void finish() {
     }
@@ -161,7 +161,7 @@ public class UpdateMaxTimeInVehicle implements StateUpdater, ActivityVisitor{
             }
 
             double minSlackTimeAtEnd = minSlackTime(openDeliveries);
-            stateManager.putRouteState(route, v, minSlackId, minSlackTimeAtEnd);
+            stateManager.putRouteDoubleState(route, v, minSlackId, minSlackTimeAtEnd);
             stateManager.putRouteState(route, v, openJobsId, new HashMap<>(openDeliveries));
             List<TourActivity> acts = new ArrayList<>(this.route.getActivities());
             Collections.reverse(acts);
@@ -172,7 +172,7 @@ public class UpdateMaxTimeInVehicle implements StateUpdater, ActivityVisitor{
                     double minSlackTime = minSlackTime(openDeliveries);
 //                    double latestStart = actStart(act, v) + minSlackTime;
                     stateManager.putActivityState(act, v, openJobsId, new HashMap<>(openDeliveries));
-                    stateManager.putActivityState(act, v, minSlackId, minSlackTime);
+                    stateManager.putActivityDoubleState(act, v, minSlackId, minSlackTime);
                 } else {
                     if (slackTimesPerVehicle.get(vehicleIndex).containsKey(act)) {
                         double slackTime = slackTimesPerVehicle.get(vehicleIndex).get(act);
@@ -181,7 +181,7 @@ public class UpdateMaxTimeInVehicle implements StateUpdater, ActivityVisitor{
                     double minSlackTime = minSlackTime(openDeliveries);
 //                    double latestStart = actStart(act, v) + minSlackTime;
                     stateManager.putActivityState(act, v, openJobsId, new HashMap<>(openDeliveries));
-                    stateManager.putActivityState(act, v, minSlackId, minSlackTime);
+                    stateManager.putActivityDoubleState(act, v, minSlackId, minSlackTime);
                 }
             }
         }
@@ -206,7 +206,7 @@ public class UpdateMaxTimeInVehicle implements StateUpdater, ActivityVisitor{
             }
 
             double minSlackTimeAtEnd = minSlackTime(openDeliveries);
-            stateManager.putRouteState(route, v, minSlackId, routeEnd + minSlackTimeAtEnd);
+            stateManager.putRouteDoubleState(route, v, minSlackId, routeEnd + minSlackTimeAtEnd);
             List<TourActivity> acts = new ArrayList<>(activities);
             Collections.reverse(acts);
             for (TourActivity act : acts) {
@@ -216,7 +216,7 @@ public class UpdateMaxTimeInVehicle implements StateUpdater, ActivityVisitor{
                     openDeliveries.remove(jobId);
                     double minSlackTime = minSlackTime(openDeliveries);
                     double latestStart = actStart(act, v) + minSlackTime;
-                    stateManager.putActivityState(act, v, minSlackId, latestStart);
+                    stateManager.putActivityDoubleState(act, v, minSlackId, latestStart);
                 } else {
                     if (slackTimesPerVehicle.get(vehicleIndex).containsKey(act)) {
                         double slackTime = slackTimesPerVehicle.get(vehicleIndex).get(act);
@@ -224,7 +224,7 @@ public class UpdateMaxTimeInVehicle implements StateUpdater, ActivityVisitor{
                     }
                     double minSlackTime = minSlackTime(openDeliveries);
                     double latestStart = actStart(act, v) + minSlackTime;
-                    stateManager.putActivityState(act, v, minSlackId, latestStart);
+                    stateManager.putActivityDoubleState(act, v, minSlackId, latestStart);
                 }
             }
         }
@@ -20,7 +20,6 @@ package com.graphhopper.jsprit.core.algorithm.state;
 import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingActivityCosts;
 import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingTransportCosts;
 import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
-import com.graphhopper.jsprit.core.problem.solution.route.activity.ReverseActivityVisitor;
 import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
 
 /**
@@ -28,7 +27,7 @@ import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
  *
  * @author schroeder
  */
-class UpdatePracticalTimeWindows implements ReverseActivityVisitor, StateUpdater {
+class UpdatePracticalTimeWindows implements ConvergingReverseActivityVisitor {
 
     private StateManager states;
 
@@ -61,12 +60,19 @@ class UpdatePracticalTimeWindows implements ReverseActivityVisitor, StateUpdater
         double potentialLatestArrivalTimeAtCurrAct = latestArrTimeAtPrevAct - transportCosts.getBackwardTransportTime(activity.getLocation(), prevAct.getLocation(), latestArrTimeAtPrevAct, route.getDriver(), route.getVehicle()) - activityCosts.getActivityDuration(activity,latestArrTimeAtPrevAct,route.getDriver(),route.getVehicle());
         double latestArrivalTime = Math.min(activity.getTheoreticalLatestOperationStartTime(), potentialLatestArrivalTimeAtCurrAct);
 
-        states.putInternalTypedActivityState(activity, InternalStates.LATEST_OPERATION_START_TIME, latestArrivalTime);
+        states.putInternalActivityDoubleState(activity, InternalStates.LATEST_OPERATION_START_TIME, latestArrivalTime);
 
         latestArrTimeAtPrevAct = latestArrivalTime;
         prevAct = activity;
     }
 
+    @Override
+    public boolean visitAndDetectChange(TourActivity activity) {
+        double oldLatestArrivalTime = states.getActivityDoubleState(activity, InternalStates.LATEST_OPERATION_START_TIME, Double.NaN);
+        visit(activity);
+        return Double.compare(oldLatestArrivalTime, latestArrTimeAtPrevAct) != 0;
+    }
+
     @Override
     public void finish() {
     }
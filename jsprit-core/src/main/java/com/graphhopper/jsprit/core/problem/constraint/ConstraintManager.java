@@ -17,6 +17,7 @@
  */
 package com.graphhopper.jsprit.core.problem.constraint;
 
+import com.graphhopper.jsprit.core.algorithm.metrics.AlgorithmMetrics;
 import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
 import com.graphhopper.jsprit.core.problem.job.Job;
 import com.graphhopper.jsprit.core.problem.misc.JobInsertionContext;
@@ -64,6 +65,8 @@ public class ConstraintManager implements HardActivityConstraint, HardRouteConst
 
     private final DependencyType[] dependencyTypes;
 
+    private AlgorithmMetrics metrics;
+
     public ConstraintManager(VehicleRoutingProblem vrp, RouteAndActivityStateGetter stateManager) {
         this.vrp = vrp;
         this.stateManager = stateManager;
@@ -96,6 +99,21 @@ public class ConstraintManager implements HardActivityConstraint, HardRouteConst
 //        return actLevelConstraintManager.g;
 //    }
 
+    /**
+     * Sets the metrics insertion evaluations and constraint rejections are recorded in. Null disables the recording.
+     *
+     * @param metrics metrics to record in
+     */
+    public void setMetrics(AlgorithmMetrics metrics) {
+        this.metrics = metrics;
+        hardRouteConstraintManager.setMetrics(metrics);
+        actLevelConstraintManager.setMetrics(metrics);
+    }
+
+    public AlgorithmMetrics getMetrics() {
+        return metrics;
+    }
+
     public DependencyType[] getDependencyTypes() {
         return dependencyTypes;
     }
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.jsprit.core.problem.constraint;
 
+import com.graphhopper.jsprit.core.algorithm.metrics.AlgorithmMetrics;
 import com.graphhopper.jsprit.core.problem.misc.JobInsertionContext;
 import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
 
@@ -34,6 +35,12 @@ class HardActivityLevelConstraintManager implements HardActivityConstraint {
 
     private Collection<HardActivityConstraint> lowPrioConstraints = new ArrayList<HardActivityConstraint>();
 
+    private AlgorithmMetrics metrics;
+
+    void setMetrics(AlgorithmMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     public void addConstraint(HardActivityConstraint constraint, ConstraintManager.Priority priority) {
         if (priority.equals(ConstraintManager.Priority.CRITICAL)) {
             criticalConstraints.add(constraint);
@@ -66,9 +73,11 @@ class HardActivityLevelConstraintManager implements HardActivityConstraint {
 
     @Override
     public ConstraintsStatus fulfilled(JobInsertionContext iFacts, TourActivity prevAct, TourActivity newAct, TourActivity nextAct, double prevActDepTime) {
+        if (metrics != null) metrics.recordActivityEvaluation();
         ConstraintsStatus notFulfilled = null;
         for (HardActivityConstraint c : criticalConstraints) {
             ConstraintsStatus status = c.fulfilled(iFacts, prevAct, newAct, nextAct, prevActDepTime);
+            if (metrics != null && !status.equals(ConstraintsStatus.FULFILLED)) metrics.recordConstraintRejection(c.getClass());
             if (status.equals(ConstraintsStatus.NOT_FULFILLED_BREAK)) {
                 return status;
             } else {
@@ -81,6 +90,7 @@ class HardActivityLevelConstraintManager implements HardActivityConstraint {
 
         for (HardActivityConstraint c : highPrioConstraints) {
             ConstraintsStatus status = c.fulfilled(iFacts, prevAct, newAct, nextAct, prevActDepTime);
+            if (metrics != null && !status.equals(ConstraintsStatus.FULFILLED)) metrics.recordConstraintRejection(c.getClass());
             if (status.equals(ConstraintsStatus.NOT_FULFILLED_BREAK)) {
                 return status;
             } else {
@@ -93,6 +103,7 @@ class HardActivityLevelConstraintManager implements HardActivityConstraint {
 
         for (HardActivityConstraint constraint : lowPrioConstraints) {
             ConstraintsStatus status = constraint.fulfilled(iFacts, prevAct, newAct, nextAct, prevActDepTime);
+            if (metrics != null && !status.equals(ConstraintsStatus.FULFILLED)) metrics.recordConstraintRejection(constraint.getClass());
             if (status.equals(ConstraintsStatus.NOT_FULFILLED_BREAK) || status.equals(ConstraintsStatus.NOT_FULFILLED)) {
                 return status;
             }
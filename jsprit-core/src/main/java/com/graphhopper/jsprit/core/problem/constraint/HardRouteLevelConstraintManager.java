@@ -17,6 +17,7 @@
  */
 package com.graphhopper.jsprit.core.problem.constraint;
 
+import com.graphhopper.jsprit.core.algorithm.metrics.AlgorithmMetrics;
 import com.graphhopper.jsprit.core.problem.misc.JobInsertionContext;
 
 import java.util.ArrayList;
@@ -28,6 +29,8 @@ class HardRouteLevelConstraintManager implements HardRouteConstraint {
 
     private Collection<HardRouteConstraint> hardConstraints = new ArrayList<HardRouteConstraint>();
 
+    private AlgorithmMetrics metrics;
+
     public void addConstraint(HardRouteConstraint constraint) {
         hardConstraints.add(constraint);
     }
@@ -36,10 +39,16 @@ class HardRouteLevelConstraintManager implements HardRouteConstraint {
         return Collections.unmodifiableCollection(hardConstraints);
     }
 
+    void setMetrics(AlgorithmMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     public boolean fulfilled(JobInsertionContext insertionContext) {
+        if (metrics != null) metrics.recordInsertionEvaluation();
         for (HardRouteConstraint constraint : hardConstraints) {
             if (!constraint.fulfilled(insertionContext)) {
+                if (metrics != null) metrics.recordConstraintRejection(constraint.getClass());
                 return false;
             }
         }
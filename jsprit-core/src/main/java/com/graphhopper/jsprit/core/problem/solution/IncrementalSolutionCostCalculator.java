@@ -0,0 +1,229 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.problem.solution;
+
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.driver.Driver;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SolutionCostCalculator that sums up route costs and only re-evaluates routes that have changed.
+ * <p>
+ * <p>Each search step works on a copy-on-write copy of a solution (see
+ * {@link VehicleRoutingProblemSolution#copyOnWriteOf(VehicleRoutingProblemSolution)}), i.e. routes that have not been
+ * touched by ruin and recreate are still identical to the routes of the original solution. Such routes share their
+ * activity objects with the original, thus their costs are memorized by the identity of the first activity together
+ * with the modification count of the activity sequence (see
+ * {@link com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivities#getModificationCount()}) and
+ * reused. Only the costs of the modified routes are calculated again. Costs of empty routes are not memorized.
+ * <p>
+ * <p>To bound memory, costs that have not been reused for a while are dropped, i.e. once the number of memorized
+ * routes exceeds a multiple of the number of routes of the evaluated solution, the memory starts over and only costs
+ * that are reused afterwards are carried over.
+ * <p>
+ * <p>Route costs must only depend on the route itself (its activities and their times, vehicle, driver and departure
+ * time). If route costs depend on other things that might change meanwhile, verification should be switched on (see
+ * {@link #setVerificationInterval(int)}). It periodically re-calculates all routes and reports memorized costs
+ * that have drifted.
+ *
+ * @author schroeder
+ */
+public abstract class IncrementalSolutionCostCalculator implements SolutionCostCalculator {
+
+    private static Logger logger = LoggerFactory.getLogger(IncrementalSolutionCostCalculator.class);
+
+    private int verificationInterval = 0;
+
+    private long noCalls;
+
+    private long noCalculatedRoutes;
+
+    private long noMemorizedRoutes;
+
+    private long noDetectedDrifts;
+
+    private Map<TourActivity, RouteCostsMemo> memorizedCosts = new IdentityHashMap<>();
+
+    private Map<TourActivity, RouteCostsMemo> previouslyMemorizedCosts = new IdentityHashMap<>();
+
+    /**
+     * Costs of a route together with what the costs depend on.
+     */
+    private static final class RouteCostsMemo {
+
+        final double costs;
+
+        final int modificationCount;
+
+        final int noActivities;
+
+        final TourActivity lastActivity;
+
+        final Vehicle vehicle;
+
+        final Driver driver;
+
+        final double departureTime;
+
+        RouteCostsMemo(VehicleRoute route, double costs) {
+            List<TourActivity> activities = route.getActivities();
+            this.costs = costs;
+            this.modificationCount = route.getTourActivities().getModificationCount();
+            this.noActivities = activities.size();
+            this.lastActivity = activities.get(activities.size() - 1);
+            this.vehicle = route.getVehicle();
+            this.driver = route.getDriver();
+            this.departureTime = getDepartureTime(route);
+        }
+
+        boolean isValidFor(VehicleRoute route) {
+            List<TourActivity> activities = route.getActivities();
+            if (modificationCount != route.getTourActivities().getModificationCount()) return false;
+            if (noActivities != activities.size() || lastActivity != activities.get(activities.size() - 1)) return false;
+            if (vehicle != route.getVehicle() || driver != route.getDriver()) return false;
+            return departureTime == getDepartureTime(route);
+        }
+
+        private static double getDepartureTime(VehicleRoute route) {
+            return route.getStart() == null ? 0. : route.getStart().getEndTime();
+        }
+
+    }
+
+    /**
+     * Returns the costs of the specified route.
+     *
+     * @param route the route
+     * @return costs of route
+     */
+    protected abstract double getRouteCosts(VehicleRoute route);
+
+    /**
+     * Returns the costs (i.e. penalties) of the specified unassigned jobs.
+     *
+     * @param unassignedJobs the unassigned jobs
+     * @return costs of unassigned jobs
+     */
+    protected abstract double getUnassignedJobCosts(Collection<Job> unassignedJobs);
+
+    /**
+     * Sets the number of calls to {@link #getCosts(VehicleRoutingProblemSolution)} after which the costs of all routes
+     * are re-calculated and compared to the memorized ones. If costs have drifted, a warning is logged and the
+     * re-calculated costs are used. Default is 0, i.e. no verification.
+     *
+     * @param verificationInterval number of calls after which all costs are re-calculated, or 0 to switch off verification
+     * @return this calculator
+     */
+    public IncrementalSolutionCostCalculator setVerificationInterval(int verificationInterval) {
+        if (verificationInterval < 0) throw new IllegalArgumentException("verification interval must not be negative");
+        this.verificationInterval = verificationInterval;
+        return this;
+    }
+
+    @Override
+    public double getCosts(VehicleRoutingProblemSolution solution) {
+        noCalls++;
+        boolean verify = verificationInterval > 0 && noCalls % verificationInterval == 0;
+        if (memorizedCosts.size() > 2 * solution.getRoutes().size() + 100) {
+            previouslyMemorizedCosts = memorizedCosts;
+            memorizedCosts = new IdentityHashMap<>();
+        }
+        double costs = 0.;
+        for (VehicleRoute route : solution.getRoutes()) {
+            double routeCosts = getMemorizedCosts(route);
+            if (Double.isNaN(routeCosts)) {
+                routeCosts = getRouteCosts(route);
+                memorizeCosts(route, routeCosts);
+                noCalculatedRoutes++;
+            } else {
+                noMemorizedRoutes++;
+                if (verify) {
+                    double actualCosts = getRouteCosts(route);
+                    if (hasDrifted(routeCosts, actualCosts)) {
+                        noDetectedDrifts++;
+                        logger.warn("memorized costs of route {} have drifted: memorized {}, actual {}", route, routeCosts, actualCosts);
+                        routeCosts = actualCosts;
+                        memorizeCosts(route, routeCosts);
+                    }
+                }
+            }
+            costs += routeCosts;
+        }
+        costs += getUnassignedJobCosts(solution.getUnassignedJobs());
+        return costs;
+    }
+
+    private double getMemorizedCosts(VehicleRoute route) {
+        if (route.isEmpty()) return Double.NaN;
+        TourActivity firstActivity = route.getActivities().get(0);
+        RouteCostsMemo memo = memorizedCosts.get(firstActivity);
+        if (memo == null) {
+            memo = previouslyMemorizedCosts.get(firstActivity);
+            if (memo == null) return Double.NaN;
+            memorizedCosts.put(firstActivity, memo);
+        }
+        if (!memo.isValidFor(route)) return Double.NaN;
+        return memo.costs;
+    }
+
+    private void memorizeCosts(VehicleRoute route, double costs) {
+        if (route.isEmpty()) return;
+        memorizedCosts.put(route.getActivities().get(0), new RouteCostsMemo(route, costs));
+    }
+
+    private static boolean hasDrifted(double memorizedCosts, double actualCosts) {
+        return Math.abs(memorizedCosts - actualCosts) > 1e-9 * Math.max(1., Math.abs(actualCosts));
+    }
+
+    /**
+     * Returns the number of routes whose costs have been calculated.
+     *
+     * @return number of calculated routes
+     */
+    public long getNoCalculatedRoutes() {
+        return noCalculatedRoutes;
+    }
+
+    /**
+     * Returns the number of routes whose memorized costs have been reused.
+     *
+     * @return number of reused route costs
+     */
+    public long getNoMemorizedRoutes() {
+        return noMemorizedRoutes;
+    }
+
+    /**
+     * Returns the number of memorized route costs that turned out to be wrong during verification.
+     *
+     * @return number of drifts
+     */
+    public long getNoDetectedDrifts() {
+        return noDetectedDrifts;
+    }
+
+}
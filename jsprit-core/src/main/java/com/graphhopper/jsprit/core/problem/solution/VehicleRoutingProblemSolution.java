@@ -38,7 +38,21 @@ public class VehicleRoutingProblemSolution {
      * @return solution
      */
     public static VehicleRoutingProblemSolution copyOf(VehicleRoutingProblemSolution solution2copy) {
-        return new VehicleRoutingProblemSolution(solution2copy);
+        return new VehicleRoutingProblemSolution(solution2copy, false);
+    }
+
+    /**
+     * Makes a copy-on-write copy of the solution to be copied.
+     * <p>Routes are copied with {@link VehicleRoute#copyOnWriteOf(VehicleRoute)}, i.e. their activities are shared
+     * with the original solution until a route is modified. Only routes that are actually modified are
+     * thus fully copied, which makes this considerably cheaper than {@link #copyOf(VehicleRoutingProblemSolution)} if
+     * only a few routes change.</p>
+     *
+     * @param solution2copy solution to be copied
+     * @return solution
+     */
+    public static VehicleRoutingProblemSolution copyOnWriteOf(VehicleRoutingProblemSolution solution2copy) {
+        return new VehicleRoutingProblemSolution(solution2copy, true);
     }
 
     private final Collection<VehicleRoute> routes;
@@ -47,10 +61,10 @@ public class VehicleRoutingProblemSolution {
 
     private double cost;
 
-    private VehicleRoutingProblemSolution(VehicleRoutingProblemSolution solution) {
-        routes = new ArrayList<VehicleRoute>();
+    private VehicleRoutingProblemSolution(VehicleRoutingProblemSolution solution, boolean copyOnWrite) {
+        routes = new ArrayList<VehicleRoute>(solution.getRoutes().size());
         for (VehicleRoute r : solution.getRoutes()) {
-            VehicleRoute route = VehicleRoute.copyOf(r);
+            VehicleRoute route = copyOnWrite ? VehicleRoute.copyOnWriteOf(r) : VehicleRoute.copyOf(r);
             routes.add(route);
         }
         this.cost = solution.getCost();
@@ -45,7 +45,22 @@ public class VehicleRoute {
      */
     public static VehicleRoute copyOf(VehicleRoute route) {
         if (route == null) throw new IllegalArgumentException("route must not be null");
-        return new VehicleRoute(route);
+        return new VehicleRoute(route, false);
+    }
+
+    /**
+     * Returns a copy-on-write copy of this vehicleRoute.
+     * <p>Start and end are copied, whereas tour activities are shared with the original route until either of the two
+     * routes is modified (see {@link TourActivities#copyOnWriteOf(TourActivities)}). This makes copying routes
+     * that are not modified afterwards cheap.</p>
+     *
+     * @param route route to copy
+     * @return copied route
+     * @throws IllegalArgumentException if route is null
+     */
+    public static VehicleRoute copyOnWriteOf(VehicleRoute route) {
+        if (route == null) throw new IllegalArgumentException("route must not be null");
+        return new VehicleRoute(route, true);
     }
 
     /**
@@ -338,12 +353,15 @@ public class VehicleRoute {
     /**
      * Copy constructor copying a route.
      *
-     * @param route to copy
+     * @param route       to copy
+     * @param copyOnWrite whether tour activities are shared until modified
      */
-    private VehicleRoute(VehicleRoute route) {
+    private VehicleRoute(VehicleRoute route, boolean copyOnWrite) {
         this.start = Start.copyOf(route.getStart());
         this.end = End.copyOf(route.getEnd());
-        this.tourActivities = TourActivities.copyOf(route.getTourActivities());
+        if (copyOnWrite) {
+            this.tourActivities = TourActivities.copyOnWriteOf(route.getTourActivities());
+        } else this.tourActivities = TourActivities.copyOf(route.getTourActivities());
         this.vehicle = route.getVehicle();
         this.driver = route.getDriver();
     }
@@ -413,6 +431,8 @@ public class VehicleRoute {
      * @param vehicleDepTime of employed vehicle
      */
     public void setVehicleAndDepartureTime(Vehicle vehicle, double vehicleDepTime) {
+        //activity times are about to change, thus activities must not be shared anymore
+        tourActivities.unshare();
         this.vehicle = vehicle;
         setStartAndEnd(vehicle, vehicleDepTime);
     }
@@ -33,6 +33,23 @@ public class TourActivities {
         return new TourActivities(tourActivities);
     }
 
+    /**
+     * Returns a copy-on-write copy of the specified activity sequence.
+     * <p>The copy shares activities and jobs with the original until either of the two is modified. The first
+     * modification (adding or removing activities, or calling {@link #unshare()}) makes the modified sequence work on
+     * its own duplicates of the activities, thus the other sequence remains unchanged.</p>
+     * <p>Note that shared activities are the same objects in both sequences. Changing their times directly rather
+     * than through this class, e.g. by recalculating them for a different vehicle, requires {@link #unshare()} to be
+     * called first.</p>
+     *
+     * @param tourActivities activity sequence to be copied
+     * @return copy sharing activities with the original until modified
+     */
+    public static TourActivities copyOnWriteOf(TourActivities tourActivities) {
+        tourActivities.shared = true;
+        return new TourActivities(tourActivities.tourActivities, tourActivities.jobs, tourActivities.modCount);
+    }
+
     public static class ReverseActivityIterator implements Iterator<TourActivity> {
 
         private List<TourActivity> acts;
@@ -66,9 +83,13 @@ public class TourActivities {
         }
     }
 
-    private final ArrayList<TourActivity> tourActivities = new ArrayList<>();
+    private ArrayList<TourActivity> tourActivities = new ArrayList<>();
+
+    private Set<Job> jobs = new HashSet<>();
 
-    private final Set<Job> jobs = new HashSet<>();
+    private boolean shared = false;
+
+    private int modCount = 0;
 
     private ReverseActivityIterator backward;
 
@@ -80,35 +101,89 @@ public class TourActivities {
         }
     }
 
+    private TourActivities(ArrayList<TourActivity> tourActivities, Set<Job> jobs, int modCount) {
+        this.tourActivities = tourActivities;
+        this.jobs = jobs;
+        this.shared = true;
+        this.modCount = modCount;
+    }
+
     public TourActivities() {
     }
 
+    /**
+     * Makes sure that this activity sequence does not share its activities with another sequence anymore
+     * (see {@link #copyOnWriteOf(TourActivities)}). If activities are shared, they are duplicated. Otherwise, nothing happens.
+     */
+    public void unshare() {
+        if (!shared) return;
+        ArrayList<TourActivity> ownActivities = new ArrayList<>(tourActivities.size());
+        for (TourActivity tourAct : tourActivities) {
+            ownActivities.add(tourAct.duplicate());
+        }
+        tourActivities = ownActivities;
+        jobs = new HashSet<>(jobs);
+        backward = null;
+        shared = false;
+    }
+
+    /**
+     * Returns true if this activity sequence (still) shares its activities with another one.
+     *
+     * @return true if activities are shared
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Returns the number of modifications of this activity sequence, i.e. the number of times activities have been added
+     * or removed. A copy-on-write copy starts with the count of its original, thus if the counts of the two are equal,
+     * neither of them has been modified since copying.
+     *
+     * @return number of modifications
+     */
+    public int getModificationCount() {
+        return modCount;
+    }
+
     public List<TourActivity> getActivities() {
         return Collections.unmodifiableList(tourActivities);
     }
 
     public Iterator<TourActivity> iterator() {
-        final Iterator<TourActivity> iterator = tourActivities.iterator();
         return new Iterator<TourActivity>() {
+            private int cursor = 0;
+
+            private int lastReturnedIndex = -1;
+
             private TourActivity lastReturned = null;
 
             @Override
             public boolean hasNext() {
-                return iterator.hasNext();
+                return cursor < tourActivities.size();
             }
 
             @Override
             public TourActivity next() {
-                return lastReturned = iterator.next();
+                if (cursor >= tourActivities.size()) throw new NoSuchElementException();
+                lastReturnedIndex = cursor;
+                cursor++;
+                return lastReturned = tourActivities.get(lastReturnedIndex);
             }
 
             @Override
             public void remove() {
+                if (lastReturnedIndex < 0) throw new IllegalStateException();
                 if (lastReturned instanceof JobActivity) {
                     throw new IllegalStateException("Cannot remove JobActivities via iterator. "
                         + "Use TourActivities.removeActivity(), or alternatively, consider TourActivities.removeJob()");
                 } else {
-                    iterator.remove();
+                    unshare();
+                    modCount++;
+                    tourActivities.remove(lastReturnedIndex);
+                    cursor = lastReturnedIndex;
+                    lastReturnedIndex = -1;
                 }
             }
         };
@@ -148,6 +223,8 @@ public class TourActivities {
         if (!jobs.contains(job)) {
             return false;
         } else {
+            unshare();
+            modCount++;
             jobRemoved = jobs.remove(job);
         }
         boolean activityRemoved = false;
@@ -176,6 +253,14 @@ public class TourActivities {
      * @return true if activity has been removed, false otherwise
      */
     public boolean removeActivity(TourActivity activity) {
+        if (shared) {
+            //activity might be the shared instance, thus look it up before activities are duplicated
+            int index = indexOf(activity);
+            if (index < 0) return false;
+            unshare();
+            activity = tourActivities.get(index);
+        }
+        modCount++;
         if (!(activity instanceof JobActivity)) {
             //assumes that an activity can be added only once to tourActivities
             return tourActivities.remove(activity);
@@ -210,6 +295,14 @@ public class TourActivities {
         return actRemoved;
     }
 
+    private int indexOf(TourActivity activity) {
+        if (!(activity instanceof JobActivity)) return tourActivities.indexOf(activity);
+        for (int i = 0; i < tourActivities.size(); i++) {
+            if (tourActivities.get(i) == activity) return i;
+        }
+        return -1;
+    }
+
 
     /**
      * Inserts the specified activity add the specified insertionIndex. Shifts the element currently at that position (if any) and
@@ -224,6 +317,8 @@ public class TourActivities {
     public void addActivity(int insertionIndex, TourActivity act) {
 
         assert insertionIndex >= 0 : "insertionIndex < 0, this cannot be";
+        unshare();
+        modCount++;
 
 		/*
          * if 1 --> between start and act(0) --> act(0)
@@ -250,6 +345,8 @@ public class TourActivities {
     public void addActivity(TourActivity act) {
         if (tourActivities.contains(act))
             throw new IllegalArgumentException("act " + act + " already in tour. cannot add act twice.");
+        unshare();
+        modCount++;
         tourActivities.add(act);
         addJob(act);
     }
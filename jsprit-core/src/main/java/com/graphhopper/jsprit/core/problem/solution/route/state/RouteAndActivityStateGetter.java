@@ -33,4 +33,32 @@ public interface RouteAndActivityStateGetter {
 
     public <T> T getRouteState(VehicleRoute route, Vehicle vehicle, StateId stateId, Class<T> type);
 
+    /**
+     * Returns the double state of the specified activity and stateId, or defaultValue if no state is associated.
+     * <p>Implementations that store double states in primitive arrays should override this to avoid boxing.</p>
+     */
+    default double getActivityDoubleState(TourActivity act, StateId stateId, double defaultValue) {
+        Double state = getActivityState(act, stateId, Double.class);
+        if (state == null) return defaultValue;
+        return state;
+    }
+
+    default double getActivityDoubleState(TourActivity act, Vehicle vehicle, StateId stateId, double defaultValue) {
+        Double state = getActivityState(act, vehicle, stateId, Double.class);
+        if (state == null) return defaultValue;
+        return state;
+    }
+
+    default double getRouteDoubleState(VehicleRoute route, StateId stateId, double defaultValue) {
+        Double state = getRouteState(route, stateId, Double.class);
+        if (state == null) return defaultValue;
+        return state;
+    }
+
+    default double getRouteDoubleState(VehicleRoute route, Vehicle vehicle, StateId stateId, double defaultValue) {
+        Double state = getRouteState(route, vehicle, stateId, Double.class);
+        if (state == null) return defaultValue;
+        return state;
+    }
+
 }
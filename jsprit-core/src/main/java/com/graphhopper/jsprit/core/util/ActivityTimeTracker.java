@@ -79,6 +79,21 @@ public class ActivityTimeTracker implements ActivityVisitor {
         beginFirst = true;
     }
 
+    /**
+     * Begins tracking after the specified activity of the route, i.e. the end time of prevAct is assumed to be
+     * up-to-date and the next activity visited is the one that follows prevAct.
+     *
+     * @param route   the route
+     * @param prevAct the activity after which tracking resumes
+     */
+    public void resume(VehicleRoute route, TourActivity prevAct) {
+        this.prevAct = prevAct;
+        startAtPrevAct = prevAct.getEndTime();
+        actEndTime = startAtPrevAct;
+        this.route = route;
+        beginFirst = true;
+    }
+
     @Override
     public void visit(TourActivity activity) {
         if (!beginFirst) throw new IllegalStateException("never called begin. this however is essential here");
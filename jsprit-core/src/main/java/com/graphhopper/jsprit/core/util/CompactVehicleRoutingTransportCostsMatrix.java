@@ -0,0 +1,434 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.util;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.cost.AbstractForwardVehicleRoutingTransportCosts;
+import com.graphhopper.jsprit.core.problem.driver.Driver;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+
+
+/**
+ * CostMatrix that stores pre-compiled time and distance-matrices in flat one-dimensional arrays, i.e. one array for
+ * time values and another one for distance values.
+ * <p>
+ * <p>In contrast to {@link FastVehicleRoutingTransportCostsMatrix}, symmetric matrices only store the lower triangle
+ * (including the diagonal) and values can be stored with less precision (see {@link Storage}) which allows
+ * considerably larger matrices to be kept in memory. Time or distance arrays are only allocated if at least one
+ * value has been added, thus you can also use it with distance matrix only (or time matrix).
+ * <p>
+ * <p>Locations are identified by their index, i.e. {@link Location#getIndex()} must be set.
+ *
+ * @author schroeder
+ */
+public class CompactVehicleRoutingTransportCostsMatrix extends AbstractForwardVehicleRoutingTransportCosts {
+
+    /**
+     * Determines how values are stored.
+     */
+    public enum Storage {
+
+        /**
+         * 8 bytes per value, values are stored as they are.
+         */
+        DOUBLE,
+
+        /**
+         * 4 bytes per value, values are stored with float precision.
+         */
+        FLOAT,
+
+        /**
+         * 4 bytes per value, values are multiplied with the scale factor and rounded to int.
+         */
+        INT32,
+
+        /**
+         * 2 bytes per value, values are multiplied with the scale factor and rounded to short.
+         */
+        INT16
+
+    }
+
+    /**
+     * Builder that builds the matrix.
+     *
+     * @author schroeder
+     */
+    public static class Builder {
+
+        private final int noLocations;
+
+        private final boolean isSymmetric;
+
+        private Storage storage = Storage.DOUBLE;
+
+        private double timeScaleFactor = 1.;
+
+        private double distanceScaleFactor = 1.;
+
+        private Values times;
+
+        private Values distances;
+
+        /**
+         * Creates a new builder returning the matrix-builder.
+         * <p>If you want to consider symmetric matrices, set isSymmetric to true. Then only the lower triangle of the
+         * matrix is stored.
+         *
+         * @param noLocations number of locations
+         * @param isSymmetric true if matrix is symmetric, false otherwise
+         * @return builder
+         */
+        public static Builder newInstance(int noLocations, boolean isSymmetric) {
+            return new Builder(noLocations, isSymmetric);
+        }
+
+        private Builder(int noLocations, boolean isSymmetric) {
+            if (noLocations < 0) throw new IllegalArgumentException("number of locations must not be negative");
+            long size = isSymmetric ? (long) noLocations * (noLocations + 1) / 2 : (long) noLocations * noLocations;
+            if (size > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException("matrix with " + noLocations + " locations is too large to be stored in a single array");
+            this.noLocations = noLocations;
+            this.isSymmetric = isSymmetric;
+        }
+
+        /**
+         * Sets the storage of values. Default is {@link Storage#DOUBLE}.
+         * <p>It must be set before values are added.
+         *
+         * @param storage the storage of time and distance values
+         * @return builder
+         */
+        public Builder setStorage(Storage storage) {
+            assertNoValuesAdded();
+            this.storage = storage;
+            return this;
+        }
+
+        /**
+         * Sets the factor time values are multiplied with before they are rounded and stored as integer values, e.g.
+         * 10 stores times with one decimal. It only applies to {@link Storage#INT32} and {@link Storage#INT16}.
+         * Default is 1.
+         * <p>It must be set before values are added.
+         *
+         * @param scaleFactor the scale factor
+         * @return builder
+         */
+        public Builder setTimeScaleFactor(double scaleFactor) {
+            assertNoValuesAdded();
+            if (scaleFactor <= 0) throw new IllegalArgumentException("scale factor must be positive");
+            this.timeScaleFactor = scaleFactor;
+            return this;
+        }
+
+        /**
+         * Sets the factor distance values are multiplied with before they are rounded and stored as integer values.
+         * It only applies to {@link Storage#INT32} and {@link Storage#INT16}. Default is 1.
+         * <p>It must be set before values are added.
+         *
+         * @param scaleFactor the scale factor
+         * @return builder
+         */
+        public Builder setDistanceScaleFactor(double scaleFactor) {
+            assertNoValuesAdded();
+            if (scaleFactor <= 0) throw new IllegalArgumentException("scale factor must be positive");
+            this.distanceScaleFactor = scaleFactor;
+            return this;
+        }
+
+        private void assertNoValuesAdded() {
+            if (times != null || distances != null)
+                throw new IllegalStateException("storage options must be set before values are added");
+        }
+
+        /**
+         * Adds a transport-distance for a particular relation.
+         *
+         * @param fromIndex from location index
+         * @param toIndex   to location index
+         * @param distance  the distance to be added
+         * @return builder
+         */
+        public Builder addTransportDistance(int fromIndex, int toIndex, double distance) {
+            if (distances == null) distances = Values.create(storage, size(), distanceScaleFactor);
+            distances.set(index(fromIndex, toIndex), distance);
+            return this;
+        }
+
+        /**
+         * Adds transport-time for a particular relation.
+         *
+         * @param fromIndex from location index
+         * @param toIndex   to location index
+         * @param time      the time to be added
+         * @return builder
+         */
+        public Builder addTransportTime(int fromIndex, int toIndex, double time) {
+            if (times == null) times = Values.create(storage, size(), timeScaleFactor);
+            times.set(index(fromIndex, toIndex), time);
+            return this;
+        }
+
+        public Builder addTransportTimeAndDistance(int fromIndex, int toIndex, double time, double distance) {
+            addTransportTime(fromIndex, toIndex, time);
+            addTransportDistance(fromIndex, toIndex, distance);
+            return this;
+        }
+
+        private int size() {
+            return isSymmetric ? (noLocations * (noLocations + 1)) >>> 1 : noLocations * noLocations;
+        }
+
+        private int index(int fromIndex, int toIndex) {
+            if (fromIndex < 0 || toIndex < 0 || fromIndex >= noLocations || toIndex >= noLocations)
+                throw new IllegalArgumentException("index of from " + fromIndex + " or to " + toIndex + " out of bounds [0," + noLocations + ")");
+            return CompactVehicleRoutingTransportCostsMatrix.index(fromIndex, toIndex, noLocations, isSymmetric);
+        }
+
+        /**
+         * Builds the matrix.
+         *
+         * @return matrix
+         */
+        public CompactVehicleRoutingTransportCostsMatrix build() {
+            return new CompactVehicleRoutingTransportCostsMatrix(this);
+        }
+
+    }
+
+    private static abstract class Values {
+
+        static Values create(Storage storage, int size, double scaleFactor) {
+            switch (storage) {
+                case DOUBLE:
+                    return new DoubleValues(size);
+                case FLOAT:
+                    return new FloatValues(size);
+                case INT32:
+                    return new IntValues(size, scaleFactor);
+                case INT16:
+                    return new ShortValues(size, scaleFactor);
+                default:
+                    throw new IllegalArgumentException("unknown storage " + storage);
+            }
+        }
+
+        abstract double get(int index);
+
+        abstract void set(int index, double value);
+
+    }
+
+    private static final class DoubleValues extends Values {
+
+        private final double[] values;
+
+        DoubleValues(int size) {
+            values = new double[size];
+        }
+
+        @Override
+        double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, double value) {
+            values[index] = value;
+        }
+    }
+
+    private static final class FloatValues extends Values {
+
+        private final float[] values;
+
+        FloatValues(int size) {
+            values = new float[size];
+        }
+
+        @Override
+        double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, double value) {
+            values[index] = (float) value;
+        }
+    }
+
+    private static final class IntValues extends Values {
+
+        private final int[] values;
+
+        private final double scaleFactor;
+
+        IntValues(int size, double scaleFactor) {
+            values = new int[size];
+            this.scaleFactor = scaleFactor;
+        }
+
+        @Override
+        double get(int index) {
+            return values[index] / scaleFactor;
+        }
+
+        @Override
+        void set(int index, double value) {
+            long scaled = Math.round(value * scaleFactor);
+            if (scaled > Integer.MAX_VALUE || scaled < Integer.MIN_VALUE)
+                throw new IllegalArgumentException("value " + value + " exceeds range of int32 storage with scale factor " + scaleFactor);
+            values[index] = (int) scaled;
+        }
+    }
+
+    private static final class ShortValues extends Values {
+
+        private final short[] values;
+
+        private final double scaleFactor;
+
+        ShortValues(int size, double scaleFactor) {
+            values = new short[size];
+            this.scaleFactor = scaleFactor;
+        }
+
+        @Override
+        double get(int index) {
+            return values[index] / scaleFactor;
+        }
+
+        @Override
+        void set(int index, double value) {
+            long scaled = Math.round(value * scaleFactor);
+            if (scaled > Short.MAX_VALUE || scaled < Short.MIN_VALUE)
+                throw new IllegalArgumentException("value " + value + " exceeds range of int16 storage with scale factor " + scaleFactor);
+            values[index] = (short) scaled;
+        }
+    }
+
+    private static int index(int fromIndex, int toIndex, int noLocations, boolean isSymmetric) {
+        if (isSymmetric) {
+            //row * (row + 1) may exceed Integer.MAX_VALUE for large matrices, but not 2^32, thus shift unsigned
+            if (fromIndex < toIndex) return ((toIndex * (toIndex + 1)) >>> 1) + fromIndex;
+            return ((fromIndex * (fromIndex + 1)) >>> 1) + toIndex;
+        }
+        return fromIndex * noLocations + toIndex;
+    }
+
+    private final int noLocations;
+
+    private final boolean isSymmetric;
+
+    private final Storage storage;
+
+    private final Values times;
+
+    private final Values distances;
+
+    private CompactVehicleRoutingTransportCostsMatrix(Builder builder) {
+        this.noLocations = builder.noLocations;
+        this.isSymmetric = builder.isSymmetric;
+        this.storage = builder.storage;
+        this.times = builder.times;
+        this.distances = builder.distances;
+    }
+
+    @Override
+    public double getTransportTime(Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
+        assertIndices(from, to);
+        return time(from.getIndex(), to.getIndex());
+    }
+
+    /**
+     * Returns the transport time from to to.
+     *
+     * @param fromIndex from location index
+     * @param toIndex   to location index
+     * @return the transport time
+     * @throws IllegalArgumentException if an index is negative or not less than the number of locations
+     */
+    public double getTransportTime(int fromIndex, int toIndex) {
+        assertIndices(fromIndex, toIndex);
+        return time(fromIndex, toIndex);
+    }
+
+    /**
+     * Returns the distance from to to.
+     *
+     * @param fromIndex from location index
+     * @param toIndex   to location index
+     * @return the distance
+     * @throws IllegalArgumentException if an index is negative or not less than the number of locations
+     */
+    public double getDistance(int fromIndex, int toIndex) {
+        assertIndices(fromIndex, toIndex);
+        return distance(fromIndex, toIndex);
+    }
+
+    @Override
+    public double getDistance(Location from, Location to, double departureTime, Vehicle vehicle) {
+        assertIndices(from, to);
+        return distance(from.getIndex(), to.getIndex());
+    }
+
+    @Override
+    public double getTransportCost(Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
+        assertIndices(from, to);
+        if (vehicle == null) return distance(from.getIndex(), to.getIndex());
+        VehicleTypeImpl.VehicleCostParams costParams = vehicle.getType().getVehicleCostParams();
+        return costParams.perDistanceUnit * distance(from.getIndex(), to.getIndex()) + costParams.perTransportTimeUnit * time(from.getIndex(), to.getIndex());
+    }
+
+    private double time(int fromIndex, int toIndex) {
+        if (times == null) return 0.;
+        return times.get(index(fromIndex, toIndex, noLocations, isSymmetric));
+    }
+
+    private double distance(int fromIndex, int toIndex) {
+        if (distances == null) return 0.;
+        return distances.get(index(fromIndex, toIndex, noLocations, isSymmetric));
+    }
+
+    private void assertIndices(Location from, Location to) {
+        if (from.getIndex() < 0 || to.getIndex() < 0)
+            throw new IllegalArgumentException("index of from " + from + " to " + to + " < 0 ");
+        if (from.getIndex() >= noLocations || to.getIndex() >= noLocations)
+            throw new IllegalArgumentException("index of from " + from + " to " + to + " >= number of locations " + noLocations);
+    }
+
+    private void assertIndices(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex < 0 || fromIndex >= noLocations || toIndex >= noLocations)
+            throw new IllegalArgumentException("index of from " + fromIndex + " or to " + toIndex + " is out of range [0," + noLocations + ")");
+    }
+
+    public int getNoLocations() {
+        return noLocations;
+    }
+
+    public boolean isSymmetric() {
+        return isSymmetric;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+}
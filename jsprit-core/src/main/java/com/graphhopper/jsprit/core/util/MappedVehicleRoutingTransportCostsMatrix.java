@@ -0,0 +1,264 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.util;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.cost.AbstractForwardVehicleRoutingTransportCosts;
+import com.graphhopper.jsprit.core.problem.driver.Driver;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * CostMatrix that reads pre-compiled time and distance-matrices from a memory-mapped file, i.e. values are neither
+ * parsed nor copied to the heap but read from the page cache of the operating system which can be shared by several
+ * JVMs.
+ * <p>
+ * <p>The file consists of a header of {@link #HEADER_SIZE} bytes followed by the time block and the distance block.
+ * All values are big-endian.
+ * <pre>
+ * offset  size  content
+ *      0     4  magic number 0x4A53504D ("JSPM")
+ *      4     4  format version (int), currently 1
+ *      8     4  number of locations n (int)
+ *     12     1  1 if matrix is symmetric, 0 otherwise
+ *     13     1  value type: 0 = double (8 bytes), 1 = float (4 bytes)
+ *     14     1  time unit: ordinal of {@link TimeUnit}
+ *     15     1  distance unit: ordinal of {@link DistanceUnit}
+ *     16     1  flags: bit 0 is set if the file contains a time block, bit 1 if it contains a distance block
+ *     17    15  reserved (0)
+ *     32        time block (if present), then distance block (if present)
+ * </pre>
+ * A block contains one value per relation in row-major order, i.e. the value of relation (from,to) is at position
+ * from * n + to. If the matrix is symmetric, only the lower triangle including the diagonal is stored, i.e. the value
+ * of (from,to) with from &gt;= to is at position from * (from + 1) / 2 + to.
+ * <p>
+ * <p>Locations are identified by their index, i.e. {@link Location#getIndex()} must be set. Files can be written with
+ * jsprit-io's MatrixFileWriter.
+ *
+ * @author schroeder
+ */
+public class MappedVehicleRoutingTransportCostsMatrix extends AbstractForwardVehicleRoutingTransportCosts {
+
+    public static final int MAGIC = 0x4A53504D;
+
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 32;
+
+    public static final byte DOUBLE_VALUES = 0;
+
+    public static final byte FLOAT_VALUES = 1;
+
+    public static final byte TIME_FLAG = 1;
+
+    public static final byte DISTANCE_FLAG = 2;
+
+    //segments are aligned to 8 bytes, i.e. values never span two segments
+    private static final int SEGMENT_BITS = 30;
+
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    /**
+     * Maps the specified file into memory.
+     *
+     * @param filename name of matrix file
+     * @return matrix
+     */
+    public static MappedVehicleRoutingTransportCostsMatrix newInstance(String filename) {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r"); FileChannel channel = file.getChannel()) {
+            return new MappedVehicleRoutingTransportCostsMatrix(filename, channel);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the number of values a block of a matrix with the specified number of locations consists of.
+     *
+     * @param noLocations number of locations
+     * @param isSymmetric true if matrix is symmetric, false otherwise
+     * @return number of values
+     */
+    public static long getNoValues(int noLocations, boolean isSymmetric) {
+        if (isSymmetric) return (long) noLocations * (noLocations + 1) / 2;
+        return (long) noLocations * noLocations;
+    }
+
+    private final int noLocations;
+
+    private final boolean isSymmetric;
+
+    private final int valueSize;
+
+    private final TimeUnit timeUnit;
+
+    private final DistanceUnit distanceUnit;
+
+    private final long timeOffset;
+
+    private final long distanceOffset;
+
+    private final ByteBuffer[] segments;
+
+    private MappedVehicleRoutingTransportCostsMatrix(String filename, FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE) throw new IllegalArgumentException(filename + " is not a matrix file. it is too small.");
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC) throw new IllegalArgumentException(filename + " is not a matrix file. magic number does not match.");
+        int version = header.getInt(4);
+        if (version != VERSION)
+            throw new IllegalArgumentException("version " + version + " of matrix file " + filename + " is not supported");
+        noLocations = header.getInt(8);
+        if (noLocations < 0)
+            throw new IllegalArgumentException("number of locations " + noLocations + " in matrix file " + filename + " is negative");
+        isSymmetric = header.get(12) == 1;
+        byte valueType = header.get(13);
+        if (valueType == DOUBLE_VALUES) valueSize = 8;
+        else if (valueType == FLOAT_VALUES) valueSize = 4;
+        else throw new IllegalArgumentException("unknown value type " + valueType + " in matrix file " + filename);
+        byte timeUnitOrdinal = header.get(14);
+        if (timeUnitOrdinal < 0 || timeUnitOrdinal >= TimeUnit.values().length)
+            throw new IllegalArgumentException("unknown time unit " + timeUnitOrdinal + " in matrix file " + filename);
+        timeUnit = TimeUnit.values()[timeUnitOrdinal];
+        byte distanceUnitOrdinal = header.get(15);
+        if (distanceUnitOrdinal < 0 || distanceUnitOrdinal >= DistanceUnit.values().length)
+            throw new IllegalArgumentException("unknown distance unit " + distanceUnitOrdinal + " in matrix file " + filename);
+        distanceUnit = DistanceUnit.values()[distanceUnitOrdinal];
+        byte flags = header.get(16);
+        long blockSize = getNoValues(noLocations, isSymmetric) * valueSize;
+        long offset = HEADER_SIZE;
+        if ((flags & TIME_FLAG) != 0) {
+            timeOffset = offset;
+            offset += blockSize;
+        } else timeOffset = -1;
+        if ((flags & DISTANCE_FLAG) != 0) {
+            distanceOffset = offset;
+            offset += blockSize;
+        } else distanceOffset = -1;
+        if (fileSize != offset)
+            throw new IllegalArgumentException("size of matrix file " + filename + " is " + fileSize + " bytes, but header indicates " + offset + " bytes");
+        int noSegments = (int) ((fileSize + SEGMENT_MASK) >>> SEGMENT_BITS);
+        segments = new ByteBuffer[noSegments];
+        for (int i = 0; i < noSegments; i++) {
+            long position = (long) i << SEGMENT_BITS;
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_MASK + 1, fileSize - position));
+            segments[i] = segment;
+        }
+    }
+
+    private double get(long blockOffset, int fromIndex, int toIndex) {
+        assertIndices(fromIndex, toIndex);
+        if (blockOffset < 0) return 0.;
+        long cell;
+        if (isSymmetric) {
+            if (fromIndex < toIndex) cell = (long) toIndex * (toIndex + 1) / 2 + fromIndex;
+            else cell = (long) fromIndex * (fromIndex + 1) / 2 + toIndex;
+        } else cell = (long) fromIndex * noLocations + toIndex;
+        long position = blockOffset + cell * valueSize;
+        ByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)];
+        int index = (int) (position & SEGMENT_MASK);
+        if (valueSize == 8) return segment.getDouble(index);
+        return segment.getFloat(index);
+    }
+
+    @Override
+    public double getTransportTime(Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
+        assertIndices(from, to);
+        return getTransportTime(from.getIndex(), to.getIndex());
+    }
+
+    /**
+     * Returns the transport time from to to.
+     *
+     * @param fromIndex from location index
+     * @param toIndex   to location index
+     * @return the transport time
+     */
+    public double getTransportTime(int fromIndex, int toIndex) {
+        return get(timeOffset, fromIndex, toIndex);
+    }
+
+    /**
+     * Returns the distance from to to.
+     *
+     * @param fromIndex from location index
+     * @param toIndex   to location index
+     * @return the distance
+     */
+    public double getDistance(int fromIndex, int toIndex) {
+        return get(distanceOffset, fromIndex, toIndex);
+    }
+
+    @Override
+    public double getDistance(Location from, Location to, double departureTime, Vehicle vehicle) {
+        assertIndices(from, to);
+        return getDistance(from.getIndex(), to.getIndex());
+    }
+
+    @Override
+    public double getTransportCost(Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
+        assertIndices(from, to);
+        if (vehicle == null) return getDistance(from.getIndex(), to.getIndex());
+        VehicleTypeImpl.VehicleCostParams costParams = vehicle.getType().getVehicleCostParams();
+        return costParams.perDistanceUnit * getDistance(from.getIndex(), to.getIndex()) + costParams.perTransportTimeUnit * getTransportTime(from.getIndex(), to.getIndex());
+    }
+
+    private void assertIndices(Location from, Location to) {
+        if (from.getIndex() < 0 || to.getIndex() < 0)
+            throw new IllegalArgumentException("index of from " + from + " to " + to + " < 0 ");
+        if (from.getIndex() >= noLocations || to.getIndex() >= noLocations)
+            throw new IllegalArgumentException("index of from " + from + " to " + to + " >= number of locations " + noLocations);
+    }
+
+    private void assertIndices(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex < 0 || fromIndex >= noLocations || toIndex >= noLocations)
+            throw new IllegalArgumentException("index of from " + fromIndex + " or to " + toIndex + " is out of range [0," + noLocations + ")");
+    }
+
+    public int getNoLocations() {
+        return noLocations;
+    }
+
+    public boolean isSymmetric() {
+        return isSymmetric;
+    }
+
+    public boolean hasTransportTimes() {
+        return timeOffset >= 0;
+    }
+
+    public boolean hasDistances() {
+        return distanceOffset >= 0;
+    }
+
+    public TimeUnit getTimeUnit() {
+        return timeUnit;
+    }
+
+    public DistanceUnit getDistanceUnit() {
+        return distanceUnit;
+    }
+
+}
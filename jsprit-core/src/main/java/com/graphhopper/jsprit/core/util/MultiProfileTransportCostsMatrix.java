@@ -0,0 +1,291 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.util;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.cost.AbstractForwardVehicleRoutingTransportCosts;
+import com.graphhopper.jsprit.core.problem.driver.Driver;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * CostMatrix that stores one time and distance-matrix per profile (e.g. bike, van and truck) and selects the matrix
+ * by the profile of the vehicle's type (see {@link com.graphhopper.jsprit.core.problem.vehicle.VehicleType#getProfile()}).
+ * <p>
+ * <p>Values of all profiles are kept in one flat array in which the matrix of each profile is a contiguous block.
+ * The profile of a vehicle is resolved once per vehicle type key and then memorized by the index of its
+ * {@link com.graphhopper.jsprit.core.problem.AbstractVehicle.AbstractTypeKey}, thus a lookup does not need any hashing.
+ * Since type key indices are assigned per problem, a memorized entry is only used if its profile equals the profile of
+ * the vehicle's type, i.e. the matrix can be shared by several problems. If no vehicle is specified, the first profile
+ * is used.
+ * <p>
+ * <p>Locations are identified by their index, i.e. {@link Location#getIndex()} must be set.
+ *
+ * @author schroeder
+ */
+public class MultiProfileTransportCostsMatrix extends AbstractForwardVehicleRoutingTransportCosts {
+
+    /**
+     * Builder that builds the matrix.
+     *
+     * @author schroeder
+     */
+    public static class Builder {
+
+        private final int noLocations;
+
+        private final boolean isSymmetric;
+
+        private final String[] profiles;
+
+        private final Map<String, Integer> profileIndices = new HashMap<String, Integer>();
+
+        private final double[] values;
+
+        /**
+         * Creates a new builder returning the matrix-builder.
+         * <p>If you want to consider symmetric matrices, set isSymmetric to true.
+         *
+         * @param noLocations number of locations
+         * @param isSymmetric true if matrix is symmetric, false otherwise
+         * @param profiles    the profiles, the first one is used if no vehicle is specified
+         * @return builder
+         */
+        public static Builder newInstance(int noLocations, boolean isSymmetric, String... profiles) {
+            return new Builder(noLocations, isSymmetric, profiles);
+        }
+
+        private Builder(int noLocations, boolean isSymmetric, String[] profiles) {
+            if (noLocations < 0) throw new IllegalArgumentException("number of locations must not be negative");
+            if (profiles.length == 0) throw new IllegalArgumentException("at least one profile must be specified");
+            if ((long) profiles.length * noLocations * noLocations * 2 > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException("matrix with " + noLocations + " locations and " + profiles.length + " profiles is too large to be stored in a single array");
+            for (int i = 0; i < profiles.length; i++) {
+                if (profileIndices.put(profiles[i], i) != null)
+                    throw new IllegalArgumentException("profile " + profiles[i] + " is specified more than once");
+            }
+            this.noLocations = noLocations;
+            this.isSymmetric = isSymmetric;
+            this.profiles = profiles.clone();
+            values = new double[profiles.length * noLocations * noLocations * 2];
+        }
+
+        /**
+         * Adds a transport-distance for a particular relation of a profile.
+         *
+         * @param profile   the profile
+         * @param fromIndex from location index
+         * @param toIndex   to location index
+         * @param distance  the distance to be added
+         * @return builder
+         */
+        public Builder addTransportDistance(String profile, int fromIndex, int toIndex, double distance) {
+            add(profile, fromIndex, toIndex, 0, distance);
+            return this;
+        }
+
+        /**
+         * Adds transport-time for a particular relation of a profile.
+         *
+         * @param profile   the profile
+         * @param fromIndex from location index
+         * @param toIndex   to location index
+         * @param time      the time to be added
+         * @return builder
+         */
+        public Builder addTransportTime(String profile, int fromIndex, int toIndex, double time) {
+            add(profile, fromIndex, toIndex, 1, time);
+            return this;
+        }
+
+        public Builder addTransportTimeAndDistance(String profile, int fromIndex, int toIndex, double time, double distance) {
+            addTransportTime(profile, fromIndex, toIndex, time);
+            addTransportDistance(profile, fromIndex, toIndex, distance);
+            return this;
+        }
+
+        private void add(String profile, int fromIndex, int toIndex, int indicatorIndex, double value) {
+            Integer profileIndex = profileIndices.get(profile);
+            if (profileIndex == null) throw new IllegalArgumentException("profile " + profile + " is unknown");
+            if (fromIndex < 0 || toIndex < 0 || fromIndex >= noLocations || toIndex >= noLocations)
+                throw new IllegalArgumentException("index of from " + fromIndex + " or to " + toIndex + " is out of range [0," + noLocations + ")");
+            values[index(profileIndex, fromIndex, toIndex, indicatorIndex)] = value;
+            if (isSymmetric) values[index(profileIndex, toIndex, fromIndex, indicatorIndex)] = value;
+        }
+
+        private int index(int profileIndex, int fromIndex, int toIndex, int indicatorIndex) {
+            return ((profileIndex * noLocations + fromIndex) * noLocations + toIndex) * 2 + indicatorIndex;
+        }
+
+        /**
+         * Builds the matrix.
+         *
+         * @return matrix
+         */
+        public MultiProfileTransportCostsMatrix build() {
+            return new MultiProfileTransportCostsMatrix(this);
+        }
+
+    }
+
+    private final int noLocations;
+
+    private final String[] profiles;
+
+    private final Map<String, Integer> profileIndices;
+
+    private final double[] values;
+
+    private static final class ResolvedProfile {
+
+        private final String profile;
+
+        private final int profileIndex;
+
+        ResolvedProfile(String profile, int profileIndex) {
+            this.profile = profile;
+            this.profileIndex = profileIndex;
+        }
+
+    }
+
+    //resolved profile by index of vehicle type key, null if not resolved yet. Racy but benign since entries are immutable.
+    private volatile ResolvedProfile[] profilesByTypeKey = new ResolvedProfile[0];
+
+    private MultiProfileTransportCostsMatrix(Builder builder) {
+        noLocations = builder.noLocations;
+        profiles = builder.profiles;
+        profileIndices = builder.profileIndices;
+        values = builder.values;
+    }
+
+    public int getNoLocations() {
+        return noLocations;
+    }
+
+    public int getNoProfiles() {
+        return profiles.length;
+    }
+
+    /**
+     * Returns the index of the specified profile, or -1 if the matrix does not know it.
+     *
+     * @param profile the profile
+     * @return index of profile or -1
+     */
+    public int getProfileIndex(String profile) {
+        Integer index = profileIndices.get(profile);
+        if (index == null) return -1;
+        return index;
+    }
+
+    /**
+     * Returns the index of the profile of the specified vehicle, i.e. the index of the block its values are looked up
+     * in. If vehicle is null, it is 0.
+     *
+     * @param vehicle the vehicle
+     * @return index of profile
+     * @throws IllegalStateException if the profile of the vehicle's type is unknown
+     */
+    public int getProfileIndex(Vehicle vehicle) {
+        if (vehicle == null) return 0;
+        int typeKeyIndex = vehicle.getVehicleTypeIdentifier() == null ? -1 : vehicle.getVehicleTypeIdentifier().getIndex();
+        String profile = vehicle.getType().getProfile();
+        ResolvedProfile[] cache = profilesByTypeKey;
+        if (typeKeyIndex >= 0 && typeKeyIndex < cache.length) {
+            ResolvedProfile resolved = cache[typeKeyIndex];
+            if (resolved != null && (resolved.profile == profile || resolved.profile.equals(profile))) return resolved.profileIndex;
+        }
+        int profileIndex = getProfileIndex(profile);
+        if (profileIndex < 0)
+            throw new IllegalStateException("profile " + profile + " of vehicle " + vehicle.getId() + " is unknown");
+        if (typeKeyIndex >= 0) {
+            cache = Arrays.copyOf(cache, Math.max(cache.length, typeKeyIndex + 1));
+            cache[typeKeyIndex] = new ResolvedProfile(profile, profileIndex);
+            profilesByTypeKey = cache;
+        }
+        return profileIndex;
+    }
+
+    private double get(int profileIndex, int fromIndex, int toIndex, int indicatorIndex) {
+        if (fromIndex < 0 || toIndex < 0 || fromIndex >= noLocations || toIndex >= noLocations)
+            throw new IllegalArgumentException("index of from " + fromIndex + " or to " + toIndex + " is out of range [0," + noLocations + ")");
+        if (profileIndex < 0 || profileIndex >= profiles.length)
+            throw new IllegalArgumentException("profile index " + profileIndex + " is out of range [0," + profiles.length + ")");
+        return values[((profileIndex * noLocations + fromIndex) * noLocations + toIndex) * 2 + indicatorIndex];
+    }
+
+    private void assertIndices(Location from, Location to) {
+        if (from.getIndex() < 0 || to.getIndex() < 0)
+            throw new IllegalArgumentException("index of from " + from + " to " + to + " < 0 ");
+        if (from.getIndex() >= noLocations || to.getIndex() >= noLocations)
+            throw new IllegalArgumentException("index of from " + from + " to " + to + " >= number of locations " + noLocations);
+    }
+
+    /**
+     * Returns the distance from to to for the specified profile.
+     *
+     * @param profileIndex profile index
+     * @param fromIndex    from location index
+     * @param toIndex      to location index
+     * @return the distance
+     */
+    public double getDistance(int profileIndex, int fromIndex, int toIndex) {
+        return get(profileIndex, fromIndex, toIndex, 0);
+    }
+
+    /**
+     * Returns the transport-time from to to for the specified profile.
+     *
+     * @param profileIndex profile index
+     * @param fromIndex    from location index
+     * @param toIndex      to location index
+     * @return the transport-time
+     */
+    public double getTransportTime(int profileIndex, int fromIndex, int toIndex) {
+        return get(profileIndex, fromIndex, toIndex, 1);
+    }
+
+    @Override
+    public double getTransportTime(Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
+        assertIndices(from, to);
+        return getTransportTime(getProfileIndex(vehicle), from.getIndex(), to.getIndex());
+    }
+
+    @Override
+    public double getDistance(Location from, Location to, double departureTime, Vehicle vehicle) {
+        assertIndices(from, to);
+        return getDistance(getProfileIndex(vehicle), from.getIndex(), to.getIndex());
+    }
+
+    @Override
+    public double getTransportCost(Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
+        assertIndices(from, to);
+        if (vehicle == null) return getDistance(0, from.getIndex(), to.getIndex());
+        int profileIndex = getProfileIndex(vehicle);
+        VehicleTypeImpl.VehicleCostParams costParams = vehicle.getType().getVehicleCostParams();
+        return costParams.perDistanceUnit * getDistance(profileIndex, from.getIndex(), to.getIndex())
+            + costParams.perTransportTimeUnit * getTransportTime(profileIndex, from.getIndex(), to.getIndex());
+    }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.util;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingTransportCosts;
+import com.graphhopper.jsprit.core.problem.driver.Driver;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl.VehicleCostParams;
+import com.graphhopper.jsprit.core.util.VehicleRoutingTransportCostsMatrix.RelationKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+
+/**
+ * CostMatrix with time-dependent transport times, i.e. each relation has a travel-time profile that is defined at a
+ * number of time slices (e.g. every 15 minutes of a day) and that is linearly interpolated in between. Before the
+ * first and after the last time slice, the travel time of the first and last time slice applies, respectively.
+ * <p>
+ * <p>Time slices are the same for all relations. Profiles are stored in one flat float array and are evaluated with a
+ * binary search over the time slices, thus a lookup costs O(log(noTimeSlices)) without any object allocation.
+ * <p>
+ * <p>Profiles satisfy the FIFO (first-in-first-out) property, i.e. departing later never results in arriving earlier.
+ * If a profile added to the builder violates it, travel times are raised when the matrix is built until it is satisfied.
+ * This also makes {@link #getBackwardTransportTime(Location, Location, double, Driver, Vehicle)} well-defined: it
+ * returns the travel time of the latest departure that arrives not later than the specified arrival time.
+ * <p>
+ * <p>Distances are time-independent. As with {@link VehicleRoutingTransportCostsMatrix}, you can use it with times
+ * only, but once you set a particular time (or distance) it expects entries for all relations, otherwise an
+ * IllegalStateException is thrown.
+ *
+ * @author schroeder
+ */
+public class TimeDependentTransportCostsMatrix implements VehicleRoutingTransportCosts {
+
+    /**
+     * Builder that builds the matrix.
+     *
+     * @author schroeder
+     */
+    public static class Builder {
+
+        private static Logger log = LoggerFactory.getLogger(Builder.class);
+
+        private final double[] timeSlices;
+
+        private final boolean isSymmetric;
+
+        private final Map<RelationKey, Double> distances = new HashMap<RelationKey, Double>();
+
+        private final Map<RelationKey, double[]> profiles = new HashMap<RelationKey, double[]>();
+
+        /**
+         * Creates a new builder returning the matrix-builder.
+         * <p>Time slices must be strictly increasing. If you want to consider symmetric matrices, set isSymmetric to
+         * true, i.e. values of a relation also apply to the reverse relation unless it has been set explicitly.
+         *
+         * @param timeSlices  points in time at which travel-time profiles are defined
+         * @param isSymmetric true if matrix is symmetric, false otherwise
+         * @return builder
+         */
+        public static Builder newInstance(double[] timeSlices, boolean isSymmetric) {
+            return new Builder(timeSlices, isSymmetric);
+        }
+
+        private Builder(double[] timeSlices, boolean isSymmetric) {
+            if (timeSlices == null || timeSlices.length == 0)
+                throw new IllegalArgumentException("at least one time slice must be specified");
+            for (int k = 1; k < timeSlices.length; k++) {
+                if (!(timeSlices[k] > timeSlices[k - 1]))
+                    throw new IllegalArgumentException("time slices must be strictly increasing, but slice " + k + " is " + timeSlices[k] + " and slice " + (k - 1) + " is " + timeSlices[k - 1]);
+            }
+            this.timeSlices = timeSlices.clone();
+            this.isSymmetric = isSymmetric;
+        }
+
+        /**
+         * Adds a transport-distance for a particular relation.
+         *
+         * @param from     from locationId
+         * @param to       to locationId
+         * @param distance the distance to be added
+         * @return builder
+         */
+        public Builder addTransportDistance(String from, String to, double distance) {
+            RelationKey key = RelationKey.newKey(from, to);
+            if (distances.containsKey(key)) {
+                log.warn("distance from " + from + " to " + to + " already exists. This overrides distance.");
+            }
+            distances.put(key, distance);
+            return this;
+        }
+
+        /**
+         * Adds a transport-time for a particular relation that does not depend on the departure time.
+         *
+         * @param from from locationId
+         * @param to   to locationId
+         * @param time the time to be added
+         * @return builder
+         */
+        public Builder addTransportTime(String from, String to, double time) {
+            double[] travelTimes = new double[timeSlices.length];
+            Arrays.fill(travelTimes, time);
+            return addTransportTimeProfile(from, to, travelTimes);
+        }
+
+        /**
+         * Adds a travel-time profile for a particular relation, i.e. travelTimes[k] is the transport-time when departing
+         * at time slice k.
+         *
+         * @param from        from locationId
+         * @param to          to locationId
+         * @param travelTimes travel times at time slices
+         * @return builder
+         */
+        public Builder addTransportTimeProfile(String from, String to, double[] travelTimes) {
+            if (travelTimes.length != timeSlices.length)
+                throw new IllegalArgumentException("profile from " + from + " to " + to + " has " + travelTimes.length + " travel times, but there are " + timeSlices.length + " time slices");
+            for (double time : travelTimes) {
+                if (Double.isNaN(time) || time < 0)
+                    throw new IllegalArgumentException("travel times must not be negative, but profile from " + from + " to " + to + " contains " + time);
+            }
+            RelationKey key = RelationKey.newKey(from, to);
+            if (profiles.containsKey(key)) {
+                log.warn("transport-time from " + from + " to " + to + " already exists. This overrides times.");
+            }
+            profiles.put(key, travelTimes.clone());
+            return this;
+        }
+
+        /**
+         * Builds the matrix.
+         *
+         * @return matrix
+         */
+        public TimeDependentTransportCostsMatrix build() {
+            return new TimeDependentTransportCostsMatrix(this);
+        }
+
+    }
+
+    private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+    private final String[] ids;
+
+    private final int noLocations;
+
+    private final double[] timeSlices;
+
+    private final int noTimeSlices;
+
+    private final double[] distances;
+
+    private final float[] travelTimes;
+
+    private TimeDependentTransportCostsMatrix(Builder builder) {
+        timeSlices = builder.timeSlices;
+        noTimeSlices = timeSlices.length;
+        List<String> idList = new ArrayList<String>();
+        for (RelationKey key : builder.distances.keySet()) {
+            intern(key.from, idList);
+            intern(key.to, idList);
+        }
+        for (RelationKey key : builder.profiles.keySet()) {
+            intern(key.from, idList);
+            intern(key.to, idList);
+        }
+        ids = idList.toArray(new String[idList.size()]);
+        noLocations = ids.length;
+        if ((long) noLocations * noLocations * noTimeSlices > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("matrix with " + noLocations + " locations and " + noTimeSlices + " time slices is too large");
+        distances = toDistanceArray(builder.distances, builder.isSymmetric);
+        travelTimes = toTravelTimeArray(builder.profiles, builder.isSymmetric);
+    }
+
+    private void intern(String id, List<String> idList) {
+        if (!indices.containsKey(id)) {
+            indices.put(id, idList.size());
+            idList.add(id);
+        }
+    }
+
+    private double[] toDistanceArray(Map<RelationKey, Double> values, boolean isSymmetric) {
+        if (values.isEmpty()) return null;
+        double[] array = new double[noLocations * noLocations];
+        Arrays.fill(array, Double.NaN);
+        for (Map.Entry<RelationKey, Double> e : values.entrySet()) {
+            array[indices.get(e.getKey().from) * noLocations + indices.get(e.getKey().to)] = e.getValue();
+        }
+        if (isSymmetric) {
+            for (Map.Entry<RelationKey, Double> e : values.entrySet()) {
+                int reverse = indices.get(e.getKey().to) * noLocations + indices.get(e.getKey().from);
+                if (Double.isNaN(array[reverse])) array[reverse] = e.getValue();
+            }
+        }
+        return array;
+    }
+
+    private float[] toTravelTimeArray(Map<RelationKey, double[]> profiles, boolean isSymmetric) {
+        if (profiles.isEmpty()) return null;
+        float[] array = new float[noLocations * noLocations * noTimeSlices];
+        Arrays.fill(array, Float.NaN);
+        for (Map.Entry<RelationKey, double[]> e : profiles.entrySet()) {
+            setProfile(array, indices.get(e.getKey().from), indices.get(e.getKey().to), e.getValue());
+        }
+        if (isSymmetric) {
+            for (Map.Entry<RelationKey, double[]> e : profiles.entrySet()) {
+                int from = indices.get(e.getKey().to);
+                int to = indices.get(e.getKey().from);
+                if (Float.isNaN(array[(from * noLocations + to) * noTimeSlices])) setProfile(array, from, to, e.getValue());
+            }
+        }
+        return array;
+    }
+
+    private void setProfile(float[] array, int fromIndex, int toIndex, double[] profile) {
+        int offset = (fromIndex * noLocations + toIndex) * noTimeSlices;
+        array[offset] = (float) profile[0];
+        for (int k = 1; k < noTimeSlices; k++) {
+            //FIFO: arrival when departing at slice k must not be earlier than when departing at slice k-1
+            double earliestArrival = timeSlices[k - 1] + array[offset + k - 1];
+            float time = (float) Math.max(profile[k], earliestArrival - timeSlices[k]);
+            while (timeSlices[k] + time < earliestArrival) time = Math.nextUp(time);
+            array[offset + k] = time;
+        }
+    }
+
+    /**
+     * Returns the dense index the specified location id has been assigned to when building the matrix, or -1 if
+     * the matrix does not know the id.
+     * <p>If locations are built with this index (i.e. Location.Builder.newInstance().setId(id).setIndex(matrix.getIndex(id))),
+     * values are looked up without hashing the location id.
+     *
+     * @param locationId location id
+     * @return index of location id or -1
+     */
+    public int getIndex(String locationId) {
+        Integer index = indices.get(locationId);
+        if (index == null) return -1;
+        return index;
+    }
+
+    /**
+     * Returns the number of distinct location ids.
+     *
+     * @return number of location ids
+     */
+    public int getNoLocations() {
+        return noLocations;
+    }
+
+    /**
+     * Returns the time slices profiles are defined at.
+     *
+     * @return copy of time slices
+     */
+    public double[] getTimeSlices() {
+        return timeSlices.clone();
+    }
+
+    private int getIndex(Location location) {
+        int index = location.getIndex();
+        if (index >= 0 && index < noLocations && ids[index].equals(location.getId())) return index;
+        return getIndex(location.getId());
+    }
+
+    private int getProfileOffset(Location from, Location to) {
+        int fromIndex = getIndex(from);
+        int toIndex = getIndex(to);
+        int offset = fromIndex < 0 || toIndex < 0 ? -1 : (fromIndex * noLocations + toIndex) * noTimeSlices;
+        if (offset < 0 || Float.isNaN(travelTimes[offset]))
+            throw new IllegalStateException("time value for relation from " + from.getId() + " to " + to.getId() + " does not exist");
+        return offset;
+    }
+
+    @Override
+    public double getTransportTime(Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
+        if (from.getId().equals(to.getId())) return 0.0;
+        if (travelTimes == null) return 0.0;
+        int offset = getProfileOffset(from, to);
+        if (departureTime <= timeSlices[0]) return travelTimes[offset];
+        if (departureTime >= timeSlices[noTimeSlices - 1]) return travelTimes[offset + noTimeSlices - 1];
+        //last slice k with timeSlices[k] <= departureTime, thus 0 <= k < noTimeSlices - 1
+        int low = 0;
+        int high = noTimeSlices - 1;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (timeSlices[mid] <= departureTime) low = mid;
+            else high = mid;
+        }
+        double t0 = timeSlices[low];
+        double tau0 = travelTimes[offset + low];
+        double tau1 = travelTimes[offset + low + 1];
+        return tau0 + (tau1 - tau0) * (departureTime - t0) / (timeSlices[low + 1] - t0);
+    }
+
+    /**
+     * Returns the transport-time of the latest departure at from that arrives at to not later than arrivalTime.
+     * <p>Since profiles are FIFO, arrival times at the time slices are non-decreasing and the departure time can be
+     * found by a binary search over them.
+     */
+    @Override
+    public double getBackwardTransportTime(Location from, Location to, double arrivalTime, Driver driver, Vehicle vehicle) {
+        if (from.getId().equals(to.getId())) return 0.0;
+        if (travelTimes == null) return 0.0;
+        int offset = getProfileOffset(from, to);
+        int last = noTimeSlices - 1;
+        if (arrivalTime < timeSlices[0] + travelTimes[offset]) return travelTimes[offset];
+        if (arrivalTime >= timeSlices[last] + travelTimes[offset + last]) return travelTimes[offset + last];
+        //last slice k with arrival(k) <= arrivalTime, thus 0 <= k < last and arrival(k) < arrival(k+1)
+        int low = 0;
+        int high = last;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (timeSlices[mid] + travelTimes[offset + mid] <= arrivalTime) low = mid;
+            else high = mid;
+        }
+        double t0 = timeSlices[low];
+        double t1 = timeSlices[low + 1];
+        double a0 = t0 + travelTimes[offset + low];
+        double a1 = t1 + travelTimes[offset + low + 1];
+        double departureTime = t0 + (arrivalTime - a0) * (t1 - t0) / (a1 - a0);
+        return arrivalTime - departureTime;
+    }
+
+    private double getDistance(Location from, Location to) {
+        if (from.getId().equals(to.getId())) return 0.0;
+        if (distances == null) return 0.0;
+        int fromIndex = getIndex(from);
+        int toIndex = getIndex(to);
+        double distance = fromIndex < 0 || toIndex < 0 ? Double.NaN : distances[fromIndex * noLocations + toIndex];
+        if (Double.isNaN(distance))
+            throw new IllegalStateException("distance value for relation from " + from.getId() + " to " + to.getId() + " does not exist");
+        return distance;
+    }
+
+    @Override
+    public double getDistance(Location from, Location to, double departureTime, Vehicle vehicle) {
+        return getDistance(from, to);
+    }
+
+    @Override
+    public double getTransportCost(Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
+        if (vehicle == null) return getDistance(from, to);
+        VehicleCostParams costParams = vehicle.getType().getVehicleCostParams();
+        return costParams.perDistanceUnit * getDistance(from, to) + costParams.perTransportTimeUnit * getTransportTime(from, to, departureTime, driver, vehicle);
+    }
+
+    @Override
+    public double getBackwardTransportCost(Location from, Location to, double arrivalTime, Driver driver, Vehicle vehicle) {
+        if (vehicle == null) return getDistance(from, to);
+        VehicleCostParams costParams = vehicle.getType().getVehicleCostParams();
+        return costParams.perDistanceUnit * getDistance(from, to) + costParams.perTransportTimeUnit * getBackwardTransportTime(from, to, arrivalTime, driver, vehicle);
+    }
+
+}
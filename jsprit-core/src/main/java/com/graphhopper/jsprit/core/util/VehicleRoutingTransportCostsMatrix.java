@@ -25,8 +25,7 @@ import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl.VehicleCostPa
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 
 /**
@@ -36,6 +35,11 @@ import java.util.Map;
  * you set a particular distance, this expects distance-entries for all relations. This counts also
  * for a particular time. If the method getTransportCosts(...) is then invoked for a relation, where no distance can be found, an
  * IllegalStateException will be thrown. Thus if you want to only use distances only, do not use addTransportTime(...).
+ * <p>When the matrix is built, location ids are mapped to dense indices. If values are specified for at least
+ * {@link #MIN_DENSITY} of all relations between these locations, they are stored in arrays, and lookups resolve location
+ * ids with one hash lookup each, or without any hash lookup if the index of the location corresponds to
+ * {@link #getIndex(String)}. Otherwise, values are stored in maps by relation, i.e. sparse matrices do not pay for
+ * the memory of all relations (see {@link #isDense()}).
  *
  * @author schroeder
  */
@@ -184,9 +188,25 @@ public class VehicleRoutingTransportCostsMatrix extends AbstractForwardVehicleRo
 
     }
 
-    private Map<RelationKey, Double> distances = new HashMap<RelationKey, Double>();
+    /**
+     * Min share of relations with specified values for which values are stored in arrays.
+     */
+    public static final double MIN_DENSITY = 0.5;
+
+    private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+    private final String[] ids;
+
+    private final int noLocations;
+
+    private final double[] distances;
+
+    private final double[] times;
 
-    private Map<RelationKey, Double> times = new HashMap<RelationKey, Double>();
+    //values of sparse matrices, null if values are stored in arrays
+    private final Map<RelationKey, Double> sparseDistances;
+
+    private final Map<RelationKey, Double> sparseTimes;
 
     private boolean isSymmetric;
 
@@ -196,36 +216,122 @@ public class VehicleRoutingTransportCostsMatrix extends AbstractForwardVehicleRo
 
     private VehicleRoutingTransportCostsMatrix(Builder builder) {
         this.isSymmetric = builder.isSymmetric;
-        distances.putAll(builder.distances);
-        times.putAll(builder.times);
         timesSet = builder.timesSet;
         distancesSet = builder.distancesSet;
+        List<String> idList = new ArrayList<String>();
+        intern(builder.distances, idList);
+        intern(builder.times, idList);
+        ids = idList.toArray(new String[idList.size()]);
+        noLocations = ids.length;
+        long noRelations = (long) noLocations * noLocations;
+        long noValues = Math.max(builder.distances.size(), builder.times.size()) * (isSymmetric ? 2L : 1L);
+        if (noRelations <= Integer.MAX_VALUE - 8 && noValues >= MIN_DENSITY * noRelations) {
+            distances = toArray(builder.distances);
+            times = toArray(builder.times);
+            sparseDistances = null;
+            sparseTimes = null;
+        } else {
+            distances = null;
+            times = null;
+            sparseDistances = new HashMap<RelationKey, Double>(builder.distances);
+            sparseTimes = new HashMap<RelationKey, Double>(builder.times);
+        }
+    }
+
+    private void intern(Map<RelationKey, Double> values, List<String> idList) {
+        for (RelationKey key : values.keySet()) {
+            intern(key.from, idList);
+            intern(key.to, idList);
+        }
+    }
+
+    private void intern(String id, List<String> idList) {
+        if (!indices.containsKey(id)) {
+            indices.put(id, idList.size());
+            idList.add(id);
+        }
+    }
+
+    private double[] toArray(Map<RelationKey, Double> values) {
+        if (values.isEmpty()) return null;
+        double[] array = new double[noLocations * noLocations];
+        Arrays.fill(array, Double.NaN);
+        for (Map.Entry<RelationKey, Double> e : values.entrySet()) {
+            int from = indices.get(e.getKey().from);
+            int to = indices.get(e.getKey().to);
+            array[from * noLocations + to] = e.getValue();
+        }
+        if (isSymmetric) {
+            for (Map.Entry<RelationKey, Double> e : values.entrySet()) {
+                int from = indices.get(e.getKey().from);
+                int to = indices.get(e.getKey().to);
+                if (Double.isNaN(array[to * noLocations + from])) array[to * noLocations + from] = e.getValue();
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Returns the dense index the specified location id has been assigned to when building the matrix, or -1 if
+     * the matrix does not know the id.
+     * <p>If locations are built with this index (i.e. Location.Builder.newInstance().setId(id).setIndex(matrix.getIndex(id))),
+     * values are looked up without hashing the location id.
+     *
+     * @param locationId location id
+     * @return index of location id or -1
+     */
+    public int getIndex(String locationId) {
+        Integer index = indices.get(locationId);
+        if (index == null) return -1;
+        return index;
     }
 
+    /**
+     * Returns true if values are stored in arrays, i.e. if values have been specified for at least {@link #MIN_DENSITY}
+     * of all relations, and false if they are stored in maps.
+     *
+     * @return true if values are stored in arrays
+     */
+    public boolean isDense() {
+        return sparseDistances == null;
+    }
+
+    /**
+     * Returns the number of distinct location ids.
+     *
+     * @return number of location ids
+     */
+    public int getNoLocations() {
+        return noLocations;
+    }
+
+    private int getIndex(Location location) {
+        int index = location.getIndex();
+        if (index >= 0 && index < noLocations && ids[index].equals(location.getId())) return index;
+        return getIndex(location.getId());
+    }
 
     @Override
     public double getTransportTime(Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
-        return getTime(from.getId(), to.getId());
+        if (from.getId().equals(to.getId())) return 0.0;
+        if (!timesSet) return 0.0;
+        if (sparseTimes != null) return get(sparseTimes, "time", from.getId(), to.getId());
+        return get(times, getIndex(from), getIndex(to), "time", from.getId(), to.getId());
     }
 
+    private double get(Map<RelationKey, Double> values, String type, String fromId, String toId) {
+        Double value = values.get(RelationKey.newKey(fromId, toId));
+        if (value == null && isSymmetric) value = values.get(RelationKey.newKey(toId, fromId));
+        if (value == null)
+            throw new IllegalStateException(type + " value for relation from " + fromId + " to " + toId + " does not exist");
+        return value;
+    }
 
-    private double getTime(String fromId, String toId) {
-        if (fromId.equals(toId)) return 0.0;
-        if (!timesSet) return 0.0;
-        RelationKey key = RelationKey.newKey(fromId, toId);
-        if (!isSymmetric) {
-            if (times.containsKey(key)) return times.get(key);
-            else
-                throw new IllegalStateException("time value for relation from " + fromId + " to " + toId + " does not exist");
-        } else {
-            Double time = times.get(key);
-            if (time == null) {
-                time = times.get(RelationKey.newKey(toId, fromId));
-            }
-            if (time != null) return time;
-            else
-                throw new IllegalStateException("time value for relation from " + fromId + " to " + toId + " does not exist");
-        }
+    private double get(double[] values, int fromIndex, int toIndex, String type, String fromId, String toId) {
+        double value = fromIndex < 0 || toIndex < 0 ? Double.NaN : values[fromIndex * noLocations + toIndex];
+        if (Double.isNaN(value))
+            throw new IllegalStateException(type + " value for relation from " + fromId + " to " + toId + " does not exist");
+        return value;
     }
 
     /**
@@ -239,32 +345,27 @@ public class VehicleRoutingTransportCostsMatrix extends AbstractForwardVehicleRo
     public double getDistance(String fromId, String toId) {
         if (fromId.equals(toId)) return 0.0;
         if (!distancesSet) return 0.0;
-        RelationKey key = RelationKey.newKey(fromId, toId);
-        if (!isSymmetric) {
-            if (distances.containsKey(key)) return distances.get(key);
-            else
-                throw new IllegalStateException("distance value for relation from " + fromId + " to " + toId + " does not exist");
-        } else {
-            Double time = distances.get(key);
-            if (time == null) {
-                time = distances.get(RelationKey.newKey(toId, fromId));
-            }
-            if (time != null) return time;
-            else
-                throw new IllegalStateException("distance value for relation from " + fromId + " to " + toId + " does not exist");
-        }
+        if (sparseDistances != null) return get(sparseDistances, "distance", fromId, toId);
+        return get(distances, getIndex(fromId), getIndex(toId), "distance", fromId, toId);
+    }
+
+    private double getDistance(Location from, Location to) {
+        if (from.getId().equals(to.getId())) return 0.0;
+        if (!distancesSet) return 0.0;
+        if (sparseDistances != null) return get(sparseDistances, "distance", from.getId(), to.getId());
+        return get(distances, getIndex(from), getIndex(to), "distance", from.getId(), to.getId());
     }
 
     @Override
     public double getTransportCost(Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
-        if (vehicle == null) return getDistance(from.getId(), to.getId());
+        if (vehicle == null) return getDistance(from, to);
         VehicleCostParams costParams = vehicle.getType().getVehicleCostParams();
-        return costParams.perDistanceUnit * getDistance(from.getId(), to.getId()) + costParams.perTransportTimeUnit * getTime(from.getId(), to.getId());
+        return costParams.perDistanceUnit * getDistance(from, to) + costParams.perTransportTimeUnit * getTransportTime(from, to, departureTime, driver, vehicle);
     }
 
     @Override
     public double getDistance(Location from, Location to, double departureTime, Vehicle vehicle) {
-        return getDistance(from.getId(), to.getId());
+        return getDistance(from, to);
     }
 
 }
@@ -0,0 +1,140 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm;
+
+import com.graphhopper.jsprit.core.algorithm.box.Jsprit;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AdaptiveStrategyWeightsTest {
+
+    private SearchStrategyManager manager;
+
+    @Before
+    public void doBefore() {
+        manager = new SearchStrategyManager();
+        SearchStrategy fast = mock(SearchStrategy.class);
+        SearchStrategy slow = mock(SearchStrategy.class);
+        when(fast.getId()).thenReturn("fast");
+        when(slow.getId()).thenReturn("slow");
+        manager.addStrategy(fast, 1.);
+        manager.addStrategy(slow, 1.);
+    }
+
+    private AdaptiveStrategyWeights create(double reactionFactor, int segmentLength) {
+        AdaptiveStrategyWeights weights = new AdaptiveStrategyWeights(manager, reactionFactor, segmentLength);
+        weights.informAlgorithmStarts(null, null, Collections.<VehicleRoutingProblemSolution>emptyList());
+        return weights;
+    }
+
+    @Test
+    public void whenSlowStrategyImprovesEqually_itsWeightShouldDecrease() {
+        AdaptiveStrategyWeights weights = create(0.5, 2);
+        weights.record("fast", 10., 1000000);
+        weights.record("slow", 10., 10000000);
+        //rates are 10 and 1 per ms, thus targets are 2*10/11 and 2*1/11
+        assertEquals(0.5 + 0.5 * 20. / 11., manager.getWeight("fast"), 1e-9);
+        assertEquals(0.5 + 0.5 * 2. / 11., manager.getWeight("slow"), 1e-9);
+        assertEquals(2., manager.getWeight("fast") + manager.getWeight("slow"), 1e-9);
+    }
+
+    @Test
+    public void whenSlowStrategyImprovesProportionally_weightsShouldNotChange() {
+        AdaptiveStrategyWeights weights = create(0.5, 2);
+        weights.record("fast", 1., 1000000);
+        weights.record("slow", 10., 10000000);
+        assertEquals(1., manager.getWeight("fast"), 1e-9);
+        assertEquals(1., manager.getWeight("slow"), 1e-9);
+    }
+
+    @Test
+    public void weightsShouldOnlyChangeAtTheEndOfSegment() {
+        AdaptiveStrategyWeights weights = create(0.5, 3);
+        weights.record("fast", 10., 1000000);
+        weights.record("slow", 0., 1000000);
+        assertEquals(1., manager.getWeight("fast"), 0.);
+        weights.record("slow", 0., 1000000);
+        assertTrue(manager.getWeight("fast") > 1.);
+    }
+
+    @Test
+    public void whenNothingImproves_weightsShouldNotChange() {
+        AdaptiveStrategyWeights weights = create(1., 2);
+        weights.record("fast", 0., 1000000);
+        weights.record("slow", 0., 1000000);
+        assertEquals(1., manager.getWeight("fast"), 0.);
+        assertEquals(1., manager.getWeight("slow"), 0.);
+    }
+
+    @Test
+    public void strategiesNotRunInSegment_shouldKeepTheirWeight() {
+        AdaptiveStrategyWeights weights = create(1., 2);
+        weights.record("fast", 1., 1000000);
+        weights.record("fast", 0., 1000000);
+        assertEquals(1., manager.getWeight("fast"), 1e-9);
+        assertEquals(1., manager.getWeight("slow"), 0.);
+    }
+
+    @Test
+    public void weightShouldNotFallBelowMinWeight() {
+        AdaptiveStrategyWeights weights = create(1., 2).setMinWeightFactor(0.2);
+        weights.record("fast", 10., 1000000);
+        weights.record("slow", 0., 1000000);
+        assertEquals(0.2, manager.getWeight("slow"), 1e-9);
+        assertEquals(2., manager.getWeight("fast"), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenReactionFactorIsZero_itShouldThrowException() {
+        new AdaptiveStrategyWeights(manager, 0., 10);
+    }
+
+    @Test
+    public void whenEnabledInJsprit_weightsShouldBeAdapted() {
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance();
+        vrpBuilder.addVehicle(VehicleImpl.Builder.newInstance("v").setStartLocation(Location.newInstance(0, 0)).build());
+        Random random = new Random(1);
+        for (int i = 0; i < 30; i++) {
+            vrpBuilder.addJob(Service.Builder.newInstance("s" + i).setLocation(Location.newInstance(random.nextInt(100), random.nextInt(100))).build());
+        }
+        VehicleRoutingAlgorithm vra = Jsprit.Builder.newInstance(vrpBuilder.build())
+            .setProperty(Jsprit.Parameter.ADAPTIVE_WEIGHTS, "true")
+            .setProperty(Jsprit.Parameter.ADAPTIVE_SEGMENT_LENGTH, "10")
+            .setProperty(Jsprit.Parameter.ADAPTIVE_REACTION_FACTOR, "0.5").buildAlgorithm();
+        List<Double> initialWeights = new ArrayList<>(vra.getSearchStrategyManager().getWeights());
+        vra.setMaxIterations(200);
+        vra.searchSolutions();
+        assertTrue(!initialWeights.equals(vra.getSearchStrategyManager().getWeights()));
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm;
+
+import com.graphhopper.jsprit.core.algorithm.box.Jsprit;
+import com.graphhopper.jsprit.core.algorithm.listener.AlgorithmEndsListener;
+import com.graphhopper.jsprit.core.algorithm.listener.IterationStartsListener;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class BatchSolverTest {
+
+    private ForkJoinPool pool;
+
+    private List<VehicleRoutingProblem> problems;
+
+    @Before
+    public void doBefore() {
+        pool = new ForkJoinPool(2);
+        problems = new ArrayList<>();
+        Random random = new Random(1);
+        for (int p = 0; p < 5; p++) {
+            VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance();
+            vrpBuilder.addVehicle(VehicleImpl.Builder.newInstance("v").setStartLocation(Location.newInstance(0, 0)).build());
+            for (int i = 0; i < 20; i++) {
+                vrpBuilder.addJob(Service.Builder.newInstance("s" + i).setLocation(Location.newInstance(random.nextInt(100), random.nextInt(100))).build());
+            }
+            problems.add(vrpBuilder.build());
+        }
+    }
+
+    @After
+    public void doAfter() {
+        pool.shutdownNow();
+    }
+
+    private VehicleRoutingAlgorithmFactory createFactory(final int maxIterations) {
+        return new VehicleRoutingAlgorithmFactory() {
+
+            @Override
+            public VehicleRoutingAlgorithm createAlgorithm(VehicleRoutingProblem vrp) {
+                VehicleRoutingAlgorithm vra = Jsprit.Builder.newInstance(vrp).setProperty(Jsprit.Parameter.THREADS, "1").buildAlgorithm();
+                vra.setMaxIterations(maxIterations);
+                return vra;
+            }
+
+        };
+    }
+
+    @Test
+    public void allProblemsShouldBeSolvedAndReturnedAsTheyComplete() throws Exception {
+        BatchSolver batchSolver = new BatchSolver(createFactory(50));
+        batchSolver.setPool(pool);
+        BlockingQueue<BatchSolver.Result> results = batchSolver.solveAll(problems);
+        Set<VehicleRoutingProblem> solved = new HashSet<>();
+        for (int i = 0; i < problems.size(); i++) {
+            BatchSolver.Result result = results.poll(30, TimeUnit.SECONDS);
+            assertNotNull(result);
+            assertTrue(result.isSuccessful());
+            assertEquals(50, result.getNoIterations());
+            assertTrue(result.getBestSolution().getUnassignedJobs().isEmpty());
+            solved.add(result.getProblem());
+        }
+        assertEquals(new HashSet<>(problems), solved);
+    }
+
+    @Test
+    public void whenTimeBudgetIsSet_searchShouldStopOnceItIsSpent() throws Exception {
+        BatchSolver batchSolver = new BatchSolver(createFactory(Integer.MAX_VALUE));
+        batchSolver.setPool(pool);
+        batchSolver.setTimeBudget(200);
+        List<CompletableFuture<BatchSolver.Result>> futures = new ArrayList<>();
+        for (VehicleRoutingProblem problem : problems.subList(0, 3)) futures.add(batchSolver.submit(problem));
+        //without the time budget, the searches would not complete
+        for (CompletableFuture<BatchSolver.Result> future : futures) {
+            BatchSolver.Result result = future.get(30, TimeUnit.SECONDS);
+            assertTrue(result.isSuccessful());
+            assertTrue(result.getNoIterations() > 0);
+            assertTrue(result.getBestSolution().getUnassignedJobs().isEmpty());
+        }
+    }
+
+    @Test
+    public void activeProblemsShouldTakeTurns() throws Exception {
+        ForkJoinPool singleThreadedPool = new ForkJoinPool(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        BatchSolver batchSolver = new BatchSolver(new VehicleRoutingAlgorithmFactory() {
+
+            @Override
+            public VehicleRoutingAlgorithm createAlgorithm(VehicleRoutingProblem vrp) {
+                final String name = "p" + problems.indexOf(vrp);
+                VehicleRoutingAlgorithm vra = createFactory(20).createAlgorithm(vrp);
+                vra.addListener((IterationStartsListener) (i, problem, solutions) -> order.add(name));
+                return vra;
+            }
+
+        });
+        batchSolver.setPool(singleThreadedPool);
+        batchSolver.setMaxActiveProblems(2);
+        batchSolver.setIterationsPerSlice(5);
+        //blocks the pool until all problems are submitted
+        final CountDownLatch submitted = new CountDownLatch(1);
+        singleThreadedPool.execute(() -> {
+            try {
+                submitted.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        BlockingQueue<BatchSolver.Result> results = batchSolver.solveAll(problems.subList(0, 3));
+        submitted.countDown();
+        for (int i = 0; i < 3; i++) assertNotNull(results.poll(30, TimeUnit.SECONDS));
+        singleThreadedPool.shutdown();
+
+        assertEquals(60, order.size());
+        List<String> expected = new ArrayList<>();
+        for (String name : Arrays.asList("p0", "p1", "p0", "p1", "p0", "p1", "p0", "p1", "p2", "p2", "p2", "p2")) {
+            for (int i = 0; i < 5; i++) expected.add(name);
+        }
+        assertEquals(expected, order);
+    }
+
+    @Test
+    public void whenFutureIsCancelled_searchShouldStop() throws Exception {
+        final CountDownLatch searching = new CountDownLatch(1);
+        BatchSolver batchSolver = new BatchSolver(new VehicleRoutingAlgorithmFactory() {
+
+            @Override
+            public VehicleRoutingAlgorithm createAlgorithm(VehicleRoutingProblem vrp) {
+                VehicleRoutingAlgorithm vra = createFactory(Integer.MAX_VALUE).createAlgorithm(vrp);
+                vra.addListener((IterationStartsListener) (i, problem, solutions) -> searching.countDown());
+                return vra;
+            }
+
+        });
+        batchSolver.setPool(pool);
+        CompletableFuture<BatchSolver.Result> future = batchSolver.submit(problems.get(0));
+        assertTrue(searching.await(30, TimeUnit.SECONDS));
+        future.cancel(true);
+        assertTrue(future.isCancelled());
+        assertTrue(pool.awaitQuiescence(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void whenAlgorithmCannotBeCreated_resultShouldContainException() throws Exception {
+        BatchSolver batchSolver = new BatchSolver(new VehicleRoutingAlgorithmFactory() {
+
+            @Override
+            public VehicleRoutingAlgorithm createAlgorithm(VehicleRoutingProblem vrp) {
+                throw new IllegalStateException("no algorithm");
+            }
+
+        });
+        batchSolver.setPool(pool);
+        BatchSolver.Result result = batchSolver.solveAll(problems.subList(0, 1)).poll(30, TimeUnit.SECONDS);
+        assertFalse(result.isSuccessful());
+        assertTrue(result.getException() instanceof IllegalStateException);
+        assertNull(result.getBestSolution());
+    }
+
+    @Test
+    public void whenSearchFails_searchShouldBeEndedAndResultShouldContainException() throws Exception {
+        final AtomicBoolean ended = new AtomicBoolean(false);
+        BatchSolver batchSolver = new BatchSolver(new VehicleRoutingAlgorithmFactory() {
+
+            @Override
+            public VehicleRoutingAlgorithm createAlgorithm(VehicleRoutingProblem vrp) {
+                VehicleRoutingAlgorithm vra = createFactory(50).createAlgorithm(vrp);
+                vra.addListener((IterationStartsListener) (i, problem, solutions) -> {
+                    if (i == 3) throw new IllegalStateException("search fails");
+                });
+                vra.addListener((AlgorithmEndsListener) (problem, solutions) -> ended.set(true));
+                return vra;
+            }
+
+        });
+        batchSolver.setPool(pool);
+        BatchSolver.Result result = batchSolver.solveAll(problems.subList(0, 1)).poll(30, TimeUnit.SECONDS);
+        assertFalse(result.isSuccessful());
+        assertEquals("search fails", result.getException().getMessage());
+        assertTrue(ended.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenIterationsPerSliceIsLessThanOne_itShouldThrowException() {
+        new BatchSolver(createFactory(10)).setIterationsPerSlice(0);
+    }
+
+}
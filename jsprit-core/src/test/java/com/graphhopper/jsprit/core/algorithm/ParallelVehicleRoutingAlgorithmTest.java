@@ -0,0 +1,365 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm;
+
+import com.graphhopper.jsprit.core.algorithm.acceptor.GreedyAcceptance;
+import com.graphhopper.jsprit.core.algorithm.acceptor.SolutionAcceptor;
+import com.graphhopper.jsprit.core.algorithm.box.Jsprit;
+import com.graphhopper.jsprit.core.algorithm.listener.IterationEndsListener;
+import com.graphhopper.jsprit.core.algorithm.listener.IterationStartsListener;
+import com.graphhopper.jsprit.core.algorithm.selector.SelectBest;
+import com.graphhopper.jsprit.core.algorithm.state.StateManager;
+import com.graphhopper.jsprit.core.algorithm.termination.PrematureAlgorithmTermination;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.constraint.ConstraintManager;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.solution.SolutionCostCalculator;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import com.graphhopper.jsprit.core.util.Solutions;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ParallelVehicleRoutingAlgorithmTest {
+
+    private static class CountingTermination implements PrematureAlgorithmTermination {
+
+        private final int breakAt;
+
+        private int calls = 0;
+
+        CountingTermination(int breakAt) {
+            this.breakAt = breakAt;
+        }
+
+        @Override
+        public boolean isPrematureBreak(SearchStrategy.DiscoveredSolution discoveredSolution) {
+            calls++;
+            return calls >= breakAt;
+        }
+    }
+
+    private static class RecordingAcceptor implements SolutionAcceptor {
+
+        private final SolutionAcceptor acceptor = new GreedyAcceptance(1);
+
+        private final List<VehicleRoutingProblemSolution> offered = Collections.synchronizedList(new ArrayList<VehicleRoutingProblemSolution>());
+
+        @Override
+        public boolean acceptSolution(Collection<VehicleRoutingProblemSolution> solutions, VehicleRoutingProblemSolution newSolution) {
+            offered.add(newSolution);
+            return acceptor.acceptSolution(solutions, newSolution);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(30, TimeUnit.SECONDS)) throw new IllegalStateException("timed out");
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private VehicleRoutingProblem createProblem() {
+        VehicleTypeImpl type = VehicleTypeImpl.Builder.newInstance("type").addCapacityDimension(0, 5).build();
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance();
+        vrpBuilder.addVehicle(VehicleImpl.Builder.newInstance("v").setType(type).setStartLocation(Location.newInstance(0, 0)).build());
+        for (int i = 0; i < 20; i++) {
+            vrpBuilder.addJob(Service.Builder.newInstance("s" + i).addSizeDimension(0, 1)
+                .setLocation(Location.newInstance(10 * (i % 5), 10 * (i / 5))).build());
+        }
+        return vrpBuilder.build();
+    }
+
+    @Test
+    public void whenRunningWithSeveralWorkers_allJobsShouldBeAssigned() {
+        VehicleRoutingProblem vrp = createProblem();
+        ParallelVehicleRoutingAlgorithm algorithm = Jsprit.Builder.newInstance(vrp).buildParallelAlgorithm(3);
+        algorithm.setMaxIterations(60);
+        Collection<VehicleRoutingProblemSolution> solutions = algorithm.searchSolutions();
+
+        VehicleRoutingProblemSolution best = Solutions.bestOf(solutions);
+        assertTrue(best.getUnassignedJobs().isEmpty());
+        assertEquals(4, best.getRoutes().size());
+        assertTrue(algorithm.getNoIterations() >= 60);
+    }
+
+    @Test
+    public void iterationBudgetShouldBeSharedByWorkers() {
+        VehicleRoutingProblem vrp = createProblem();
+        ParallelVehicleRoutingAlgorithm algorithm = Jsprit.Builder.newInstance(vrp).buildParallelAlgorithm(2);
+        algorithm.setMaxIterations(20);
+        CountingTermination termination = new CountingTermination(Integer.MAX_VALUE);
+        algorithm.addTerminationCriterion(termination);
+        algorithm.searchSolutions();
+
+        assertEquals(20, termination.calls);
+        assertEquals(20, algorithm.getNoIterations());
+    }
+
+    @Test
+    public void whenTerminationCriterionIsFulfilled_allWorkersShouldStop() {
+        VehicleRoutingProblem vrp = createProblem();
+        ParallelVehicleRoutingAlgorithm algorithm = Jsprit.Builder.newInstance(vrp).buildParallelAlgorithm(4);
+        algorithm.setMaxIterations(1000);
+        CountingTermination termination = new CountingTermination(5);
+        algorithm.addTerminationCriterion(termination);
+        Collection<VehicleRoutingProblemSolution> solutions = algorithm.searchSolutions();
+
+        assertEquals(5, termination.calls);
+        assertEquals(5, algorithm.getNoIterations());
+        assertFalse(solutions.isEmpty());
+    }
+
+    @Test
+    public void bestSolutionShouldBeReturned() {
+        VehicleRoutingProblem vrp = createProblem();
+        ParallelVehicleRoutingAlgorithm algorithm = Jsprit.Builder.newInstance(vrp).buildParallelAlgorithm(2);
+        algorithm.setMaxIterations(40);
+        final double[] bestDiscovered = {Double.MAX_VALUE};
+        algorithm.addTerminationCriterion(new PrematureAlgorithmTermination() {
+            @Override
+            public boolean isPrematureBreak(SearchStrategy.DiscoveredSolution discoveredSolution) {
+                bestDiscovered[0] = Math.min(bestDiscovered[0], discoveredSolution.getSolution().getCost());
+                return false;
+            }
+        });
+        Collection<VehicleRoutingProblemSolution> solutions = algorithm.searchSolutions();
+        assertTrue(Solutions.bestOf(solutions).getCost() <= bestDiscovered[0]);
+    }
+
+    @Test
+    public void incumbentShouldBeOfferedToEachDistinctAcceptorOfWorker() {
+        final VehicleRoutingProblem vrp = createProblem();
+        //first worker finishes an iteration before second worker starts, and second worker finishes an iteration before first continues
+        final CountDownLatch firstPublished = new CountDownLatch(1);
+        final CountDownLatch secondExchanged = new CountDownLatch(1);
+        final RecordingAcceptor acceptor = new RecordingAcceptor();
+        final RecordingAcceptor otherAcceptor = new RecordingAcceptor();
+        final int[] noWorkers = {0};
+        ParallelVehicleRoutingAlgorithm algorithm = new ParallelVehicleRoutingAlgorithm(vrp, new VehicleRoutingAlgorithmFactory() {
+            @Override
+            public VehicleRoutingAlgorithm createAlgorithm(VehicleRoutingProblem vrp) {
+                noWorkers[0]++;
+                if (noWorkers[0] == 1) {
+                    //its solutions are always better than those of the second worker
+                    SolutionCostCalculator biased = new SolutionCostCalculator() {
+                        @Override
+                        public double getCosts(VehicleRoutingProblemSolution solution) {
+                            return -1000. - solution.getUnassignedJobs().size();
+                        }
+                    };
+                    VehicleRoutingAlgorithm first = Jsprit.Builder.newInstance(vrp).setObjectiveFunction(biased).buildAlgorithm();
+                    //solutions are published when the strategy has been selected, i.e. before the iteration ends
+                    first.addListener(new IterationEndsListener() {
+                        @Override
+                        public void informIterationEnds(int i, VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+                            firstPublished.countDown();
+                        }
+                    });
+                    first.addListener(new IterationStartsListener() {
+                        @Override
+                        public void informIterationStarts(int i, VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+                            if (i == 2) ParallelVehicleRoutingAlgorithmTest.await(secondExchanged);
+                        }
+                    });
+                    return first;
+                }
+                VehicleRoutingAlgorithm second = Jsprit.Builder.newInstance(vrp).setCustomAcceptor(acceptor).buildAlgorithm();
+                //strategy without modules, it just keeps the costs of the selected solution
+                second.getSearchStrategyManager().addStrategy(new SearchStrategy("other", new SelectBest(), otherAcceptor, new SolutionCostCalculator() {
+                    @Override
+                    public double getCosts(VehicleRoutingProblemSolution solution) {
+                        return solution.getCost();
+                    }
+                }), 0.1);
+                second.addListener(new IterationStartsListener() {
+                    @Override
+                    public void informIterationStarts(int i, VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+                        if (i == 1) ParallelVehicleRoutingAlgorithmTest.await(firstPublished);
+                    }
+                });
+                second.addListener(new IterationEndsListener() {
+                    @Override
+                    public void informIterationEnds(int i, VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+                        secondExchanged.countDown();
+                    }
+                });
+                return second;
+            }
+        }, 2);
+        algorithm.setExchangeInterval(1);
+        algorithm.setMaxIterations(10);
+        algorithm.searchSolutions();
+
+        assertTrue(containsSolutionOfFirstWorker(acceptor.offered));
+        assertTrue(containsSolutionOfFirstWorker(otherAcceptor.offered));
+    }
+
+    private static boolean containsSolutionOfFirstWorker(List<VehicleRoutingProblemSolution> solutions) {
+        synchronized (solutions) {
+            for (VehicleRoutingProblemSolution solution : solutions) {
+                if (solution.getCost() <= -1000.) return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void whenWorkerFails_otherWorkersShouldBeCancelled() throws InterruptedException {
+        VehicleRoutingProblem vrp = createProblem();
+        final CountDownLatch otherStarted = new CountDownLatch(1);
+        final CountDownLatch otherInterrupted = new CountDownLatch(1);
+        final int[] noWorkers = {0};
+        ParallelVehicleRoutingAlgorithm algorithm = new ParallelVehicleRoutingAlgorithm(vrp, new VehicleRoutingAlgorithmFactory() {
+            @Override
+            public VehicleRoutingAlgorithm createAlgorithm(VehicleRoutingProblem vrp) {
+                noWorkers[0]++;
+                VehicleRoutingAlgorithm worker = Jsprit.createAlgorithm(vrp);
+                if (noWorkers[0] == 1) {
+                    worker.addListener(new IterationStartsListener() {
+                        @Override
+                        public void informIterationStarts(int i, VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+                            ParallelVehicleRoutingAlgorithmTest.await(otherStarted);
+                            throw new IllegalStateException("worker fails");
+                        }
+                    });
+                } else {
+                    worker.addListener(new IterationStartsListener() {
+                        @Override
+                        public void informIterationStarts(int i, VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+                            otherStarted.countDown();
+                            try {
+                                //blocks until it is cancelled
+                                Thread.sleep(Long.MAX_VALUE);
+                            } catch (InterruptedException e) {
+                                otherInterrupted.countDown();
+                            }
+                        }
+                    });
+                }
+                return worker;
+            }
+        }, 2);
+        algorithm.setMaxIterations(10);
+        try {
+            algorithm.searchSolutions();
+            fail("failure of worker should be rethrown");
+        } catch (RuntimeException e) {
+            assertTrue(otherInterrupted.await(30, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void whenSearchIsInterrupted_itShouldBeReportedAndWorkersShouldBeCancelled() throws InterruptedException {
+        VehicleRoutingProblem vrp = createProblem();
+        final CountDownLatch workersBlocked = new CountDownLatch(2);
+        final CountDownLatch workersCancelled = new CountDownLatch(2);
+        final ParallelVehicleRoutingAlgorithm algorithm = new ParallelVehicleRoutingAlgorithm(vrp, new VehicleRoutingAlgorithmFactory() {
+            @Override
+            public VehicleRoutingAlgorithm createAlgorithm(VehicleRoutingProblem vrp) {
+                VehicleRoutingAlgorithm worker = Jsprit.createAlgorithm(vrp);
+                worker.addListener(new IterationStartsListener() {
+                    @Override
+                    public void informIterationStarts(int i, VehicleRoutingProblem problem, Collection<VehicleRoutingProblemSolution> solutions) {
+                        if (i < 3) return;
+                        workersBlocked.countDown();
+                        try {
+                            //blocks until it is cancelled
+                            Thread.sleep(Long.MAX_VALUE);
+                        } catch (InterruptedException e) {
+                            workersCancelled.countDown();
+                        }
+                    }
+                });
+                return worker;
+            }
+        }, 2);
+        algorithm.setMaxIterations(1000);
+        final List<VehicleRoutingProblemSolution> solutions = new ArrayList<>();
+        final boolean[] interruptFlag = {false};
+        Thread searchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                solutions.addAll(algorithm.searchSolutions());
+                interruptFlag[0] = Thread.currentThread().isInterrupted();
+            }
+        });
+        searchThread.start();
+        assertTrue(workersBlocked.await(30, TimeUnit.SECONDS));
+        searchThread.interrupt();
+        searchThread.join(30000);
+
+        assertFalse(searchThread.isAlive());
+        assertTrue(algorithm.isInterrupted());
+        assertTrue(interruptFlag[0]);
+        assertFalse(solutions.isEmpty());
+        assertTrue(workersCancelled.await(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void whenSearchIsNotInterrupted_itShouldNotBeReportedAsInterrupted() {
+        VehicleRoutingProblem vrp = createProblem();
+        ParallelVehicleRoutingAlgorithm algorithm = Jsprit.Builder.newInstance(vrp).buildParallelAlgorithm(2);
+        algorithm.setMaxIterations(10);
+        algorithm.searchSolutions();
+
+        assertFalse(algorithm.isInterrupted());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenObjectiveFunctionIsSet_buildingParallelAlgorithmShouldFail() {
+        VehicleRoutingProblem vrp = createProblem();
+        Jsprit.Builder.newInstance(vrp).setObjectiveFunction(new SolutionCostCalculator() {
+            @Override
+            public double getCosts(VehicleRoutingProblemSolution solution) {
+                return 0;
+            }
+        }).buildParallelAlgorithm(2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenStateManagerIsSet_buildingParallelAlgorithmShouldFail() {
+        VehicleRoutingProblem vrp = createProblem();
+        StateManager stateManager = new StateManager(vrp);
+        ConstraintManager constraintManager = new ConstraintManager(vrp, stateManager);
+        Jsprit.Builder.newInstance(vrp).setStateAndConstraintManager(stateManager, constraintManager).buildParallelAlgorithm(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenNoWorkersIsZero_itShouldFail() {
+        VehicleRoutingProblem vrp = createProblem();
+        new ParallelVehicleRoutingAlgorithm(vrp, new VehicleRoutingAlgorithmFactory() {
+            @Override
+            public VehicleRoutingAlgorithm createAlgorithm(VehicleRoutingProblem vrp) {
+                return Jsprit.createAlgorithm(vrp);
+            }
+        }, 0);
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm;
+
+import com.graphhopper.jsprit.core.algorithm.acceptor.GreedyAcceptance;
+import com.graphhopper.jsprit.core.algorithm.acceptor.SolutionAcceptor;
+import com.graphhopper.jsprit.core.algorithm.box.Jsprit;
+import com.graphhopper.jsprit.core.algorithm.listener.IterationStartsListener;
+import com.graphhopper.jsprit.core.algorithm.listener.NewBestSolutionListener;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.util.Solutions;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VehicleRoutingAlgorithmCancellationTest {
+
+    private VehicleRoutingProblem vrp;
+
+    @Before
+    public void doBefore() {
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance();
+        vrpBuilder.addVehicle(VehicleImpl.Builder.newInstance("v").setStartLocation(Location.newInstance(0, 0)).build());
+        Random random = new Random(1);
+        for (int i = 0; i < 60; i++) {
+            vrpBuilder.addJob(Service.Builder.newInstance("s" + i).setLocation(Location.newInstance(random.nextInt(100), random.nextInt(100))).build());
+        }
+        vrp = vrpBuilder.build();
+    }
+
+    private VehicleRoutingAlgorithm createAlgorithm() {
+        return Jsprit.Builder.newInstance(vrp).setProperty(Jsprit.Parameter.THREADS, "1").buildAlgorithm();
+    }
+
+    private static class BestSolutions implements NewBestSolutionListener {
+
+        private final List<VehicleRoutingProblemSolution> solutions = new ArrayList<>();
+
+        @Override
+        public void informNewBestSolution(int iteration, VehicleRoutingProblem problem, VehicleRoutingProblemSolution bestSolution) {
+            solutions.add(bestSolution);
+        }
+
+    }
+
+    @Test
+    public void newBestSolutionsShouldBeStreamedWithDecreasingCosts() {
+        VehicleRoutingAlgorithm vra = createAlgorithm();
+        vra.setMaxIterations(100);
+        BestSolutions bestSolutions = new BestSolutions();
+        vra.addListener(bestSolutions);
+        Collection<VehicleRoutingProblemSolution> solutions = vra.searchSolutions();
+        assertTrue(bestSolutions.solutions.size() > 1);
+        for (int i = 1; i < bestSolutions.solutions.size(); i++) {
+            assertTrue(bestSolutions.solutions.get(i).getCost() < bestSolutions.solutions.get(i - 1).getCost());
+        }
+        VehicleRoutingProblemSolution last = bestSolutions.solutions.get(bestSolutions.solutions.size() - 1);
+        assertEquals(Solutions.bestOf(solutions).getCost(), last.getCost(), 0.);
+    }
+
+    @Test
+    public void whenCancelledAfterConstruction_initialSolutionShouldBeReturned() {
+        final VehicleRoutingAlgorithm vra = createAlgorithm();
+        vra.setMaxIterations(1000);
+        final int[] noIterations = {0};
+        vra.addListener((NewBestSolutionListener) (iteration, problem, bestSolution) -> vra.cancel());
+        vra.addListener((IterationStartsListener) (i, problem, solutions) -> noIterations[0]++);
+        VehicleRoutingProblemSolution best = Solutions.bestOf(vra.searchSolutions());
+        assertEquals(0, noIterations[0]);
+        assertTrue(best.getUnassignedJobs().isEmpty());
+        assertTrue(vra.getCancellationToken().isCancelled());
+    }
+
+    @Test
+    public void whenCancelledDuringInsertion_remainingJobsShouldBeUnassigned() {
+        VehicleRoutingAlgorithm vra = createAlgorithm();
+        vra.cancel();
+        VehicleRoutingProblemSolution best = Solutions.bestOf(vra.searchSolutions());
+        assertEquals(60, best.getUnassignedJobs().size());
+    }
+
+    @Test
+    public void whenCancelledDuringIteration_itsSolutionShouldNotBeOfferedToAcceptor() {
+        final List<VehicleRoutingProblemSolution> offered = new ArrayList<>();
+        final GreedyAcceptance greedyAcceptance = new GreedyAcceptance(1);
+        SolutionAcceptor acceptor = (solutions, newSolution) -> {
+            offered.add(newSolution);
+            return greedyAcceptance.acceptSolution(solutions, newSolution);
+        };
+        final VehicleRoutingAlgorithm vra = Jsprit.Builder.newInstance(vrp).setProperty(Jsprit.Parameter.THREADS, "1")
+            .setCustomAcceptor(acceptor).buildAlgorithm();
+        vra.setMaxIterations(100);
+        vra.addListener((IterationStartsListener) (i, problem, solutions) -> {
+            if (i == 5) vra.cancel();
+        });
+        VehicleRoutingProblemSolution best = Solutions.bestOf(vra.searchSolutions());
+        assertEquals(4, offered.size());
+        for (VehicleRoutingProblemSolution solution : offered) assertTrue(solution.getUnassignedJobs().isEmpty());
+        assertTrue(best.getUnassignedJobs().isEmpty());
+    }
+
+    @Test
+    public void whenHardDeadlineExpires_searchShouldStopWithBestSoFar() {
+        VehicleRoutingAlgorithm vra = createAlgorithm();
+        vra.setMaxIterations(Integer.MAX_VALUE);
+        vra.setHardDeadline(500);
+        BestSolutions bestSolutions = new BestSolutions();
+        vra.addListener(bestSolutions);
+        long start = System.currentTimeMillis();
+        VehicleRoutingProblemSolution best = Solutions.bestOf(vra.searchSolutions());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(bestSolutions.solutions.get(bestSolutions.solutions.size() - 1).getCost(), best.getCost(), 0.);
+    }
+
+    @Test
+    public void whenHardDeadlineHasExpired_nextSearchOfSameAlgorithmShouldRunAgain() {
+        VehicleRoutingAlgorithm vra = createAlgorithm();
+        vra.setMaxIterations(Integer.MAX_VALUE);
+        vra.setHardDeadline(500);
+        final int[] noIterations = {0};
+        vra.addListener((IterationStartsListener) (i, problem, solutions) -> noIterations[0]++);
+        vra.searchSolutions();
+        assertTrue(vra.getCancellationToken().isCancelled());
+
+        noIterations[0] = 0;
+        VehicleRoutingProblemSolution best = Solutions.bestOf(vra.searchSolutions());
+        assertTrue(noIterations[0] > 0);
+        assertTrue(best.getUnassignedJobs().isEmpty());
+
+        vra.setHardDeadline(-1);
+        vra.setMaxIterations(5);
+        noIterations[0] = 0;
+        vra.searchSolutions();
+        assertEquals(5, noIterations[0]);
+        assertFalse(vra.getCancellationToken().isCancelled());
+    }
+
+    @Test
+    public void whenCancelledExplicitly_nextSearchShouldStayCancelledDespiteHardDeadline() {
+        VehicleRoutingAlgorithm vra = createAlgorithm();
+        vra.setMaxIterations(10);
+        vra.setHardDeadline(10000);
+        final int[] noIterations = {0};
+        vra.addListener((IterationStartsListener) (i, problem, solutions) -> noIterations[0]++);
+        vra.cancel();
+        vra.searchSolutions();
+        assertEquals(0, noIterations[0]);
+        assertTrue(vra.getCancellationToken().isCancelled());
+    }
+
+    @Test
+    public void whenRunningAsync_futureShouldCompleteWithSolutions() throws Exception {
+        VehicleRoutingAlgorithm vra = createAlgorithm();
+        vra.setMaxIterations(20);
+        Collection<VehicleRoutingProblemSolution> solutions = vra.searchSolutionsAsync().get(30, TimeUnit.SECONDS);
+        assertTrue(Solutions.bestOf(solutions).getUnassignedJobs().isEmpty());
+    }
+
+    @Test
+    public void whenAsyncFutureIsCancelled_searchShouldStop() throws Exception {
+        VehicleRoutingAlgorithm vra = createAlgorithm();
+        vra.setMaxIterations(Integer.MAX_VALUE);
+        final CountDownLatch firstSolution = new CountDownLatch(1);
+        vra.addListener((NewBestSolutionListener) (iteration, problem, bestSolution) -> firstSolution.countDown());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CompletableFuture<Collection<VehicleRoutingProblemSolution>> future = vra.searchSolutionsAsync(executor);
+        assertTrue(firstSolution.await(30, TimeUnit.SECONDS));
+        assertTrue(future.cancel(true));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertTrue(vra.getCancellationToken().isCancelled());
+    }
+
+}
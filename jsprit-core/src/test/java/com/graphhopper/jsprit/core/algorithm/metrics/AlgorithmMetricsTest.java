@@ -0,0 +1,164 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.metrics;
+
+import com.graphhopper.jsprit.core.algorithm.VehicleRoutingAlgorithm;
+import com.graphhopper.jsprit.core.algorithm.box.Jsprit;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.constraint.ServiceLoadRouteLevelConstraint;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AlgorithmMetricsTest {
+
+    private VehicleRoutingProblem vrp;
+
+    @Before
+    public void doBefore() {
+        VehicleTypeImpl type = VehicleTypeImpl.Builder.newInstance("type").addCapacityDimension(0, 3).build();
+        VehicleImpl v = VehicleImpl.Builder.newInstance("v").setType(type).setStartLocation(Location.newInstance(0, 0)).build();
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance().addVehicle(v);
+        Random random = new Random(1);
+        for (int i = 0; i < 12; i++) {
+            vrpBuilder.addJob(Service.Builder.newInstance("s" + i).addSizeDimension(0, 1)
+                .setLocation(Location.newInstance(random.nextInt(50), random.nextInt(50))).build());
+        }
+        vrp = vrpBuilder.build();
+    }
+
+    @Test
+    public void whenRunningJsprit_eachIterationShouldBeRecordedByItsStrategy() {
+        final int[] noExports = {0};
+        AlgorithmMetrics metrics = new AlgorithmMetrics().addExporter(new MetricsExporter() {
+            @Override
+            public void export(AlgorithmMetrics metrics) {
+                noExports[0]++;
+            }
+        });
+        VehicleRoutingAlgorithm vra = Jsprit.Builder.newInstance(vrp).setProperty(Jsprit.Parameter.THREADS, "1")
+            .setMetrics(metrics).buildAlgorithm();
+        vra.setMaxIterations(50);
+        vra.searchSolutions();
+
+        assertEquals(1, noExports[0]);
+        long noIterations = 0;
+        long noStateUpdates = 0;
+        for (StrategyMetrics strategy : metrics.getAllStrategyMetrics()) {
+            noIterations += strategy.getNoIterations();
+            noStateUpdates += strategy.getTime(AlgorithmMetrics.Phase.STATE_UPDATE).getCount();
+            if (strategy.getStrategyId().equals(AlgorithmMetrics.NO_STRATEGY)) continue;
+            assertEquals(strategy.getNoIterations(), strategy.getTime(AlgorithmMetrics.Phase.ITERATION).getCount());
+            for (AlgorithmMetrics.Phase phase : new AlgorithmMetrics.Phase[]{AlgorithmMetrics.Phase.SELECTION, AlgorithmMetrics.Phase.RUIN,
+                AlgorithmMetrics.Phase.RECREATE, AlgorithmMetrics.Phase.OBJECTIVE, AlgorithmMetrics.Phase.ACCEPTANCE}) {
+                assertEquals(strategy.getNoIterations(), strategy.getTime(phase).getCount());
+            }
+            assertTrue(strategy.getNoAccepted() <= strategy.getNoIterations());
+            assertTrue(strategy.getNoImprovements() <= strategy.getNoIterations());
+        }
+        assertEquals(50, noIterations);
+        assertTrue(noStateUpdates > 0);
+    }
+
+    @Test
+    public void insertionEvaluationsAndConstraintRejectionsShouldBeCounted() {
+        AlgorithmMetrics metrics = new AlgorithmMetrics();
+        VehicleRoutingAlgorithm vra = Jsprit.Builder.newInstance(vrp).setProperty(Jsprit.Parameter.THREADS, "1")
+            .setMetrics(metrics).buildAlgorithm();
+        vra.setMaxIterations(20);
+        vra.searchSolutions();
+
+        StrategyMetrics construction = metrics.getStrategyMetrics(AlgorithmMetrics.NO_STRATEGY);
+        assertTrue(construction.getNoInsertionEvaluations() > 0);
+        assertTrue(construction.getNoActivityEvaluations() > 0);
+        long noRejections = 0;
+        for (StrategyMetrics strategy : metrics.getAllStrategyMetrics()) {
+            Long rejections = strategy.getConstraintRejections().get(ServiceLoadRouteLevelConstraint.class);
+            if (rejections != null) noRejections += rejections;
+        }
+        assertTrue(noRejections > 0);
+    }
+
+    @Test
+    public void whenGranularInsertionIsEnabled_skippedPositionsShouldBeCounted() {
+        AlgorithmMetrics metrics = new AlgorithmMetrics();
+        VehicleRoutingAlgorithm vra = Jsprit.Builder.newInstance(vrp).setProperty(Jsprit.Parameter.THREADS, "1")
+            .setProperty(Jsprit.Parameter.GRANULAR_NEIGHBORS, "2").setMetrics(metrics).buildAlgorithm();
+        vra.setMaxIterations(20);
+        vra.searchSolutions();
+
+        long noEvaluated = 0;
+        long noSkipped = 0;
+        for (StrategyMetrics strategy : metrics.getAllStrategyMetrics()) {
+            noEvaluated += strategy.getNoGranularEvaluatedPositions();
+            noSkipped += strategy.getNoGranularSkippedPositions();
+            assertTrue(strategy.getGranularSkipRate() >= 0. && strategy.getGranularSkipRate() < 1.);
+        }
+        assertTrue(noEvaluated > 0);
+        assertTrue(noSkipped > 0);
+        StrategyMetrics construction = metrics.getStrategyMetrics(AlgorithmMetrics.NO_STRATEGY);
+        assertTrue(LoggingMetricsExporter.toString(construction).contains("[granularSkipRate=" + Math.round(construction.getGranularSkipRate() * 100.) / 100. + "]"));
+    }
+
+    @Test
+    public void whenGranularInsertionIsDisabled_noPositionShouldBeCounted() {
+        AlgorithmMetrics metrics = new AlgorithmMetrics();
+        VehicleRoutingAlgorithm vra = Jsprit.Builder.newInstance(vrp).setProperty(Jsprit.Parameter.THREADS, "1")
+            .setMetrics(metrics).buildAlgorithm();
+        vra.setMaxIterations(10);
+        vra.searchSolutions();
+        for (StrategyMetrics strategy : metrics.getAllStrategyMetrics()) {
+            assertEquals(0, strategy.getNoGranularEvaluatedPositions() + strategy.getNoGranularSkippedPositions());
+            assertFalse(LoggingMetricsExporter.toString(strategy).contains("granularSkipRate"));
+        }
+    }
+
+    @Test
+    public void whenMetricsAreNotSet_nothingShouldBeRecorded() {
+        AlgorithmMetrics metrics = new AlgorithmMetrics();
+        VehicleRoutingAlgorithm vra = Jsprit.Builder.newInstance(vrp).setProperty(Jsprit.Parameter.THREADS, "1").buildAlgorithm();
+        vra.setMaxIterations(10);
+        vra.searchSolutions();
+        assertNull(vra.getMetrics());
+        assertEquals(1, metrics.getAllStrategyMetrics().size());
+        assertEquals(0, metrics.getStrategyMetrics(AlgorithmMetrics.NO_STRATEGY).getNoInsertionEvaluations());
+    }
+
+    @Test
+    public void loggingExporterShouldSummarizeStrategy() {
+        AlgorithmMetrics metrics = new AlgorithmMetrics();
+        metrics.strategyStarts("radial_best");
+        metrics.recordTime(AlgorithmMetrics.Phase.RUIN, 2000);
+        metrics.recordConstraintRejection(ServiceLoadRouteLevelConstraint.class);
+        metrics.strategyEnds(10000, -1, true, 5.);
+        String summary = LoggingMetricsExporter.toString(metrics.getStrategyMetrics("radial_best"));
+        assertTrue(summary.contains("[strategy=radial_best]"));
+        assertTrue(summary.contains("[improvements=1]"));
+        assertTrue(summary.contains("[ruinInMicros=2.0/2.0]"));
+        assertTrue(summary.contains("[rejectedByServiceLoadRouteLevelConstraint=1]"));
+        assertEquals(0, metrics.getStrategyMetrics(AlgorithmMetrics.NO_STRATEGY).getNoIterations());
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketsShouldCoverAllValuesWithoutGaps() {
+        assertEquals(0, Histogram.bucketLowerBound(0));
+        for (int i = 1; i < new Histogram().getNoBuckets(); i++) {
+            assertEquals(Histogram.bucketUpperBound(i - 1) + 1, Histogram.bucketLowerBound(i));
+            assertEquals(i, Histogram.bucketIndex(Histogram.bucketLowerBound(i)));
+            assertEquals(i, Histogram.bucketIndex(Histogram.bucketUpperBound(i)));
+        }
+        assertEquals(new Histogram().getNoBuckets() - 1, Histogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void whenRecordingValues_countTotalMinAndMaxShouldBeExact() {
+        Histogram h = new Histogram();
+        h.record(5);
+        h.record(1000);
+        h.record(-3);
+        assertEquals(3, h.getCount());
+        assertEquals(1005, h.getTotal());
+        assertEquals(0, h.getMin());
+        assertEquals(1000, h.getMax());
+        assertEquals(335., h.getMean(), 0.);
+    }
+
+    @Test
+    public void percentilesShouldBeWithinRelativeErrorOfBuckets() {
+        Histogram h = new Histogram();
+        Random random = new Random(1);
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            long value = (long) Math.exp(random.nextDouble() * 20);
+            values.add(value);
+            h.record(value);
+        }
+        Collections.sort(values);
+        for (double p : new double[]{1, 50, 90, 99, 100}) {
+            long expected = values.get((int) Math.ceil(p / 100. * values.size()) - 1);
+            long actual = h.getValueAtPercentile(p);
+            assertTrue(actual >= expected);
+            assertTrue(actual <= expected + expected / 32 + 1);
+        }
+    }
+
+    @Test
+    public void whenRecordingConcurrently_noValueShouldBeLost() throws InterruptedException {
+        final Histogram h = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) h.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(40000, h.getCount());
+        long bucketSum = 0;
+        for (int i = 0; i < h.getNoBuckets(); i++) bucketSum += h.getBucketCount(i);
+        assertEquals(40000, bucketSum);
+        assertEquals(9999, h.getMax());
+    }
+
+    @Test
+    public void whenReset_histogramShouldBeEmpty() {
+        Histogram h = new Histogram();
+        h.record(10);
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getValueAtPercentile(50));
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.recreate;
+
+import com.graphhopper.jsprit.core.algorithm.state.StateManager;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.constraint.ConstraintManager;
+import com.graphhopper.jsprit.core.problem.constraint.SoftRouteConstraint;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.misc.JobInsertionContext;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
+import com.graphhopper.jsprit.core.problem.vehicle.InfiniteFleetManagerFactory;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleFleetManager;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BestInsertionConcurrentTest {
+
+    private ExecutorService executorService;
+
+    private VehicleRoutingProblem vrp;
+
+    @Before
+    public void doBefore() {
+        executorService = Executors.newFixedThreadPool(3);
+        VehicleTypeImpl type = VehicleTypeImpl.Builder.newInstance("type").addCapacityDimension(0, 4).build();
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance();
+        vrpBuilder.addVehicle(VehicleImpl.Builder.newInstance("v").setType(type).setStartLocation(Location.newInstance(0, 0)).build());
+        Random random = new Random(1);
+        for (int i = 0; i < 30; i++) {
+            vrpBuilder.addJob(Service.Builder.newInstance("s" + i).addSizeDimension(0, 1)
+                .setLocation(Location.newInstance(random.nextInt(100), random.nextInt(100))).build());
+        }
+        vrp = vrpBuilder.build();
+    }
+
+    @After
+    public void doAfter() {
+        executorService.shutdown();
+    }
+
+    private InsertionStrategy createInsertion(boolean concurrent) {
+        return createInsertion(concurrent ? ExecutionBackends.auto(ExecutionBackends.of(executorService, 3)) : null);
+    }
+
+    private InsertionStrategy createInsertion(ExecutionBackend executionBackend) {
+        return createInsertion(vrp, executionBackend, 0.);
+    }
+
+    private InsertionStrategy createInsertion(VehicleRoutingProblem vrp, ExecutionBackend executionBackend, double fixedCostWeight) {
+        StateManager stateManager = new StateManager(vrp);
+        stateManager.updateLoadStates();
+        ConstraintManager constraintManager = new ConstraintManager(vrp, stateManager);
+        constraintManager.addLoadConstraint();
+        IncreasingAbsoluteFixedCosts increasingAbsoluteFixedCosts = null;
+        if (fixedCostWeight > 0.) {
+            increasingAbsoluteFixedCosts = new IncreasingAbsoluteFixedCosts(vrp.getJobs().size());
+            increasingAbsoluteFixedCosts.setWeightOfFixCost(fixedCostWeight);
+            constraintManager.addConstraint(increasingAbsoluteFixedCosts);
+        }
+        VehicleFleetManager fleetManager = new InfiniteFleetManagerFactory(vrp.getVehicles()).createFleetManager();
+        InsertionStrategyBuilder builder = new InsertionStrategyBuilder(vrp, fleetManager, stateManager, constraintManager)
+            .setInsertionStrategy(InsertionStrategyBuilder.Strategy.BEST);
+        builder.setConcurrentMode(executionBackend);
+        InsertionStrategy insertion = builder.build();
+        ((AbstractInsertionStrategy) insertion).setRandom(new Random(4711));
+        insertion.addListener(stateManager);
+        if (increasingAbsoluteFixedCosts != null) insertion.addListener(increasingAbsoluteFixedCosts);
+        return insertion;
+    }
+
+    private List<String> toSequences(Collection<VehicleRoute> routes) {
+        List<String> sequences = new ArrayList<>();
+        for (VehicleRoute route : routes) {
+            StringBuilder sequence = new StringBuilder();
+            for (TourActivity act : route.getActivities()) {
+                sequence.append(((TourActivity.JobActivity) act).getJob().getId()).append(" ");
+            }
+            sequences.add(sequence.toString());
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    @Test
+    public void allJobsShouldBeInserted() {
+        Collection<VehicleRoute> routes = new ArrayList<>();
+        Collection<Job> badJobs = createInsertion(true).insertJobs(routes, vrp.getJobs().values());
+        assertTrue(badJobs.isEmpty());
+        int noJobs = 0;
+        for (VehicleRoute route : routes) {
+            assertTrue(route.getTourActivities().jobSize() <= 4);
+            noJobs += route.getTourActivities().jobSize();
+        }
+        assertEquals(30, noJobs);
+    }
+
+    @Test
+    public void routesShouldBeTheSameAsWithSequentialBestInsertion() {
+        Collection<VehicleRoute> sequentialRoutes = new ArrayList<>();
+        createInsertion(false).insertJobs(sequentialRoutes, vrp.getJobs().values());
+        Collection<VehicleRoute> concurrentRoutes = new ArrayList<>();
+        createInsertion(true).insertJobs(concurrentRoutes, vrp.getJobs().values());
+        assertEquals(toSequences(sequentialRoutes), toSequences(concurrentRoutes));
+    }
+
+    @Test
+    public void whenRoutesAlreadyExist_routesShouldBeTheSameAsWithSequentialBestInsertion() {
+        List<Job> jobs = new ArrayList<>(vrp.getJobs().values());
+        Collection<VehicleRoute> sequentialRoutes = new ArrayList<>();
+        InsertionStrategy sequential = createInsertion(false);
+        sequential.insertJobs(sequentialRoutes, jobs.subList(0, 15));
+        sequential.insertJobs(sequentialRoutes, jobs.subList(15, 30));
+
+        Collection<VehicleRoute> concurrentRoutes = new ArrayList<>();
+        InsertionStrategy concurrent = createInsertion(true);
+        concurrent.insertJobs(concurrentRoutes, jobs.subList(0, 15));
+        concurrent.insertJobs(concurrentRoutes, jobs.subList(15, 30));
+        assertEquals(toSequences(sequentialRoutes), toSequences(concurrentRoutes));
+    }
+
+    @Test
+    public void whenFixedCostsIncreaseWithInsertionProgress_routesShouldBeTheSameAsWithSequentialBestInsertion() {
+        VehicleTypeImpl small = VehicleTypeImpl.Builder.newInstance("small").addCapacityDimension(0, 4).setFixedCost(50).build();
+        VehicleTypeImpl large = VehicleTypeImpl.Builder.newInstance("large").addCapacityDimension(0, 6).setFixedCost(100).build();
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance();
+        vrpBuilder.addVehicle(VehicleImpl.Builder.newInstance("small").setType(small).setStartLocation(Location.newInstance(0, 0)).build());
+        vrpBuilder.addVehicle(VehicleImpl.Builder.newInstance("large").setType(large).setStartLocation(Location.newInstance(0, 0)).build());
+        vrpBuilder.addAllJobs(vrp.getJobs().values());
+        VehicleRoutingProblem fixedCostVrp = vrpBuilder.build();
+
+        Collection<VehicleRoute> sequentialRoutes = new ArrayList<>();
+        createInsertion(fixedCostVrp, null, 10.).insertJobs(sequentialRoutes, fixedCostVrp.getJobs().values());
+        Collection<VehicleRoute> concurrentRoutes = new ArrayList<>();
+        createInsertion(fixedCostVrp, ExecutionBackends.of(executorService, 3), 10.).insertJobs(concurrentRoutes, fixedCostVrp.getJobs().values());
+        assertEquals(toSequences(sequentialRoutes), toSequences(concurrentRoutes));
+    }
+
+    @Test
+    public void whenConcurrentModeIsSetWithExecutor_smallPassesShouldNotBeRunInline() {
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance();
+        vrpBuilder.addVehicle(VehicleImpl.Builder.newInstance("v").setStartLocation(Location.newInstance(0, 0)).build());
+        vrpBuilder.addJob(Service.Builder.newInstance("s1").setLocation(Location.newInstance(10, 0)).build());
+        vrpBuilder.addJob(Service.Builder.newInstance("s2").setLocation(Location.newInstance(0, 10)).build());
+        VehicleRoutingProblem smallVrp = vrpBuilder.build();
+        final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        StateManager stateManager = new StateManager(smallVrp);
+        ConstraintManager constraintManager = new ConstraintManager(smallVrp, stateManager);
+        constraintManager.addConstraint(new SoftRouteConstraint() {
+
+            @Override
+            public double getCosts(JobInsertionContext insertionContext) {
+                threads.add(Thread.currentThread());
+                return 0.;
+            }
+
+        });
+        VehicleFleetManager fleetManager = new InfiniteFleetManagerFactory(smallVrp.getVehicles()).createFleetManager();
+        InsertionStrategy insertion = new InsertionStrategyBuilder(smallVrp, fleetManager, stateManager, constraintManager)
+            .setInsertionStrategy(InsertionStrategyBuilder.Strategy.BEST).setConcurrentMode(executorService, 3).build();
+        insertion.addListener(stateManager);
+        insertion.insertJobs(new ArrayList<VehicleRoute>(), smallVrp.getJobs().values());
+        assertFalse(threads.isEmpty());
+        assertFalse(threads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void routesShouldBeTheSameOnAllExecutionBackends() {
+        Collection<VehicleRoute> sequentialRoutes = new ArrayList<>();
+        createInsertion(false).insertJobs(sequentialRoutes, vrp.getJobs().values());
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (ExecutionBackend backend : Arrays.asList(ExecutionBackends.inline(), ExecutionBackends.forkJoin(pool), ExecutionBackends.of(executorService, 3))) {
+                Collection<VehicleRoute> routes = new ArrayList<>();
+                createInsertion(backend).insertJobs(routes, vrp.getJobs().values());
+                assertEquals(toSequences(sequentialRoutes), toSequences(routes));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.recreate;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ExecutionBackendsTest {
+
+    private List<Callable<Integer>> createTasks(int noTasks) {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < noTasks; i++) {
+            final int value = i;
+            tasks.add(() -> value * value);
+        }
+        return tasks;
+    }
+
+    private void assertResults(ExecutionBackend backend) {
+        List<Integer> results = backend.invokeAll(createTasks(50));
+        assertEquals(50, results.size());
+        for (int i = 0; i < 50; i++) assertEquals(i * i, (int) results.get(i));
+    }
+
+    @Test
+    public void allBackendsShouldReturnResultsInOrderOfTasks() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            assertResults(ExecutionBackends.inline());
+            assertResults(ExecutionBackends.forkJoin(pool));
+            assertResults(ExecutionBackends.of(executorService, 2));
+            try (ExecutionBackend auto = ExecutionBackends.auto()) {
+                assertResults(auto);
+            }
+        } finally {
+            pool.shutdown();
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void inlineBackendShouldRunTasksInCallingThread() {
+        final Thread caller = Thread.currentThread();
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) tasks.add(() -> Thread.currentThread() == caller);
+        assertEquals(Arrays.asList(true, true, true), ExecutionBackends.inline().invokeAll(tasks));
+        assertEquals(1, ExecutionBackends.inline().getParallelism());
+    }
+
+    @Test
+    public void whenCalledFromWorkerOfPool_forkJoinBackendShouldRunTasks() {
+        final ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            final ExecutionBackend backend = ExecutionBackends.forkJoin(pool);
+            //the only worker waits for the tasks, thus it must run them itself
+            List<Integer> results = pool.submit(() -> backend.invokeAll(createTasks(10))).join();
+            assertEquals(10, results.size());
+            assertEquals(81, (int) results.get(9));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void autoBackendShouldRunSmallPassesInline() {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            ExecutionBackend concurrent = ExecutionBackends.of(executorService, 2);
+            ExecutionBackend auto = ExecutionBackends.auto(concurrent, 100);
+            assertSame(ExecutionBackends.inline(), auto.select(10, 5));
+            assertSame(ExecutionBackends.inline(), auto.select(1, 1000));
+            assertSame(concurrent, auto.select(10, 10));
+            assertEquals(2, auto.getParallelism());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void whenTaskFails_exceptionShouldBeRethrown() {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            List<Callable<Integer>> tasks = createTasks(5);
+            tasks.add(() -> {
+                throw new IllegalStateException("failed");
+            });
+            for (ExecutionBackend backend : Arrays.asList(ExecutionBackends.inline(), ExecutionBackends.forkJoin(pool), ExecutionBackends.of(executorService, 2))) {
+                try {
+                    backend.invokeAll(tasks);
+                    fail("exception expected for " + backend);
+                } catch (IllegalStateException e) {
+                    assertEquals("failed", e.getMessage());
+                }
+            }
+        } finally {
+            pool.shutdown();
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void whenCallerIsInterrupted_pendingTasksShouldBeCancelledAndInterruptShouldBeKept() throws InterruptedException {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        final CountDownLatch never = new CountDownLatch(1);
+        final AtomicBoolean secondTaskRun = new AtomicBoolean(false);
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        tasks.add(() -> never.await(1, TimeUnit.HOURS));
+        tasks.add(() -> secondTaskRun.getAndSet(true));
+        try {
+            Thread.currentThread().interrupt();
+            ExecutionBackends.of(executorService, 1).invokeAll(tasks);
+            fail("exception expected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+            assertTrue(Thread.interrupted());
+        } finally {
+            executorService.shutdown();
+        }
+        //the blocking task must have been cancelled, otherwise the executor would not terminate
+        assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+        assertFalse(secondTaskRun.get());
+    }
+
+    @Test
+    public void whenClosingBackendOfExecutorService_executorServiceShouldBeLeftRunning() {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            ExecutionBackend backend = ExecutionBackends.auto(ExecutionBackends.of(executorService, 2));
+            backend.close();
+            assertFalse(executorService.isShutdown());
+            assertResults(backend);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void whenVirtualThreadsAreNotSupported_itShouldThrowException() {
+        Assume.assumeFalse(ExecutionBackends.isVirtualThreadsSupported());
+        try {
+            ExecutionBackends.virtualThreads();
+            fail("exception expected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("virtual threads"));
+        }
+    }
+
+    @Test
+    public void whenVirtualThreadsAreSupported_tasksShouldRunOnThem() {
+        Assume.assumeTrue(ExecutionBackends.isVirtualThreadsSupported());
+        try (ExecutionBackend backend = ExecutionBackends.virtualThreads()) {
+            assertResults(backend);
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void whenVirtualThreadBackendIsClosed_itShouldNotAcceptTasks() {
+        Assume.assumeTrue(ExecutionBackends.isVirtualThreadsSupported());
+        ExecutionBackend backend = ExecutionBackends.virtualThreads();
+        backend.close();
+        backend.invokeAll(createTasks(2));
+    }
+
+}
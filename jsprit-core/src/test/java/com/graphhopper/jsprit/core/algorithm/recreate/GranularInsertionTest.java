@@ -0,0 +1,150 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.recreate;
+
+import com.graphhopper.jsprit.core.algorithm.ruin.JobNeighborhoods;
+import com.graphhopper.jsprit.core.algorithm.ruin.JobNeighborhoodsFactory;
+import com.graphhopper.jsprit.core.algorithm.ruin.distance.AvgServiceAndShipmentDistance;
+import com.graphhopper.jsprit.core.algorithm.state.StateManager;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.constraint.ConstraintManager;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
+import com.graphhopper.jsprit.core.problem.vehicle.InfiniteFleetManagerFactory;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleFleetManager;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class GranularInsertionTest {
+
+    private VehicleRoutingProblem vrp;
+
+    private VehicleImpl vehicle;
+
+    @Before
+    public void doBefore() {
+        VehicleTypeImpl type = VehicleTypeImpl.Builder.newInstance("type").addCapacityDimension(0, 10).build();
+        vehicle = VehicleImpl.Builder.newInstance("v").setType(type).setStartLocation(Location.newInstance(50, 50)).build();
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance();
+        vrpBuilder.addVehicle(vehicle);
+        Random random = new Random(1);
+        for (int i = 0; i < 40; i++) {
+            vrpBuilder.addJob(Service.Builder.newInstance("s" + i).addSizeDimension(0, 1)
+                .setLocation(Location.newInstance(random.nextInt(100), random.nextInt(100))).build());
+        }
+        vrp = vrpBuilder.build();
+    }
+
+    private GranularInsertion createGranularInsertion(int noNeighbors) {
+        JobNeighborhoods neighborhoods = new JobNeighborhoodsFactory().createNeighborhoods(vrp, new AvgServiceAndShipmentDistance(vrp.getTransportCosts()));
+        neighborhoods.initialise();
+        return new GranularInsertion(vrp, neighborhoods, noNeighbors);
+    }
+
+    private InsertionStrategy createInsertion(GranularInsertion granularInsertion) {
+        StateManager stateManager = new StateManager(vrp);
+        stateManager.updateLoadStates();
+        ConstraintManager constraintManager = new ConstraintManager(vrp, stateManager);
+        constraintManager.addLoadConstraint();
+        VehicleFleetManager fleetManager = new InfiniteFleetManagerFactory(vrp.getVehicles()).createFleetManager();
+        InsertionStrategy insertion = new InsertionStrategyBuilder(vrp, fleetManager, stateManager, constraintManager)
+            .setInsertionStrategy(InsertionStrategyBuilder.Strategy.BEST)
+            .setGranularInsertion(granularInsertion)
+            .build();
+        ((AbstractInsertionStrategy) insertion).setRandom(new Random(4711));
+        insertion.addListener(stateManager);
+        return insertion;
+    }
+
+    private List<String> toSequences(Collection<VehicleRoute> routes) {
+        List<String> sequences = new ArrayList<>();
+        for (VehicleRoute route : routes) {
+            StringBuilder sequence = new StringBuilder();
+            for (TourActivity act : route.getActivities()) {
+                sequence.append(((TourActivity.JobActivity) act).getJob().getId()).append(" ");
+            }
+            sequences.add(sequence.toString());
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    @Test
+    public void whenAllJobsAreNeighbors_routesShouldBeTheSameAsWithoutGranularInsertion() {
+        Collection<VehicleRoute> routes = new ArrayList<>();
+        createInsertion(null).insertJobs(routes, vrp.getJobs().values());
+
+        GranularInsertion granularInsertion = createGranularInsertion(vrp.getJobs().size() - 1);
+        Collection<VehicleRoute> granularRoutes = new ArrayList<>();
+        createInsertion(granularInsertion).insertJobs(granularRoutes, vrp.getJobs().values());
+
+        assertEquals(toSequences(routes), toSequences(granularRoutes));
+        assertTrue(granularInsertion.getNoEvaluatedPositions() > 0);
+        assertEquals(0, granularInsertion.getNoSkippedPositions());
+        assertEquals(0., granularInsertion.getSkipRate(), 0.);
+    }
+
+    @Test
+    public void whenNeighborhoodIsSmall_positionsShouldBeSkippedAndAllJobsInserted() {
+        GranularInsertion granularInsertion = createGranularInsertion(3);
+        Collection<VehicleRoute> routes = new ArrayList<>();
+        Collection<Job> badJobs = createInsertion(granularInsertion).insertJobs(routes, vrp.getJobs().values());
+        assertTrue(badJobs.isEmpty());
+        int noJobs = 0;
+        for (VehicleRoute route : routes) noJobs += route.getTourActivities().jobSize();
+        assertEquals(40, noJobs);
+        assertTrue(granularInsertion.getNoSkippedPositions() > 0);
+        assertTrue(granularInsertion.getSkipRate() > 0.);
+
+        granularInsertion.resetMetrics();
+        assertEquals(0, granularInsertion.getNoEvaluatedPositions());
+        assertEquals(0, granularInsertion.getNoSkippedPositions());
+    }
+
+    @Test
+    public void positionsNextToStartAndEndShouldAlwaysBeEvaluated() {
+        GranularInsertion granularInsertion = createGranularInsertion(1);
+        Service job = (Service) vrp.getJobs().get("s0");
+        Service other = (Service) vrp.getJobs().get("s1");
+        VehicleRoute route = VehicleRoute.Builder.newInstance(vehicle).setJobActivityFactory(vrp.getJobActivityFactory())
+            .addService(other).build();
+        assertTrue(granularInsertion.isPromising(job, route.getStart(), route.getActivities().get(0)));
+        assertTrue(granularInsertion.isPromising(job, route.getActivities().get(0), route.getEnd()));
+    }
+
+    @Test
+    public void whenJobIsFarFromRoute_regionLowerBoundShouldSkipRoute() {
+        GranularInsertion granularInsertion = createGranularInsertion(3).setRegionLowerBound(1.);
+        VehicleRoute route = VehicleRoute.Builder.newInstance(vehicle).setJobActivityFactory(vrp.getJobActivityFactory())
+            .addService((Service) vrp.getJobs().get("s1")).build();
+        assertTrue(granularInsertion.canSkip(route, vehicle, 0., 100., Location.newInstance(1000, 1000)));
+        assertFalse(granularInsertion.canSkip(route, vehicle, 0., 100., Location.newInstance(55, 55)));
+        assertFalse(granularInsertion.canSkip(route, vehicle, 0., Double.MAX_VALUE, Location.newInstance(1000, 1000)));
+        assertEquals(1, granularInsertion.getNoSkippedRoutes());
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.recreate;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InsertionDataSlotsTest {
+
+    private InsertionData iData(double cost) {
+        return new InsertionData(cost, 0, 0, null, null);
+    }
+
+    @Test
+    public void whenAddingSeveralInsertionData_bestTwoShouldBeMemorized() {
+        InsertionDataSlots slots = new InsertionDataSlots(1);
+        slots.clear(0, 0);
+        InsertionData three = iData(3.);
+        InsertionData one = iData(1.);
+        InsertionData two = iData(2.);
+        InsertionData four = iData(4.);
+        slots.add(0, three);
+        slots.add(0, one);
+        slots.add(0, two);
+        slots.add(0, four);
+        assertSame(one, slots.get(0, 0));
+        assertSame(two, slots.get(0, 1));
+    }
+
+    @Test
+    public void whenClearingRoute_slotsShouldBeEmptyAndVersionUpdated() {
+        InsertionDataSlots slots = new InsertionDataSlots(1);
+        slots.clear(0, 0);
+        slots.add(0, iData(1.));
+        slots.clear(0, 3);
+        assertNull(slots.get(0, 0));
+        assertNull(slots.get(0, 1));
+        assertEquals(3, slots.getVersion(0));
+    }
+
+    @Test
+    public void whenRouteIndexExceedsCapacity_slotsShouldGrow() {
+        InsertionDataSlots slots = new InsertionDataSlots(1);
+        assertEquals(InsertionDataSlots.NO_VERSION, slots.getVersion(5));
+        slots.clear(5, 2);
+        InsertionData one = iData(1.);
+        slots.add(5, one);
+        assertSame(one, slots.get(5, 0));
+        assertEquals(2, slots.getVersion(5));
+        assertEquals(InsertionDataSlots.NO_VERSION, slots.getVersion(4));
+    }
+
+    @Test
+    public void insertionDataOfCurrentVehicleShouldBeKeptEvenIfItIsNotAmongTheBestTwo() {
+        InsertionDataSlots slots = new InsertionDataSlots(1);
+        slots.clear(0, 0);
+        InsertionData current = iData(5.);
+        slots.addCurrentVehicle(0, current);
+        slots.add(0, iData(1.));
+        slots.add(0, iData(2.));
+        assertEquals(1., slots.get(0, 0).getInsertionCost(), 0.);
+        assertEquals(2., slots.get(0, 1).getInsertionCost(), 0.);
+        assertSame(current, slots.get(0, InsertionDataSlots.CURRENT_VEHICLE_SLOT));
+        slots.clear(0, 1);
+        assertNull(slots.get(0, InsertionDataSlots.CURRENT_VEHICLE_SLOT));
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.recreate;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.driver.Driver;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.vehicle.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class InsertionDataUpdaterTest {
+
+    private VehicleImpl small;
+
+    private VehicleImpl medium;
+
+    private VehicleImpl large;
+
+    private Service service;
+
+    private VehicleRoutingProblem vrp;
+
+    private VehicleFleetManager fleetManager;
+
+    //switching to a larger vehicle is cheaper than keeping the small one
+    private final JobInsertionCostsCalculator calculator = new JobInsertionCostsCalculator() {
+
+        @Override
+        public InsertionData getInsertionData(VehicleRoute currentRoute, Job newJob, Vehicle newVehicle, double newVehicleDepartureTime, Driver newDriver, double bestKnownCosts) {
+            if (newVehicle == small) return new InsertionData(10., 0, 0, small, null);
+            if (newVehicle == medium) return new InsertionData(2., 0, 0, medium, null);
+            if (newVehicle == large) return new InsertionData(1., 0, 0, large, null);
+            return new InsertionData.NoInsertionFound();
+        }
+
+    };
+
+    private VehicleImpl vehicle(String id, int capacity) {
+        VehicleTypeImpl type = VehicleTypeImpl.Builder.newInstance(id + "Type").addCapacityDimension(0, capacity).build();
+        return VehicleImpl.Builder.newInstance(id).setType(type).setStartLocation(Location.newInstance(0, 0)).build();
+    }
+
+    @Before
+    public void doBefore() {
+        small = vehicle("small", 2);
+        medium = vehicle("medium", 4);
+        large = vehicle("large", 8);
+        service = Service.Builder.newInstance("s").addSizeDimension(0, 1).setLocation(Location.newInstance(10, 0)).build();
+        vrp = VehicleRoutingProblem.Builder.newInstance().setFleetSize(VehicleRoutingProblem.FleetSize.FINITE)
+            .addVehicle(small).addVehicle(medium).addVehicle(large).addJob(service).build();
+        fleetManager = new FiniteFleetManagerFactory(vrp.getVehicles()).createFleetManager();
+    }
+
+    @Test
+    public void whenVehiclesToSwitchToAreLockedMeanwhile_currentVehicleOfRouteShouldStillBeConsidered() {
+        VehicleRoute route = VehicleRoute.Builder.newInstance(small).build();
+        fleetManager.lock(small);
+        List<VehicleRoute> routes = Collections.singletonList(route);
+        int[] routeVersions = new int[2];
+        InsertionDataSlots[] slots = new InsertionDataSlots[vrp.getJobs().size() + 2];
+        slots[service.getIndex()] = new InsertionDataSlots(2);
+        InsertionDataUpdater.update(true, new HashSet<String>(), fleetManager, calculator, slots[service.getIndex()], service, routes, routeVersions);
+        assertSame(large, slots[service.getIndex()].get(0, 0).getSelectedVehicle());
+        assertSame(medium, slots[service.getIndex()].get(0, 1).getSelectedVehicle());
+
+        //both vehicles to switch to are employed by other routes now
+        fleetManager.lock(medium);
+        fleetManager.lock(large);
+        List<ScoredJob> badJobs = new ArrayList<>();
+        ScoredJob scoredJob = InsertionDataUpdater.getBest(true, new HashSet<String>(), fleetManager, calculator, new DefaultScorer(vrp),
+            slots, routes, routeVersions, Collections.<Job>singletonList(service), badJobs, null);
+        assertTrue(badJobs.isEmpty());
+        assertNotNull(scoredJob);
+        assertSame(route, scoredJob.getRoute());
+        assertSame(small, scoredJob.getInsertionData().getSelectedVehicle());
+        assertEquals(10., scoredJob.getInsertionData().getInsertionCost(), 0.);
+    }
+
+}
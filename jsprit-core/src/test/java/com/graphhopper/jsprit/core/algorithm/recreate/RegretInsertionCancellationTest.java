@@ -0,0 +1,126 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.recreate;
+
+import com.graphhopper.jsprit.core.algorithm.CancellationToken;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.driver.Driver;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.vehicle.InfiniteFleetManagerFactory;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleFleetManager;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RegretInsertionCancellationTest {
+
+    /**
+     * Cancels the token after a number of evaluations.
+     */
+    private static class CancellingCalculator implements JobInsertionCostsCalculator {
+
+        private final CancellationToken cancellationToken;
+
+        private final Vehicle vehicle;
+
+        private final int cancelAfter;
+
+        private int noEvaluations = 0;
+
+        CancellingCalculator(CancellationToken cancellationToken, Vehicle vehicle, int cancelAfter) {
+            this.cancellationToken = cancellationToken;
+            this.vehicle = vehicle;
+            this.cancelAfter = cancelAfter;
+        }
+
+        @Override
+        public synchronized InsertionData getInsertionData(VehicleRoute currentRoute, Job newJob, Vehicle newVehicle, double newVehicleDepartureTime, Driver newDriver, double bestKnownCosts) {
+            noEvaluations++;
+            if (noEvaluations == cancelAfter) cancellationToken.cancel();
+            return new InsertionData(noEvaluations, 0, 0, vehicle, null);
+        }
+
+    }
+
+    private VehicleRoutingProblem vrp;
+
+    private VehicleImpl vehicle;
+
+    private VehicleFleetManager fleetManager;
+
+    private CancellationToken cancellationToken;
+
+    private CancellingCalculator calculator;
+
+    @Before
+    public void doBefore() {
+        vehicle = VehicleImpl.Builder.newInstance("v").setStartLocation(Location.newInstance(0, 0)).build();
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance();
+        vrpBuilder.addVehicle(vehicle);
+        Random random = new Random(1);
+        for (int i = 0; i < 60; i++) {
+            vrpBuilder.addJob(Service.Builder.newInstance("s" + i).setLocation(Location.newInstance(random.nextInt(100), random.nextInt(100))).build());
+        }
+        vrp = vrpBuilder.build();
+        fleetManager = new InfiniteFleetManagerFactory(vrp.getVehicles()).createFleetManager();
+        cancellationToken = new CancellationToken();
+        calculator = new CancellingCalculator(cancellationToken, vehicle, 5);
+    }
+
+    private void assertRoundIsInterrupted(AbstractInsertionStrategy insertion) {
+        insertion.setCancellationToken(cancellationToken);
+        Collection<VehicleRoute> routes = new ArrayList<>();
+        Collection<Job> badJobs = insertion.insertJobs(routes, vrp.getJobs().values());
+        assertEquals(60, badJobs.size());
+        assertTrue(routes.isEmpty());
+        //a full round would evaluate all 60 jobs
+        assertTrue(calculator.noEvaluations < 10);
+    }
+
+    @Test
+    public void regretInsertionShouldStopWithinRound() {
+        assertRoundIsInterrupted(new RegretInsertion(calculator, vrp));
+    }
+
+    @Test
+    public void fastRegretInsertionShouldStopWithinRound() {
+        assertRoundIsInterrupted(new RegretInsertionFast(calculator, vrp, fleetManager));
+    }
+
+    @Test
+    public void concurrentRegretInsertionShouldStopWithinRound() {
+        assertRoundIsInterrupted(new RegretInsertionConcurrent(calculator, vrp, ExecutionBackends.inline()));
+    }
+
+    @Test
+    public void concurrentFastRegretInsertionShouldStopWithinRound() {
+        assertRoundIsInterrupted(new RegretInsertionConcurrentFast(calculator, vrp, ExecutionBackends.inline(), fleetManager));
+    }
+
+}
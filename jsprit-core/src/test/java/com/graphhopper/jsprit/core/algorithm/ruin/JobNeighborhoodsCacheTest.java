@@ -0,0 +1,167 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphhopper.jsprit.core.algorithm.ruin;
+
+import com.graphhopper.jsprit.core.algorithm.ruin.distance.EuclideanServiceDistance;
+import com.graphhopper.jsprit.core.algorithm.ruin.distance.JobDistance;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JobNeighborhoodsCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private JobDistance jobDistance = new EuclideanServiceDistance();
+
+    private List<Service> services;
+
+    @Before
+    public void doBefore() {
+        services = new ArrayList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 120; i++) {
+            services.add(Service.Builder.newInstance("s" + i)
+                .setLocation(Location.newInstance(random.nextDouble() * 100, random.nextDouble() * 100)).build());
+        }
+    }
+
+    private VehicleRoutingProblem createProblem(Collection<Service> services) {
+        VehicleRoutingProblem.Builder builder = VehicleRoutingProblem.Builder.newInstance();
+        for (Service service : services) builder.addJob(service);
+        return builder.build();
+    }
+
+    private void assertSameNeighborhoods(VehicleRoutingProblem vrp, JobNeighborhoods expected, JobNeighborhoods actual, int noNeighbors) {
+        for (Job job : vrp.getJobs().values()) {
+            assertEquals(toIds(expected.getNearestNeighborsIterator(noNeighbors, job)), toIds(actual.getNearestNeighborsIterator(noNeighbors, job)));
+        }
+    }
+
+    private List<String> toIds(Iterator<Job> iterator) {
+        List<String> ids = new ArrayList<>();
+        while (iterator.hasNext()) ids.add(iterator.next().getId());
+        return ids;
+    }
+
+    private JobNeighborhoods calculate(VehicleRoutingProblem vrp, int capacity) {
+        JobNeighborhoods neighborhoods = new JobNeighborhoodsOptimized(vrp, jobDistance, capacity);
+        neighborhoods.initialise();
+        return neighborhoods;
+    }
+
+    @Test
+    public void whenCacheIsEmpty_neighborhoodsShouldBeCalculatedFromScratch() {
+        VehicleRoutingProblem vrp = createProblem(services);
+        JobNeighborhoodsCache cache = new JobNeighborhoodsCache(10);
+        JobNeighborhoods neighborhoods = cache.getNeighborhoods(vrp, jobDistance);
+        assertEquals(120, cache.getNoRecalculatedRows());
+        assertEquals(120, cache.getNoRows());
+        JobNeighborhoods expected = calculate(vrp, 10);
+        assertSameNeighborhoods(vrp, expected, neighborhoods, 10);
+        assertEquals(expected.getMaxDistance(), neighborhoods.getMaxDistance(), 0.);
+    }
+
+    @Test
+    public void whenCalculatedInParallel_neighborhoodsShouldBeTheSame() {
+        VehicleRoutingProblem vrp = createProblem(services);
+        JobNeighborhoodsCache cache = new JobNeighborhoodsCache(10);
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        JobNeighborhoods neighborhoods = cache.getNeighborhoods(vrp, jobDistance, forkJoinPool);
+        forkJoinPool.shutdown();
+        assertEquals(120, cache.getNoRecalculatedRows());
+        JobNeighborhoods expected = calculate(vrp, 10);
+        assertSameNeighborhoods(vrp, expected, neighborhoods, 10);
+        assertEquals(expected.getMaxDistance(), neighborhoods.getMaxDistance(), 0.);
+    }
+
+    @Test
+    public void withoutPool_jobDistanceShouldOnlyBeCalledInCallingThread() {
+        VehicleRoutingProblem vrp = createProblem(services);
+        final Thread caller = Thread.currentThread();
+        final boolean[] calledByOtherThread = {false};
+        new JobNeighborhoodsCache(10).getNeighborhoods(vrp, new JobDistance() {
+            @Override
+            public double getDistance(Job i, Job j) {
+                if (Thread.currentThread() != caller) calledByOtherThread[0] = true;
+                return jobDistance.getDistance(i, j);
+            }
+        });
+        assertTrue(!calledByOtherThread[0]);
+    }
+
+    @Test
+    public void whenReadFromFile_neighborhoodsShouldNotBeRecalculated() throws Exception {
+        VehicleRoutingProblem vrp = createProblem(services);
+        JobNeighborhoodsCache cache = new JobNeighborhoodsCache(10);
+        cache.getNeighborhoods(vrp, jobDistance);
+        String filename = new File(tempFolder.getRoot(), "neighborhoods.bin").getAbsolutePath();
+        cache.write(filename);
+
+        JobNeighborhoodsCache readCache = JobNeighborhoodsCache.read(filename);
+        assertEquals(10, readCache.getCapacity());
+        assertEquals(120, readCache.getNoRows());
+        JobNeighborhoods neighborhoods = readCache.getNeighborhoods(createProblem(services), jobDistance);
+        assertEquals(0, readCache.getNoRecalculatedRows());
+        assertEquals(0, readCache.getNoUpdatedRows());
+        assertSameNeighborhoods(vrp, calculate(vrp, 10), neighborhoods, 10);
+    }
+
+    @Test
+    public void whenJobsAreAddedAndRemoved_onlyAffectedRowsShouldBeRecalculated() {
+        JobNeighborhoodsCache cache = new JobNeighborhoodsCache(10);
+        cache.getNeighborhoods(createProblem(services.subList(0, 100)), jobDistance);
+
+        List<Service> changed = new ArrayList<>(services.subList(5, 120));
+        VehicleRoutingProblem vrp = createProblem(changed);
+        JobNeighborhoods neighborhoods = cache.getNeighborhoods(vrp, jobDistance);
+        assertEquals(115, cache.getNoRows());
+        assertTrue(cache.getNoRecalculatedRows() < 115);
+        assertTrue(cache.getNoRecalculatedRows() >= 20);
+        assertEquals(115 - cache.getNoRecalculatedRows(), cache.getNoUpdatedRows());
+        assertSameNeighborhoods(vrp, calculate(vrp, 10), neighborhoods, 10);
+    }
+
+    @Test
+    public void whenLocationOfJobChanges_itsRowShouldBeRecalculated() {
+        JobNeighborhoodsCache cache = new JobNeighborhoodsCache(5);
+        cache.getNeighborhoods(createProblem(services), jobDistance);
+
+        List<Service> changed = new ArrayList<>(services);
+        changed.set(0, Service.Builder.newInstance("s0").setLocation(Location.newInstance(200, 200)).build());
+        VehicleRoutingProblem vrp = createProblem(changed);
+        JobNeighborhoods neighborhoods = cache.getNeighborhoods(vrp, jobDistance);
+        assertTrue(cache.getNoRecalculatedRows() >= 1);
+        assertSameNeighborhoods(vrp, calculate(vrp, 5), neighborhoods, 5);
+    }
+
+}
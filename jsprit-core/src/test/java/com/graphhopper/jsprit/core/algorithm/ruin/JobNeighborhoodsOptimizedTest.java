@@ -29,9 +29,8 @@ import junit.framework.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -158,4 +157,108 @@ public class JobNeighborhoodsOptimizedTest {
         assertEquals(0, services.size());
     }
 
+    private VehicleRoutingProblem createRandomProblem(int noJobs) {
+        VehicleRoutingProblem.Builder builder = VehicleRoutingProblem.Builder.newInstance();
+        Random random = new Random(7);
+        for (int i = 0; i < noJobs; i++) {
+            builder.addJob(Service.Builder.newInstance("s" + i).addSizeDimension(0, 1)
+                .setLocation(Location.newInstance(random.nextInt(200), random.nextInt(200))).build());
+        }
+        return builder.build();
+    }
+
+    private List<Job> getNeighborsBySorting(VehicleRoutingProblem vrp, final Job job, int noNeighbors) {
+        //ties are in the order of iteration, as it is the case in JobNeighborhoodsOptimized
+        List<Job> others = new ArrayList<>();
+        for (Job other : vrp.getJobsInclusiveInitialJobsInRoutes().values()) {
+            if (other != job) others.add(other);
+        }
+        Collections.sort(others, new Comparator<Job>() {
+            @Override
+            public int compare(Job o1, Job o2) {
+                return Double.compare(jobDistance.getDistance(job, o1), jobDistance.getDistance(job, o2));
+            }
+        });
+        return others.subList(0, noNeighbors);
+    }
+
+    private List<Job> getNeighbors(JobNeighborhoods jn, Job job, int noNeighbors) {
+        List<Job> neighbors = new ArrayList<>();
+        Iterator<Job> iter = jn.getNearestNeighborsIterator(noNeighbors, job);
+        while (iter.hasNext()) neighbors.add(iter.next());
+        return neighbors;
+    }
+
+    @Test
+    public void whenCalculatedInParallel_neighborhoodsShouldBeTheSameAsBySorting() {
+        VehicleRoutingProblem vrp = createRandomProblem(500);
+        JobNeighborhoodsOptimized jn = new JobNeighborhoodsOptimized(vrp, jobDistance, 10);
+        jn.setForkJoinPool(new ForkJoinPool(4));
+        jn.initialise();
+        double maxDistance = 0.;
+        for (Job job : vrp.getJobs().values()) {
+            assertEquals(getNeighborsBySorting(vrp, job, 10), getNeighbors(jn, job, 10));
+            for (Job other : vrp.getJobs().values()) maxDistance = Math.max(maxDistance, jobDistance.getDistance(job, other));
+        }
+        assertEquals(maxDistance, jn.getMaxDistance(), 0.);
+    }
+
+    @Test
+    public void whenCalculatedWithSpatialIndex_neighborhoodsShouldBeTheSameAsBySorting() {
+        VehicleRoutingProblem vrp = createRandomProblem(500);
+        JobNeighborhoodsOptimized jn = new JobNeighborhoodsOptimized(vrp, jobDistance, 10);
+        jn.setSpatialIndex(true);
+        jn.initialise();
+        for (Job job : vrp.getJobs().values()) {
+            assertEquals(getNeighborsBySorting(vrp, job, 10), getNeighbors(jn, job, 10));
+        }
+        assertTrue(jn.getMaxDistance() > 0.);
+    }
+
+    @Test
+    public void whenCalculatedWithSpatialIndex_maxDistanceShouldBeInUnitsOfJobDistance() {
+        VehicleRoutingProblem vrp = createRandomProblem(500);
+        //proportional to the euclidean distance, but not equal to it
+        JobDistance scaledDistance = new JobDistance() {
+            @Override
+            public double getDistance(Job i, Job j) {
+                return 10. * jobDistance.getDistance(i, j);
+            }
+        };
+        JobNeighborhoodsOptimized jn = new JobNeighborhoodsOptimized(vrp, scaledDistance, 10);
+        jn.setSpatialIndex(true);
+        jn.initialise();
+        double maxDistance = 0.;
+        for (Job job : vrp.getJobs().values()) {
+            for (Job other : vrp.getJobs().values()) maxDistance = Math.max(maxDistance, scaledDistance.getDistance(job, other));
+        }
+        assertTrue(jn.getMaxDistance() <= maxDistance);
+        assertTrue(jn.getMaxDistance() >= 0.9 * maxDistance);
+    }
+
+    @Test
+    public void byDefault_jobDistanceShouldOnlyBeCalledInCallingThread() {
+        VehicleRoutingProblem vrp = createRandomProblem(500);
+        final Thread caller = Thread.currentThread();
+        final boolean[] calledByOtherThread = {false};
+        JobNeighborhoodsOptimized jn = new JobNeighborhoodsOptimized(vrp, new JobDistance() {
+            @Override
+            public double getDistance(Job i, Job j) {
+                if (Thread.currentThread() != caller) calledByOtherThread[0] = true;
+                return jobDistance.getDistance(i, j);
+            }
+        }, 10);
+        jn.initialise();
+        assertTrue(!calledByOtherThread[0]);
+    }
+
+    @Test
+    public void whenSpatialIndexIsUsed_smallNeighborhoodsShouldStillBeCorrect() {
+        JobNeighborhoodsOptimized jn = new JobNeighborhoodsOptimized(vrp, jobDistance, 4);
+        jn.setSpatialIndex(true);
+        jn.initialise();
+        List<Job> neighbors = getNeighbors(jn, s7, 4);
+        assertEquals(Arrays.<Job>asList(s6, s5, target, s2), neighbors);
+    }
+
 }
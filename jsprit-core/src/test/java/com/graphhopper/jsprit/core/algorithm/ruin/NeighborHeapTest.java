@@ -0,0 +1,64 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphhopper.jsprit.core.algorithm.ruin;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class NeighborHeapTest {
+
+    @Test
+    public void heapShouldKeepNearestItemsInAscendingOrder() {
+        NeighborHeap heap = new NeighborHeap(3);
+        double[] distances = {5., 1., 4., 2., 8., 3.};
+        for (int item = 0; item < distances.length; item++) heap.offer(distances[item], item);
+        assertEquals(3., heap.getMaxDistance(), 0.);
+        int[] nearest = new int[3];
+        assertEquals(3, heap.drainSorted(nearest));
+        assertArrayEquals(new int[]{1, 3, 5}, nearest);
+        assertEquals(0, heap.size());
+    }
+
+    @Test
+    public void tiesShouldBeBrokenByItem() {
+        NeighborHeap heap = new NeighborHeap(2);
+        heap.offer(1., 4);
+        heap.offer(1., 2);
+        heap.offer(1., 3);
+        heap.offer(1., 0);
+        int[] nearest = new int[2];
+        heap.drainSorted(nearest);
+        assertArrayEquals(new int[]{0, 2}, nearest);
+    }
+
+    @Test
+    public void whenHeapIsNotFull_itShouldReturnAllItems() {
+        NeighborHeap heap = new NeighborHeap(5);
+        heap.offer(3., 0);
+        heap.offer(1., 1);
+        assertEquals(Double.MAX_VALUE, heap.getMaxDistance(), 0.);
+        int[] nearest = new int[5];
+        assertEquals(2, heap.drainSorted(nearest));
+        assertEquals(1, nearest[0]);
+        assertEquals(0, nearest[1]);
+    }
+
+}
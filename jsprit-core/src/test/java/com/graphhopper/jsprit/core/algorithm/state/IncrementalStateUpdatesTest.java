@@ -0,0 +1,237 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.state;
+
+import com.graphhopper.jsprit.core.problem.AbstractActivity;
+import com.graphhopper.jsprit.core.problem.Capacity;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.*;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TimeWindow;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import com.graphhopper.jsprit.core.util.ActivityTimeTracker;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that incremental state updates on job insertion lead to the same states as updating the complete route.
+ */
+public class IncrementalStateUpdatesTest {
+
+    private static class CountingVisitor implements ResumableActivityVisitor {
+
+        int noVisits;
+
+        @Override
+        public boolean begin(VehicleRoute route, int fromIndex) {
+            return true;
+        }
+
+        @Override
+        public void begin(VehicleRoute route) {
+        }
+
+        @Override
+        public void visit(TourActivity activity) {
+            noVisits++;
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    private static class CountingReverseVisitor implements ConvergingReverseActivityVisitor {
+
+        int noVisits;
+
+        @Override
+        public boolean visitAndDetectChange(TourActivity activity) {
+            noVisits++;
+            return false;
+        }
+
+        @Override
+        public void begin(VehicleRoute route) {
+        }
+
+        @Override
+        public void visit(TourActivity activity) {
+            noVisits++;
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    private VehicleRoutingProblem vrp;
+
+    private VehicleImpl vehicle;
+
+    private List<Job> jobs;
+
+    @Before
+    public void doBefore() {
+        VehicleTypeImpl type = VehicleTypeImpl.Builder.newInstance("type").addCapacityDimension(0, 1000).build();
+        vehicle = VehicleImpl.Builder.newInstance("v").setType(type).setStartLocation(Location.newInstance(0, 0))
+            .setEarliestStart(0).setLatestArrival(10000).build();
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance().addVehicle(vehicle);
+        Random random = new Random(42);
+        for (int i = 0; i < 60; i++) {
+            Location location = Location.newInstance(random.nextInt(100), random.nextInt(100));
+            double start = random.nextInt(2000);
+            TimeWindow timeWindow = TimeWindow.newInstance(start, start + 100 + random.nextInt(500));
+            int size = 1 + random.nextInt(5);
+            switch (i % 4) {
+                case 0:
+                    vrpBuilder.addJob(Service.Builder.newInstance("s" + i).addSizeDimension(0, size).setLocation(location)
+                        .setTimeWindow(timeWindow).setServiceTime(5).build());
+                    break;
+                case 1:
+                    vrpBuilder.addJob(Pickup.Builder.newInstance("p" + i).addSizeDimension(0, size).setLocation(location)
+                        .setTimeWindow(timeWindow).build());
+                    break;
+                case 2:
+                    vrpBuilder.addJob(Delivery.Builder.newInstance("d" + i).addSizeDimension(0, size).setLocation(location)
+                        .setTimeWindow(timeWindow).build());
+                    break;
+                default:
+                    vrpBuilder.addJob(Shipment.Builder.newInstance("sh" + i).addSizeDimension(0, size).setPickupLocation(location)
+                        .setDeliveryLocation(Location.newInstance(random.nextInt(100), random.nextInt(100))).build());
+            }
+        }
+        vrp = vrpBuilder.build();
+        jobs = new ArrayList<>(vrp.getJobs().values());
+        Collections.sort(jobs, new Comparator<Job>() {
+            @Override
+            public int compare(Job o1, Job o2) {
+                return o1.getId().compareTo(o2.getId());
+            }
+        });
+    }
+
+    private StateManager createStateManager(boolean incremental) {
+        StateManager stateManager = new StateManager(vrp);
+        stateManager.setIncrementalStateUpdates(incremental);
+        stateManager.updateLoadStates();
+        stateManager.addStateUpdater(new UpdateActivityTimes(vrp.getTransportCosts(), ActivityTimeTracker.ActivityPolicy.AS_SOON_AS_TIME_WINDOW_OPENS, vrp.getActivityCosts()));
+        stateManager.addStateUpdater(new UpdateVariableCosts(vrp.getActivityCosts(), vrp.getTransportCosts(), stateManager));
+        stateManager.addStateUpdater(new UpdateFutureWaitingTimes(stateManager, vrp.getTransportCosts()));
+        stateManager.addStateUpdater(new UpdatePracticalTimeWindows(stateManager, vrp.getTransportCosts(), vrp.getActivityCosts()));
+        return stateManager;
+    }
+
+    private void insert(VehicleRoute route, Job job, int pickupIndex, int deliveryIndex) {
+        List<AbstractActivity> acts = vrp.copyAndGetActivities(job);
+        route.getTourActivities().addActivity(pickupIndex, acts.get(0));
+        if (acts.size() > 1) route.getTourActivities().addActivity(deliveryIndex, acts.get(1));
+    }
+
+    private void assertSameStates(VehicleRoute expectedRoute, StateManager expected, VehicleRoute route, StateManager actual) {
+        List<TourActivity> expectedActs = expectedRoute.getActivities();
+        List<TourActivity> acts = route.getActivities();
+        assertEquals(expectedActs.size(), acts.size());
+        for (int i = 0; i < acts.size(); i++) {
+            TourActivity expectedAct = expectedActs.get(i);
+            TourActivity act = acts.get(i);
+            assertEquals(expectedAct.getArrTime(), act.getArrTime(), 0.);
+            assertEquals(expectedAct.getEndTime(), act.getEndTime(), 0.);
+            assertEquals(expected.getActivityState(expectedAct, InternalStates.LOAD, Capacity.class), actual.getActivityState(act, InternalStates.LOAD, Capacity.class));
+            assertEquals(expected.getActivityState(expectedAct, InternalStates.PAST_MAXLOAD, Capacity.class), actual.getActivityState(act, InternalStates.PAST_MAXLOAD, Capacity.class));
+            assertEquals(expected.getActivityState(expectedAct, InternalStates.FUTURE_MAXLOAD, Capacity.class), actual.getActivityState(act, InternalStates.FUTURE_MAXLOAD, Capacity.class));
+            assertEquals(expected.getActivityDoubleState(expectedAct, InternalStates.LATEST_OPERATION_START_TIME, -1), actual.getActivityDoubleState(act, InternalStates.LATEST_OPERATION_START_TIME, -1), 0.);
+            assertEquals(expected.getActivityDoubleState(expectedAct, vehicle, InternalStates.FUTURE_WAITING, -1), actual.getActivityDoubleState(act, vehicle, InternalStates.FUTURE_WAITING, -1), 0.);
+            assertEquals(expected.getActivityDoubleState(expectedAct, InternalStates.COSTS, -1), actual.getActivityDoubleState(act, InternalStates.COSTS, -1), 0.);
+        }
+        assertEquals(expectedRoute.getEnd().getArrTime(), route.getEnd().getArrTime(), 0.);
+        assertEquals(expected.getRouteState(expectedRoute, InternalStates.MAXLOAD, Capacity.class), actual.getRouteState(route, InternalStates.MAXLOAD, Capacity.class));
+        assertEquals(expected.getRouteDoubleState(expectedRoute, InternalStates.COSTS, -1), actual.getRouteDoubleState(route, InternalStates.COSTS, -1), 0.);
+    }
+
+    @Test
+    public void whenJobsAreInsertedAtRandomPositions_incrementalStatesShouldEqualCompleteUpdates() {
+        StateManager expected = createStateManager(false);
+        StateManager actual = createStateManager(true);
+        VehicleRoute expectedRoute = VehicleRoute.Builder.newInstance(vehicle).build();
+        VehicleRoute route = VehicleRoute.Builder.newInstance(vehicle).build();
+        expected.informInsertionStarts(Arrays.asList(expectedRoute), Collections.<Job>emptyList());
+        actual.informInsertionStarts(Arrays.asList(route), Collections.<Job>emptyList());
+
+        Random random = new Random(1);
+        for (Job job : jobs) {
+            int noActs = route.getActivities().size();
+            int pickupIndex = random.nextInt(noActs + 1);
+            int deliveryIndex = pickupIndex + 1 + random.nextInt(noActs - pickupIndex + 1);
+            insert(expectedRoute, job, pickupIndex, deliveryIndex);
+            insert(route, job, pickupIndex, deliveryIndex);
+            expected.informJobInserted(job, expectedRoute, 0, 0);
+            actual.informJobInserted(job, route, 0, 0);
+            assertSameStates(expectedRoute, expected, route, actual);
+        }
+    }
+
+    @Test
+    public void whenJobIsAppended_resumableVisitorShouldOnlyVisitNewActivityAndConvergingVisitorShouldStop() {
+        StateManager stateManager = createStateManager(true);
+        CountingVisitor visitor = new CountingVisitor();
+        CountingReverseVisitor reverseVisitor = new CountingReverseVisitor();
+        stateManager.addStateUpdater(visitor);
+        stateManager.addStateUpdater(reverseVisitor);
+        VehicleRoute route = VehicleRoute.Builder.newInstance(vehicle).build();
+        stateManager.informInsertionStarts(Arrays.asList(route), Collections.<Job>emptyList());
+        for (int i = 0; i < 10; i++) {
+            insert(route, jobs.get(i), route.getActivities().size(), route.getActivities().size() + 1);
+            stateManager.informJobInserted(jobs.get(i), route, 0, 0);
+        }
+        int noActs = route.getActivities().size();
+        visitor.noVisits = 0;
+        reverseVisitor.noVisits = 0;
+        Job job = vrp.getJobs().get("s0");
+        insert(route, job, noActs, noActs + 1);
+        stateManager.informJobInserted(job, route, 0, 0);
+        assertEquals(1, visitor.noVisits);
+        assertEquals(2, reverseVisitor.noVisits);
+    }
+
+    @Test
+    public void whenIncrementalUpdatesAreDisabled_allActivitiesShouldBeVisited() {
+        StateManager stateManager = createStateManager(false);
+        CountingVisitor visitor = new CountingVisitor();
+        stateManager.addStateUpdater(visitor);
+        VehicleRoute route = VehicleRoute.Builder.newInstance(vehicle).build();
+        stateManager.informInsertionStarts(Arrays.asList(route), Collections.<Job>emptyList());
+        for (int i = 0; i < 10; i++) {
+            insert(route, jobs.get(i), route.getActivities().size(), route.getActivities().size() + 1);
+            stateManager.informJobInserted(jobs.get(i), route, 0, 0);
+        }
+        visitor.noVisits = 0;
+        Job job = vrp.getJobs().get("s0");
+        insert(route, job, 0, 1);
+        stateManager.informJobInserted(job, route, 0, 0);
+        assertEquals(route.getActivities().size(), visitor.noVisits);
+    }
+
+}
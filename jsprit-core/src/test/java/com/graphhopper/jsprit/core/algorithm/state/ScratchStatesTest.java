@@ -0,0 +1,179 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.algorithm.state;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ScratchStatesTest {
+
+    private VehicleRoutingProblem vrp;
+
+    private VehicleImpl vehicle;
+
+    private VehicleImpl otherVehicle;
+
+    private VehicleRoute route;
+
+    private StateManager stateManager;
+
+    private StateId stateId;
+
+    private StateId doubleStateId;
+
+    @Before
+    public void doBefore() {
+        vehicle = VehicleImpl.Builder.newInstance("v").setStartLocation(Location.newInstance(0, 0))
+            .setType(VehicleTypeImpl.Builder.newInstance("t1").build()).build();
+        otherVehicle = VehicleImpl.Builder.newInstance("v2").setStartLocation(Location.newInstance(0, 0))
+            .setType(VehicleTypeImpl.Builder.newInstance("t2").build()).build();
+        VehicleRoutingProblem.Builder vrpBuilder = VehicleRoutingProblem.Builder.newInstance().addVehicle(vehicle).addVehicle(otherVehicle);
+        for (int i = 0; i < 100; i++) {
+            vrpBuilder.addJob(Service.Builder.newInstance("s" + i).setLocation(Location.newInstance(i, i)).build());
+        }
+        vrp = vrpBuilder.build();
+        VehicleRoute.Builder routeBuilder = VehicleRoute.Builder.newInstance(vehicle).setJobActivityFactory(vrp.getJobActivityFactory());
+        for (int i = 0; i < 100; i++) routeBuilder.addService((Service) vrp.getJobs().get("s" + i));
+        route = routeBuilder.build();
+        stateManager = new StateManager(vrp);
+        stateId = stateManager.createStateId("scratch");
+        doubleStateId = stateManager.createDoubleStateId("scratch_double");
+    }
+
+    @Test
+    public void whenStatesArePut_theyShouldBeVehicleDependent() {
+        ScratchStates scratch = stateManager.getScratchStates();
+        TourActivity act = route.getActivities().get(0);
+        scratch.putActivityDoubleState(act, vehicle, doubleStateId, 1.);
+        scratch.putActivityDoubleState(act, otherVehicle, doubleStateId, 2.);
+        scratch.putActivityState(act, null, stateId, "independent");
+        scratch.putRouteState(route, vehicle, stateId, "route");
+        scratch.putRouteDoubleState(route, null, doubleStateId, 3.);
+        assertEquals(1., scratch.getActivityDoubleState(act, vehicle, doubleStateId, -1), 0.);
+        assertEquals(2., scratch.getActivityDoubleState(act, otherVehicle, doubleStateId, -1), 0.);
+        assertEquals(-1., scratch.getActivityDoubleState(act, null, doubleStateId, -1), 0.);
+        assertEquals("independent", scratch.getActivityState(act, null, stateId, String.class));
+        assertNull(scratch.getActivityState(act, vehicle, stateId, String.class));
+        assertEquals("route", scratch.getRouteState(route, vehicle, stateId, String.class));
+        assertNull(scratch.getRouteState(route, otherVehicle, stateId, String.class));
+        assertEquals(3., scratch.getRouteDoubleState(route, null, doubleStateId, -1), 0.);
+        assertEquals(5, scratch.size());
+    }
+
+    @Test
+    public void whenManyStatesArePut_allShouldBeRetrievable() {
+        ScratchStates scratch = stateManager.getScratchStates();
+        for (TourActivity act : route.getActivities()) {
+            scratch.putActivityDoubleState(act, vehicle, doubleStateId, act.getIndex());
+            scratch.putActivityDoubleState(act, otherVehicle, doubleStateId, -act.getIndex());
+        }
+        assertEquals(200, scratch.size());
+        for (TourActivity act : route.getActivities()) {
+            assertEquals(act.getIndex(), scratch.getActivityDoubleState(act, vehicle, doubleStateId, 0), 0.);
+            assertEquals(-act.getIndex(), scratch.getActivityDoubleState(act, otherVehicle, doubleStateId, 0), 0.);
+        }
+    }
+
+    @Test
+    public void whenWritePhaseStarts_scratchStatesShouldBeDropped() {
+        ScratchStates scratch = stateManager.getScratchStates();
+        TourActivity act = route.getActivities().get(0);
+        scratch.putActivityDoubleState(act, vehicle, doubleStateId, 1.);
+        scratch.putRouteState(route, vehicle, stateId, "route");
+        stateManager.informInsertionStarts(Arrays.asList(route), Collections.<Job>emptyList());
+        assertEquals(0, scratch.size());
+        assertEquals(-1., scratch.getActivityDoubleState(act, vehicle, doubleStateId, -1), 0.);
+        assertNull(scratch.getRouteState(route, vehicle, stateId, String.class));
+
+        scratch.putActivityDoubleState(act, vehicle, doubleStateId, 2.);
+        stateManager.informJobInserted(route.getTourActivities().getJobs().iterator().next(), route, 0, 0);
+        assertEquals(-1., scratch.getActivityDoubleState(act, vehicle, doubleStateId, -1), 0.);
+    }
+
+    @Test
+    public void scratchStatesOfLivingThreadShouldNotKeepStateManagerReachable() throws InterruptedException {
+        final CountDownLatch used = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<StateManager> otherStateManager = new AtomicReference<>(new StateManager(vrp));
+        WeakReference<StateManager> reference = new WeakReference<>(otherStateManager.get());
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                otherStateManager.getAndSet(null).getScratchStates().putRouteState(route, vehicle, stateId, "route");
+                used.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        });
+        thread.start();
+        used.await();
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        done.countDown();
+        thread.join();
+        assertNull(reference.get());
+    }
+
+    @Test
+    public void eachThreadShouldGetItsOwnScratchStates() throws InterruptedException {
+        final ScratchStates scratch = stateManager.getScratchStates();
+        assertSame(scratch, stateManager.getScratchStates());
+        final TourActivity act = route.getActivities().get(0);
+        scratch.putActivityDoubleState(act, vehicle, doubleStateId, 1.);
+        final AtomicReference<ScratchStates> otherScratch = new AtomicReference<>();
+        final AtomicReference<Double> otherValue = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                otherScratch.set(stateManager.getScratchStates());
+                otherValue.set(stateManager.getScratchStates().getActivityDoubleState(act, vehicle, doubleStateId, -1));
+            }
+
+        });
+        thread.start();
+        thread.join();
+        assertNotSame(scratch, otherScratch.get());
+        assertEquals(-1., otherValue.get(), 0.);
+        assertEquals(1., scratch.getActivityDoubleState(act, vehicle, doubleStateId, -1), 0.);
+    }
+
+}
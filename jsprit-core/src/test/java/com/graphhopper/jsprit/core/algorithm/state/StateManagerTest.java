@@ -32,6 +32,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -356,4 +358,192 @@ public class StateManagerTest {
         }
         stateManager.putTypedInternalRouteState(route,myState,1.);
     }
+
+    @Test
+    public void whenActivityDoubleStateIsSet_itMustBeSetCorrectly() {
+        TourActivity activity = mock(TourActivity.class);
+        when(activity.getIndex()).thenReturn(1);
+        StateManager stateManager = new StateManager(vrpMock);
+        StateId id = stateManager.createDoubleStateId("myDoubleState");
+        stateManager.putActivityDoubleState(activity, id, 3.);
+        assertEquals(3., stateManager.getActivityDoubleState(activity, id, 0.), 0.01);
+        assertEquals(3., stateManager.getActivityState(activity, id, Double.class), 0.01);
+    }
+
+    @Test
+    public void whenActivityDoubleStateIsNotSet_itShouldReturnDefault() {
+        TourActivity activity = mock(TourActivity.class);
+        when(activity.getIndex()).thenReturn(1);
+        StateManager stateManager = new StateManager(vrpMock);
+        StateId id = stateManager.createDoubleStateId("myDoubleState");
+        assertEquals(5., stateManager.getActivityDoubleState(activity, id, 5.), 0.01);
+        assertNull(stateManager.getActivityState(activity, id, Double.class));
+    }
+
+    @Test
+    public void whenVehicleDependentDoubleStatesAreSet_theyMustBeSetCorrectly() {
+        VehicleType type = VehicleTypeImpl.Builder.newInstance("t").setCostPerDistance(4.).build();
+        VehicleImpl vehicle = VehicleImpl.Builder.newInstance("v").setStartLocation(Location.newInstance("loc")).build();
+        VehicleImpl vehicle2 = VehicleImpl.Builder.newInstance("v2").setStartLocation(Location.newInstance("loc")).setType(type).build();
+        VehicleRoutingProblem vrp = VehicleRoutingProblem.Builder.newInstance().addVehicle(vehicle).addVehicle(vehicle2).build();
+        VehicleRoute route = getRoute(vehicle);
+        TourActivity act = mock(TourActivity.class);
+        when(act.getIndex()).thenReturn(1);
+
+        StateManager stateManager = new StateManager(vrp);
+        StateId id = stateManager.createDoubleStateId("vehicleParam");
+        stateManager.putActivityDoubleState(act, vehicle, id, 1.);
+        stateManager.putActivityDoubleState(act, vehicle2, id, 4.);
+        stateManager.putRouteDoubleState(route, vehicle, id, 2.);
+        stateManager.putRouteDoubleState(route, vehicle2, id, 8.);
+
+        assertEquals(1., stateManager.getActivityDoubleState(act, vehicle, id, 0.), 0.01);
+        assertEquals(4., stateManager.getActivityDoubleState(act, vehicle2, id, 0.), 0.01);
+        assertEquals(2., stateManager.getRouteDoubleState(route, vehicle, id, 0.), 0.01);
+        assertEquals(8., stateManager.getRouteDoubleState(route, vehicle2, id, 0.), 0.01);
+        assertTrue(stateManager.hasActivityState(act, vehicle, id));
+        assertTrue(stateManager.hasRouteState(route, vehicle2, id));
+    }
+
+    @Test
+    public void whenClearing_doubleStatesShouldBeRemoved() {
+        VehicleRoute route = getRoute(mock(Vehicle.class));
+        TourActivity act = mock(TourActivity.class);
+        when(act.getIndex()).thenReturn(1);
+        StateManager stateManager = new StateManager(vrpMock);
+        StateId id = stateManager.createDoubleStateId("myDoubleState");
+        stateManager.putActivityDoubleState(act, id, 1.);
+        stateManager.putRouteDoubleState(route, id, 2.);
+
+        stateManager.clear();
+
+        assertEquals(-1., stateManager.getActivityDoubleState(act, id, -1.), 0.01);
+        assertEquals(-1., stateManager.getRouteDoubleState(route, id, -1.), 0.01);
+    }
+
+    @Test
+    public void whenRouteDoubleStateIsReadWithOrdinaryStateId_itShouldBeReadFromOrdinaryState() {
+        VehicleRoute route = getRoute(mock(Vehicle.class));
+        StateManager stateManager = new StateManager(vrpMock);
+        StateId id = stateManager.createStateId("myState");
+        stateManager.putRouteDoubleState(route, id, 2.);
+        assertEquals(2., stateManager.getRouteState(route, id, Double.class), 0.01);
+        assertEquals(2., stateManager.getRouteDoubleState(route, id, 0.), 0.01);
+    }
+
+    @Test
+    public void whenCreatingManyDoubleStates_theyShouldHaveConsecutiveIndices() {
+        StateManager stateManager = new StateManager(vrpMock);
+        StateId first = stateManager.createDoubleStateId("double-state-0");
+        StateId last = null;
+        for (int i = 1; i < 20; i++) {
+            last = stateManager.createDoubleStateId("double-state-" + i);
+        }
+        Assert.assertEquals(first.getIndex() + 19, last.getIndex());
+        Assert.assertSame(first, stateManager.createDoubleStateId("double-state-0"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenCreatingDoubleStateWithNameOfOrdinaryState_itShouldThrowException() {
+        StateManager stateManager = new StateManager(vrpMock);
+        stateManager.createStateId("foo-state");
+        stateManager.createDoubleStateId("foo-state");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenPuttingInternalDoubleStateFromOutside_itShouldThrowException() {
+        TourActivity act = mock(TourActivity.class);
+        when(act.getIndex()).thenReturn(1);
+        StateManager stateManager = new StateManager(vrpMock);
+        stateManager.putActivityDoubleState(act, InternalStates.COSTS, 1.);
+    }
+
+    @Test
+    public void whenManyRoutesGetStates_slotsShouldGrowAndKeepStates() {
+        StateManager stateManager = new StateManager(vrpMock);
+        StateId id = stateManager.createStateId("myState");
+        List<VehicleRoute> routes = new ArrayList<VehicleRoute>();
+        for (int i = 0; i < 100; i++) {
+            VehicleRoute route = getRoute(mock(Vehicle.class));
+            stateManager.putRouteState(route, id, i);
+            stateManager.putTypedInternalRouteState(route, InternalStates.COSTS, (double) i);
+            routes.add(route);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) stateManager.getRouteState(routes.get(i), id, Integer.class));
+            assertEquals(i, stateManager.getRouteDoubleState(routes.get(i), InternalStates.COSTS, -1.), 0.01);
+        }
+    }
+
+    @Test
+    public void whenRouteIsEmptyAtInsertionEnd_itsSlotShouldBeRecycled() {
+        StateManager stateManager = new StateManager(vrpMock);
+        StateId id = stateManager.createStateId("myState");
+        VehicleRoute emptyRoute = VehicleRoute.emptyRoute();
+        stateManager.putRouteState(emptyRoute, id, true);
+        int slot = stateManager.getRouteSlot(emptyRoute);
+
+        stateManager.informInsertionEnds(Arrays.asList(emptyRoute), Collections.<Job>emptyList());
+
+        assertNull(stateManager.getRouteState(emptyRoute, id, Boolean.class));
+        VehicleRoute route = getRoute(mock(Vehicle.class));
+        assertNull(stateManager.getRouteState(route, id, Boolean.class));
+        stateManager.putRouteState(route, id, false);
+        assertEquals(-1, stateManager.getRouteSlot(emptyRoute));
+        assertEquals(slot, stateManager.getRouteSlot(route));
+        assertFalse(stateManager.getRouteState(route, id, Boolean.class));
+    }
+
+    @Test
+    public void whenTwoStateManagersMemorizeStatesOfSameRoute_theyShouldNotInterfere() {
+        VehicleRoute otherRoute = getRoute(mock(Vehicle.class));
+        VehicleRoute route = getRoute(mock(Vehicle.class));
+        StateManager stateManager = new StateManager(vrpMock);
+        StateManager otherStateManager = new StateManager(vrpMock);
+        StateId id = stateManager.createStateId("myState");
+        StateId otherId = otherStateManager.createStateId("myState");
+
+        stateManager.putRouteState(otherRoute, id, 1);
+        stateManager.putRouteState(route, id, 2);
+        otherStateManager.putRouteState(route, otherId, 3);
+
+        assertEquals(2, (int) stateManager.getRouteState(route, id, Integer.class));
+        assertEquals(3, (int) otherStateManager.getRouteState(route, otherId, Integer.class));
+        assertEquals(1, (int) stateManager.getRouteState(otherRoute, id, Integer.class));
+        assertNull(otherStateManager.getRouteState(otherRoute, otherId, Integer.class));
+    }
+
+    @Test
+    public void readingRouteState_shouldNotAssignSlot() {
+        VehicleRoute route = getRoute(mock(Vehicle.class));
+        StateManager stateManager = new StateManager(vrpMock);
+        StateId id = stateManager.createStateId("myState");
+
+        assertNull(stateManager.getRouteState(route, id, Integer.class));
+        assertEquals(-1, stateManager.getRouteSlot(route));
+    }
+
+    @Test
+    public void copyOfRoute_shouldNotShareSlotWithOriginal() {
+        VehicleRoute route = getRoute(mock(Vehicle.class));
+        StateManager stateManager = new StateManager(vrpMock);
+        StateId id = stateManager.createStateId("myState");
+        stateManager.putRouteState(route, id, 1);
+
+        VehicleRoute copy = VehicleRoute.copyOf(route);
+
+        assertEquals(-1, stateManager.getRouteSlot(copy));
+        assertNull(stateManager.getRouteState(copy, id, Integer.class));
+        assertEquals(1, (int) stateManager.getRouteState(route, id, Integer.class));
+    }
+
+    @Test
+    public void whenClearing_routeStatesShouldBeRemoved() {
+        VehicleRoute route = getRoute(mock(Vehicle.class));
+        StateManager stateManager = new StateManager(vrpMock);
+        StateId id = stateManager.createStateId("myState");
+        stateManager.putRouteState(route, id, true);
+        stateManager.clear();
+        assertNull(stateManager.getRouteState(route, id, Boolean.class));
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.problem.solution;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class IncrementalSolutionCostCalculatorTest {
+
+    private static class CountingCostCalculator extends IncrementalSolutionCostCalculator {
+
+        int noRouteCalculations;
+
+        double costsPerActivity = 1.;
+
+        @Override
+        protected double getRouteCosts(VehicleRoute route) {
+            noRouteCalculations++;
+            return 10. + costsPerActivity * route.getActivities().size();
+        }
+
+        @Override
+        protected double getUnassignedJobCosts(Collection<Job> unassignedJobs) {
+            return 100. * unassignedJobs.size();
+        }
+    }
+
+    private VehicleImpl vehicle;
+
+    private List<Service> services;
+
+    private VehicleRoutingProblemSolution solution;
+
+    @Before
+    public void doBefore() {
+        vehicle = VehicleImpl.Builder.newInstance("v").setStartLocation(Location.newInstance(0, 0)).build();
+        services = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            services.add(Service.Builder.newInstance("s" + i).setLocation(Location.newInstance(i, i)).build());
+        }
+        List<VehicleRoute> routes = new ArrayList<>();
+        routes.add(VehicleRoute.Builder.newInstance(vehicle).addService(services.get(0)).addService(services.get(1)).build());
+        routes.add(VehicleRoute.Builder.newInstance(vehicle).addService(services.get(2)).build());
+        routes.add(VehicleRoute.Builder.newInstance(vehicle).addService(services.get(3)).addService(services.get(4)).build());
+        List<Job> unassigned = new ArrayList<>();
+        unassigned.add(services.get(5));
+        solution = new VehicleRoutingProblemSolution(routes, unassigned, 0.);
+    }
+
+    @Test
+    public void whenSolutionIsCopiedWithoutChanges_routeCostsShouldNotBeRecalculated() {
+        CountingCostCalculator calculator = new CountingCostCalculator();
+        assertEquals(3 * 10. + 5. + 100., calculator.getCosts(solution), 0.);
+        assertEquals(3, calculator.noRouteCalculations);
+
+        VehicleRoutingProblemSolution copy = VehicleRoutingProblemSolution.copyOnWriteOf(solution);
+        assertEquals(3 * 10. + 5. + 100., calculator.getCosts(copy), 0.);
+        assertEquals(3, calculator.noRouteCalculations);
+        assertEquals(3, calculator.getNoMemorizedRoutes());
+    }
+
+    @Test
+    public void whenRouteOfCopyIsModified_onlyThisRouteShouldBeRecalculated() {
+        CountingCostCalculator calculator = new CountingCostCalculator();
+        calculator.getCosts(solution);
+        VehicleRoutingProblemSolution copy = VehicleRoutingProblemSolution.copyOnWriteOf(solution);
+        VehicleRoute route = copy.getRoutes().iterator().next();
+        route.getTourActivities().removeJob(services.get(0));
+        copy.getUnassignedJobs().add(services.get(0));
+
+        assertEquals(3 * 10. + 4. + 200., calculator.getCosts(copy), 0.);
+        assertEquals(4, calculator.noRouteCalculations);
+        assertEquals(4, calculator.getNoCalculatedRoutes());
+        //the original remains unchanged
+        assertEquals(3 * 10. + 5. + 100., calculator.getCosts(solution), 0.);
+        assertEquals(4, calculator.noRouteCalculations);
+    }
+
+    @Test
+    public void whenRouteIsModifiedInPlace_itShouldBeRecalculated() {
+        CountingCostCalculator calculator = new CountingCostCalculator();
+        calculator.getCosts(solution);
+        VehicleRoute route = solution.getRoutes().iterator().next();
+        route.getTourActivities().removeJob(services.get(1));
+
+        assertEquals(3 * 10. + 4. + 100., calculator.getCosts(solution), 0.);
+        assertEquals(4, calculator.noRouteCalculations);
+    }
+
+    @Test
+    public void whenSolutionIsEvaluatedAfterManyOthers_itsMemorizedCostsShouldBeDropped() {
+        CountingCostCalculator calculator = new CountingCostCalculator();
+        calculator.getCosts(solution);
+        for (int i = 0; i < 100; i++) {
+            calculator.getCosts(VehicleRoutingProblemSolution.copyOf(solution));
+        }
+        assertEquals(303, calculator.noRouteCalculations);
+
+        assertEquals(3 * 10. + 5. + 100., calculator.getCosts(VehicleRoutingProblemSolution.copyOnWriteOf(solution)), 0.);
+        assertEquals(306, calculator.noRouteCalculations);
+    }
+
+    @Test
+    public void whenVehicleChanges_routeShouldBeRecalculated() {
+        CountingCostCalculator calculator = new CountingCostCalculator();
+        calculator.getCosts(solution);
+        VehicleRoutingProblemSolution copy = VehicleRoutingProblemSolution.copyOnWriteOf(solution);
+        VehicleImpl otherVehicle = VehicleImpl.Builder.newInstance("v2").setStartLocation(Location.newInstance(0, 0)).build();
+        copy.getRoutes().iterator().next().setVehicleAndDepartureTime(otherVehicle, 0.);
+        calculator.getCosts(copy);
+        assertEquals(4, calculator.noRouteCalculations);
+    }
+
+    @Test
+    public void whenCostsDrift_verificationShouldDetectAndCorrectIt() {
+        CountingCostCalculator calculator = new CountingCostCalculator();
+        calculator.setVerificationInterval(2);
+        calculator.getCosts(solution);
+        calculator.costsPerActivity = 2.;
+        assertEquals(3 * 10. + 10. + 100., calculator.getCosts(VehicleRoutingProblemSolution.copyOnWriteOf(solution)), 0.);
+        assertEquals(3, calculator.getNoDetectedDrifts());
+    }
+
+}
@@ -17,8 +17,11 @@
  */
 package com.graphhopper.jsprit.core.problem.solution;
 
+import com.graphhopper.jsprit.core.problem.Location;
 import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
 import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -27,7 +30,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
 
 public class VehicleRoutingProblemSolutionTest {
@@ -92,4 +95,56 @@ public class VehicleRoutingProblemSolutionTest {
         Assert.assertEquals(badJob, sol.getUnassignedJobs().iterator().next());
     }
 
+    @Test
+    public void whenCopyingOnWrite_unmodifiedRoutesShouldShareActivities() {
+        VehicleRoutingProblemSolution sol = createSolutionWithTwoRoutes();
+        VehicleRoutingProblemSolution copy = VehicleRoutingProblemSolution.copyOnWriteOf(sol);
+        List<VehicleRoute> routes = new ArrayList<>(sol.getRoutes());
+        List<VehicleRoute> copiedRoutes = new ArrayList<>(copy.getRoutes());
+        assertEquals(2, copiedRoutes.size());
+        for (int i = 0; i < routes.size(); i++) {
+            assertNotSame(routes.get(i), copiedRoutes.get(i));
+            assertNotSame(routes.get(i).getStart(), copiedRoutes.get(i).getStart());
+            assertSame(routes.get(i).getActivities().get(0), copiedRoutes.get(i).getActivities().get(0));
+        }
+    }
+
+    @Test
+    public void whenModifyingRouteOfCopyOnWriteCopy_originalShouldRemainUnchanged() {
+        VehicleRoutingProblemSolution sol = createSolutionWithTwoRoutes();
+        VehicleRoutingProblemSolution copy = VehicleRoutingProblemSolution.copyOnWriteOf(sol);
+        List<VehicleRoute> routes = new ArrayList<>(sol.getRoutes());
+        List<VehicleRoute> copiedRoutes = new ArrayList<>(copy.getRoutes());
+        Job job = routes.get(0).getTourActivities().getJobs().iterator().next();
+
+        assertTrue(copiedRoutes.get(0).getTourActivities().removeJob(job));
+        assertTrue(copiedRoutes.get(0).isEmpty());
+        assertTrue(routes.get(0).getTourActivities().servesJob(job));
+        assertSame(routes.get(1).getActivities().get(0), copiedRoutes.get(1).getActivities().get(0));
+    }
+
+    @Test
+    public void whenSwitchingVehicleOfCopyOnWriteCopy_activitiesShouldNotBeSharedAnymore() {
+        VehicleRoutingProblemSolution sol = createSolutionWithTwoRoutes();
+        VehicleRoutingProblemSolution copy = VehicleRoutingProblemSolution.copyOnWriteOf(sol);
+        VehicleRoute route = sol.getRoutes().iterator().next();
+        VehicleRoute copiedRoute = copy.getRoutes().iterator().next();
+
+        copiedRoute.setVehicleAndDepartureTime(copiedRoute.getVehicle(), 10.);
+        copiedRoute.getActivities().get(0).setArrTime(20.);
+        assertNotSame(route.getActivities().get(0), copiedRoute.getActivities().get(0));
+        assertEquals(0., route.getActivities().get(0).getArrTime(), 0.01);
+        assertEquals(0., route.getDepartureTime(), 0.01);
+    }
+
+    private VehicleRoutingProblemSolution createSolutionWithTwoRoutes() {
+        List<VehicleRoute> routes = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            VehicleImpl v = VehicleImpl.Builder.newInstance("v" + i).setStartLocation(Location.newInstance(0, 0)).build();
+            Service s = Service.Builder.newInstance("s" + i).setLocation(Location.newInstance(i, 10)).build();
+            routes.add(VehicleRoute.Builder.newInstance(v).addService(s).build());
+        }
+        return new VehicleRoutingProblemSolution(routes, 10.);
+    }
+
 }
@@ -249,4 +249,76 @@ public class TestTourActivities {
         assertTrue(copiedTour.servesJob(s));
     }
 
+    @Test
+    public void whenCopyingOnWrite_activitiesShouldBeSharedUntilModified() {
+        tour.addActivity(act);
+        TourActivities copiedTour = TourActivities.copyOnWriteOf(tour);
+        assertTrue(copiedTour.isShared());
+        assertSame(act, copiedTour.getActivities().get(0));
+        assertTrue(copiedTour.servesJob(service));
+    }
+
+    @Test
+    public void whenModifyingCopyOnWriteCopy_originalShouldRemainUnchanged() {
+        tour.addActivity(act);
+        TourActivities copiedTour = TourActivities.copyOnWriteOf(tour);
+        copiedTour.removeJob(service);
+
+        assertFalse(copiedTour.isShared());
+        assertTrue(copiedTour.isEmpty());
+        assertFalse(copiedTour.servesJob(service));
+        assertEquals(1, tour.getActivities().size());
+        assertSame(act, tour.getActivities().get(0));
+        assertTrue(tour.servesJob(service));
+    }
+
+    @Test
+    public void whenAddingToCopyOnWriteCopy_activitiesShouldBeDuplicated() {
+        tour.addActivity(act);
+        TourActivities copiedTour = TourActivities.copyOnWriteOf(tour);
+        Service s2 = Service.Builder.newInstance("s2").setLocation(Location.newInstance("loc2")).build();
+        copiedTour.addActivity(0, ServiceActivity.newInstance(s2));
+
+        assertEquals(2, copiedTour.getActivities().size());
+        assertNotSame(act, copiedTour.getActivities().get(1));
+        copiedTour.getActivities().get(1).setArrTime(10.);
+        assertEquals(0., act.getArrTime(), 0.01);
+        assertEquals(1, tour.getActivities().size());
+        assertFalse(tour.servesJob(s2));
+    }
+
+    @Test
+    public void whenModifyingOriginal_copyOnWriteCopyShouldRemainUnchanged() {
+        tour.addActivity(act);
+        TourActivities copiedTour = TourActivities.copyOnWriteOf(tour);
+        tour.removeJob(service);
+
+        assertTrue(tour.isEmpty());
+        assertEquals(1, copiedTour.getActivities().size());
+        assertTrue(copiedTour.servesJob(service));
+    }
+
+    @Test
+    public void whenRemovingSharedActivityFromCopyOnWriteCopy_itShouldBeRemoved() {
+        tour.addActivity(act);
+        TourActivities copiedTour = TourActivities.copyOnWriteOf(tour);
+        assertTrue(copiedTour.removeActivity(act));
+
+        assertTrue(copiedTour.isEmpty());
+        assertFalse(copiedTour.servesJob(service));
+        assertTrue(tour.servesJob(service));
+    }
+
+    @Test
+    public void whenModifyingCopyOnWriteCopy_onlyItsModificationCountShouldChange() {
+        tour.addActivity(act);
+        int modificationCount = tour.getModificationCount();
+        TourActivities copiedTour = TourActivities.copyOnWriteOf(tour);
+        assertEquals(modificationCount, copiedTour.getModificationCount());
+
+        copiedTour.removeJob(service);
+        assertEquals(modificationCount, tour.getModificationCount());
+        assertTrue(copiedTour.getModificationCount() > modificationCount);
+    }
+
 }
@@ -0,0 +1,166 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.util;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompactVehicleRoutingTransportCostsMatrixTest {
+
+    private Location loc(int index) {
+        return Location.Builder.newInstance().setIndex(index).build();
+    }
+
+    @Test
+    public void whenAddingTimeAndDistanceToSymmetricMatrix_itShouldReturnCorrectValues() {
+        CompactVehicleRoutingTransportCostsMatrix matrix = CompactVehicleRoutingTransportCostsMatrix.Builder.newInstance(3, true)
+            .addTransportTimeAndDistance(1, 2, 2., 100.)
+            .addTransportTimeAndDistance(0, 2, 3., 50.)
+            .build();
+        assertEquals(2., matrix.getTransportTime(loc(1), loc(2), 0.0, null, null), 0.01);
+        assertEquals(2., matrix.getTransportTime(loc(2), loc(1), 0.0, null, null), 0.01);
+        assertEquals(100., matrix.getDistance(loc(1), loc(2), 0.0, null), 0.01);
+        assertEquals(100., matrix.getDistance(loc(2), loc(1), 0.0, null), 0.01);
+        assertEquals(50., matrix.getDistance(2, 0), 0.01);
+        assertEquals(0., matrix.getDistance(0, 1), 0.01);
+    }
+
+    @Test
+    public void whenAddingTimeAndDistanceToAsymmetricMatrix_itShouldReturnCorrectValues() {
+        CompactVehicleRoutingTransportCostsMatrix matrix = CompactVehicleRoutingTransportCostsMatrix.Builder.newInstance(3, false)
+            .addTransportTimeAndDistance(1, 2, 2., 100.)
+            .addTransportTimeAndDistance(2, 1, 4., 200.)
+            .build();
+        assertEquals(2., matrix.getTransportTime(1, 2), 0.01);
+        assertEquals(4., matrix.getTransportTime(2, 1), 0.01);
+        assertEquals(100., matrix.getDistance(1, 2), 0.01);
+        assertEquals(200., matrix.getDistance(2, 1), 0.01);
+    }
+
+    @Test
+    public void whenEverySymmetricRelationIsAdded_itShouldBeStoredInItsOwnCell() {
+        int noLocations = 20;
+        CompactVehicleRoutingTransportCostsMatrix.Builder builder = CompactVehicleRoutingTransportCostsMatrix.Builder.newInstance(noLocations, true);
+        for (int i = 0; i < noLocations; i++) {
+            for (int j = 0; j <= i; j++) {
+                builder.addTransportDistance(i, j, i * 100 + j);
+            }
+        }
+        CompactVehicleRoutingTransportCostsMatrix matrix = builder.build();
+        for (int i = 0; i < noLocations; i++) {
+            for (int j = 0; j <= i; j++) {
+                assertEquals(i * 100 + j, matrix.getDistance(i, j), 0.01);
+                assertEquals(i * 100 + j, matrix.getDistance(j, i), 0.01);
+            }
+        }
+    }
+
+    @Test
+    public void whenUsingFloatStorage_valuesShouldBeStoredWithFloatPrecision() {
+        CompactVehicleRoutingTransportCostsMatrix matrix = CompactVehicleRoutingTransportCostsMatrix.Builder.newInstance(2, false)
+            .setStorage(CompactVehicleRoutingTransportCostsMatrix.Storage.FLOAT)
+            .addTransportTime(0, 1, 1234.5678)
+            .build();
+        assertEquals((float) 1234.5678, matrix.getTransportTime(0, 1), 0.);
+    }
+
+    @Test
+    public void whenUsingInt16StorageWithScaleFactor_valuesShouldBeRoundedToScale() {
+        CompactVehicleRoutingTransportCostsMatrix matrix = CompactVehicleRoutingTransportCostsMatrix.Builder.newInstance(2, true)
+            .setStorage(CompactVehicleRoutingTransportCostsMatrix.Storage.INT16)
+            .setTimeScaleFactor(10.)
+            .setDistanceScaleFactor(0.1)
+            .addTransportTimeAndDistance(0, 1, 12.34, 123456.)
+            .build();
+        assertEquals(12.3, matrix.getTransportTime(1, 0), 1e-9);
+        assertEquals(123460., matrix.getDistance(1, 0), 1e-9);
+    }
+
+    @Test
+    public void whenUsingInt32Storage_valuesShouldBeRounded() {
+        CompactVehicleRoutingTransportCostsMatrix matrix = CompactVehicleRoutingTransportCostsMatrix.Builder.newInstance(2, false)
+            .setStorage(CompactVehicleRoutingTransportCostsMatrix.Storage.INT32)
+            .addTransportDistance(0, 1, 100000.6)
+            .build();
+        assertEquals(100001., matrix.getDistance(0, 1), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenValueExceedsInt16Range_itShouldThrowException() {
+        CompactVehicleRoutingTransportCostsMatrix.Builder.newInstance(2, false)
+            .setStorage(CompactVehicleRoutingTransportCostsMatrix.Storage.INT16)
+            .addTransportDistance(0, 1, 40000.);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenStorageIsSetAfterValuesHaveBeenAdded_itShouldThrowException() {
+        CompactVehicleRoutingTransportCostsMatrix.Builder.newInstance(2, false)
+            .addTransportDistance(0, 1, 4.)
+            .setStorage(CompactVehicleRoutingTransportCostsMatrix.Storage.FLOAT);
+    }
+
+    @Test
+    public void transportCostsShouldBeCalculatedFromVehicleCostParams() {
+        CompactVehicleRoutingTransportCostsMatrix matrix = CompactVehicleRoutingTransportCostsMatrix.Builder.newInstance(2, true)
+            .setStorage(CompactVehicleRoutingTransportCostsMatrix.Storage.FLOAT)
+            .addTransportTimeAndDistance(0, 1, 10., 100.)
+            .build();
+        VehicleTypeImpl type = VehicleTypeImpl.Builder.newInstance("t").setCostPerDistance(2.).setCostPerTransportTime(3.).build();
+        Vehicle vehicle = VehicleImpl.Builder.newInstance("v").setType(type).setStartLocation(loc(0)).build();
+        assertEquals(230., matrix.getTransportCost(loc(1), loc(0), 0., null, vehicle), 0.01);
+        assertEquals(100., matrix.getTransportCost(loc(1), loc(0), 0., null, null), 0.01);
+    }
+
+    private CompactVehicleRoutingTransportCostsMatrix createSymmetricMatrix() {
+        //symmetric storage of 3 locations has 6 values, i.e. index 3 would be mapped into the array
+        return CompactVehicleRoutingTransportCostsMatrix.Builder.newInstance(3, true)
+            .addTransportTimeAndDistance(0, 1, 10., 100.)
+            .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenLocationIndexExceedsNoLocations_distanceShouldThrowException() {
+        createSymmetricMatrix().getDistance(loc(3), loc(0), 0., null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenLocationIndexExceedsNoLocations_transportTimeShouldThrowException() {
+        createSymmetricMatrix().getTransportTime(loc(0), loc(3), 0., null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenLocationIndexExceedsNoLocations_transportCostShouldThrowException() {
+        createSymmetricMatrix().getTransportCost(loc(3), loc(0), 0., null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenLocationIndexIsNegative_distanceShouldThrowException() {
+        createSymmetricMatrix().getDistance(loc(-1), loc(0), 0., null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenIndexExceedsNoLocations_distanceShouldThrowException() {
+        createSymmetricMatrix().getDistance(0, 3);
+    }
+
+}
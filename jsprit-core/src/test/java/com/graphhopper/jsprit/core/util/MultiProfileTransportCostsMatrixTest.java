@@ -0,0 +1,111 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.util;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MultiProfileTransportCostsMatrixTest {
+
+    private MultiProfileTransportCostsMatrix createMatrix() {
+        return MultiProfileTransportCostsMatrix.Builder.newInstance(3, true, "van", "bike")
+            .addTransportTimeAndDistance("van", 0, 1, 10., 100.)
+            .addTransportTimeAndDistance("van", 1, 2, 20., 200.)
+            .addTransportTimeAndDistance("bike", 0, 1, 30., 80.)
+            .addTransportTimeAndDistance("bike", 1, 2, 60., 150.)
+            .build();
+    }
+
+    private VehicleImpl createVehicle(String id, String profile) {
+        VehicleTypeImpl type = VehicleTypeImpl.Builder.newInstance(profile + "Type").setProfile(profile)
+            .setCostPerDistance(1.).setCostPerTransportTime(2.).build();
+        return VehicleImpl.Builder.newInstance(id).setType(type).setStartLocation(Location.newInstance(0)).build();
+    }
+
+    @Test
+    public void valuesShouldBeLookedUpInProfileOfVehicle() {
+        MultiProfileTransportCostsMatrix matrix = createMatrix();
+        VehicleImpl van = createVehicle("v1", "van");
+        VehicleImpl bike = createVehicle("v2", "bike");
+        VehicleRoutingProblem.Builder.newInstance().addVehicle(van).addVehicle(bike).build();
+        assertEquals(10., matrix.getTransportTime(Location.newInstance(0), Location.newInstance(1), 0., null, van), 0.);
+        assertEquals(30., matrix.getTransportTime(Location.newInstance(0), Location.newInstance(1), 0., null, bike), 0.);
+        assertEquals(150., matrix.getDistance(Location.newInstance(2), Location.newInstance(1), 0., bike), 0.);
+        assertEquals(200. + 2 * 20., matrix.getTransportCost(Location.newInstance(1), Location.newInstance(2), 0., null, van), 0.);
+        assertEquals(150. + 2 * 60., matrix.getTransportCost(Location.newInstance(1), Location.newInstance(2), 0., null, bike), 0.);
+        //memorized profile must still be correct
+        assertEquals(30., matrix.getTransportTime(Location.newInstance(0), Location.newInstance(1), 0., null, bike), 0.);
+        assertEquals(1, matrix.getProfileIndex(bike));
+    }
+
+    @Test
+    public void whenVehicleIsNull_firstProfileShouldBeUsed() {
+        MultiProfileTransportCostsMatrix matrix = createMatrix();
+        assertEquals(20., matrix.getTransportTime(Location.newInstance(1), Location.newInstance(2), 0., null, null), 0.);
+        assertEquals(200., matrix.getTransportCost(Location.newInstance(1), Location.newInstance(2), 0., null, null), 0.);
+    }
+
+    @Test
+    public void whenVehicleIsNotPartOfProblem_profileShouldStillBeResolved() {
+        MultiProfileTransportCostsMatrix matrix = createMatrix();
+        assertEquals(60., matrix.getTransportTime(Location.newInstance(1), Location.newInstance(2), 0., null, createVehicle("v", "bike")), 0.);
+    }
+
+    @Test
+    public void whenMatrixIsSharedByProblems_profileShouldBeResolvedPerProblem() {
+        MultiProfileTransportCostsMatrix matrix = createMatrix();
+        VehicleImpl van = createVehicle("v1", "van");
+        VehicleImpl bike = createVehicle("v2", "bike");
+        VehicleRoutingProblem.Builder.newInstance().addVehicle(van).addVehicle(bike).build();
+        assertEquals(10., matrix.getTransportTime(Location.newInstance(0), Location.newInstance(1), 0., null, van), 0.);
+        assertEquals(30., matrix.getTransportTime(Location.newInstance(0), Location.newInstance(1), 0., null, bike), 0.);
+        //type keys of the second problem get the indices in reverse order
+        VehicleImpl otherBike = createVehicle("v3", "bike");
+        VehicleImpl otherVan = createVehicle("v4", "van");
+        VehicleRoutingProblem.Builder.newInstance().addVehicle(otherBike).addVehicle(otherVan).build();
+        assertEquals(otherBike.getVehicleTypeIdentifier().getIndex(), van.getVehicleTypeIdentifier().getIndex());
+        assertEquals(30., matrix.getTransportTime(Location.newInstance(0), Location.newInstance(1), 0., null, otherBike), 0.);
+        assertEquals(10., matrix.getTransportTime(Location.newInstance(0), Location.newInstance(1), 0., null, otherVan), 0.);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenLocationIndexExceedsNoLocations_itShouldThrowException() {
+        createMatrix().getTransportTime(Location.newInstance(0), Location.newInstance(3), 0., null, createVehicle("v", "van"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenIndexExceedsNoLocations_itShouldThrowException() {
+        createMatrix().getDistance(0, 3, 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenProfileOfVehicleIsUnknown_itShouldThrowException() {
+        createMatrix().getTransportTime(Location.newInstance(0), Location.newInstance(1), 0., null, createVehicle("v", "truck"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenAddingValueOfUnknownProfile_itShouldThrowException() {
+        MultiProfileTransportCostsMatrix.Builder.newInstance(3, false, "van").addTransportTime("bike", 0, 1, 1.);
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.core.util;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleType;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TimeDependentTransportCostsMatrixTest {
+
+    private static final double[] SLICES = {0., 100., 200.};
+
+    private Location loc(String id) {
+        return Location.Builder.newInstance().setId(id).build();
+    }
+
+    private TimeDependentTransportCostsMatrix createMatrix(boolean isSymmetric) {
+        return TimeDependentTransportCostsMatrix.Builder.newInstance(SLICES, isSymmetric)
+            .addTransportTimeProfile("1", "2", new double[]{10., 50., 20.})
+            .addTransportTime("2", "3", 30.)
+            .addTransportDistance("1", "2", 5.)
+            .build();
+    }
+
+    @Test
+    public void travelTimesBetweenSlicesShouldBeInterpolated() {
+        TimeDependentTransportCostsMatrix matrix = createMatrix(false);
+        assertEquals(10., matrix.getTransportTime(loc("1"), loc("2"), 0., null, null), 1e-6);
+        assertEquals(30., matrix.getTransportTime(loc("1"), loc("2"), 50., null, null), 1e-6);
+        assertEquals(50., matrix.getTransportTime(loc("1"), loc("2"), 100., null, null), 1e-6);
+        assertEquals(35., matrix.getTransportTime(loc("1"), loc("2"), 150., null, null), 1e-6);
+        assertEquals(30., matrix.getTransportTime(loc("2"), loc("3"), 123., null, null), 1e-6);
+        assertEquals(0., matrix.getTransportTime(loc("1"), loc("1"), 123., null, null), 0.);
+    }
+
+    @Test
+    public void outsideOfSlicesTravelTimesOfFirstAndLastSliceShouldApply() {
+        TimeDependentTransportCostsMatrix matrix = createMatrix(false);
+        assertEquals(10., matrix.getTransportTime(loc("1"), loc("2"), -100., null, null), 1e-6);
+        assertEquals(20., matrix.getTransportTime(loc("1"), loc("2"), 1000., null, null), 1e-6);
+        assertEquals(10., matrix.getBackwardTransportTime(loc("1"), loc("2"), -100., null, null), 1e-6);
+        assertEquals(20., matrix.getBackwardTransportTime(loc("1"), loc("2"), 1000., null, null), 1e-6);
+    }
+
+    @Test
+    public void whenProfileViolatesFIFO_travelTimesShouldBeRaised() {
+        TimeDependentTransportCostsMatrix matrix = TimeDependentTransportCostsMatrix.Builder.newInstance(new double[]{0., 100.}, false)
+            .addTransportTimeProfile("1", "2", new double[]{200., 50.}).build();
+        assertEquals(200., matrix.getTransportTime(loc("1"), loc("2"), 0., null, null), 1e-6);
+        assertEquals(100., matrix.getTransportTime(loc("1"), loc("2"), 100., null, null), 1e-6);
+        double lastArrival = Double.NEGATIVE_INFINITY;
+        for (double departure = -10.; departure <= 110.; departure += 0.5) {
+            double arrival = departure + matrix.getTransportTime(loc("1"), loc("2"), departure, null, null);
+            assertTrue(arrival >= lastArrival);
+            lastArrival = arrival;
+        }
+    }
+
+    @Test
+    public void backwardTravelTimeShouldArriveAtSpecifiedTime() {
+        TimeDependentTransportCostsMatrix matrix = createMatrix(false);
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            double departure = -50. + random.nextDouble() * 350.;
+            double time = matrix.getTransportTime(loc("1"), loc("2"), departure, null, null);
+            assertEquals(time, matrix.getBackwardTransportTime(loc("1"), loc("2"), departure + time, null, null), 1e-6);
+        }
+    }
+
+    @Test
+    public void whenSymmetric_reverseRelationShouldHaveSameProfile() {
+        TimeDependentTransportCostsMatrix matrix = createMatrix(true);
+        assertEquals(35., matrix.getTransportTime(loc("2"), loc("1"), 150., null, null), 1e-6);
+        assertEquals(5., matrix.getDistance(loc("2"), loc("1"), 0., null), 0.);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenRelationDoesNotExist_itShouldThrowException() {
+        createMatrix(false).getTransportTime(loc("2"), loc("1"), 0., null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenTimeSlicesAreNotIncreasing_itShouldThrowException() {
+        TimeDependentTransportCostsMatrix.Builder.newInstance(new double[]{0., 100., 100.}, false);
+    }
+
+    @Test
+    public void whenVehicleIsSet_costsShouldDependOnDepartureTime() {
+        TimeDependentTransportCostsMatrix matrix = TimeDependentTransportCostsMatrix.Builder.newInstance(SLICES, false)
+            .addTransportTimeProfile("1", "2", new double[]{10., 50., 20.})
+            .addTransportDistance("1", "2", 5.).build();
+        VehicleType type = VehicleTypeImpl.Builder.newInstance("t").setCostPerDistance(2.).setCostPerTransportTime(1.).build();
+        Vehicle vehicle = mock(Vehicle.class);
+        when(vehicle.getType()).thenReturn(type);
+        assertEquals(20., matrix.getTransportCost(loc("1"), loc("2"), 0., null, vehicle), 1e-6);
+        assertEquals(60., matrix.getTransportCost(loc("1"), loc("2"), 100., null, vehicle), 1e-6);
+        assertEquals(60., matrix.getBackwardTransportCost(loc("1"), loc("2"), 150., null, vehicle), 1e-6);
+        assertEquals(5., matrix.getTransportCost(loc("1"), loc("2"), 0., null, null), 0.);
+    }
+
+    @Test
+    public void locationIndexShouldBeUsedIfItMatchesId() {
+        TimeDependentTransportCostsMatrix matrix = createMatrix(false);
+        Location from = Location.Builder.newInstance().setId("1").setIndex(matrix.getIndex("1")).build();
+        Location to = Location.Builder.newInstance().setId("2").setIndex(matrix.getIndex("2")).build();
+        assertEquals(3, matrix.getNoLocations());
+        assertEquals(30., matrix.getTransportTime(from, to, 50., null, null), 1e-6);
+    }
+
+}
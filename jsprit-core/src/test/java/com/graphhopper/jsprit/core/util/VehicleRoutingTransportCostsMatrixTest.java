@@ -24,6 +24,8 @@ import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -258,4 +260,71 @@ public class VehicleRoutingTransportCostsMatrixTest {
         assertEquals(1., matrix.getTransportCost(loc("to"), loc("from"), 0.0, null, vehicle), 0.1);
     }
 
+    @Test
+    public void whenLocationsAreBuiltWithMatrixIndex_itShouldReturnCorrectValues() {
+        VehicleRoutingTransportCostsMatrix matrix = VehicleRoutingTransportCostsMatrix.Builder.newInstance(false)
+            .addTransportDistance("a", "b", 1.)
+            .addTransportDistance("b", "a", 2.)
+            .addTransportDistance("b", "c", 3.)
+            .build();
+        assertEquals(3, matrix.getNoLocations());
+        assertEquals(-1, matrix.getIndex("d"));
+        Location a = Location.Builder.newInstance().setId("a").setIndex(matrix.getIndex("a")).build();
+        Location b = Location.Builder.newInstance().setId("b").setIndex(matrix.getIndex("b")).build();
+        Location c = Location.Builder.newInstance().setId("c").setIndex(matrix.getIndex("c")).build();
+        assertEquals(1., matrix.getDistance(a, b, 0., null), 0.1);
+        assertEquals(2., matrix.getDistance(b, a, 0., null), 0.1);
+        assertEquals(3., matrix.getDistance(b, c, 0., null), 0.1);
+    }
+
+    @Test
+    public void whenLocationIndexDoesNotCorrespondToMatrixIndex_itShouldResolveId() {
+        VehicleRoutingTransportCostsMatrix matrix = VehicleRoutingTransportCostsMatrix.Builder.newInstance(false)
+            .addTransportTime("a", "b", 1.)
+            .addTransportTime("b", "a", 2.)
+            .build();
+        Location a = Location.Builder.newInstance().setId("a").setIndex(matrix.getIndex("b")).build();
+        Location b = Location.Builder.newInstance().setId("b").setIndex(10).build();
+        assertEquals(1., matrix.getTransportTime(a, b, 0., null, null), 0.1);
+        assertEquals(2., matrix.getTransportTime(b, a, 0., null, null), 0.1);
+    }
+
+    @Test
+    public void whenFewRelationsAreSpecified_valuesShouldBeStoredSparse() {
+        VehicleRoutingTransportCostsMatrix.Builder builder = VehicleRoutingTransportCostsMatrix.Builder.newInstance(true);
+        for (int i = 0; i < 100; i++) {
+            builder.addTransportTime("l" + i, "l" + (i + 1), i);
+            builder.addTransportDistance("l" + i, "l" + (i + 1), 2 * i);
+        }
+        VehicleRoutingTransportCostsMatrix matrix = builder.build();
+        assertFalse(matrix.isDense());
+        assertEquals(101, matrix.getNoLocations());
+        assertEquals(20., matrix.getDistance("l10", "l11"), 0.);
+        assertEquals(20., matrix.getDistance("l11", "l10"), 0.);
+        assertEquals(10., matrix.getTransportTime(loc("l11"), loc("l10"), 0., null, null), 0.);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenRelationOfSparseMatrixDoesNotExist_itShouldThrowException() {
+        VehicleRoutingTransportCostsMatrix.Builder builder = VehicleRoutingTransportCostsMatrix.Builder.newInstance(true);
+        for (int i = 0; i < 100; i++) {
+            builder.addTransportDistance("l" + i, "l" + (i + 1), i);
+        }
+        builder.build().getDistance("l10", "l12");
+    }
+
+    @Test
+    public void whenAllRelationsAreSpecified_valuesShouldBeStoredDense() {
+        VehicleRoutingTransportCostsMatrix.Builder builder = VehicleRoutingTransportCostsMatrix.Builder.newInstance(false);
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                if (i != j) builder.addTransportDistance("l" + i, "l" + j, 10 * i + j);
+            }
+        }
+        VehicleRoutingTransportCostsMatrix matrix = builder.build();
+        assertTrue(matrix.isDense());
+        assertEquals(37., matrix.getDistance("l3", "l7"), 0.);
+        assertEquals(73., matrix.getDistance(loc("l7"), loc("l3"), 0., null), 0.);
+    }
+
 }
@@ -0,0 +1,183 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.io.problem;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingTransportCosts;
+import com.graphhopper.jsprit.core.util.DistanceUnit;
+import com.graphhopper.jsprit.core.util.MappedVehicleRoutingTransportCostsMatrix;
+import com.graphhopper.jsprit.core.util.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes time and distance-matrices in the binary format that can be memory-mapped with
+ * {@link MappedVehicleRoutingTransportCostsMatrix} (see there for a description of the format).
+ * <p>
+ * <p>Values are streamed to the file, i.e. the matrix does not need to be held in memory as a whole.
+ *
+ * @author schroeder
+ */
+public class MatrixFileWriter {
+
+    /**
+     * Provides the value of a relation.
+     */
+    public interface MatrixSource {
+
+        double getValue(int fromIndex, int toIndex);
+
+    }
+
+    private static Logger log = LoggerFactory.getLogger(MatrixFileWriter.class);
+
+    private final int noLocations;
+
+    private final boolean isSymmetric;
+
+    private boolean floatValues = false;
+
+    private TimeUnit timeUnit = TimeUnit.SEC;
+
+    private DistanceUnit distanceUnit = DistanceUnit.Meter;
+
+    /**
+     * Creates a writer for a matrix with the specified number of locations, i.e. location indices range from 0 to
+     * noLocations - 1.
+     * <p>If the matrix is symmetric, only values of relations (from,to) with from &gt;= to are written.
+     *
+     * @param noLocations number of locations
+     * @param isSymmetric true if matrix is symmetric, false otherwise
+     */
+    public MatrixFileWriter(int noLocations, boolean isSymmetric) {
+        if (noLocations < 0) throw new IllegalArgumentException("number of locations must not be negative");
+        this.noLocations = noLocations;
+        this.isSymmetric = isSymmetric;
+    }
+
+    /**
+     * Writes values with float precision (4 bytes) instead of double precision (8 bytes). Default is false.
+     *
+     * @param floatValues true if values should be written as float
+     * @return writer
+     */
+    public MatrixFileWriter setFloatValues(boolean floatValues) {
+        this.floatValues = floatValues;
+        return this;
+    }
+
+    /**
+     * Sets the time unit that is recorded in the header. Default is {@link TimeUnit#SEC}.
+     *
+     * @param timeUnit time unit
+     * @return writer
+     */
+    public MatrixFileWriter setTimeUnit(TimeUnit timeUnit) {
+        this.timeUnit = timeUnit;
+        return this;
+    }
+
+    /**
+     * Sets the distance unit that is recorded in the header. Default is {@link DistanceUnit#Meter}.
+     *
+     * @param distanceUnit distance unit
+     * @return writer
+     */
+    public MatrixFileWriter setDistanceUnit(DistanceUnit distanceUnit) {
+        this.distanceUnit = distanceUnit;
+        return this;
+    }
+
+    /**
+     * Writes transport times and distances of the specified transport costs, i.e. it queries every relation with
+     * locations that only have an index.
+     *
+     * @param filename name of matrix file
+     * @param costs    transport costs
+     */
+    public void write(String filename, final VehicleRoutingTransportCosts costs) {
+        final Location[] locations = new Location[noLocations];
+        for (int i = 0; i < noLocations; i++) {
+            locations[i] = Location.Builder.newInstance().setIndex(i).build();
+        }
+        write(filename, new MatrixSource() {
+            @Override
+            public double getValue(int fromIndex, int toIndex) {
+                return costs.getTransportTime(locations[fromIndex], locations[toIndex], 0., null, null);
+            }
+        }, new MatrixSource() {
+            @Override
+            public double getValue(int fromIndex, int toIndex) {
+                return costs.getDistance(locations[fromIndex], locations[toIndex], 0., null);
+            }
+        });
+    }
+
+    /**
+     * Writes the specified time and distance values. If one of them is null, the corresponding block is omitted
+     * and the mapped matrix returns 0 for it.
+     *
+     * @param filename  name of matrix file
+     * @param times     source of transport times or null
+     * @param distances source of distances or null
+     */
+    public void write(String filename, MatrixSource times, MatrixSource distances) {
+        log.info("write matrix: " + filename);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16))) {
+            writeHeader(out, times != null, distances != null);
+            if (times != null) writeBlock(out, times);
+            if (distances != null) writeBlock(out, distances);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeHeader(DataOutputStream out, boolean hasTimes, boolean hasDistances) throws IOException {
+        out.writeInt(MappedVehicleRoutingTransportCostsMatrix.MAGIC);
+        out.writeInt(MappedVehicleRoutingTransportCostsMatrix.VERSION);
+        out.writeInt(noLocations);
+        out.writeByte(isSymmetric ? 1 : 0);
+        out.writeByte(floatValues ? MappedVehicleRoutingTransportCostsMatrix.FLOAT_VALUES : MappedVehicleRoutingTransportCostsMatrix.DOUBLE_VALUES);
+        out.writeByte(timeUnit.ordinal());
+        out.writeByte(distanceUnit.ordinal());
+        int flags = 0;
+        if (hasTimes) flags |= MappedVehicleRoutingTransportCostsMatrix.TIME_FLAG;
+        if (hasDistances) flags |= MappedVehicleRoutingTransportCostsMatrix.DISTANCE_FLAG;
+        out.writeByte(flags);
+        for (int i = out.size(); i < MappedVehicleRoutingTransportCostsMatrix.HEADER_SIZE; i++) {
+            out.writeByte(0);
+        }
+    }
+
+    private void writeBlock(DataOutputStream out, MatrixSource source) throws IOException {
+        for (int from = 0; from < noLocations; from++) {
+            int noColumns = isSymmetric ? from + 1 : noLocations;
+            for (int to = 0; to < noColumns; to++) {
+                double value = source.getValue(from, to);
+                if (floatValues) out.writeFloat((float) value);
+                else out.writeDouble(value);
+            }
+        }
+    }
+
+}
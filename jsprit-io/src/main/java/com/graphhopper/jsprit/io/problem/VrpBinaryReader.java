@@ -0,0 +1,517 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.io.problem;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem.FleetSize;
+import com.graphhopper.jsprit.core.problem.driver.DriverImpl;
+import com.graphhopper.jsprit.core.problem.job.Break;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.job.Shipment;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TimeWindow;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleType;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import com.graphhopper.jsprit.core.util.Coordinate;
+import com.graphhopper.jsprit.core.util.FastVehicleRoutingTransportCostsMatrix;
+import com.graphhopper.jsprit.io.problem.VrpXMLReader.DefaultServiceBuilderFactory;
+import com.graphhopper.jsprit.io.problem.VrpXMLReader.ServiceBuilderFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Reads problems (and solutions) in the binary format written by {@link VrpBinaryWriter}.
+ * <p>
+ * <p>Values are decoded directly from a {@link ByteBuffer}, i.e. files are memory-mapped and neither copied to the heap
+ * nor parsed as text. All values are big-endian. Integers marked as varint are unsigned LEB128, i.e. 7 bits per byte
+ * with the high bit set if another byte follows; signed varints are zigzag-encoded first. References to strings,
+ * locations, types, vehicles and jobs are varints into the respective table; string and location references are
+ * shifted by one, 0 meaning null.
+ * <pre>
+ * magic number 0x4A535042 ("JSPB") (int), format version (varint), flags (byte, bit 0: matrix embedded), fleet size (byte)
+ * strings      count, then per string: length in bytes (varint) and UTF-8 bytes
+ * locations    count, then the columns id, name (string refs), coordinate flag (byte), x and y (double, only if
+ *              flagged) and index (signed varint)
+ * types        count, then the columns id and profile (string refs), capacity (per type: number of dimensions and
+ *              values as signed varints), fixed costs, costs per distance, transport time, waiting time and service
+ *              time, and max velocity (doubles)
+ * vehicles     count, then the columns id (string ref), type ref, start and end location refs, earliest start and
+ *              latest arrival (doubles), returnToDepot (byte), skills (count and string refs) and break (byte 0 if
+ *              there is none, otherwise 1 followed by id ref, duration and time windows)
+ * jobs         count and job kinds (byte, 0 = service, 1 = shipment) in the order of the problem, followed by
+ *              the service columns and the shipment columns, each column covering the jobs of its kind in order.
+ *              Service columns are id, type and name (string refs), priority (varint), size, skills, location ref,
+ *              duration and time windows (count and start/end pairs). Shipment columns are id and name, priority,
+ *              size, skills, pickup and delivery location refs, pickup and delivery duration, pickup and delivery
+ *              time windows and max time in vehicle.
+ * initial routes    count, then per route: vehicle ref, departure time, number of activities and per activity its
+ *                   kind (byte, 0 = service, 1 = pickupShipment, 2 = deliverShipment, 3 = break) and job ref (not
+ *                   for breaks)
+ * solutions    count, then per solution: cost, number of routes, routes (as initial routes), and unassigned jobs
+ *              (count and job refs)
+ * matrix       (if flagged) number of locations n, then n*n transport times and n*n distances (doubles) in row-major
+ *              order of location indices
+ * </pre>
+ * Jobs that are part of initial routes are written like all the other jobs but, like with {@link VrpXMLReader},
+ * they are not added to the problem builder.
+ *
+ * @author schroeder
+ */
+public class VrpBinaryReader {
+
+    public static final int MAGIC = 0x4A535042;
+
+    public static final int VERSION = 1;
+
+    static final byte MATRIX_FLAG = 1;
+
+    static final byte SERVICE = 0;
+
+    static final byte SHIPMENT = 1;
+
+    static final byte SERVICE_ACT = 0;
+
+    static final byte PICKUP_SHIPMENT_ACT = 1;
+
+    static final byte DELIVER_SHIPMENT_ACT = 2;
+
+    static final byte BREAK_ACT = 3;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static Logger logger = LoggerFactory.getLogger(VrpBinaryReader.class);
+
+    private final VehicleRoutingProblem.Builder vrpBuilder;
+
+    private final Collection<VehicleRoutingProblemSolution> solutions;
+
+    private ServiceBuilderFactory serviceBuilderFactory = new DefaultServiceBuilderFactory();
+
+    private ByteBuffer buffer;
+
+    private String[] strings;
+
+    private Location[] locations;
+
+    private VehicleType[] types;
+
+    private Vehicle[] vehicles;
+
+    private Job[] jobs;
+
+    public VrpBinaryReader(VehicleRoutingProblem.Builder vrpBuilder, Collection<VehicleRoutingProblemSolution> solutions) {
+        this.vrpBuilder = vrpBuilder;
+        this.solutions = solutions;
+    }
+
+    public VrpBinaryReader(VehicleRoutingProblem.Builder vrpBuilder) {
+        this(vrpBuilder, null);
+    }
+
+    /**
+     * Sets the factory that creates the builders of services, e.g. to read custom service types.
+     *
+     * @param serviceBuilderFactory the factory
+     */
+    public void setServiceBuilderFactory(ServiceBuilderFactory serviceBuilderFactory) {
+        this.serviceBuilderFactory = serviceBuilderFactory;
+    }
+
+    /**
+     * Maps the specified file into memory and reads it.
+     *
+     * @param filename name of file
+     */
+    public void read(String filename) {
+        logger.debug("read vrp: {}", filename);
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r"); FileChannel channel = file.getChannel()) {
+            read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void read(InputStream inputStream) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1 << 16];
+        try {
+            int length;
+            while ((length = inputStream.read(chunk)) != -1) out.write(chunk, 0, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        read(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    /**
+     * Reads a problem (and its solutions) from the current position of the specified buffer.
+     *
+     * @param byteBuffer buffer containing the problem
+     * @throws IllegalArgumentException if the data is not in jsprit's binary format, ends unexpectedly or is malformed,
+     *                                  e.g. if it references elements that do not exist
+     */
+    public void read(ByteBuffer byteBuffer) {
+        buffer = byteBuffer.duplicate();
+        try {
+            if (buffer.getInt() != MAGIC) throw new IllegalArgumentException("data is not in jsprit's binary format");
+            int version = readVarint();
+            if (version != VERSION)
+                throw new IllegalArgumentException("version " + version + " of binary format is not supported, only version " + VERSION);
+            byte flags = buffer.get();
+            readProblemType();
+            readStrings();
+            readLocations();
+            readTypes();
+            readVehicles();
+            readJobs();
+            Set<Job> jobsInInitialRoutes = readInitialRoutes();
+            readSolutions();
+            if ((flags & MATRIX_FLAG) != 0) readMatrix();
+            for (Job job : jobs) {
+                if (!jobsInInitialRoutes.contains(job)) vrpBuilder.addJob(job);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("data ends unexpectedly", e);
+        } finally {
+            buffer = null;
+            strings = null;
+            locations = null;
+            types = null;
+            vehicles = null;
+            jobs = null;
+        }
+    }
+
+    private void readProblemType() {
+        vrpBuilder.setFleetSize(get(FleetSize.values(), buffer.get(), "fleet size"));
+    }
+
+    private void readStrings() {
+        strings = new String[readCount()];
+        for (int i = 0; i < strings.length; i++) {
+            int length = readVarint();
+            if (length < 0) throw malformed("negative string length");
+            if (length > buffer.remaining()) throw new BufferUnderflowException();
+            if (buffer.hasArray()) {
+                strings[i] = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+                buffer.position(buffer.position() + length);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, UTF_8);
+            }
+        }
+    }
+
+    private void readLocations() {
+        int noLocations = readCount();
+        String[] ids = readStringColumn(noLocations);
+        String[] names = readStringColumn(noLocations);
+        byte[] hasCoordinate = new byte[noLocations];
+        buffer.get(hasCoordinate);
+        Coordinate[] coordinates = new Coordinate[noLocations];
+        for (int i = 0; i < noLocations; i++) {
+            if (hasCoordinate[i] != 0) coordinates[i] = Coordinate.newInstance(buffer.getDouble(), buffer.getDouble());
+        }
+        locations = new Location[noLocations];
+        for (int i = 0; i < noLocations; i++) {
+            Location.Builder builder = Location.Builder.newInstance();
+            if (ids[i] != null) builder.setId(ids[i]);
+            if (names[i] != null) builder.setName(names[i]);
+            if (coordinates[i] != null) builder.setCoordinate(coordinates[i]);
+            int index = readSignedVarint();
+            if (index >= 0) builder.setIndex(index);
+            locations[i] = builder.build();
+        }
+    }
+
+    private void readTypes() {
+        int noTypes = readCount();
+        VehicleTypeImpl.Builder[] builders = new VehicleTypeImpl.Builder[noTypes];
+        String[] ids = readRequiredStringColumn(noTypes, "vehicle type id");
+        String[] profiles = readStringColumn(noTypes);
+        for (int i = 0; i < noTypes; i++) {
+            builders[i] = VehicleTypeImpl.Builder.newInstance(ids[i]);
+            if (profiles[i] != null) builders[i].setProfile(profiles[i]);
+        }
+        for (int i = 0; i < noTypes; i++) {
+            int noDimensions = readCount();
+            for (int d = 0; d < noDimensions; d++) builders[i].addCapacityDimension(d, readSignedVarint());
+        }
+        for (int i = 0; i < noTypes; i++) builders[i].setFixedCost(buffer.getDouble());
+        for (int i = 0; i < noTypes; i++) builders[i].setCostPerDistance(buffer.getDouble());
+        for (int i = 0; i < noTypes; i++) builders[i].setCostPerTransportTime(buffer.getDouble());
+        for (int i = 0; i < noTypes; i++) builders[i].setCostPerWaitingTime(buffer.getDouble());
+        for (int i = 0; i < noTypes; i++) builders[i].setCostPerServiceTime(buffer.getDouble());
+        for (int i = 0; i < noTypes; i++) builders[i].setMaxVelocity(buffer.getDouble());
+        types = new VehicleType[noTypes];
+        for (int i = 0; i < noTypes; i++) types[i] = builders[i].build();
+    }
+
+    private void readVehicles() {
+        int noVehicles = readCount();
+        VehicleImpl.Builder[] builders = new VehicleImpl.Builder[noVehicles];
+        String[] ids = readRequiredStringColumn(noVehicles, "vehicle id");
+        for (int i = 0; i < noVehicles; i++) builders[i] = VehicleImpl.Builder.newInstance(ids[i]);
+        for (int i = 0; i < noVehicles; i++) builders[i].setType(get(types, readVarint(), "vehicle type"));
+        for (int i = 0; i < noVehicles; i++) builders[i].setStartLocation(readLocationRef());
+        for (int i = 0; i < noVehicles; i++) builders[i].setEndLocation(readLocationRef());
+        for (int i = 0; i < noVehicles; i++) builders[i].setEarliestStart(buffer.getDouble());
+        for (int i = 0; i < noVehicles; i++) builders[i].setLatestArrival(buffer.getDouble());
+        for (int i = 0; i < noVehicles; i++) builders[i].setReturnToDepot(buffer.get() != 0);
+        for (int i = 0; i < noVehicles; i++) builders[i].addAllSkills(readStrings(readCount()));
+        for (int i = 0; i < noVehicles; i++) {
+            if (buffer.get() == 0) continue;
+            String breakId = readStringRef();
+            if (breakId == null) throw malformed("break id is missing");
+            Break.Builder breakBuilder = Break.Builder.newInstance(breakId);
+            breakBuilder.setServiceTime(buffer.getDouble());
+            for (TimeWindow timeWindow : readTimeWindows()) breakBuilder.addTimeWindow(timeWindow);
+            builders[i].setBreak(breakBuilder.build());
+        }
+        vehicles = new Vehicle[noVehicles];
+        for (int i = 0; i < noVehicles; i++) {
+            vehicles[i] = builders[i].build();
+            vrpBuilder.addVehicle(vehicles[i]);
+        }
+    }
+
+    private void readJobs() {
+        int noJobs = readCount();
+        byte[] kinds = new byte[noJobs];
+        buffer.get(kinds);
+        int noServices = 0;
+        for (byte kind : kinds) {
+            if (kind == SERVICE) noServices++;
+        }
+        Service[] services = readServices(noServices);
+        Shipment[] shipments = readShipments(noJobs - noServices);
+        jobs = new Job[noJobs];
+        int serviceIndex = 0;
+        int shipmentIndex = 0;
+        for (int i = 0; i < noJobs; i++) {
+            if (kinds[i] == SERVICE) jobs[i] = services[serviceIndex++];
+            else if (kinds[i] == SHIPMENT) jobs[i] = shipments[shipmentIndex++];
+            else throw malformed("job kind " + kinds[i] + " is not supported");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Service[] readServices(int noServices) {
+        String[] ids = readRequiredStringColumn(noServices, "service id");
+        String[] serviceTypes = readRequiredStringColumn(noServices, "service type");
+        Service.Builder[] builders = new Service.Builder[noServices];
+        for (int i = 0; i < noServices; i++) builders[i] = serviceBuilderFactory.createBuilder(serviceTypes[i], ids[i], null);
+        for (int i = 0; i < noServices; i++) {
+            String name = readStringRef();
+            if (name != null) builders[i].setName(name);
+        }
+        for (int i = 0; i < noServices; i++) builders[i].setPriority(readVarint());
+        for (int i = 0; i < noServices; i++) {
+            int noDimensions = readCount();
+            for (int d = 0; d < noDimensions; d++) builders[i].addSizeDimension(d, readSignedVarint());
+        }
+        for (int i = 0; i < noServices; i++) builders[i].addAllRequiredSkills(readStrings(readCount()));
+        for (int i = 0; i < noServices; i++) builders[i].setLocation(readLocationRef());
+        for (int i = 0; i < noServices; i++) builders[i].setServiceTime(buffer.getDouble());
+        for (int i = 0; i < noServices; i++) builders[i].addAllTimeWindows(readTimeWindows());
+        Service[] services = new Service[noServices];
+        for (int i = 0; i < noServices; i++) services[i] = builders[i].build();
+        return services;
+    }
+
+    private Shipment[] readShipments(int noShipments) {
+        String[] ids = readRequiredStringColumn(noShipments, "shipment id");
+        Shipment.Builder[] builders = new Shipment.Builder[noShipments];
+        for (int i = 0; i < noShipments; i++) builders[i] = Shipment.Builder.newInstance(ids[i]);
+        for (int i = 0; i < noShipments; i++) {
+            String name = readStringRef();
+            if (name != null) builders[i].setName(name);
+        }
+        for (int i = 0; i < noShipments; i++) builders[i].setPriority(readVarint());
+        for (int i = 0; i < noShipments; i++) {
+            int noDimensions = readCount();
+            for (int d = 0; d < noDimensions; d++) builders[i].addSizeDimension(d, readSignedVarint());
+        }
+        for (int i = 0; i < noShipments; i++) builders[i].addAllRequiredSkills(readStrings(readCount()));
+        for (int i = 0; i < noShipments; i++) builders[i].setPickupLocation(readLocationRef());
+        for (int i = 0; i < noShipments; i++) builders[i].setDeliveryLocation(readLocationRef());
+        for (int i = 0; i < noShipments; i++) builders[i].setPickupServiceTime(buffer.getDouble());
+        for (int i = 0; i < noShipments; i++) builders[i].setDeliveryServiceTime(buffer.getDouble());
+        for (int i = 0; i < noShipments; i++) builders[i].addAllPickupTimeWindows(readTimeWindows());
+        for (int i = 0; i < noShipments; i++) builders[i].addAllDeliveryTimeWindows(readTimeWindows());
+        for (int i = 0; i < noShipments; i++) {
+            double maxTimeInVehicle = buffer.getDouble();
+            if (maxTimeInVehicle != Double.MAX_VALUE) builders[i].setMaxTimeInVehicle(maxTimeInVehicle);
+        }
+        Shipment[] shipments = new Shipment[noShipments];
+        for (int i = 0; i < noShipments; i++) shipments[i] = builders[i].build();
+        return shipments;
+    }
+
+    private Set<Job> readInitialRoutes() {
+        Set<Job> jobsInInitialRoutes = new HashSet<Job>();
+        int noRoutes = readCount();
+        for (int r = 0; r < noRoutes; r++) {
+            VehicleRoute route = readRoute();
+            jobsInInitialRoutes.addAll(route.getTourActivities().getJobs());
+            vrpBuilder.addInitialVehicleRoute(route);
+        }
+        return jobsInInitialRoutes;
+    }
+
+    private void readSolutions() {
+        int noSolutions = readCount();
+        for (int s = 0; s < noSolutions; s++) {
+            double cost = buffer.getDouble();
+            int noRoutes = readCount();
+            List<VehicleRoute> routes = new ArrayList<VehicleRoute>(noRoutes);
+            for (int r = 0; r < noRoutes; r++) routes.add(readRoute());
+            VehicleRoutingProblemSolution solution = new VehicleRoutingProblemSolution(routes, cost);
+            int noUnassignedJobs = readCount();
+            for (int i = 0; i < noUnassignedJobs; i++) solution.getUnassignedJobs().add(get(jobs, readVarint(), "job"));
+            if (solutions != null) solutions.add(solution);
+        }
+    }
+
+    private VehicleRoute readRoute() {
+        Vehicle vehicle = get(vehicles, readVarint(), "vehicle");
+        VehicleRoute.Builder routeBuilder = VehicleRoute.Builder.newInstance(vehicle, DriverImpl.noDriver());
+        routeBuilder.setDepartureTime(buffer.getDouble());
+        int noActivities = readCount();
+        for (int a = 0; a < noActivities; a++) {
+            byte kind = buffer.get();
+            if (kind == BREAK_ACT) {
+                if (vehicle.getBreak() == null) throw malformed("break activity of vehicle " + vehicle.getId() + " without break");
+                routeBuilder.addBreak(vehicle.getBreak());
+                continue;
+            }
+            Job job = get(jobs, readVarint(), "job");
+            if (kind == SERVICE_ACT) routeBuilder.addService(as(Service.class, job, kind));
+            else if (kind == PICKUP_SHIPMENT_ACT) routeBuilder.addPickup(as(Shipment.class, job, kind));
+            else if (kind == DELIVER_SHIPMENT_ACT) routeBuilder.addDelivery(as(Shipment.class, job, kind));
+            else throw malformed("activity kind " + kind + " is not supported");
+        }
+        return routeBuilder.build();
+    }
+
+    private void readMatrix() {
+        int noLocations = readVarint();
+        //times and distances of all relations
+        if (noLocations < 0 || 16L * noLocations * noLocations > buffer.remaining())
+            throw malformed("matrix of " + noLocations + " locations exceeds data");
+        FastVehicleRoutingTransportCostsMatrix.Builder matrixBuilder = FastVehicleRoutingTransportCostsMatrix.Builder.newInstance(noLocations, false);
+        for (int from = 0; from < noLocations; from++) {
+            for (int to = 0; to < noLocations; to++) matrixBuilder.addTransportTime(from, to, buffer.getDouble());
+        }
+        for (int from = 0; from < noLocations; from++) {
+            for (int to = 0; to < noLocations; to++) matrixBuilder.addTransportDistance(from, to, buffer.getDouble());
+        }
+        vrpBuilder.setRoutingCost(matrixBuilder.build());
+    }
+
+    private List<TimeWindow> readTimeWindows() {
+        int noTimeWindows = readCount();
+        List<TimeWindow> timeWindows = new ArrayList<TimeWindow>(noTimeWindows);
+        for (int i = 0; i < noTimeWindows; i++) timeWindows.add(TimeWindow.newInstance(buffer.getDouble(), buffer.getDouble()));
+        return timeWindows;
+    }
+
+    private Location readLocationRef() {
+        int ref = readVarint();
+        return ref == 0 ? null : get(locations, ref - 1, "location");
+    }
+
+    private String readStringRef() {
+        int ref = readVarint();
+        return ref == 0 ? null : get(strings, ref - 1, "string");
+    }
+
+    private String[] readStringColumn(int length) {
+        String[] column = new String[length];
+        for (int i = 0; i < length; i++) column[i] = readStringRef();
+        return column;
+    }
+
+    private String[] readRequiredStringColumn(int length, String name) {
+        String[] column = readStringColumn(length);
+        for (String value : column) {
+            if (value == null) throw malformed(name + " is missing");
+        }
+        return column;
+    }
+
+    private List<String> readStrings(int length) {
+        return Arrays.asList(readRequiredStringColumn(length, "skill"));
+    }
+
+    //each element takes at least one byte, thus a count cannot exceed the remaining bytes
+    private int readCount() {
+        int count = readVarint();
+        if (count < 0 || count > buffer.remaining())
+            throw malformed("number of elements " + count + " exceeds data");
+        return count;
+    }
+
+    private int readVarint() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw malformed("varint is too long");
+    }
+
+    private static <T> T get(T[] elements, int index, String elementName) {
+        if (index < 0 || index >= elements.length)
+            throw malformed(elementName + " reference " + index + " is out of range [0," + elements.length + ")");
+        return elements[index];
+    }
+
+    private static <T extends Job> T as(Class<T> jobClass, Job job, byte activityKind) {
+        if (!jobClass.isInstance(job))
+            throw malformed("activity kind " + activityKind + " does not fit job " + job.getId());
+        return jobClass.cast(job);
+    }
+
+    private static IllegalArgumentException malformed(String reason) {
+        return new IllegalArgumentException("data is malformed: " + reason);
+    }
+
+    private int readSignedVarint() {
+        int value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
@@ -0,0 +1,390 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.io.problem;
+
+import com.graphhopper.jsprit.core.problem.Capacity;
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingTransportCosts;
+import com.graphhopper.jsprit.core.problem.job.Break;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.job.Shipment;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.DeliverShipment;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.PickupShipment;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TimeWindow;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes problems (and solutions) in a compact binary format that can be read with {@link VrpBinaryReader} (see
+ * there for a description of the format).
+ * <p>
+ * <p>Strings and locations are written once and referenced by varint-encoded indices, and jobs, vehicles and types are
+ * written column by column. Optionally, the transport times and distances of the problem can be embedded, i.e. they
+ * are queried for all pairs of location indices (see {@link #setEmbeddedMatrix(int)}).
+ *
+ * @author schroeder
+ */
+public class VrpBinaryWriter {
+
+    private static Logger log = LoggerFactory.getLogger(VrpBinaryWriter.class);
+
+    private final VehicleRoutingProblem vrp;
+
+    private final Collection<VehicleRoutingProblemSolution> solutions;
+
+    private int noMatrixLocations = -1;
+
+    private final Map<String, Integer> stringRefs = new LinkedHashMap<String, Integer>();
+
+    private final Map<String, Integer> locationRefs = new HashMap<String, Integer>();
+
+    private final List<Location> locations = new ArrayList<Location>();
+
+    private final Map<VehicleType, Integer> typeRefs = new LinkedHashMap<VehicleType, Integer>();
+
+    private final Map<String, Integer> vehicleRefs = new HashMap<String, Integer>();
+
+    private final Map<String, Integer> jobRefs = new HashMap<String, Integer>();
+
+    private final List<Job> jobs = new ArrayList<Job>();
+
+    public VrpBinaryWriter(VehicleRoutingProblem vrp, Collection<VehicleRoutingProblemSolution> solutions) {
+        this.vrp = vrp;
+        this.solutions = solutions;
+    }
+
+    public VrpBinaryWriter(VehicleRoutingProblem vrp) {
+        this(vrp, null);
+    }
+
+    /**
+     * Embeds transport times and distances of the problem's transport costs for location indices 0 to
+     * noLocations - 1. When reading, they are set as {@link com.graphhopper.jsprit.core.util.FastVehicleRoutingTransportCostsMatrix}.
+     *
+     * @param noLocations number of locations
+     * @return writer
+     */
+    public VrpBinaryWriter setEmbeddedMatrix(int noLocations) {
+        if (noLocations < 0) throw new IllegalArgumentException("number of locations must not be negative");
+        this.noMatrixLocations = noLocations;
+        return this;
+    }
+
+    public void write(String filename) {
+        log.info("write vrp: " + filename);
+        try (OutputStream out = new FileOutputStream(filename)) {
+            write(out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void write(OutputStream outputStream) {
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+            collect();
+            out.writeInt(VrpBinaryReader.MAGIC);
+            writeVarint(out, VrpBinaryReader.VERSION);
+            out.writeByte(noMatrixLocations >= 0 ? VrpBinaryReader.MATRIX_FLAG : 0);
+            out.writeByte(vrp.getFleetSize().ordinal());
+            writeStrings(out);
+            writeLocations(out);
+            writeTypes(out);
+            writeVehicles(out);
+            writeJobs(out);
+            writeVarint(out, vrp.getInitialVehicleRoutes().size());
+            for (VehicleRoute route : vrp.getInitialVehicleRoutes()) writeRoute(out, route);
+            writeSolutions(out);
+            if (noMatrixLocations >= 0) writeMatrix(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            stringRefs.clear();
+            locationRefs.clear();
+            locations.clear();
+            typeRefs.clear();
+            vehicleRefs.clear();
+            jobRefs.clear();
+            jobs.clear();
+        }
+    }
+
+    //assigns references to strings, locations, types, vehicles and jobs before anything is written
+    private void collect() {
+        for (Vehicle vehicle : vrp.getVehicles()) {
+            vehicleRefs.put(vehicle.getId(), vehicleRefs.size());
+            collect(vehicle.getId());
+            if (!typeRefs.containsKey(vehicle.getType())) {
+                typeRefs.put(vehicle.getType(), typeRefs.size());
+                collect(vehicle.getType().getTypeId());
+                collect(vehicle.getType().getProfile());
+            }
+            collect(vehicle.getStartLocation());
+            collect(vehicle.getEndLocation());
+            for (String skill : vehicle.getSkills().values()) collect(skill);
+            if (vehicle.getBreak() != null) collect(vehicle.getBreak().getId());
+        }
+        List<Job> allJobs = new ArrayList<Job>(vrp.getJobs().values());
+        for (VehicleRoute route : vrp.getInitialVehicleRoutes()) allJobs.addAll(route.getTourActivities().getJobs());
+        for (Job job : allJobs) {
+            if (job instanceof Break || jobRefs.containsKey(job.getId())) continue;
+            if (!(job instanceof Service) && !(job instanceof Shipment))
+                throw new IllegalStateException("cannot write job " + job.getId() + " since its type is not known. make sure you use either service or shipment, or another writer");
+            jobRefs.put(job.getId(), jobs.size());
+            jobs.add(job);
+            collect(job.getId());
+            collect(job.getName());
+            for (String skill : job.getRequiredSkills().values()) collect(skill);
+            if (job instanceof Service) {
+                collect(((Service) job).getType());
+                collect(((Service) job).getLocation());
+            } else {
+                collect(((Shipment) job).getPickupLocation());
+                collect(((Shipment) job).getDeliveryLocation());
+            }
+        }
+    }
+
+    private void collect(String string) {
+        if (string != null && !stringRefs.containsKey(string)) stringRefs.put(string, stringRefs.size() + 1);
+    }
+
+    private void collect(Location location) {
+        if (location == null) return;
+        String key = locationKey(location);
+        if (locationRefs.containsKey(key)) return;
+        locations.add(location);
+        locationRefs.put(key, locations.size());
+        collect(location.getId());
+        collect(location.getName());
+    }
+
+    private static String locationKey(Location location) {
+        StringBuilder key = new StringBuilder();
+        key.append(location.getId()).append('\u0000').append(location.getName()).append('\u0000').append(location.getIndex());
+        if (location.getCoordinate() != null) {
+            key.append('\u0000').append(location.getCoordinate().getX()).append('\u0000').append(location.getCoordinate().getY());
+        }
+        return key.toString();
+    }
+
+    private void writeStrings(DataOutputStream out) throws IOException {
+        writeVarint(out, stringRefs.size());
+        for (String string : stringRefs.keySet()) {
+            byte[] bytes = string.getBytes(VrpBinaryReader.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private void writeLocations(DataOutputStream out) throws IOException {
+        writeVarint(out, locations.size());
+        for (Location location : locations) writeStringRef(out, location.getId());
+        for (Location location : locations) writeStringRef(out, location.getName());
+        for (Location location : locations) out.writeByte(location.getCoordinate() == null ? 0 : 1);
+        for (Location location : locations) {
+            if (location.getCoordinate() == null) continue;
+            out.writeDouble(location.getCoordinate().getX());
+            out.writeDouble(location.getCoordinate().getY());
+        }
+        for (Location location : locations) writeSignedVarint(out, location.getIndex());
+    }
+
+    private void writeTypes(DataOutputStream out) throws IOException {
+        Set<VehicleType> types = typeRefs.keySet();
+        writeVarint(out, types.size());
+        for (VehicleType type : types) writeStringRef(out, type.getTypeId());
+        for (VehicleType type : types) writeStringRef(out, type.getProfile());
+        for (VehicleType type : types) writeCapacity(out, type.getCapacityDimensions());
+        for (VehicleType type : types) out.writeDouble(type.getVehicleCostParams().fix);
+        for (VehicleType type : types) out.writeDouble(type.getVehicleCostParams().perDistanceUnit);
+        for (VehicleType type : types) out.writeDouble(type.getVehicleCostParams().perTransportTimeUnit);
+        for (VehicleType type : types) out.writeDouble(type.getVehicleCostParams().perWaitingTimeUnit);
+        for (VehicleType type : types) out.writeDouble(type.getVehicleCostParams().perServiceTimeUnit);
+        for (VehicleType type : types) out.writeDouble(type.getMaxVelocity());
+    }
+
+    private void writeVehicles(DataOutputStream out) throws IOException {
+        Collection<Vehicle> vehicles = vrp.getVehicles();
+        writeVarint(out, vehicles.size());
+        for (Vehicle vehicle : vehicles) writeStringRef(out, vehicle.getId());
+        for (Vehicle vehicle : vehicles) writeVarint(out, typeRefs.get(vehicle.getType()));
+        for (Vehicle vehicle : vehicles) writeLocationRef(out, vehicle.getStartLocation());
+        for (Vehicle vehicle : vehicles) writeLocationRef(out, vehicle.getEndLocation());
+        for (Vehicle vehicle : vehicles) out.writeDouble(vehicle.getEarliestDeparture());
+        for (Vehicle vehicle : vehicles) out.writeDouble(vehicle.getLatestArrival());
+        for (Vehicle vehicle : vehicles) out.writeByte(vehicle.isReturnToDepot() ? 1 : 0);
+        for (Vehicle vehicle : vehicles) writeStrings(out, vehicle.getSkills().values());
+        for (Vehicle vehicle : vehicles) {
+            Break aBreak = vehicle.getBreak();
+            if (aBreak == null) {
+                out.writeByte(0);
+                continue;
+            }
+            out.writeByte(1);
+            writeStringRef(out, aBreak.getId());
+            out.writeDouble(aBreak.getServiceDuration());
+            writeTimeWindows(out, aBreak.getTimeWindows());
+        }
+    }
+
+    private void writeJobs(DataOutputStream out) throws IOException {
+        List<Service> services = new ArrayList<Service>();
+        List<Shipment> shipments = new ArrayList<Shipment>();
+        writeVarint(out, jobs.size());
+        for (Job job : jobs) {
+            if (job instanceof Service) {
+                services.add((Service) job);
+                out.writeByte(VrpBinaryReader.SERVICE);
+            } else {
+                shipments.add((Shipment) job);
+                out.writeByte(VrpBinaryReader.SHIPMENT);
+            }
+        }
+        for (Service service : services) writeStringRef(out, service.getId());
+        for (Service service : services) writeStringRef(out, service.getType());
+        for (Service service : services) writeStringRef(out, service.getName());
+        for (Service service : services) writeVarint(out, service.getPriority());
+        for (Service service : services) writeCapacity(out, service.getSize());
+        for (Service service : services) writeStrings(out, service.getRequiredSkills().values());
+        for (Service service : services) writeLocationRef(out, service.getLocation());
+        for (Service service : services) out.writeDouble(service.getServiceDuration());
+        for (Service service : services) writeTimeWindows(out, service.getTimeWindows());
+
+        for (Shipment shipment : shipments) writeStringRef(out, shipment.getId());
+        for (Shipment shipment : shipments) writeStringRef(out, shipment.getName());
+        for (Shipment shipment : shipments) writeVarint(out, shipment.getPriority());
+        for (Shipment shipment : shipments) writeCapacity(out, shipment.getSize());
+        for (Shipment shipment : shipments) writeStrings(out, shipment.getRequiredSkills().values());
+        for (Shipment shipment : shipments) writeLocationRef(out, shipment.getPickupLocation());
+        for (Shipment shipment : shipments) writeLocationRef(out, shipment.getDeliveryLocation());
+        for (Shipment shipment : shipments) out.writeDouble(shipment.getPickupServiceTime());
+        for (Shipment shipment : shipments) out.writeDouble(shipment.getDeliveryServiceTime());
+        for (Shipment shipment : shipments) writeTimeWindows(out, shipment.getPickupTimeWindows());
+        for (Shipment shipment : shipments) writeTimeWindows(out, shipment.getDeliveryTimeWindows());
+        for (Shipment shipment : shipments) out.writeDouble(shipment.getMaxTimeInVehicle());
+    }
+
+    private void writeSolutions(DataOutputStream out) throws IOException {
+        if (solutions == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, solutions.size());
+        for (VehicleRoutingProblemSolution solution : solutions) {
+            out.writeDouble(solution.getCost());
+            writeVarint(out, solution.getRoutes().size());
+            for (VehicleRoute route : solution.getRoutes()) writeRoute(out, route);
+            writeVarint(out, solution.getUnassignedJobs().size());
+            for (Job job : solution.getUnassignedJobs()) writeVarint(out, getJobRef(job));
+        }
+    }
+
+    private void writeRoute(DataOutputStream out, VehicleRoute route) throws IOException {
+        Integer vehicleRef = vehicleRefs.get(route.getVehicle().getId());
+        if (vehicleRef == null)
+            throw new IllegalStateException("vehicle " + route.getVehicle().getId() + " of route is not part of the problem");
+        writeVarint(out, vehicleRef);
+        out.writeDouble(route.getStart().getEndTime());
+        List<TourActivity> activities = route.getActivities();
+        writeVarint(out, activities.size());
+        for (TourActivity act : activities) {
+            if (!(act instanceof TourActivity.JobActivity))
+                throw new IllegalStateException("cannot write activity " + act.getName() + " since it does not belong to a job");
+            Job job = ((TourActivity.JobActivity) act).getJob();
+            if (job instanceof Break) {
+                out.writeByte(VrpBinaryReader.BREAK_ACT);
+                continue;
+            }
+            if (job instanceof Service) out.writeByte(VrpBinaryReader.SERVICE_ACT);
+            else if (act instanceof PickupShipment) out.writeByte(VrpBinaryReader.PICKUP_SHIPMENT_ACT);
+            else if (act instanceof DeliverShipment) out.writeByte(VrpBinaryReader.DELIVER_SHIPMENT_ACT);
+            else throw new IllegalStateException("cannot write activity " + act.getName() + " since its type is not known");
+            writeVarint(out, getJobRef(job));
+        }
+    }
+
+    private int getJobRef(Job job) {
+        Integer ref = jobRefs.get(job.getId());
+        if (ref == null) throw new IllegalStateException("job " + job.getId() + " is not part of the problem");
+        return ref;
+    }
+
+    private void writeMatrix(DataOutputStream out) throws IOException {
+        VehicleRoutingTransportCosts costs = vrp.getTransportCosts();
+        Location[] indexLocations = new Location[noMatrixLocations];
+        for (int i = 0; i < noMatrixLocations; i++) indexLocations[i] = Location.Builder.newInstance().setIndex(i).build();
+        writeVarint(out, noMatrixLocations);
+        for (Location from : indexLocations) {
+            for (Location to : indexLocations) out.writeDouble(costs.getTransportTime(from, to, 0., null, null));
+        }
+        for (Location from : indexLocations) {
+            for (Location to : indexLocations) out.writeDouble(costs.getDistance(from, to, 0., null));
+        }
+    }
+
+    private void writeCapacity(DataOutputStream out, Capacity capacity) throws IOException {
+        writeVarint(out, capacity.getNuOfDimensions());
+        for (int d = 0; d < capacity.getNuOfDimensions(); d++) writeSignedVarint(out, capacity.get(d));
+    }
+
+    private void writeTimeWindows(DataOutputStream out, Collection<TimeWindow> timeWindows) throws IOException {
+        writeVarint(out, timeWindows.size());
+        for (TimeWindow timeWindow : timeWindows) {
+            out.writeDouble(timeWindow.getStart());
+            out.writeDouble(timeWindow.getEnd());
+        }
+    }
+
+    private void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException {
+        writeVarint(out, strings.size());
+        for (String string : strings) writeStringRef(out, string);
+    }
+
+    private void writeStringRef(DataOutputStream out, String string) throws IOException {
+        writeVarint(out, string == null ? 0 : stringRefs.get(string));
+    }
+
+    private void writeLocationRef(DataOutputStream out, Location location) throws IOException {
+        writeVarint(out, location == null ? 0 : locationRefs.get(locationKey(location)));
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static void writeSignedVarint(DataOutputStream out, int value) throws IOException {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+}
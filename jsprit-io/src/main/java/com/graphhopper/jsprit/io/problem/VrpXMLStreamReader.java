@@ -0,0 +1,718 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.io.problem;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem.FleetSize;
+import com.graphhopper.jsprit.core.problem.driver.DriverImpl;
+import com.graphhopper.jsprit.core.problem.job.Break;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.job.Shipment;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TimeWindow;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleType;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import com.graphhopper.jsprit.core.util.Coordinate;
+import com.graphhopper.jsprit.core.util.Resource;
+import com.graphhopper.jsprit.io.problem.VrpXMLReader.DefaultServiceBuilderFactory;
+import com.graphhopper.jsprit.io.problem.VrpXMLReader.ServiceBuilderFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * Reads problems (and solutions) in the same xml-format as {@link VrpXMLReader}, but with a StAX parser, i.e. the
+ * document is never held in memory as a whole.
+ * <p>
+ * <p>Elements are processed while they stream by. Only the element of a single vehicle, vehicle-type, job or route
+ * is materialized at a time, and vehicles are kept back until their types are known (types follow vehicles in the
+ * document). If schema validation is enabled, the same stream of events is passed to a validator of
+ * vrp_xml_schema.xsd, thus validation does not need a second pass over the document either.
+ * <p>
+ * <p>Jobs are added to the problem builder when the document has been read, since jobs that are part of initial
+ * routes must not be added (and initial routes follow the jobs).
+ *
+ * @author schroeder
+ */
+public class VrpXMLStreamReader {
+
+    private static Logger logger = LoggerFactory.getLogger(VrpXMLStreamReader.class);
+
+    private final VehicleRoutingProblem.Builder vrpBuilder;
+
+    private final Collection<VehicleRoutingProblemSolution> solutions;
+
+    private final Map<String, VehicleType> types = new HashMap<String, VehicleType>();
+
+    private final List<Element> pendingVehicles = new ArrayList<Element>();
+
+    private final Map<String, Vehicle> vehicleMap = new LinkedHashMap<String, Vehicle>();
+
+    private final Map<String, Service> serviceMap = new LinkedHashMap<String, Service>();
+
+    private final Map<String, Shipment> shipmentMap = new LinkedHashMap<String, Shipment>();
+
+    private final Set<String> freezedJobIds = new HashSet<String>();
+
+    private boolean schemaValidation = true;
+
+    private ServiceBuilderFactory serviceBuilderFactory = new DefaultServiceBuilderFactory();
+
+    public VrpXMLStreamReader(VehicleRoutingProblem.Builder vrpBuilder, Collection<VehicleRoutingProblemSolution> solutions) {
+        this.vrpBuilder = vrpBuilder;
+        this.solutions = solutions;
+    }
+
+    public VrpXMLStreamReader(VehicleRoutingProblem.Builder vrpBuilder) {
+        this(vrpBuilder, null);
+    }
+
+    /**
+     * @param schemaValidation the schemaValidation to set
+     */
+    public void setSchemaValidation(boolean schemaValidation) {
+        this.schemaValidation = schemaValidation;
+    }
+
+    /**
+     * Sets the factory that creates the builders of services, e.g. to read custom service types.
+     *
+     * @param serviceBuilderFactory the factory
+     */
+    public void setServiceBuilderFactory(ServiceBuilderFactory serviceBuilderFactory) {
+        this.serviceBuilderFactory = serviceBuilderFactory;
+    }
+
+    public void read(String filename) {
+        logger.debug("read vrp: {}", filename);
+        URL url = Resource.getAsURL(filename);
+        if (url == null) throw new IllegalArgumentException("cannot find " + filename);
+        InputStream inputStream = null;
+        try {
+            inputStream = url.openStream();
+            read(inputStream);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    logger.debug("cannot close {}: {}", filename, e.getMessage());
+                }
+            }
+        }
+    }
+
+    public void read(InputStream fileContents) {
+        XMLStreamReader reader = null;
+        try {
+            reader = createXMLStreamReader(new BufferedInputStream(fileContents));
+            read(reader);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    logger.debug("cannot close xml reader: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+        if (!schemaValidation) return reader;
+        InputStream schemaStream = Resource.getAsInputStream("vrp_xml_schema.xsd");
+        if (schemaStream == null) {
+            logger.debug("cannot find schema-xsd file (vrp_xml_schema.xsd). try to read xml without xml-file-validation.");
+            return reader;
+        }
+        try {
+            Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new StreamSource(schemaStream));
+            return new ValidatingReader(reader, schema.newValidatorHandler());
+        } catch (SAXException e) {
+            throw new RuntimeException(e);
+        } finally {
+            try {
+                schemaStream.close();
+            } catch (IOException e) {
+                logger.debug("cannot close schema: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void read(XMLStreamReader reader) throws XMLStreamException {
+        Deque<String> path = new ArrayDeque<String>();
+        SolutionInProgress solution = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = path.pop();
+                if (name.equals("vehicleTypes")) buildPendingVehicles();
+                else if (name.equals("solution") && solution != null) {
+                    solutions.add(solution.build());
+                    solution = null;
+                }
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            String name = reader.getLocalName();
+            String parent = path.peek();
+            if ("problemType".equals(parent) && name.equals("fleetSize")) {
+                readProblemType(readElement(reader).text);
+            } else if ("vehicles".equals(parent) && name.equals("vehicle")) {
+                pendingVehicles.add(readElement(reader));
+            } else if ("vehicleTypes".equals(parent) && name.equals("type")) {
+                readVehicleType(readElement(reader));
+            } else if ("services".equals(parent) && name.equals("service")) {
+                readService(readElement(reader));
+            } else if ("shipments".equals(parent) && name.equals("shipment")) {
+                readShipment(readElement(reader));
+            } else if ("initialRoutes".equals(parent) && name.equals("route")) {
+                buildPendingVehicles();
+                vrpBuilder.addInitialVehicleRoute(readRoute(readElement(reader), true));
+            } else if ("solutions".equals(parent) && name.equals("solution") && solutions != null) {
+                buildPendingVehicles();
+                solution = new SolutionInProgress();
+                path.push(name);
+            } else if (solution != null && "solution".equals(parent) && name.equals("cost")) {
+                String cost = readElement(reader).text;
+                if (cost != null) solution.cost = Double.parseDouble(cost);
+            } else if (solution != null && "routes".equals(parent) && name.equals("route")) {
+                solution.routes.add(readRoute(readElement(reader), false));
+            } else if (solution != null && "unassignedJobs".equals(parent) && name.equals("job")) {
+                solution.unassignedJobs.add(getJob(readElement(reader).getString("[@id]")));
+            } else if (path.isEmpty() || name.equals("problemType") || name.equals("vehicles") || name.equals("vehicleTypes")
+                || name.equals("services") || name.equals("shipments") || name.equals("initialRoutes") || name.equals("solutions")
+                || (solution != null && (name.equals("routes") || name.equals("unassignedJobs")))) {
+                path.push(name);
+            } else {
+                //not of interest, e.g. fleetComposition or solutions if they are not read
+                skipElement(reader);
+            }
+        }
+        buildPendingVehicles();
+        addJobsAndTheirLocationsToVrp();
+    }
+
+    private class SolutionInProgress {
+
+        private final List<VehicleRoute> routes = new ArrayList<VehicleRoute>();
+
+        private final List<Job> unassignedJobs = new ArrayList<Job>();
+
+        private double cost = -1;
+
+        private VehicleRoutingProblemSolution build() {
+            VehicleRoutingProblemSolution solution = new VehicleRoutingProblemSolution(routes, cost);
+            solution.getUnassignedJobs().addAll(unassignedJobs);
+            return solution;
+        }
+
+    }
+
+    private void addJobsAndTheirLocationsToVrp() {
+        for (Service service : serviceMap.values()) {
+            if (!freezedJobIds.contains(service.getId())) {
+                vrpBuilder.addJob(service);
+            }
+        }
+        for (Shipment shipment : shipmentMap.values()) {
+            if (!freezedJobIds.contains(shipment.getId())) {
+                vrpBuilder.addJob(shipment);
+            }
+        }
+    }
+
+    private Job getJob(String jobId) {
+        Job job = shipmentMap.get(jobId);
+        if (job == null) job = serviceMap.get(jobId);
+        if (job == null) throw new IllegalArgumentException("cannot find unassignedJob with id " + jobId);
+        return job;
+    }
+
+    private void readProblemType(String fleetSize) {
+        if (fleetSize == null) vrpBuilder.setFleetSize(FleetSize.INFINITE);
+        else if (fleetSize.toUpperCase().equals(FleetSize.INFINITE.toString()))
+            vrpBuilder.setFleetSize(FleetSize.INFINITE);
+        else vrpBuilder.setFleetSize(FleetSize.FINITE);
+    }
+
+    private VehicleRoute readRoute(Element routeElement, boolean isInitialRoute) {
+        String vehicleId = routeElement.getString("vehicleId");
+        Vehicle vehicle = vehicleMap.get(vehicleId);
+        if (vehicle == null) throw new IllegalArgumentException("vehicle is missing.");
+        String start = routeElement.getString("start");
+        if (start == null) throw new IllegalArgumentException("route start-time is missing.");
+        if (!isInitialRoute && routeElement.getString("end") == null)
+            throw new IllegalArgumentException("route end-time is missing.");
+
+        VehicleRoute.Builder routeBuilder = VehicleRoute.Builder.newInstance(vehicle, DriverImpl.noDriver());
+        routeBuilder.setDepartureTime(Double.parseDouble(start));
+        for (Element act : routeElement.getElements("act")) {
+            String type = act.getString("[@type]");
+            if (type == null) throw new IllegalArgumentException("act[@type] is missing.");
+            if (type.equals("break")) {
+                routeBuilder.addBreak(vehicle.getBreak());
+                continue;
+            }
+            String serviceId = act.getString("serviceId");
+            if (serviceId != null) {
+                Service service = serviceMap.get(serviceId);
+                if (service == null)
+                    throw new IllegalArgumentException("service to serviceId " + serviceId + " is missing (reference in one of your routes). make sure you define the service you refer to here in <services> </services>.");
+                //since job is part of initial route, it does not belong to jobs in problem, i.e. variable jobs that can be assigned/scheduled
+                if (isInitialRoute) freezedJobIds.add(serviceId);
+                routeBuilder.addService(service);
+            } else {
+                String shipmentId = act.getString("shipmentId");
+                if (shipmentId == null)
+                    throw new IllegalArgumentException("either serviceId or shipmentId is missing");
+                Shipment shipment = shipmentMap.get(shipmentId);
+                if (shipment == null)
+                    throw new IllegalArgumentException("shipment to shipmentId " + shipmentId + " is missing (reference in one of your routes). make sure you define the shipment you refer to here in <shipments> </shipments>.");
+                if (isInitialRoute) freezedJobIds.add(shipmentId);
+                if (type.equals("pickupShipment")) {
+                    routeBuilder.addPickup(shipment);
+                } else if (type.equals("deliverShipment")) {
+                    routeBuilder.addDelivery(shipment);
+                } else
+                    throw new IllegalArgumentException("type " + type + " is not supported. Use 'pickupShipment' or 'deliverShipment' here");
+            }
+        }
+        return routeBuilder.build();
+    }
+
+    private void readShipment(Element shipmentElement) {
+        String id = shipmentElement.getString("[@id]");
+        if (id == null) throw new IllegalArgumentException("shipment[@id] is missing.");
+        String capacityString = shipmentElement.getString("capacity-demand");
+        List<Element> dimensions = getCapacityDimensions(shipmentElement, capacityString, "shipment");
+
+        Shipment.Builder builder;
+        if (capacityString != null) {
+            builder = Shipment.Builder.newInstance(id).addSizeDimension(0, Integer.parseInt(capacityString));
+        } else {
+            builder = Shipment.Builder.newInstance(id);
+            for (Element dimension : dimensions) {
+                builder.addSizeDimension(Integer.parseInt(dimension.getString("[@index]")), Integer.parseInt(dimension.text));
+            }
+        }
+
+        String name = shipmentElement.getString("name");
+        if (name != null) builder.setName(name);
+
+        builder.setPickupLocation(readLocation(shipmentElement.getElement("pickup")));
+        String pickupServiceTime = shipmentElement.getString("pickup.duration");
+        if (pickupServiceTime != null) builder.setPickupServiceTime(Double.parseDouble(pickupServiceTime));
+        for (TimeWindow timeWindow : readTimeWindows(shipmentElement, "pickup.timeWindows.timeWindow")) {
+            builder.addPickupTimeWindow(timeWindow);
+        }
+
+        builder.setDeliveryLocation(readLocation(shipmentElement.getElement("delivery")));
+        String deliveryServiceTime = shipmentElement.getString("delivery.duration");
+        if (deliveryServiceTime != null) builder.setDeliveryServiceTime(Double.parseDouble(deliveryServiceTime));
+        for (TimeWindow timeWindow : readTimeWindows(shipmentElement, "delivery.timeWindows.timeWindow")) {
+            builder.addDeliveryTimeWindow(timeWindow);
+        }
+
+        for (String skill : readSkills(shipmentElement.getString("requiredSkills"))) builder.addRequiredSkill(skill);
+
+        Shipment shipment = builder.build();
+        shipmentMap.put(shipment.getId(), shipment);
+    }
+
+    private void readService(Element serviceElement) {
+        String id = serviceElement.getString("[@id]");
+        if (id == null) throw new IllegalArgumentException("service[@id] is missing.");
+        String type = serviceElement.getString("[@type]");
+        if (type == null) type = "service";
+        String capacityString = serviceElement.getString("capacity-demand");
+        List<Element> dimensions = getCapacityDimensions(serviceElement, capacityString, "service");
+
+        Service.Builder builder;
+        if (capacityString != null) {
+            builder = serviceBuilderFactory.createBuilder(type, id, Integer.parseInt(capacityString));
+        } else {
+            builder = serviceBuilderFactory.createBuilder(type, id, null);
+            for (Element dimension : dimensions) {
+                builder.addSizeDimension(Integer.parseInt(dimension.getString("[@index]")), Integer.parseInt(dimension.text));
+            }
+        }
+
+        String name = serviceElement.getString("name");
+        if (name != null) builder.setName(name);
+
+        builder.setLocation(readLocation(serviceElement));
+        String duration = serviceElement.getString("duration");
+        if (duration != null) builder.setServiceTime(Double.parseDouble(duration));
+        for (TimeWindow timeWindow : readTimeWindows(serviceElement, "timeWindows.timeWindow")) {
+            builder.addTimeWindow(timeWindow);
+        }
+
+        for (String skill : readSkills(serviceElement.getString("requiredSkills"))) builder.addRequiredSkill(skill);
+
+        Service service = builder.build();
+        serviceMap.put(service.getId(), service);
+    }
+
+    private void readVehicleType(Element typeElement) {
+        String typeId = typeElement.getString("id");
+        if (typeId == null) throw new IllegalArgumentException("typeId is missing.");
+        String capacityString = typeElement.getString("capacity");
+        List<Element> dimensions = getCapacityDimensions(typeElement, capacityString, "type");
+
+        VehicleTypeImpl.Builder typeBuilder;
+        if (capacityString != null) {
+            typeBuilder = VehicleTypeImpl.Builder.newInstance(typeId).addCapacityDimension(0, Integer.parseInt(capacityString));
+        } else {
+            typeBuilder = VehicleTypeImpl.Builder.newInstance(typeId);
+            for (Element dimension : dimensions) {
+                typeBuilder.addCapacityDimension(Integer.parseInt(dimension.getString("[@index]")), Integer.parseInt(dimension.text));
+            }
+        }
+
+        String fix = typeElement.getString("costs.fixed");
+        String timeC = typeElement.getString("costs.time");
+        String distC = typeElement.getString("costs.distance");
+        String serviceC = typeElement.getString("costs.service");
+        String waitC = typeElement.getString("costs.wait");
+        if (fix != null) typeBuilder.setFixedCost(Double.parseDouble(fix));
+        if (timeC != null) typeBuilder.setCostPerTransportTime(Double.parseDouble(timeC));
+        if (distC != null) typeBuilder.setCostPerDistance(Double.parseDouble(distC));
+        if (serviceC != null) typeBuilder.setCostPerServiceTime(Double.parseDouble(serviceC));
+        if (waitC != null) typeBuilder.setCostPerWaitingTime(Double.parseDouble(waitC));
+        VehicleType type = typeBuilder.build();
+        types.put(type.getTypeId(), type);
+    }
+
+    private void buildPendingVehicles() {
+        for (Element vehicleElement : pendingVehicles) {
+            VehicleImpl vehicle = readVehicle(vehicleElement);
+            vrpBuilder.addVehicle(vehicle);
+            vehicleMap.put(vehicle.getId(), vehicle);
+        }
+        pendingVehicles.clear();
+    }
+
+    private VehicleImpl readVehicle(Element vehicleElement) {
+        String vehicleId = vehicleElement.getString("id");
+        if (vehicleId == null) throw new IllegalArgumentException("vehicleId is missing.");
+        VehicleImpl.Builder builder = VehicleImpl.Builder.newInstance(vehicleId);
+        String typeId = vehicleElement.getString("typeId");
+        if (typeId == null) throw new IllegalArgumentException("typeId is missing.");
+        if ("penalty".equals(vehicleElement.getString("[@type]"))) typeId += "_penalty";
+        VehicleType type = types.get(typeId);
+        if (type == null) throw new IllegalArgumentException("vehicleType with typeId " + typeId + " is missing.");
+        builder.setType(type);
+
+        Element startLocation = vehicleElement.getElement("location");
+        if (startLocation == null) startLocation = vehicleElement.getElement("startLocation");
+        Location.Builder startLocationBuilder = Location.Builder.newInstance();
+        if (startLocation != null) {
+            startLocationBuilder.setId(startLocation.getString("id"));
+            Coordinate coordinate = getCoord(startLocation);
+            if (coordinate != null) startLocationBuilder.setCoordinate(coordinate);
+            String index = startLocation.getString("index");
+            if (index != null) startLocationBuilder.setIndex(Integer.parseInt(index));
+        }
+        builder.setStartLocation(startLocationBuilder.build());
+
+        Element endLocation = vehicleElement.getElement("endLocation");
+        if (endLocation != null && (endLocation.getString("id") != null || getCoord(endLocation) != null || endLocation.getString("index") != null)) {
+            Location.Builder endLocationBuilder = Location.Builder.newInstance();
+            if (endLocation.getString("id") != null) endLocationBuilder.setId(endLocation.getString("id"));
+            Coordinate coordinate = getCoord(endLocation);
+            if (coordinate != null) endLocationBuilder.setCoordinate(coordinate);
+            String index = endLocation.getString("index");
+            if (index != null) endLocationBuilder.setIndex(Integer.parseInt(index));
+            builder.setEndLocation(endLocationBuilder.build());
+        }
+
+        String start = vehicleElement.getString("timeSchedule.start");
+        String end = vehicleElement.getString("timeSchedule.end");
+        if (start != null) builder.setEarliestStart(Double.parseDouble(start));
+        if (end != null) builder.setLatestArrival(Double.parseDouble(end));
+
+        String returnToDepot = vehicleElement.getString("returnToDepot");
+        if (returnToDepot != null) builder.setReturnToDepot(toBoolean(returnToDepot));
+
+        for (String skill : readSkills(vehicleElement.getString("skills"))) builder.addSkill(skill);
+
+        List<TimeWindow> breakTimeWindows = readTimeWindows(vehicleElement, "breaks.timeWindows.timeWindow");
+        if (!breakTimeWindows.isEmpty()) {
+            Break.Builder breakBuilder = Break.Builder.newInstance(vehicleElement.getString("breaks.id"));
+            breakBuilder.setServiceTime(Double.parseDouble(vehicleElement.getString("breaks.duration")));
+            for (TimeWindow timeWindow : breakTimeWindows) breakBuilder.addTimeWindow(timeWindow);
+            builder.setBreak(breakBuilder.build());
+        }
+        return builder.build();
+    }
+
+    private static boolean toBoolean(String value) {
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("true") || trimmed.equalsIgnoreCase("yes") || trimmed.equalsIgnoreCase("on"))
+            return true;
+        if (trimmed.equalsIgnoreCase("false") || trimmed.equalsIgnoreCase("no") || trimmed.equalsIgnoreCase("off"))
+            return false;
+        throw new IllegalArgumentException("cannot convert " + value + " to boolean");
+    }
+
+    private static List<Element> getCapacityDimensions(Element element, String capacityString, String elementName) {
+        List<Element> dimensions = element.getElements("capacity-dimensions.dimension");
+        if (capacityString == null && dimensions.isEmpty()) {
+            throw new IllegalArgumentException("capacity of " + elementName + " is not set. use 'capacity-dimensions'");
+        }
+        if (capacityString != null && !dimensions.isEmpty()) {
+            throw new IllegalArgumentException("either use capacity or capacity-dimension, not both. prefer the use of 'capacity-dimensions' over 'capacity'.");
+        }
+        return dimensions;
+    }
+
+    //location of services and shipment activities, i.e. either locationId and coord, or location.id, location.coord and location.index
+    private static Location readLocation(Element element) {
+        Location.Builder locationBuilder = Location.Builder.newInstance();
+        if (element == null) return locationBuilder.build();
+        Element location = element.getElement("location");
+        String locationId = element.getString("locationId");
+        if (locationId == null && location != null) locationId = location.getString("id");
+        if (locationId != null) locationBuilder.setId(locationId);
+        Coordinate coordinate = getCoord(element);
+        if (coordinate == null && location != null) coordinate = getCoord(location);
+        if (coordinate != null) locationBuilder.setCoordinate(coordinate);
+        String index = location == null ? null : location.getString("index");
+        if (index != null) locationBuilder.setIndex(Integer.parseInt(index));
+        return locationBuilder.build();
+    }
+
+    private static Coordinate getCoord(Element element) {
+        String x = element.getString("coord[@x]");
+        String y = element.getString("coord[@y]");
+        if (x == null || y == null) return null;
+        return Coordinate.newInstance(Double.parseDouble(x), Double.parseDouble(y));
+    }
+
+    private static List<TimeWindow> readTimeWindows(Element element, String path) {
+        List<TimeWindow> timeWindows = new ArrayList<TimeWindow>();
+        for (Element timeWindow : element.getElements(path)) {
+            timeWindows.add(TimeWindow.newInstance(Double.parseDouble(timeWindow.getString("start")), Double.parseDouble(timeWindow.getString("end"))));
+        }
+        return timeWindows;
+    }
+
+    private static List<String> readSkills(String skillString) {
+        if (skillString == null) return Collections.emptyList();
+        List<String> skills = new ArrayList<String>();
+        for (String skill : skillString.replaceAll("\\s", "").split("[,;]")) skills.add(skill.toLowerCase());
+        return skills;
+    }
+
+    /**
+     * Reads the element the reader is positioned at (including its subtree). Afterwards, the reader is positioned at
+     * its end tag.
+     */
+    private static Element readElement(XMLStreamReader reader) throws XMLStreamException {
+        Element element = new Element(reader.getLocalName());
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.addAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        StringBuilder text = null;
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                element.addChild(readElement(reader));
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (text == null) text = new StringBuilder();
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (text != null) {
+                    String trimmed = text.toString().trim();
+                    if (!trimmed.isEmpty()) element.text = trimmed;
+                }
+                return element;
+            }
+        }
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    /**
+     * Element of a single vehicle, type, job or route, with paths like "pickup.location.id" or "coord[@x]".
+     */
+    static class Element {
+
+        private final String name;
+
+        private Map<String, String> attributes;
+
+        private List<Element> children;
+
+        private String text;
+
+        Element(String name) {
+            this.name = name;
+        }
+
+        void addAttribute(String name, String value) {
+            if (attributes == null) attributes = new HashMap<String, String>(4);
+            attributes.put(name, value);
+        }
+
+        void addChild(Element child) {
+            if (children == null) children = new ArrayList<Element>(4);
+            children.add(child);
+        }
+
+        Element getElement(String path) {
+            List<Element> elements = getElements(path);
+            return elements.isEmpty() ? null : elements.get(0);
+        }
+
+        List<Element> getElements(String path) {
+            List<Element> current = Collections.singletonList(this);
+            for (String name : path.split("\\.")) {
+                List<Element> next = new ArrayList<Element>();
+                for (Element element : current) {
+                    if (element.children == null) continue;
+                    for (Element child : element.children) {
+                        if (child.name.equals(name)) next.add(child);
+                    }
+                }
+                current = next;
+            }
+            return current;
+        }
+
+        String getString(String path) {
+            String attribute = null;
+            int attributeStart = path.indexOf("[@");
+            if (attributeStart >= 0) {
+                attribute = path.substring(attributeStart + 2, path.length() - 1);
+                path = path.substring(0, attributeStart);
+            }
+            Element element = path.isEmpty() ? this : getElement(path);
+            if (element == null) return null;
+            if (attribute == null) return element.text;
+            return element.attributes == null ? null : element.attributes.get(attribute);
+        }
+
+    }
+
+    /**
+     * Passes all events that are pulled from the underlying reader to a {@link ValidatorHandler}, i.e. the document
+     * is validated while it is read.
+     */
+    private static class ValidatingReader extends StreamReaderDelegate {
+
+        private final ValidatorHandler validator;
+
+        private final AttributesImpl attributes = new AttributesImpl();
+
+        ValidatingReader(XMLStreamReader reader, ValidatorHandler validator) throws SAXException {
+            super(reader);
+            this.validator = validator;
+            validator.startDocument();
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            int event = super.next();
+            try {
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        for (int i = 0; i < getNamespaceCount(); i++) {
+                            validator.startPrefixMapping(nonNull(getNamespacePrefix(i)), nonNull(getNamespaceURI(i)));
+                        }
+                        attributes.clear();
+                        for (int i = 0; i < getAttributeCount(); i++) {
+                            attributes.addAttribute(nonNull(getAttributeNamespace(i)), getAttributeLocalName(i),
+                                qName(getAttributePrefix(i), getAttributeLocalName(i)), "CDATA", getAttributeValue(i));
+                        }
+                        validator.startElement(nonNull(getNamespaceURI()), getLocalName(), qName(getPrefix(), getLocalName()), attributes);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        validator.endElement(nonNull(getNamespaceURI()), getLocalName(), qName(getPrefix(), getLocalName()));
+                        for (int i = 0; i < getNamespaceCount(); i++) {
+                            validator.endPrefixMapping(nonNull(getNamespacePrefix(i)));
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        validator.characters(getTextCharacters(), getTextStart(), getTextLength());
+                        break;
+                    case XMLStreamConstants.END_DOCUMENT:
+                        validator.endDocument();
+                        break;
+                    default:
+                        break;
+                }
+            } catch (SAXException e) {
+                throw new XMLStreamException("document is not valid: " + e.getMessage(), getLocation(), e);
+            }
+            return event;
+        }
+
+        private static String nonNull(String value) {
+            return value == null ? "" : value;
+        }
+
+        private static String qName(String prefix, String localName) {
+            return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+        }
+
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.io.problem;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.util.DistanceUnit;
+import com.graphhopper.jsprit.core.util.FastVehicleRoutingTransportCostsMatrix;
+import com.graphhopper.jsprit.core.util.MappedVehicleRoutingTransportCostsMatrix;
+import com.graphhopper.jsprit.core.util.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class MatrixFileWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Location loc(int index) {
+        return Location.Builder.newInstance().setIndex(index).build();
+    }
+
+    @Test
+    public void whenWritingAsymmetricMatrix_mappedMatrixShouldReturnSameValues() throws IOException {
+        int noLocations = 5;
+        FastVehicleRoutingTransportCostsMatrix.Builder builder = FastVehicleRoutingTransportCostsMatrix.Builder.newInstance(noLocations, false);
+        for (int i = 0; i < noLocations; i++) {
+            for (int j = 0; j < noLocations; j++) {
+                builder.addTransportTimeAndDistance(i, j, i * 10 + j + 0.5, i * 100 + j);
+            }
+        }
+        FastVehicleRoutingTransportCostsMatrix fastMatrix = builder.build();
+        String filename = folder.newFile("matrix.bin").getAbsolutePath();
+        new MatrixFileWriter(noLocations, false).setTimeUnit(TimeUnit.MIN).setDistanceUnit(DistanceUnit.Kilometer).write(filename, fastMatrix);
+
+        MappedVehicleRoutingTransportCostsMatrix matrix = MappedVehicleRoutingTransportCostsMatrix.newInstance(filename);
+        assertEquals(noLocations, matrix.getNoLocations());
+        assertFalse(matrix.isSymmetric());
+        assertEquals(TimeUnit.MIN, matrix.getTimeUnit());
+        assertEquals(DistanceUnit.Kilometer, matrix.getDistanceUnit());
+        for (int i = 0; i < noLocations; i++) {
+            for (int j = 0; j < noLocations; j++) {
+                assertEquals(i * 10 + j + 0.5, matrix.getTransportTime(loc(i), loc(j), 0., null, null), 0.);
+                assertEquals(i * 100 + j, matrix.getDistance(loc(i), loc(j), 0., null), 0.);
+            }
+        }
+    }
+
+    @Test
+    public void whenWritingSymmetricMatrixWithFloatValues_mappedMatrixShouldReturnSameValues() {
+        int noLocations = 6;
+        String filename = new File(folder.getRoot(), "symmetric.bin").getAbsolutePath();
+        new MatrixFileWriter(noLocations, true).setFloatValues(true).write(filename, null, new MatrixFileWriter.MatrixSource() {
+            @Override
+            public double getValue(int fromIndex, int toIndex) {
+                return fromIndex * 100 + toIndex + 0.25;
+            }
+        });
+        assertEquals(32 + 21 * 4, new File(filename).length());
+
+        MappedVehicleRoutingTransportCostsMatrix matrix = MappedVehicleRoutingTransportCostsMatrix.newInstance(filename);
+        assertTrue(matrix.isSymmetric());
+        assertTrue(matrix.hasDistances());
+        assertFalse(matrix.hasTransportTimes());
+        assertEquals(0., matrix.getTransportTime(2, 3), 0.);
+        for (int i = 0; i < noLocations; i++) {
+            for (int j = 0; j <= i; j++) {
+                assertEquals(i * 100 + j + 0.25, matrix.getDistance(i, j), 0.);
+                assertEquals(i * 100 + j + 0.25, matrix.getDistance(j, i), 0.);
+            }
+        }
+    }
+
+    private String writeSymmetricDistances(String name, int noLocations) {
+        String filename = new File(folder.getRoot(), name).getAbsolutePath();
+        new MatrixFileWriter(noLocations, true).write(filename, null, new MatrixFileWriter.MatrixSource() {
+            @Override
+            public double getValue(int fromIndex, int toIndex) {
+                return fromIndex * 100 + toIndex;
+            }
+        });
+        return filename;
+    }
+
+    private void corruptHeader(String filename, int position, int value) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            file.seek(position);
+            file.write(value);
+        }
+    }
+
+    @Test
+    public void whenIndicesAreNegativeOrOutOfRange_gettersShouldThrowException() {
+        MappedVehicleRoutingTransportCostsMatrix matrix = MappedVehicleRoutingTransportCostsMatrix.newInstance(writeSymmetricDistances("indices.bin", 3));
+        int[][] relations = {{-1, 0}, {0, -1}, {-1, -1}, {3, 0}, {0, 3}, {Integer.MIN_VALUE, 0}};
+        for (int[] relation : relations) {
+            try {
+                matrix.getDistance(relation[0], relation[1]);
+                fail("distance of " + relation[0] + "," + relation[1] + " should not be returned");
+            } catch (IllegalArgumentException e) {
+            }
+            try {
+                matrix.getTransportTime(relation[0], relation[1]);
+                fail("time of " + relation[0] + "," + relation[1] + " should not be returned although the time block is missing");
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        //locations cannot have negative indices
+        int[][] locationRelations = {{3, 0}, {0, 3}, {3, 3}};
+        for (int[] relation : locationRelations) {
+            Location from = loc(relation[0]);
+            Location to = loc(relation[1]);
+            try {
+                matrix.getDistance(from, to, 0., null);
+                fail("distance of " + relation[0] + "," + relation[1] + " should not be returned");
+            } catch (IllegalArgumentException e) {
+            }
+            try {
+                matrix.getTransportTime(from, to, 0., null, null);
+                fail("time of " + relation[0] + "," + relation[1] + " should not be returned");
+            } catch (IllegalArgumentException e) {
+            }
+            try {
+                matrix.getTransportCost(from, to, 0., null, null);
+                fail("costs of " + relation[0] + "," + relation[1] + " should not be returned");
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        assertEquals(201., matrix.getDistance(1, 2), 0.);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenTimeUnitInHeaderIsUnknown_itShouldThrowException() throws IOException {
+        String filename = writeSymmetricDistances("time-unit.bin", 3);
+        corruptHeader(filename, 14, 99);
+        MappedVehicleRoutingTransportCostsMatrix.newInstance(filename);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenDistanceUnitInHeaderIsNegative_itShouldThrowException() throws IOException {
+        String filename = writeSymmetricDistances("distance-unit.bin", 3);
+        corruptHeader(filename, 15, 0xFF);
+        MappedVehicleRoutingTransportCostsMatrix.newInstance(filename);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenNumberOfLocationsInHeaderIsNegative_itShouldThrowException() throws IOException {
+        String filename = writeSymmetricDistances("locations.bin", 3);
+        corruptHeader(filename, 8, 0xFF);
+        MappedVehicleRoutingTransportCostsMatrix.newInstance(filename);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenFileIsNotAMatrixFile_itShouldThrowException() throws IOException {
+        File file = folder.newFile("no-matrix.bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[64]);
+        }
+        MappedVehicleRoutingTransportCostsMatrix.newInstance(file.getAbsolutePath());
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.io.problem;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.job.Shipment;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TourActivity;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+
+import java.util.Collection;
+
+/**
+ * Describes everything readers and writers of this package persist of a problem and its solutions as string, i.e.
+ * two problems that were written and read must have the same fingerprint.
+ */
+class ProblemFingerprint {
+
+    static String of(VehicleRoutingProblem vrp, Collection<VehicleRoutingProblemSolution> solutions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(vrp.getFleetSize()).append("\n");
+        for (Vehicle v : vrp.getVehicles()) {
+            sb.append(v.getId()).append(" ").append(v.getType().getTypeId()).append(" ").append(v.getType().getProfile())
+                .append(" ").append(v.getType().getCapacityDimensions()).append(" ").append(v.getType().getVehicleCostParams())
+                .append(" ").append(of(v.getStartLocation())).append(" ").append(of(v.getEndLocation())).append(" ")
+                .append(v.getEarliestDeparture()).append(" ").append(v.getLatestArrival()).append(" ").append(v.isReturnToDepot())
+                .append(" ").append(v.getSkills()).append(" ")
+                .append(v.getBreak() == null ? null : v.getBreak().getId() + v.getBreak().getServiceDuration() + v.getBreak().getTimeWindows())
+                .append("\n");
+        }
+        for (Job job : vrp.getJobs().values()) {
+            sb.append(job.getClass().getSimpleName()).append(" ").append(job.getId()).append(" ").append(job.getName())
+                .append(" ").append(job.getSize()).append(" ").append(job.getRequiredSkills()).append(" ").append(job.getPriority());
+            if (job instanceof Service) {
+                Service service = (Service) job;
+                sb.append(" ").append(of(service.getLocation())).append(" ").append(service.getServiceDuration())
+                    .append(" ").append(service.getTimeWindows());
+            } else {
+                Shipment shipment = (Shipment) job;
+                sb.append(" ").append(of(shipment.getPickupLocation())).append(" ").append(shipment.getPickupServiceTime())
+                    .append(" ").append(shipment.getPickupTimeWindows()).append(" ").append(of(shipment.getDeliveryLocation()))
+                    .append(" ").append(shipment.getDeliveryServiceTime()).append(" ").append(shipment.getDeliveryTimeWindows());
+            }
+            sb.append("\n");
+        }
+        for (VehicleRoute route : vrp.getInitialVehicleRoutes()) sb.append(of(route));
+        for (VehicleRoutingProblemSolution solution : solutions) {
+            sb.append("solution ").append(solution.getCost()).append("\n");
+            for (VehicleRoute route : solution.getRoutes()) sb.append(of(route));
+            for (Job job : solution.getUnassignedJobs()) sb.append("unassigned ").append(job.getId()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static String of(VehicleRoute route) {
+        StringBuilder sb = new StringBuilder("route ").append(route.getVehicle().getId()).append(" ").append(route.getDepartureTime());
+        for (TourActivity act : route.getActivities()) sb.append(" ").append(act.getName()).append(act.getLocation().getId());
+        return sb.append("\n").toString();
+    }
+
+    private static String of(Location location) {
+        return location.getId() + "/" + location.getCoordinate() + "/" + location.getIndex();
+    }
+
+}
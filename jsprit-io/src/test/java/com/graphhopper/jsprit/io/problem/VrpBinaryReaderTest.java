@@ -0,0 +1,194 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.io.problem;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Break;
+import com.graphhopper.jsprit.core.problem.job.Delivery;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.job.Shipment;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.solution.route.activity.TimeWindow;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import com.graphhopper.jsprit.core.util.Coordinate;
+import com.graphhopper.jsprit.core.util.FastVehicleRoutingTransportCostsMatrix;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VrpBinaryReaderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static final String[] FILES = {"biggerProblem.xml", "finiteVrpForReaderTest.xml",
+        "finiteVrpWithInitialSolutionForReaderTest.xml", "finiteVrpWithShipmentsAndSolution.xml", "lui-shen-solution.xml",
+        "simpleProblem_inclShipments_iniRoutes.xml", "simpleProblem_iniRoutes.xml", "simpleProblem_iniRoutes_2.xml",
+        "simpleProblem_iniRoutes_3.xml"};
+
+    private static ByteBuffer write(VehicleRoutingProblem vrp, List<VehicleRoutingProblemSolution> solutions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new VrpBinaryWriter(vrp, solutions).write(out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    @Test
+    public void whenWritingAndReadingXMLFiles_problemsAndSolutionsShouldBeTheSame() {
+        for (String file : FILES) {
+            VehicleRoutingProblem.Builder xmlBuilder = VehicleRoutingProblem.Builder.newInstance();
+            List<VehicleRoutingProblemSolution> xmlSolutions = new ArrayList<VehicleRoutingProblemSolution>();
+            new VrpXMLReader(xmlBuilder, xmlSolutions).read(getClass().getResourceAsStream(file));
+            VehicleRoutingProblem xmlVrp = xmlBuilder.build();
+
+            VehicleRoutingProblem.Builder builder = VehicleRoutingProblem.Builder.newInstance();
+            List<VehicleRoutingProblemSolution> solutions = new ArrayList<VehicleRoutingProblemSolution>();
+            new VrpBinaryReader(builder, solutions).read(write(xmlVrp, xmlSolutions));
+
+            assertEquals(file, ProblemFingerprint.of(xmlVrp, xmlSolutions), ProblemFingerprint.of(builder.build(), solutions));
+        }
+    }
+
+    @Test
+    public void binaryFormatShouldBeSmallerThanXML() {
+        VehicleRoutingProblem.Builder xmlBuilder = VehicleRoutingProblem.Builder.newInstance();
+        new VrpXMLReader(xmlBuilder).read(getClass().getResourceAsStream("biggerProblem.xml"));
+        VehicleRoutingProblem vrp = xmlBuilder.build();
+        OutputStream xml = new VrpXMLWriter(vrp).write();
+        assertTrue(write(vrp, Collections.<VehicleRoutingProblemSolution>emptyList()).remaining() * 2 < ((ByteArrayOutputStream) xml).size());
+    }
+
+    @Test
+    public void attributesNotCoveredByXMLShouldBeKept() {
+        VehicleTypeImpl type = VehicleTypeImpl.Builder.newInstance("bike").setProfile("bike").addCapacityDimension(0, 5)
+            .addCapacityDimension(1, 2).setCostPerWaitingTime(0.5).setMaxVelocity(4.).build();
+        VehicleImpl vehicle = VehicleImpl.Builder.newInstance("v").setType(type).setStartLocation(Location.newInstance(0))
+            .setEndLocation(Location.Builder.newInstance().setId("end").setName("depot").setCoordinate(Coordinate.newInstance(1, 2)).setIndex(1).build())
+            .addSkill("cooling").setBreak(Break.Builder.newInstance("lunch").setServiceTime(30).addTimeWindow(100, 200).build()).build();
+        Service delivery = Delivery.Builder.newInstance("d").setLocation(Location.newInstance(2)).addSizeDimension(1, 1)
+            .setPriority(1).addTimeWindow(TimeWindow.newInstance(0, 50)).addTimeWindow(TimeWindow.newInstance(80, 90)).build();
+        Shipment shipment = Shipment.Builder.newInstance("s").setPickupLocation(Location.newInstance(1)).setDeliveryLocation(Location.newInstance(2))
+            .setMaxTimeInVehicle(60.).setPriority(3).addRequiredSkill("cooling").build();
+        VehicleRoutingProblem vrp = VehicleRoutingProblem.Builder.newInstance().addVehicle(vehicle).addJob(delivery).addJob(shipment)
+            .setFleetSize(VehicleRoutingProblem.FleetSize.FINITE).build();
+
+        VehicleRoutingProblem.Builder builder = VehicleRoutingProblem.Builder.newInstance();
+        new VrpBinaryReader(builder).read(write(vrp, null));
+        VehicleRoutingProblem read = builder.build();
+        assertEquals(ProblemFingerprint.of(vrp, Collections.<VehicleRoutingProblemSolution>emptyList()),
+            ProblemFingerprint.of(read, Collections.<VehicleRoutingProblemSolution>emptyList()));
+        assertEquals(60., ((Shipment) read.getJobs().get("s")).getMaxTimeInVehicle(), 0.);
+        assertEquals(4., read.getVehicles().iterator().next().getType().getMaxVelocity(), 0.);
+        assertEquals("depot", read.getVehicles().iterator().next().getEndLocation().getName());
+    }
+
+    @Test
+    public void whenMatrixIsEmbedded_itShouldBeReadFromMappedFile() throws Exception {
+        FastVehicleRoutingTransportCostsMatrix matrix = FastVehicleRoutingTransportCostsMatrix.Builder.newInstance(2, false)
+            .addTransportTimeAndDistance(0, 1, 10., 100.).addTransportTimeAndDistance(1, 0, 20., 200.).build();
+        Location depot = Location.Builder.newInstance().setId("0").setIndex(0).build();
+        Location customer = Location.Builder.newInstance().setId("1").setIndex(1).build();
+        VehicleRoutingProblem vrp = VehicleRoutingProblem.Builder.newInstance()
+            .addVehicle(VehicleImpl.Builder.newInstance("v").setStartLocation(depot).build())
+            .addJob(Service.Builder.newInstance("s").setLocation(customer).build())
+            .setRoutingCost(matrix).build();
+        String filename = new File(tempFolder.getRoot(), "vrp.bin").getAbsolutePath();
+        new VrpBinaryWriter(vrp).setEmbeddedMatrix(2).write(filename);
+
+        VehicleRoutingProblem.Builder builder = VehicleRoutingProblem.Builder.newInstance();
+        new VrpBinaryReader(builder).read(filename);
+        VehicleRoutingProblem read = builder.build();
+        assertEquals(20., read.getTransportCosts().getTransportTime(customer, depot, 0., null, null), 0.);
+        assertEquals(100., read.getTransportCosts().getDistance(depot, customer, 0., null), 0.);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenDataIsNotBinaryFormat_itShouldThrowException() {
+        new VrpBinaryReader(VehicleRoutingProblem.Builder.newInstance()).read(ByteBuffer.wrap("<problem/>".getBytes()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenDataIsTruncated_itShouldThrowException() {
+        ByteBuffer buffer = write(VehicleRoutingProblem.Builder.newInstance()
+            .addVehicle(VehicleImpl.Builder.newInstance("v").setStartLocation(Location.newInstance(0)).build()).build(), null);
+        buffer.limit(buffer.limit() - 3);
+        new VrpBinaryReader(VehicleRoutingProblem.Builder.newInstance()).read(buffer);
+    }
+
+    private static ByteBuffer createProblemWithSolution() {
+        VehicleImpl vehicle = VehicleImpl.Builder.newInstance("v").setStartLocation(Location.newInstance(0))
+            .setBreak(Break.Builder.newInstance("b").setServiceTime(1.).addTimeWindow(TimeWindow.newInstance(0., 10.)).build()).build();
+        Service service = Service.Builder.newInstance("s").setLocation(Location.newInstance(1)).build();
+        Shipment shipment = Shipment.Builder.newInstance("sh").setPickupLocation(Location.newInstance(2))
+            .setDeliveryLocation(Location.newInstance(3)).build();
+        Service unassigned = Service.Builder.newInstance("u").setLocation(Location.newInstance(4)).build();
+        VehicleRoutingProblem vrp = VehicleRoutingProblem.Builder.newInstance().setFleetSize(VehicleRoutingProblem.FleetSize.FINITE)
+            .addVehicle(vehicle).addJob(service).addJob(shipment).addJob(unassigned).build();
+        VehicleRoute route = VehicleRoute.Builder.newInstance(vehicle).setJobActivityFactory(vrp.getJobActivityFactory())
+            .addService(service).addPickup(shipment).addBreak(vehicle.getBreak()).addDelivery(shipment).build();
+        VehicleRoutingProblemSolution solution = new VehicleRoutingProblemSolution(Collections.singletonList(route), 10.);
+        solution.getUnassignedJobs().add(unassigned);
+        return write(vrp, Collections.singletonList(solution));
+    }
+
+    @Test
+    public void whenFleetSizeIsOutOfRange_itShouldThrowException() {
+        ByteBuffer buffer = createProblemWithSolution();
+        //magic, version and flags precede the fleet size
+        buffer.put(6, (byte) 7);
+        try {
+            new VrpBinaryReader(VehicleRoutingProblem.Builder.newInstance()).read(buffer);
+            fail("fleet size is out of range");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("data is malformed"));
+        }
+    }
+
+    @Test
+    public void whenAnyByteIsCorrupted_itShouldBeReadOrRejectedWithIllegalArgumentException() {
+        ByteBuffer original = createProblemWithSolution();
+        byte[] values = {0, 1, 2, 3, 5, 0x7F, (byte) 0x80, (byte) 0xFF};
+        for (int position = 0; position < original.limit(); position++) {
+            for (byte value : values) {
+                ByteBuffer buffer = ByteBuffer.allocate(original.limit());
+                buffer.put(original.duplicate()).flip();
+                buffer.put(position, value);
+                try {
+                    new VrpBinaryReader(VehicleRoutingProblem.Builder.newInstance(), new ArrayList<VehicleRoutingProblemSolution>()).read(buffer);
+                } catch (IllegalArgumentException e) {
+                    //rejected
+                } catch (RuntimeException e) {
+                    throw new AssertionError("value " + value + " at position " + position + " is not rejected properly: " + e, e);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to GraphHopper GmbH under one or more contributor
+ * license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * GraphHopper GmbH licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.graphhopper.jsprit.io.problem;
+
+import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VrpXMLStreamReaderTest {
+
+    private static final String[] FILES = {"biggerProblem.xml", "finiteVrpForReaderTest.xml",
+        "finiteVrpWithInitialSolutionForReaderTest.xml", "finiteVrpWithShipmentsAndSolution.xml", "lui-shen-solution.xml",
+        "simpleProblem_inclShipments_iniRoutes.xml", "simpleProblem_iniRoutes.xml", "simpleProblem_iniRoutes_2.xml",
+        "simpleProblem_iniRoutes_3.xml"};
+
+    @Test
+    public void whenReadingFiles_problemsAndSolutionsShouldBeTheSameAsWithVrpXMLReader() {
+        for (String file : FILES) {
+            VehicleRoutingProblem.Builder expectedBuilder = VehicleRoutingProblem.Builder.newInstance();
+            List<VehicleRoutingProblemSolution> expectedSolutions = new ArrayList<VehicleRoutingProblemSolution>();
+            new VrpXMLReader(expectedBuilder, expectedSolutions).read(getClass().getResourceAsStream(file));
+
+            VehicleRoutingProblem.Builder builder = VehicleRoutingProblem.Builder.newInstance();
+            List<VehicleRoutingProblemSolution> solutions = new ArrayList<VehicleRoutingProblemSolution>();
+            new VrpXMLStreamReader(builder, solutions).read(getClass().getResourceAsStream(file));
+
+            assertEquals(file, ProblemFingerprint.of(expectedBuilder.build(), expectedSolutions), ProblemFingerprint.of(builder.build(), solutions));
+        }
+    }
+
+    @Test
+    public void whenReadingFromFilename_problemShouldBeRead() {
+        VehicleRoutingProblem.Builder builder = VehicleRoutingProblem.Builder.newInstance();
+        new VrpXMLStreamReader(builder).read("src/test/resources/com/graphhopper/jsprit/io/problem/finiteVrpForReaderTest.xml");
+        VehicleRoutingProblem vrp = builder.build();
+        assertEquals(VehicleRoutingProblem.FleetSize.FINITE, vrp.getFleetSize());
+        assertEquals("cleaning", ((Service) vrp.getJobs().get("1")).getName());
+    }
+
+    @Test
+    public void serviceBuilderFactoryShouldBeUsed() {
+        final List<String> types = new ArrayList<String>();
+        VehicleRoutingProblem.Builder builder = VehicleRoutingProblem.Builder.newInstance();
+        VrpXMLStreamReader reader = new VrpXMLStreamReader(builder);
+        reader.setServiceBuilderFactory(new VrpXMLReader.ServiceBuilderFactory() {
+            @Override
+            public Service.Builder createBuilder(String serviceType, String id, Integer size) {
+                types.add(serviceType);
+                return new VrpXMLReader.DefaultServiceBuilderFactory().createBuilder(serviceType, id, size);
+            }
+        });
+        reader.read(getClass().getResourceAsStream("finiteVrpForReaderTest.xml"));
+        assertFalse(types.isEmpty());
+    }
+
+    @Test
+    public void whenDocumentIsInvalid_itShouldThrowException() {
+        String xml = "<problem xmlns=\"http://www.w3schools.com\"><vehicles><vehicle><unknown/></vehicle></vehicles></problem>";
+        try {
+            new VrpXMLStreamReader(VehicleRoutingProblem.Builder.newInstance()).read(new ByteArrayInputStream(xml.getBytes()));
+            fail("invalid document should not be read");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("not valid"));
+        }
+    }
+
+}